@@ -18,6 +18,7 @@ plugins {
     kotlin("jvm") version "1.9.22"
     id("ua.eshepelyuk.ManifestClasspath") version "1.0.0"
     id("com.github.johnrengelman.shadow") version "7.1.2"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 val versionName = "4Beta"
@@ -176,6 +177,25 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// Benchmarks are in src/jmh. Results are written as JSON so that runs on different commits can be compared.
+// Sample invocation:
+// gradle jmh
+// gradle jmh -PjmhIncludes="LayerBenchmark" -PjmhResults="build/results/jmh/layers.json"
+// gradle jmh -PjmhIncludes="ArrayRuleKernelBenchmark" -PjmhProfilers="gc"
+// To compare with an older commit, check it out in a git worktree, copy src/jmh into it, and run the same
+// benchmarks there with a different jmhResults file.
+jmh {
+    jmhVersion.set("1.37")
+    jvmArgs.set(simbrainJvmArgs)
+    resultFormat.set("JSON")
+    resultsFile.set(
+        project.findProperty("jmhResults")?.let { file(it.toString()) }
+            ?: layout.buildDirectory.file("results/jmh/results.json").get().asFile
+    )
+    project.findProperty("jmhIncludes")?.let { includes.set(listOf(it.toString())) }
+    project.findProperty("jmhProfilers")?.let { profilers.set(listOf(it.toString())) }
+}
+
 // Sample invocation:
 // gradle runSim -PsimName="Test Sim"
 // gradle runSim -PsimName="Evolve Grazing Cows" -PoptionString="2:20:1000:100:0.5:true"
@@ -193,6 +213,36 @@ tasks.register<JavaExec>("runSim") {
     }
 }
 
+// Sample invocation:
+// gradle runBatch -Pworkspace="sim.zip" -PbatchArgs="--iterations 10000 --every 10 --producers Neuron_1,Neuron_2 --out run.csv"
+// Run without arguments to list the options.
+tasks.register<JavaExec>("runBatch") {
+    jvmArgs(simbrainJvmArgs + "-Djava.awt.headless=true")
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.simbrain.workspace.batch.BatchRunner")
+    if (project.hasProperty("workspace")) {
+        args(project.property("workspace") as String)
+        if (project.hasProperty("batchArgs")) {
+            args((project.property("batchArgs") as String).split(" ").filter { it.isNotBlank() })
+        }
+    }
+}
+
+// Sample invocation:
+// gradle runSweep -Pworkspace="sim.zip" -PbatchArgs="--sweep net.xml/network.timeStep=0.1,0.2,0.5 --iterations 1000 --out sweep"
+// Run without arguments to list the options.
+tasks.register<JavaExec>("runSweep") {
+    jvmArgs(simbrainJvmArgs + "-Djava.awt.headless=true")
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.simbrain.workspace.batch.ParameterSweep")
+    if (project.hasProperty("workspace")) {
+        args(project.property("workspace") as String)
+        if (project.hasProperty("batchArgs")) {
+            args((project.property("batchArgs") as String).split(" ").filter { it.isNotBlank() })
+        }
+    }
+}
+
 tasks.withType<KotlinCompile>().configureEach {
     kotlinOptions {
         jvmTarget = "17"
@@ -0,0 +1,50 @@
+package org.simbrain.benchmarks
+
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.*
+import org.simbrain.network.core.Network
+import org.simbrain.network.subnetworks.BackpropNetwork
+import org.simbrain.network.trainers.MatrixDataset
+import org.simbrain.network.trainers.SupervisedTrainer.UpdateMethod
+import smile.math.matrix.Matrix
+import java.util.concurrent.TimeUnit
+
+/**
+ * One epoch of [org.simbrain.network.trainers.SupervisedTrainer.trainOnce] on a [BackpropNetwork] learning an
+ * identity mapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class BackpropBenchmark {
+
+    @Param("10", "100")
+    var size = 0
+
+    private lateinit var network: Network
+
+    private lateinit var backprop: BackpropNetwork
+
+    @Setup
+    fun setUp() {
+        network = Network()
+        backprop = BackpropNetwork(intArrayOf(size, size / 2, size), null).apply {
+            trainingSet = MatrixDataset(inputs = Matrix.eye(size), targets = Matrix.eye(size))
+            trainer.updateType = UpdateMethod.Epoch()
+        }
+        network.addNetworkModels(backprop)
+    }
+
+    @Benchmark
+    fun trainOnce(): Double {
+        with(network) {
+            with(backprop) {
+                runBlocking { trainer.trainOnce() }
+            }
+        }
+        return backprop.trainer.lastError
+    }
+}
@@ -0,0 +1,48 @@
+package org.simbrain.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.couplings.Coupling
+import java.util.concurrent.TimeUnit
+
+/**
+ * [Coupling.update], which reads the producer and writes the consumer through reflection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class CouplingBenchmark {
+
+    private lateinit var scalarCoupling: Coupling
+
+    private lateinit var arrayCoupling: Coupling
+
+    @Setup
+    fun setUp() {
+        val workspace = Workspace()
+        val network = Network()
+        workspace.addWorkspaceComponent(NetworkComponent("net", network))
+        val source = Neuron().apply { activation = .5 }
+        val target = Neuron()
+        val sourceArray = NeuronArray(100).apply { randomize() }
+        val targetArray = NeuronArray(100)
+        network.addNetworkModels(source, target, sourceArray, targetArray)
+        with(workspace.couplingManager) {
+            scalarCoupling = createCoupling(source.getProducer("getActivation"), target.getConsumer("setActivation"))
+            arrayCoupling = createCoupling(sourceArray.getProducer("getActivationArray"), targetArray.getConsumer("setActivations"))
+        }
+    }
+
+    @Benchmark
+    fun scalar() = scalarCoupling.update()
+
+    @Benchmark
+    fun array() = arrayCoupling.update()
+}
@@ -0,0 +1,48 @@
+package org.simbrain.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.simbrain.util.projection.DataPoint
+import org.simbrain.util.projection.KDTree
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Nearest neighbour queries against a [KDTree] of random points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class KDTreeBenchmark {
+
+    @Param("1000", "10000")
+    var numPoints = 0
+
+    @Param("3", "25")
+    var dimension = 0
+
+    private lateinit var tree: KDTree
+
+    private lateinit var queries: List<DataPoint>
+
+    private var next = 0
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        fun randomPoint() = DataPoint(DoubleArray(dimension) { random.nextDouble() })
+        tree = KDTree(dimension)
+        repeat(numPoints) { tree.insert(randomPoint()) }
+        queries = List(100) { randomPoint() }
+    }
+
+    private fun nextQuery() = queries[next++ % queries.size]
+
+    @Benchmark
+    fun closestPoint() = tree.findClosestPoint(nextQuery())
+
+    @Benchmark
+    fun closestTenPoints() = tree.findClosestNPoints(nextQuery(), 10)
+}
@@ -0,0 +1,132 @@
+package org.simbrain.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.network.core.WeightMatrix
+import org.simbrain.network.updaterules.*
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Forward steps through a chain of [NeuronArray]s connected by [WeightMatrix]s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class LayerBenchmark {
+
+    @Param("10", "100", "1000")
+    var size = 0
+
+    private lateinit var network: Network
+
+    private lateinit var input: NeuronArray
+
+    @Setup
+    fun setUp() {
+        network = Network()
+        val layers = List(3) { NeuronArray(size) }
+        input = layers.first().apply { isClamped = true }
+        network.addNetworkModels(layers)
+        layers.zipWithNext { source, target ->
+            network.addNetworkModel(WeightMatrix(source, target).apply { randomize() })
+        }
+        input.randomize()
+    }
+
+    @Benchmark
+    fun forward(): DoubleArray {
+        network.update()
+        return input.activationArray
+    }
+}
+
+/**
+ * Update of a recurrently connected array of [IzhikevichRule] neurons driven by their default background current.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class IzhikevichArrayBenchmark {
+
+    @Param("100", "1000")
+    var size = 0
+
+    private lateinit var network: Network
+
+    private lateinit var array: NeuronArray
+
+    @Setup
+    fun setUp() {
+        network = Network()
+        array = NeuronArray(size).apply { updateRule = IzhikevichRule() }
+        network.addNetworkModels(array, WeightMatrix(array, array).apply { randomize() })
+    }
+
+    @Benchmark
+    fun update(): DoubleArray {
+        network.update()
+        return array.activationArray
+    }
+}
+
+/**
+ * Update of a single, unconnected [NeuronArray] with each of the rules that have in-place array kernels, so that the
+ * time is spent in the rule rather than in weight matrices. Only uses API that predates the in-place kernels, so it can
+ * also be run on older commits to compare with the per-neuron kernels. Run with the gc profiler to see allocations per
+ * update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class ArrayRuleKernelBenchmark {
+
+    @Param("Izhikevich", "IntegrateAndFire", "FitzhughNagumo", "AdEx", "NakaRushton", "Sigmoidal", "Softmax")
+    var rule = ""
+
+    @Param("1000", "10000")
+    var size = 0
+
+    private lateinit var network: Network
+
+    private lateinit var array: NeuronArray
+
+    private lateinit var inputs: DoubleArray
+
+    @Setup
+    fun setUp() {
+        network = Network()
+        array = NeuronArray(size).apply {
+            updateRule = when (rule) {
+                "Izhikevich" -> IzhikevichRule()
+                "IntegrateAndFire" -> IntegrateAndFireRule()
+                "FitzhughNagumo" -> FitzhughNagumo()
+                "AdEx" -> AdExIFRule()
+                "NakaRushton" -> NakaRushtonRule()
+                "Sigmoidal" -> SigmoidalRule()
+                "Softmax" -> SoftmaxRule()
+                else -> throw IllegalArgumentException("Unknown rule $rule")
+            }
+        }
+        network.addNetworkModel(array)
+        val random = Random(42)
+        inputs = DoubleArray(size) { random.nextDouble() * 10 }
+    }
+
+    @Benchmark
+    fun update(): DoubleArray {
+        array.addInputs(inputs)
+        with(network) { array.update() }
+        return array.activationArray
+    }
+}
@@ -0,0 +1,43 @@
+package org.simbrain.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.simbrain.network.core.*
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Copying a network of free neurons, synapses and weight matrices, directly and with an xml round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class NetworkCopyBenchmark {
+
+    @Param("100", "1000")
+    var numNeurons = 0
+
+    private lateinit var network: Network
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        network = Network()
+        val neurons = List(numNeurons) { Neuron() }
+        network.addNetworkModels(neurons)
+        network.addNetworkModels(neurons.map { target ->
+            Synapse(neurons[random.nextInt(numNeurons)], target, random.nextDouble(-1.0, 1.0))
+        })
+        val arrays = List(2) { NeuronArray(numNeurons / 10) }
+        network.addNetworkModels(arrays)
+        network.addNetworkModel(WeightMatrix(arrays[0], arrays[1]).apply { randomize() })
+    }
+
+    @Benchmark
+    fun structuralCopy(): Network = network.copy()
+
+    @Benchmark
+    fun xmlCopy(): Network = getNetworkXStream().let { it.fromXML(it.toXML(network)) as Network }
+}
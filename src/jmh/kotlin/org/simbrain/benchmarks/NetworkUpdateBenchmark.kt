@@ -0,0 +1,57 @@
+package org.simbrain.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.update_actions.BufferedUpdate
+import org.simbrain.network.update_actions.PriorityUpdate
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Update of a network of free neurons, each receiving [fanIn] random synapses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class NetworkUpdateBenchmark {
+
+    @Param("BufferedUpdate", "PriorityUpdate")
+    var updateAction = ""
+
+    @Param("100", "1000")
+    var numNeurons = 0
+
+    @Param("10")
+    var fanIn = 0
+
+    private lateinit var network: Network
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        network = Network()
+        val neurons = List(numNeurons) { Neuron().apply { activation = random.nextDouble(-1.0, 1.0) } }
+        network.addNetworkModels(neurons)
+        network.addNetworkModels(neurons.flatMap { target ->
+            List(fanIn) { Synapse(neurons[random.nextInt(numNeurons)], target, random.nextDouble(-.5, .5)) }
+        })
+        network.updateManager.clear()
+        network.addUpdateAction(
+            when (updateAction) {
+                "PriorityUpdate" -> PriorityUpdate(network)
+                else -> BufferedUpdate(network)
+            }
+        )
+    }
+
+    @Benchmark
+    fun update(): Double {
+        network.update()
+        return network.time
+    }
+}
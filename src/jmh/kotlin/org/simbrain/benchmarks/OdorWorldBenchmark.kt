@@ -0,0 +1,61 @@
+package org.simbrain.benchmarks
+
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.*
+import org.simbrain.util.point
+import org.simbrain.util.piccolo.TileMap
+import org.simbrain.world.odorworld.OdorWorld
+import org.simbrain.world.odorworld.entities.EntityType
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.SmellSensor
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Update of a world of [numAgents] moving agents, each with a smell sensor and two object sensors, among as many
+ * static objects, with and without a cached smell field, and with the object path or the batch mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class OdorWorldBenchmark {
+
+    @Param("50", "500")
+    var numAgents = 0
+
+    @Param("false", "true")
+    var smellFieldCached = false
+
+    @Param("false", "true")
+    var batchMode = false
+
+    private lateinit var world: OdorWorld
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        world = OdorWorld()
+        world.tileMap = TileMap(100, 100)
+        world.isSmellFieldCached = smellFieldCached
+        world.isBatchMode = batchMode
+        repeat(numAgents) {
+            world.addEntity(OdorWorldEntity(world, EntityType.SWISS).apply {
+                location = point(random.nextDouble(world.width), random.nextDouble(world.height))
+            })
+            world.addEntity(OdorWorldEntity(world, EntityType.MOUSE).apply {
+                location = point(random.nextDouble(world.width), random.nextDouble(world.height))
+                heading = random.nextDouble(360.0)
+                movement.speed = 2.0
+                movement.dtheta = random.nextDouble(-2.0, 2.0)
+                addSensor(SmellSensor())
+                addLeftRightSensors(EntityType.SWISS, 70.0)
+            })
+        }
+    }
+
+    @Benchmark
+    fun update() = runBlocking { world.update() }
+}
@@ -0,0 +1,65 @@
+package org.simbrain.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.core.WeightMatrix
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.serialization.WorkspaceSerializer
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Headless save and load of a workspace containing one network of free neurons, synapses and weight matrices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class WorkspaceSerializerBenchmark {
+
+    @Param("100", "1000")
+    var numNeurons = 0
+
+    private lateinit var workspace: Workspace
+
+    private lateinit var archive: ByteArray
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        workspace = Workspace()
+        val network = Network()
+        workspace.addWorkspaceComponent(NetworkComponent("net", network))
+        val neurons = List(numNeurons) { Neuron() }
+        network.addNetworkModels(neurons)
+        network.addNetworkModels(neurons.map { target ->
+            Synapse(neurons[random.nextInt(numNeurons)], target, random.nextDouble(-1.0, 1.0))
+        })
+        val arrays = List(2) { NeuronArray(numNeurons / 10) }
+        network.addNetworkModels(arrays)
+        network.addNetworkModel(WeightMatrix(arrays[0], arrays[1]).apply { randomize() })
+        archive = serialize()
+    }
+
+    private fun serialize() = ByteArrayOutputStream().also {
+        WorkspaceSerializer(workspace).serialize(it, headless = true)
+    }.toByteArray()
+
+    @Benchmark
+    fun save(): ByteArray = serialize()
+
+    @Benchmark
+    fun load(): Workspace {
+        val loaded = Workspace()
+        WorkspaceSerializer(loaded).deserialize(ByteArrayInputStream(archive))
+        return loaded
+    }
+}
@@ -44,9 +44,14 @@ public class DoubleArrayConverter implements Converter {
 
     /**
      * For arrays below compression threshold return a json-style array string [1,2,3,...].  Otherwise
-     * return a base64 encoding of the string.
+     * return a base64 encoding of the string, or when a workspace archive is being saved, a reference to
+     * a binary entry of the archive (see {@link BinaryArrays}).
      */
     public static String arrayToString(double[] array) {
+        String reference = BinaryArrays.store(array);
+        if (reference != null) {
+            return reference;
+        }
         if (array.length < compressionThreshold) {
             return "[" + Utils.doubleArrayToString(array, precision) + "]";
         } else {
@@ -58,6 +63,9 @@ public class DoubleArrayConverter implements Converter {
      * Converts a string representation produced by {@link #arrayToString(double[])} back to a double array.
      */
     public static double[] stringToArray(String str) {
+        if (BinaryArrays.isReference(str)) {
+            return BinaryArrays.load(str);
+        }
         if (str.startsWith("[")) {
             return Utils.parseVectorString(str.substring(1, str.length()-1));
         } else {
@@ -30,7 +30,7 @@ public class MatrixConverter implements Converter {
         writer.endNode();
 
         writer.startNode("data");
-        double[] flatArray = CollectionUtilsKt.flattenArray(matrix.toArray());
+        double[] flatArray = SmileUtilsKt.flatten(matrix, new double[matrix.nrow() * matrix.ncol()]);
         context.convertAnother(DoubleArrayConverter.arrayToString(flatArray));
         writer.endNode();
     }
@@ -50,7 +50,13 @@ public class MatrixConverter implements Converter {
         double[] flatData = DoubleArrayConverter.stringToArray(reader.getValue());
         reader.moveUp();
 
-        return Matrix.of(CollectionUtilsKt.reshape(rows, cols, flatData));
+        Matrix matrix = new Matrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                matrix.set(i, j, flatData[i * cols + j]);
+            }
+        }
+        return matrix;
     }
 
 }
@@ -29,6 +29,16 @@ public @interface Consumable {
      */
     String customDescriptionMethod() default "";
 
+    /**
+     * (For attributes of type double[] only).
+     * <br>
+     * Whether this method only reads the array it is passed, copying any values
+     * it keeps, so that the caller can reuse the array afterwards. Couplings from a
+     * producer with a {@link Producible#fillMethod()} to such a consumer pass the
+     * same buffer on every update.
+     */
+    boolean copiesArray() default false;
+
     /**
      * Whether this method should be visible in the coupling panels and menus by default. User
      * visibility settings will override this value.
@@ -5,6 +5,8 @@ import org.simbrain.workspace.couplings.Coupling;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
 
 /**
  * The part of a {@link Coupling} that receives values from a {@link Producer}.
@@ -12,6 +14,21 @@ import java.lang.reflect.Type;
  */
 public class Consumer extends Attribute {
 
+    /**
+     * Direct accessor for the setter, used instead of reflection when available. See {@link ConsumerBuilder#accessors}.
+     */
+    private BiConsumer<Object, Object> setter;
+
+    /**
+     * Primitive accessor for setters that take a double, or null.
+     */
+    private ObjDoubleConsumer<Object> doubleSetter;
+
+    /**
+     * See {@link Consumable#copiesArray()}.
+     */
+    private boolean copiesArray;
+
     /**
      * Contruct a consumer.
      *
@@ -39,6 +56,10 @@ public class Consumer extends Attribute {
      * @param value the value to set
      */
     public void setValue(Object value) {
+        if (setter != null) {
+            setter.accept(baseObject, value);
+            return;
+        }
         try {
             method.invoke(baseObject, value);
         } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
@@ -47,6 +68,35 @@ public class Consumer extends Attribute {
         }
     }
 
+    /**
+     * Whether this consumer has a primitive accessor, so that {@link #setDoubleValue(double)} does not box.
+     */
+    public boolean isDoubleConsumer() {
+        return doubleSetter != null;
+    }
+
+    /**
+     * Update a consumer whose setter takes a double.
+     *
+     * @param value the value to set
+     */
+    public void setDoubleValue(double value) {
+        if (doubleSetter != null) {
+            doubleSetter.accept(baseObject, value);
+        } else {
+            setValue(value);
+        }
+    }
+
+    /**
+     * See {@link Consumable#copiesArray()}.
+     *
+     * @return true if arrays passed to this consumer can be reused afterwards
+     */
+    public boolean copiesArray() {
+        return copiesArray;
+    }
+
     @Override
     public Type getType() {
         return method.getGenericParameterTypes()[0];
@@ -83,6 +133,31 @@ public class Consumer extends Attribute {
             product = new Consumer(baseObject, method);
         }
 
+        /**
+         * Set direct accessors for the setter, which replace reflection when calling it.
+         *
+         * @param setter accessor for the setter, or null to use reflection
+         * @param doubleSetter primitive accessor for a setter that takes a double, or null
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ConsumerBuilder accessors(BiConsumer<Object, Object> setter, ObjDoubleConsumer<Object> doubleSetter) {
+            product.setter = setter;
+            product.doubleSetter = doubleSetter;
+            return this;
+        }
+
+        /**
+         * Set whether the setter copies the arrays it is passed.
+         * {@see Consumable#copiesArray()}.
+         *
+         * @param copiesArray whether arrays can be reused after being consumed
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ConsumerBuilder copiesArray(boolean copiesArray) {
+            product.copiesArray = copiesArray;
+            return this;
+        }
+
         @Override
         protected Consumer product() {
             return product;
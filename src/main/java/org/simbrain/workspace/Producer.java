@@ -5,6 +5,9 @@ import org.simbrain.workspace.couplings.Coupling;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * The part of a {@link Coupling} that send values to a {@link Consumable}.
@@ -19,6 +22,26 @@ public class Producer extends Attribute {
      */
     private Method arrayDescriptionMethod;
 
+    /**
+     * Direct accessor for the getter, used instead of reflection when available. See {@link ProducerBuilder#accessors}.
+     */
+    private Function<Object, Object> getter;
+
+    /**
+     * Primitive accessor for getters that return a double, or null.
+     */
+    private ToDoubleFunction<Object> doubleGetter;
+
+    /**
+     * See {@link Producible#fillMethod()}. Null if the producer has no fill method.
+     */
+    private Method fillMethod;
+
+    /**
+     * Direct accessor for the fill method, or null to use reflection.
+     */
+    private BiFunction<Object, double[], double[]> filler;
+
     /**
      * Contruct a producer.
      *
@@ -46,6 +69,9 @@ public class Producer extends Attribute {
      * @return current value
      */
     public Object getValue() {
+        if (getter != null) {
+            return getter.apply(baseObject);
+        }
         try {
             return method.invoke(baseObject);
         } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
@@ -54,6 +80,54 @@ public class Producer extends Attribute {
         }
     }
 
+    /**
+     * Whether this producer has a primitive accessor, so that {@link #getDoubleValue()} does not box.
+     */
+    public boolean isDoubleProducer() {
+        return doubleGetter != null;
+    }
+
+    /**
+     * Return the value of a producer whose getter returns a double.
+     *
+     * @return current value
+     */
+    public double getDoubleValue() {
+        if (doubleGetter != null) {
+            return doubleGetter.applyAsDouble(baseObject);
+        }
+        return (Double) getValue();
+    }
+
+    /**
+     * Whether this producer has a {@link Producible#fillMethod()}, so that {@link #fillValue(double[])} can reuse a
+     * buffer.
+     */
+    public boolean isFillProducer() {
+        return fillMethod != null;
+    }
+
+    /**
+     * Write the value of a producer into a buffer, using its {@link Producible#fillMethod()} when it has one.
+     *
+     * @param buffer array to write to
+     * @return the buffer, or a new array if the buffer did not have the right size
+     */
+    public double[] fillValue(double[] buffer) {
+        if (filler != null) {
+            return filler.apply(baseObject, buffer);
+        }
+        if (fillMethod == null) {
+            return (double[]) getValue();
+        }
+        try {
+            return (double[]) fillMethod.invoke(baseObject, (Object) buffer);
+        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
+            // Should never happen
+            throw new RuntimeException(ex);
+        }
+    }
+
     @Override
     public Type getType() {
         return method.getReturnType();
@@ -119,6 +193,33 @@ public class Producer extends Attribute {
             return this;
         }
 
+        /**
+         * Set direct accessors for the getter, which replace reflection when calling it.
+         *
+         * @param getter accessor for the getter, or null to use reflection
+         * @param doubleGetter primitive accessor for a getter that returns a double, or null
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ProducerBuilder accessors(Function<Object, Object> getter, ToDoubleFunction<Object> doubleGetter) {
+            product.getter = getter;
+            product.doubleGetter = doubleGetter;
+            return this;
+        }
+
+        /**
+         * Set a fill method.
+         * {@see Producible#fillMethod()}.
+         *
+         * @param fillMethod the fill method, or null
+         * @param filler direct accessor for the fill method, or null to use reflection
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ProducerBuilder fillMethod(Method fillMethod, BiFunction<Object, double[], double[]> filler) {
+            product.fillMethod = fillMethod;
+            product.filler = filler;
+            return this;
+        }
+
         @Override
         protected Producer product() {
             return product;
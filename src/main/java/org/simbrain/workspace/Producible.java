@@ -39,6 +39,20 @@ public @interface Producible {
      */
     String arrayDescriptionMethod() default "";
 
+    /**
+     * (For attributes of type double[] only).
+     * <br>
+     * The name of a method that takes a double[] buffer, writes the values this
+     * producer would return into it, and returns it. If the buffer does not have
+     * the right size the method should return a new array instead. Couplings call
+     * this method with a buffer they own, so that updating them does not allocate
+     * a new array each time, as long as the consumer copies the values it is given
+     * (see {@link Consumable#copiesArray()}).
+     *
+     * @return the name of the fill method.
+     */
+    String fillMethod() default "";
+
     /**
      * Whether this method should be visible in the coupling panels and menus by default. User
      * visibility settings will override this value.
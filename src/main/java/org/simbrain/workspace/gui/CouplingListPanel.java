@@ -21,6 +21,8 @@ package org.simbrain.workspace.gui;
 import org.simbrain.util.ResourceManager;
 import org.simbrain.workspace.couplings.Coupling;
 import org.simbrain.workspace.couplings.CouplingEvents;
+import org.simbrain.workspace.couplings.CouplingGroup;
+import org.simbrain.workspace.couplings.CouplingManager;
 import org.simbrain.workspace.gui.couplingmanager.DesktopCouplingManager;
 
 import javax.swing.*;
@@ -28,9 +30,10 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
- * Displays a list of the current couplings in the network.
+ * Displays a list of the current couplings in the network. Each {@link CouplingGroup} is shown as a single entry.
  */
 public class CouplingListPanel extends JPanel {
 
@@ -70,7 +73,11 @@ public class CouplingListPanel extends JPanel {
 
         @Override
         public void actionPerformed(ActionEvent arg0) {
-            desktop.getWorkspace().getCouplingManager().removeCouplings(getSelectedCouplings());
+            CouplingManager couplingManager = desktop.getWorkspace().getCouplingManager();
+            couplingManager.removeCouplings(getSelectedCouplings());
+            for (CouplingGroup group : getSelectedCouplingGroups()) {
+                couplingManager.removeCouplingGroup(group);
+            }
         }
     };
 
@@ -97,7 +104,7 @@ public class CouplingListPanel extends JPanel {
         // desktop.getWorkspace().getCouplingManager().addCouplingListener(this);
 
         // Populates the coupling list with data.
-        couplings.setListData(this.couplingList.toArray());
+        updateCouplingsList();
         couplings.setCellRenderer(new CouplingCellRenderer());
 
         // Scroll pane for showing lists larger than viewing window and setting
@@ -121,6 +128,7 @@ public class CouplingListPanel extends JPanel {
         events.getCouplingAdded().on(c -> updateCouplingsList());
         events.getCouplingRemoved().on(c -> updateCouplingsList());
         events.getCouplingsRemoved().on(cl -> updateCouplingsList());
+        events.getCouplingGroupAdded().on(g -> updateCouplingsList());
 
     }
 
@@ -128,8 +136,11 @@ public class CouplingListPanel extends JPanel {
      * Updates the list of couplings when new couplings are made.
      */
     private void updateCouplingsList() {
-        couplingList = desktop.getWorkspace().getCouplings();
-        couplings.setListData(desktop.getWorkspace().getCouplings().toArray());
+        CouplingManager couplingManager = desktop.getWorkspace().getCouplingManager();
+        couplingList = couplingManager.getCouplings();
+        List<Object> entries = new ArrayList<>(couplingManager.getCouplingGroups());
+        entries.addAll(couplingManager.getUngroupedCouplings());
+        couplings.setListData(entries.toArray());
     }
 
     /**
@@ -140,7 +151,24 @@ public class CouplingListPanel extends JPanel {
     private ArrayList<Coupling> getSelectedCouplings() {
         ArrayList<Coupling> ret = new ArrayList<>();
         for (Object object : couplings.getSelectedValuesList()) {
-            ret.add((Coupling) object);
+            if (object instanceof Coupling) {
+                ret.add((Coupling) object);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns coupling groups selected in the list.
+     *
+     * @return selected coupling groups.
+     */
+    private ArrayList<CouplingGroup> getSelectedCouplingGroups() {
+        ArrayList<CouplingGroup> ret = new ArrayList<>();
+        for (Object object : couplings.getSelectedValuesList()) {
+            if (object instanceof CouplingGroup) {
+                ret.add((CouplingGroup) object);
+            }
         }
         return ret;
     }
@@ -151,10 +179,12 @@ public class CouplingListPanel extends JPanel {
     private class CouplingCellRenderer extends DefaultListCellRenderer {
         public java.awt.Component getListCellRendererComponent(final JList list, final Object object, final int index, final boolean isSelected, final boolean cellHasFocus) {
             DefaultListCellRenderer renderer = (DefaultListCellRenderer) super.getListCellRendererComponent(list, object, index, isSelected, cellHasFocus);
-            Coupling coupling = (Coupling) object;
-
             // Set text color based on data type
-            renderer.setForeground(DesktopCouplingManager.getColor(coupling.getType()));
+            if (object instanceof Coupling) {
+                renderer.setForeground(DesktopCouplingManager.getColor(((Coupling) object).getType()));
+            } else {
+                renderer.setForeground(DesktopCouplingManager.getColor(double.class));
+            }
             return renderer;
         }
     }
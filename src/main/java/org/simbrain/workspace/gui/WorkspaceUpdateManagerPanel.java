@@ -18,6 +18,7 @@ import org.simbrain.util.StandardDialog;
 import org.simbrain.workspace.Workspace;
 import org.simbrain.workspace.updater.UpdateAction;
 import org.simbrain.workspace.updater.UpdateActionManager.UpdateManagerListener;
+import org.simbrain.workspace.updater.WorkspaceUpdater;
 
 import javax.swing.*;
 import java.awt.*;
@@ -177,6 +178,19 @@ public class WorkspaceUpdateManagerPanel extends JPanel {
         updateCurrentActionsList();
         add(currentListScroll, BorderLayout.CENTER);
 
+        // Update mode
+        JPanel modePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        modePanel.add(new JLabel("Update mode:"));
+        WorkspaceUpdater updater = workspace.getUpdater();
+        JComboBox<WorkspaceUpdater.UpdateMode> modeComboBox = new JComboBox<>(WorkspaceUpdater.UpdateMode.values());
+        modeComboBox.setSelectedItem(updater.getUpdateMode());
+        modeComboBox.setToolTipText("<html>Serial: run actions one after another.<br>" +
+                "Parallel: update components that are not coupled to each other at the same time,<br>" +
+                "using couplings to order updates. Results are the same as a serial update.</html>");
+        modeComboBox.addActionListener(evt -> updater.setUpdateMode((WorkspaceUpdater.UpdateMode) modeComboBox.getSelectedItem()));
+        modePanel.add(modeComboBox);
+        add(modePanel, BorderLayout.NORTH);
+
         // Add buttons
         JPanel buttonPanel = new JPanel();
         JButton addActionsButton = new JButton(addPresetAction);
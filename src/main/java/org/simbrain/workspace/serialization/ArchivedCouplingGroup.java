@@ -0,0 +1,72 @@
+package org.simbrain.workspace.serialization;
+
+import org.simbrain.workspace.couplings.CouplingGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class used to represent a {@link CouplingGroup} in the archive. The couplings of a group are archived here rather
+ * than in the main coupling list, so that the group is saved and restored as one unit.
+ */
+class ArchivedCouplingGroup {
+
+    /**
+     * Label of the group.
+     */
+    private String label;
+
+    /**
+     * The couplings in the group, in order.
+     */
+    private List<ArchivedCoupling> couplings = new ArrayList<>();
+
+    /**
+     * Number of ungrouped couplings updated before the group. Archives saved before this field existed restore it as
+     * 0, so their groups are updated before all ungrouped couplings, as they were then.
+     */
+    private int position;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param label The label of the group.
+     */
+    ArchivedCouplingGroup(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * Returns an immutable list of the couplings in this group.
+     *
+     * @return An immutable list of the couplings in this group.
+     */
+    List<ArchivedCoupling> getCouplings() {
+        if (couplings == null) {
+            couplings = Collections.emptyList();
+        }
+        return Collections.unmodifiableList(couplings);
+    }
+
+    /**
+     * Adds a coupling to the group.
+     *
+     * @param coupling The coupling to add.
+     */
+    void addCoupling(ArchivedCoupling coupling) {
+        couplings.add(coupling);
+    }
+}
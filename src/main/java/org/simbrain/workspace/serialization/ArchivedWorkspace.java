@@ -62,6 +62,11 @@ class ArchivedWorkspace {
      */
     private List<ArchivedCoupling> archivedCouplings = new ArrayList<ArchivedCoupling>();
 
+    /**
+     * All of the coupling groups in the archive. Null in archives saved before coupling groups were added.
+     */
+    private List<ArchivedCouplingGroup> archivedCouplingGroups = new ArrayList<ArchivedCouplingGroup>();
+
     /**
      * All of the updateactions in the archive.
      */
@@ -215,6 +220,27 @@ class ArchivedWorkspace {
         return action;
     }
 
+    /**
+     * Returns an immutable list of the coupling groups in this archive.
+     *
+     * @return An immutable list of the coupling groups in this archive.
+     */
+    List<? extends ArchivedCouplingGroup> getArchivedCouplingGroups() {
+        if (archivedCouplingGroups == null) {
+            archivedCouplingGroups = Collections.emptyList();
+        }
+        return Collections.unmodifiableList(archivedCouplingGroups);
+    }
+
+    /**
+     * Adds a coupling group to the archive.
+     *
+     * @param group The coupling group to add.
+     */
+    void addCouplingGroup(ArchivedCouplingGroup group) {
+        archivedCouplingGroups.add(group);
+    }
+
     /**
      * Adds a coupling to the archive.
      *
@@ -260,6 +286,7 @@ class ArchivedWorkspace {
         xstream.processAnnotations(ArchivedWorkspace.class);
         xstream.processAnnotations(ArchivedWorkspaceComponent.class);
         xstream.processAnnotations(ArchivedCoupling.class);
+        xstream.processAnnotations(ArchivedCouplingGroup.class);
         xstream.processAnnotations(ArchivedAttribute.class);
         xstream.processAnnotations(ArchivedUpdateAction.class);
         return xstream;
@@ -129,11 +129,21 @@ public class Filter implements AttributeContainer, EditableObject {
         return channels[0];
     }
 
-    @Producible()
+    @Producible(fillMethod = "fillFlattenedRGB")
     public double[] getFlattenedRGB() {
         return CollectionUtilsKt.flattenArray(channels);
     }
 
+    /**
+     * Write the flattened channels into a buffer, or into a new array if the buffer does not have the right size.
+     *
+     * @param buffer array to write to
+     * @return the array written to
+     */
+    public double[] fillFlattenedRGB(double[] buffer) {
+        return CollectionUtilsKt.flattenArray(channels, buffer);
+    }
+
     @Producible( defaultVisibility = false)
     public double[] getRed() {
         return channels[1];
@@ -18,8 +18,11 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Connector
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
+import org.simbrain.network.core.WeightMatrix
 import org.simbrain.network.gui.ConnectionStrategyPanel
 import org.simbrain.util.displayInDialog
 import org.simbrain.util.propertyeditor.CopyableObject
@@ -103,6 +106,15 @@ abstract class ConnectionStrategy(seed: Long = Random.nextLong()) : CopyableObje
         target: List<Neuron>
     ): List<Synapse>
 
+    /**
+     * Create a connector between two layers, e.g. two [org.simbrain.network.core.NeuronArray]s. By default this is a
+     * dense [WeightMatrix]. Strategies that produce sparse connectivity override this to create a
+     * [org.simbrain.network.core.SparseWeightMatrix].
+     *
+     * The connector is not added to the network.
+     */
+    open fun connectLayers(source: Layer, target: Layer): Connector = WeightMatrix(source, target)
+
     override fun getTypeList() = connectionTypes
 
 }
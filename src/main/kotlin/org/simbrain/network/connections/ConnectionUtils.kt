@@ -84,3 +84,38 @@ fun polarizeSynapses(synapses: Collection<Synapse>, percentExcitatory: Double, r
     toInhibit.forEach { it.strength = DEFAULT_INHIBITORY_STRENGTH }
 
 }
+
+/**
+ * Sets [percentExcitatory] of the provided weights to [DEFAULT_EXCITATORY_STRENGTH] and the rest to
+ * [DEFAULT_INHIBITORY_STRENGTH], chosen at random. Array version of [polarizeSynapses], used for sparse weight
+ * matrices, whose units have no polarity.
+ */
+@JvmOverloads
+fun polarizeWeights(weights: DoubleArray, percentExcitatory: Double, random: Random = Random) {
+    val excitatoryRatio = percentExcitatory / 100
+    if (excitatoryRatio > 1 || excitatoryRatio < 0) {
+        throw IllegalArgumentException("The ratio of excitatory weights cannot be greater than 1 or less than 0.")
+    }
+    val excitatoryCount = (weights.size * excitatoryRatio).toInt()
+    val order = IntArray(weights.size) { it }.apply { shuffle(random) }
+    order.forEachIndexed { rank, k ->
+        weights[k] = if (rank < excitatoryCount) DEFAULT_EXCITATORY_STRENGTH else DEFAULT_INHIBITORY_STRENGTH
+    }
+}
+
+/**
+ * Choose [k] distinct indices between 0 and [n] (exclusive) at random, in time proportional to [k] (Floyd's
+ * algorithm). If [exclude] is non-negative that index is never chosen, in which case at most n - 1 indices are
+ * returned.
+ */
+@JvmOverloads
+fun sampleIndices(n: Int, k: Int, random: Random = Random, exclude: Int = -1): IntArray {
+    val poolSize = if (exclude in 0 until n) n - 1 else n
+    val count = k.coerceIn(0, poolSize)
+    val chosen = LinkedHashSet<Int>(count * 2)
+    for (j in poolSize - count until poolSize) {
+        val candidate = random.nextInt(j + 1)
+        chosen.add(if (candidate in chosen) j else candidate)
+    }
+    return chosen.map { if (exclude in 0..it) it + 1 else it }.toIntArray()
+}
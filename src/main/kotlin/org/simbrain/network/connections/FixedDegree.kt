@@ -17,7 +17,9 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.SparseWeightMatrix
 import org.simbrain.network.core.Synapse
 import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
@@ -93,6 +95,19 @@ class FixedDegree(
         return syns
     }
 
+    /**
+     * Connect two layers with a [SparseWeightMatrix] in which each target unit receives (for [Direction.IN]) or each
+     * source unit sends (for [Direction.OUT]) [degree] connections. Layer units have no location, so [useRadius] is
+     * ignored.
+     */
+    override fun connectLayers(source: Layer, target: Layer): SparseWeightMatrix {
+        val excludeSelf = source === target && !allowSelfConnections
+        val rows = createFixedDegreeRows(source.size, target.size, degree, direction, excludeSelf, random)
+        return SparseWeightMatrix.fromRows(source, target, rows).also {
+            polarizeWeights(it.values, percentExcitatory, random)
+        }
+    }
+
     override val name = "Fixed degree"
 
     override fun toString(): String {
@@ -175,3 +190,27 @@ fun Neuron.createToNSynapses(
             }
         }
 }
+
+/**
+ * Array version of [createFixedDegreeSynapses]. Returns, for each of [numTargets] target units, the source units
+ * connected to it, such that each target has [degree] sources ([Direction.IN]) or each source has [degree] targets
+ * ([Direction.OUT]).
+ */
+fun createFixedDegreeRows(
+    numSources: Int,
+    numTargets: Int,
+    degree: Int,
+    direction: Direction = Direction.IN,
+    excludeSelf: Boolean = false,
+    random: Random = Random
+): List<IntArray> {
+    return if (direction == Direction.IN) {
+        List(numTargets) { i -> sampleIndices(numSources, degree, random, if (excludeSelf) i else -1) }
+    } else {
+        val rows = List(numTargets) { ArrayList<Int>() }
+        for (j in 0 until numSources) {
+            sampleIndices(numTargets, degree, random, if (excludeSelf) j else -1).forEach { i -> rows[i].add(j) }
+        }
+        rows.map { it.toIntArray() }
+    }
+}
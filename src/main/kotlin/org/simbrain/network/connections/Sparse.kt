@@ -17,12 +17,16 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.SparseWeightMatrix
 import org.simbrain.network.core.Synapse
 import org.simbrain.util.UserParameter
 import org.simbrain.util.cartesianProduct
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.sampleWithoutReplacement
+import kotlin.math.floor
+import kotlin.math.ln
 import kotlin.math.roundToInt
 import kotlin.random.Random
 
@@ -104,6 +108,22 @@ class Sparse @JvmOverloads constructor(
         }
     }
 
+    /**
+     * Connect two layers with a [SparseWeightMatrix] of the given [connectionDensity]. Self connections are only
+     * excluded when a layer is connected to itself.
+     */
+    override fun connectLayers(source: Layer, target: Layer): SparseWeightMatrix {
+        val excludeSelf = source === target && !allowSelfConnection
+        val rows = if (equalizeEfferents) {
+            createEqualizedRows(source.size, target.size, connectionDensity, excludeSelf, random)
+        } else {
+            createSparseRows(source.size, target.size, connectionDensity, excludeSelf, random)
+        }
+        return SparseWeightMatrix.fromRows(source, target, rows).also {
+            polarizeWeights(it.values, percentExcitatory, random)
+        }
+    }
+
     override val name = "Sparse"
 
     override fun toString() = name
@@ -195,4 +215,59 @@ sealed interface ConnectionsResult {
     data class Add(val connectionsToAdd: List<Synapse>) : ConnectionsResult
     data class Remove(val connectionsToRemove: List<Synapse>): ConnectionsResult
     data class Reset(val resultConnections: List<Synapse>): ConnectionsResult
-}
\ No newline at end of file
+}
+/**
+ * For each of [numTargets] target units, choose the source units that connect to it, making each of the possible
+ * connections independently with probability [connectionDensity]. Runs in time proportional to the number of
+ * connections made rather than the number possible, by skipping ahead a geometrically distributed number of
+ * candidates each time.
+ *
+ * @param excludeSelf if true, source `i` is never connected to target `i`
+ */
+fun createSparseRows(
+    numSources: Int,
+    numTargets: Int,
+    connectionDensity: Double,
+    excludeSelf: Boolean = false,
+    random: Random = Random
+): List<IntArray> {
+    return List(numTargets) { i ->
+        val exclude = if (excludeSelf && i < numSources) i else -1
+        val candidates = if (exclude >= 0) numSources - 1 else numSources
+        val row = ArrayList<Int>()
+        when {
+            connectionDensity <= 0.0 -> {}
+            connectionDensity >= 1.0 -> (0 until candidates).forEach { row.add(it) }
+            else -> {
+                val logComplement = ln(1 - connectionDensity)
+                var j = -1L
+                while (true) {
+                    j += 1 + floor(ln(1 - random.nextDouble()) / logComplement).toLong().coerceAtLeast(0)
+                    if (j >= candidates) break
+                    row.add(j.toInt())
+                }
+            }
+        }
+        row.map { if (exclude in 0..it) it + 1 else it }.toIntArray()
+    }
+}
+
+/**
+ * Array version of [createEqualizedSynapses]: each source unit connects to the same number of target units, namely
+ * [connectionDensity] times the number of targets. Returns the connected source units of each target.
+ */
+fun createEqualizedRows(
+    numSources: Int,
+    numTargets: Int,
+    connectionDensity: Double,
+    excludeSelf: Boolean = false,
+    random: Random = Random
+): List<IntArray> {
+    val connectionCount = (numTargets * connectionDensity).toInt()
+    val rows = List(numTargets) { ArrayList<Int>() }
+    for (j in 0 until numSources) {
+        val exclude = if (excludeSelf) j else -1
+        sampleIndices(numTargets, connectionCount, random, exclude).forEach { i -> rows[i].add(j) }
+    }
+    return rows.map { it.toIntArray() }
+}
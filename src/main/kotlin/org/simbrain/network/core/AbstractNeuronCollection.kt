@@ -41,8 +41,8 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
     @Transient
     override val events: NeuronCollectionEvents = NeuronCollectionEvents()
 
-    @get:Producible(arrayDescriptionMethod = "getLabelArray")
-    @set:Consumable
+    @get:Producible(arrayDescriptionMethod = "getLabelArray", fillMethod = "fillActivationArray")
+    @set:Consumable(copiesArray = true)
     override var activationArray: DoubleArray
         get() = neuronList
             .map { it.activation }
@@ -73,11 +73,25 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
      * Returns an array of binary values that represents the neurons in the neuron list.
      * The value is 1 for spiking neurons that are spiking, and 0 otherwise (non-spiking neurons are always associated with 0s)
      */
-    @get:Producible
+    @get:Producible(fillMethod = "fillSpikes")
     override val spikes: DoubleArray
-        get() = neuronList.map {
-            if ((it.dataHolder as? SpikingScalarData)?.spiked == true) 1.0 else 0.0
-        }.toDoubleArray()
+        get() = fillSpikes(DoubleArray(neuronList.size))
+
+    override fun fillActivationArray(buffer: DoubleArray): DoubleArray {
+        val result = if (buffer.size == neuronList.size) buffer else DoubleArray(neuronList.size)
+        for (i in result.indices) {
+            result[i] = neuronList[i].activation
+        }
+        return result
+    }
+
+    override fun fillSpikes(buffer: DoubleArray): DoubleArray {
+        val result = if (buffer.size == neuronList.size) buffer else DoubleArray(neuronList.size)
+        for (i in result.indices) {
+            result[i] = if ((neuronList[i].dataHolder as? SpikingScalarData)?.spiked == true) 1.0 else 0.0
+        }
+        return result
+    }
 
     override val inputs: Matrix get() = Matrix.column(inputArray)
 
@@ -110,7 +124,7 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
         addInputs(inputs.col(0))
     }
 
-    @Consumable
+    @Consumable(copiesArray = true)
     override fun setActivations(activations: DoubleArray) {
         this.activationArray = activations
     }
@@ -122,7 +136,7 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
      * Does not throw an exception if the provided input array and neuron list
      * do not match in size.
      */
-    @Consumable
+    @Consumable(copiesArray = true)
     fun addInputs(inputs: DoubleArray) {
         val size = min(inputs.size.toDouble(), neuronList.size.toDouble()).toInt()
         for (i in 0 until size) {
@@ -348,7 +362,7 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
         super.accumulateInputs()
         val wtdInputs = DoubleArray(size)
         for (c in incomingConnectors) {
-            wtdInputs.addi(c.getSummedPSRs())
+            c.accumulateSummedPSRs(wtdInputs)
         }
         addInputs(wtdInputs)
         addInputs(biasArray)
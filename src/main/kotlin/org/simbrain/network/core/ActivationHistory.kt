@@ -0,0 +1,98 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.util.SpikingMatrixData
+
+/**
+ * A circular buffer of the recent activations of a [Layer], and of its spikes and last spike times when it is a
+ * spiking [NeuronArray]. One history is shared by all delayed connectors from a layer (see
+ * [Layer.activationHistory]), so delays take memory proportional to the maximum delay times the layer size,
+ * regardless of the number of connections.
+ *
+ * Entries older than the first one recorded are zero activations with no spikes, like an empty [Synapse] delay buffer.
+ */
+class ActivationHistory(val size: Int, capacity: Int) {
+
+    /**
+     * Number of iterations stored, i.e. one more than the largest delay that can be read.
+     */
+    var capacity = capacity
+        private set
+
+    private var activations = Array(capacity) { DoubleArray(size) }
+
+    private var spikes = Array(capacity) { BooleanArray(size) }
+
+    private var lastSpikeTimes = Array(capacity) { DoubleArray(size) { Double.NEGATIVE_INFINITY } }
+
+    /**
+     * Index of the most recent entry.
+     */
+    private var head = 0
+
+    /**
+     * Network time of the most recent entry, so that connectors sharing this history only record once per iteration.
+     */
+    private var lastRecordedTime = Double.NaN
+
+    /**
+     * Record the current state of a layer, unless it has already been recorded at this time. Synchronized, so that
+     * connectors sharing the history can call it concurrently and it still records once per iteration.
+     */
+    context(Network)
+    @Synchronized
+    fun record(currentActivations: DoubleArray, spikeData: SpikingMatrixData?) {
+        if (time == lastRecordedTime) {
+            return
+        }
+        lastRecordedTime = time
+        head = (head + 1) % capacity
+        currentActivations.copyInto(activations[head], endIndex = minOf(size, currentActivations.size))
+        if (spikeData != null) {
+            spikeData.spikes.copyInto(spikes[head], endIndex = minOf(size, spikeData.spikes.size))
+            spikeData.lastSpikeTimes.copyInto(lastSpikeTimes[head], endIndex = minOf(size, spikeData.lastSpikeTimes.size))
+        }
+    }
+
+    /**
+     * Activations recorded [delay] iterations ago. A delay of 0 returns the most recent entry.
+     */
+    fun activations(delay: Int): DoubleArray = activations[indexOf(delay)]
+
+    /**
+     * Spikes recorded [delay] iterations ago.
+     */
+    fun spikes(delay: Int): BooleanArray = spikes[indexOf(delay)]
+
+    /**
+     * Last spike times recorded [delay] iterations ago.
+     */
+    fun lastSpikeTimes(delay: Int): DoubleArray = lastSpikeTimes[indexOf(delay)]
+
+    private fun indexOf(delay: Int): Int {
+        require(delay in 0 until capacity) { "Delay $delay is outside the recorded history of $capacity iterations" }
+        return Math.floorMod(head - delay, capacity)
+    }
+
+    /**
+     * Grow the history so that it holds at least [newCapacity] iterations, keeping the entries recorded so far.
+     */
+    @Synchronized
+    fun ensureCapacity(newCapacity: Int) {
+        if (newCapacity <= capacity) {
+            return
+        }
+        val newActivations = Array(newCapacity) { DoubleArray(size) }
+        val newSpikes = Array(newCapacity) { BooleanArray(size) }
+        val newLastSpikeTimes = Array(newCapacity) { DoubleArray(size) { Double.NEGATIVE_INFINITY } }
+        for (delay in 0 until capacity) {
+            newActivations[newCapacity - 1 - delay] = activations(delay)
+            newSpikes[newCapacity - 1 - delay] = spikes(delay)
+            newLastSpikeTimes[newCapacity - 1 - delay] = lastSpikeTimes(delay)
+        }
+        activations = newActivations
+        spikes = newSpikes
+        lastSpikeTimes = newLastSpikeTimes
+        head = newCapacity - 1
+        capacity = newCapacity
+    }
+}
@@ -28,15 +28,25 @@ abstract class ArrayLayer(
 
     override val size: Int get() = inputs.size().toInt()
 
+    /**
+     * Buffer into which incoming connectors accumulate their summed PSRs each update.
+     */
+    @Transient
+    private var weightedInputs = DoubleArray(inputSize)
+
     context(Network)
     override fun accumulateInputs() {
         super.accumulateInputs()
-        val wtdInputs = Matrix(size, 1)
+        if (weightedInputs.size != size) {
+            weightedInputs = DoubleArray(size)
+        } else {
+            weightedInputs.fill(0.0)
+        }
         for (c in incomingConnectors) {
-            wtdInputs.addi(c.getSummedPSRs())
+            c.accumulateSummedPSRs(weightedInputs)
         }
-        addInputs(wtdInputs)
-        addInputs(biases)
+        inputs.addi(weightedInputs)
+        inputs.add(biases)
     }
 
     @Consumable
@@ -44,7 +54,7 @@ abstract class ArrayLayer(
         this.inputs.add(inputs)
     }
 
-    @Consumable
+    @Consumable(copiesArray = true)
     fun addInputs(inputs: DoubleArray?) {
         addInputs(Matrix.column(inputs))
     }
@@ -0,0 +1,318 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.learningrules.StaticSynapseRule
+import org.simbrain.network.spikeresponders.NonResponder
+import org.simbrain.network.updaterules.BinaryRule
+import org.simbrain.network.updaterules.LinearRule
+import org.simbrain.network.updaterules.NeuronUpdateRule
+
+/**
+ * A structure-of-arrays snapshot of the free [Neuron]s and [Synapse]s of a network, used by
+ * [org.simbrain.network.update_actions.CompiledUpdate].
+ *
+ * Incoming connectionist synapses (no spike responder, no delay, enabled) onto neurons whose update rule is a simple
+ * function of input ([LinearRule], [BinaryRule]) are stored in compressed sparse row (CSR) form: the synapses onto
+ * neuron `i` occupy positions `rowStart[i] until rowStart[i + 1]` of [sourceIndex] and [strengths]. Weighted inputs for
+ * these neurons are then computed as a sparse matrix-vector product over primitive arrays rather than by calling
+ * [Synapse.updatePSR] on each synapse. All other neurons and synapses are updated through the object graph as usual.
+ *
+ * The activations of neurons with a compiled rule are held in [activations] while the snapshot is in use, and
+ * [Neuron.activation] reads and writes them there, so that an update does not have to write every neuron back.
+ * Neurons whose activation changed are reported through the network's [org.simbrain.network.events.DirtySet]. The
+ * [Synapse.psr] of compiled static synapses is not stored but computed when read, see [getPSR]; that of compiled
+ * plastic synapses is written on each update, since their learning rules may read it.
+ *
+ * A snapshot becomes [isStale] when a neuron's update rule or a synapse's learning rule is replaced. Changes to
+ * spike responders, delays or enabled state are not tracked and require the snapshot to be rebuilt, which happens
+ * automatically whenever models are added to or removed from the network.
+ */
+class CompiledNetwork(network: Network) {
+
+    /**
+     * The free neurons of the network, in network order.
+     */
+    val neurons: Array<Neuron> = network.freeNeurons.toTypedArray()
+
+    /**
+     * Update rule of each neuron when the snapshot was taken.
+     */
+    private val rules: Array<NeuronUpdateRule<*, *>> = Array(neurons.size) { neurons[it].updateRule }
+
+    /**
+     * Whether a neuron's update rule is evaluated directly on [inputs].
+     */
+    private val compiledRule = BooleanArray(neurons.size) { isCompilable(rules[it]) }
+
+    /**
+     * Activations of [neurons]. Those of neurons with a compiled rule are held here, the others are gathered at the
+     * start of each update.
+     */
+    val activations = DoubleArray(neurons.size)
+
+    /**
+     * Activations of [neurons] when inputs were last accumulated, i.e. the source activations of the compiled synapses.
+     */
+    private val inputActivations = DoubleArray(neurons.size)
+
+    /**
+     * Whether inputs have been accumulated since the snapshot was taken, so that [inputActivations] are valid.
+     */
+    private var hasInputs = false
+
+    /**
+     * Total input (weighted inputs, bias and external inputs) to each compiled neuron.
+     */
+    val inputs = DoubleArray(neurons.size)
+
+    /**
+     * CSR row pointers, one per neuron plus one.
+     */
+    val rowStart = IntArray(neurons.size + 1)
+
+    /**
+     * Index into [neurons] of the source of each compiled synapse.
+     */
+    val sourceIndex: IntArray
+
+    /**
+     * Strength of each compiled synapse.
+     */
+    val strengths: DoubleArray
+
+    /**
+     * The compiled synapses, in the same order as [strengths].
+     */
+    private val compiledSynapses: Array<Synapse>
+
+    /**
+     * Indices into [compiledSynapses] of synapses whose strengths change through learning, and so must be re-read
+     * after each update.
+     */
+    private val plasticIndices: IntArray
+
+    /**
+     * Synapses onto compiled neurons that cannot themselves be compiled, e.g. spiking or delayed synapses.
+     */
+    private val fallbackSynapses: Array<Synapse>
+
+    /**
+     * Index into [neurons] of the target of each of [fallbackSynapses].
+     */
+    private val fallbackTargets: IntArray
+
+    /**
+     * All free synapses with a learning rule. These are updated through the object graph.
+     */
+    private val plasticSynapses: List<Synapse> = network.freeSynapses.filter { it.learningRule !is StaticSynapseRule }
+
+    /**
+     * Functions that remove the event handlers registered by this snapshot.
+     */
+    private val unsubscribers = mutableListOf<() -> Boolean?>()
+
+    /**
+     * Set when the strength of a compiled static synapse is changed, e.g. in the GUI.
+     */
+    @Volatile
+    private var strengthsChanged = false
+
+    /**
+     * True when this snapshot no longer reflects the network and must be rebuilt.
+     */
+    @Volatile
+    var isStale = false
+        private set
+
+    init {
+        val index = HashMap<Neuron, Int>(neurons.size * 2)
+        neurons.forEachIndexed { i, neuron -> index[neuron] = i }
+
+        val sources = ArrayList<Int>()
+        val synapses = ArrayList<Synapse>()
+        val fallback = ArrayList<Synapse>()
+        val fallbackTargetList = ArrayList<Int>()
+        for (i in neurons.indices) {
+            rowStart[i] = synapses.size
+            if (!compiledRule[i]) continue
+            for (synapse in neurons[i].fanIn) {
+                val source = index[synapse.source]
+                if (source != null && isCompilable(synapse)) {
+                    sources.add(source)
+                    synapses.add(synapse)
+                } else {
+                    fallback.add(synapse)
+                    fallbackTargetList.add(i)
+                }
+            }
+        }
+        rowStart[neurons.size] = synapses.size
+
+        sourceIndex = sources.toIntArray()
+        compiledSynapses = synapses.toTypedArray()
+        strengths = DoubleArray(compiledSynapses.size) { compiledSynapses[it].strength }
+        plasticIndices = compiledSynapses.indices.filter { compiledSynapses[it].learningRule !is StaticSynapseRule }
+            .toIntArray()
+        fallbackSynapses = fallback.toTypedArray()
+        fallbackTargets = fallbackTargetList.toIntArray()
+
+        neurons.forEach { neuron ->
+            unsubscribers.add(neuron.events.updateRuleChanged.on { _, _ -> isStale = true })
+        }
+        network.freeSynapses.forEach { synapse ->
+            unsubscribers.add(synapse.events.learningRuleUpdated.on { _, _ -> isStale = true })
+        }
+        compiledSynapses.filter { it.learningRule is StaticSynapseRule }.forEach { synapse ->
+            unsubscribers.add(synapse.events.strengthUpdated.on { strengthsChanged = true })
+        }
+
+        neurons.forEachIndexed { i, neuron ->
+            activations[i] = neuron.activation
+            if (compiledRule[i]) {
+                neuron.compiledNetwork = this
+                neuron.compiledIndex = i
+            }
+        }
+        compiledSynapses.forEachIndexed { k, synapse ->
+            if (synapse.learningRule is StaticSynapseRule) {
+                synapse.compiledNetwork = this
+                synapse.compiledIndex = k
+            }
+        }
+    }
+
+    /**
+     * Gather activations and compute the total input to each compiled neuron. Neurons with other update rules
+     * accumulate their inputs through the object graph.
+     */
+    context(Network)
+    fun accumulateInputs() {
+        if (strengthsChanged) {
+            strengthsChanged = false
+            compiledSynapses.forEachIndexed { k, synapse -> strengths[k] = synapse.strength }
+        }
+        for (i in neurons.indices) {
+            if (!compiledRule[i]) {
+                activations[i] = neurons[i].activation
+            }
+        }
+        System.arraycopy(activations, 0, inputActivations, 0, activations.size)
+        hasInputs = true
+        for (i in neurons.indices) {
+            if (!compiledRule[i]) {
+                neurons[i].accumulateInputs()
+                continue
+            }
+            var sum = 0.0
+            for (k in rowStart[i] until rowStart[i + 1]) {
+                sum += strengths[k] * inputActivations[sourceIndex[k]]
+            }
+            inputs[i] = sum
+        }
+        for (k in plasticIndices) {
+            compiledSynapses[k].psr = strengths[k] * inputActivations[sourceIndex[k]]
+        }
+        for (k in fallbackSynapses.indices) {
+            val synapse = fallbackSynapses[k]
+            synapse.updatePSR()
+            inputs[fallbackTargets[k]] += synapse.psr
+        }
+        for (i in neurons.indices) {
+            if (compiledRule[i]) {
+                inputs[i] = neurons[i].input + inputs[i] + neurons[i].bias
+            }
+        }
+    }
+
+    /**
+     * Apply update rules to all neurons, directly from [inputs] where possible.
+     */
+    context(Network)
+    fun update() {
+        for (i in neurons.indices) {
+            val neuron = neurons[i]
+            if (!compiledRule[i]) {
+                neuron.update()
+                continue
+            }
+            if (neuron.updateRule !== rules[i]) {
+                // Rule replaced since the snapshot was taken; hand the input back to the object graph
+                neuron.clearInput()
+                neuron.addInputValue(inputs[i])
+                neuron.update()
+                continue
+            }
+            if (neuron.clamped) {
+                continue
+            }
+            val lastActivation = activations[i]
+            activations[i] = when (val rule = rules[i]) {
+                is LinearRule -> rule.linearRule(inputs[i])
+                is BinaryRule -> rule.binaryRule(inputs[i])
+                else -> throw IllegalStateException("Rule ${rule.name} cannot be compiled")
+            }
+            if (activations[i] != lastActivation) {
+                neuron.activationChanged(lastActivation, activations[i])
+            }
+            neuron.clearInput()
+        }
+    }
+
+    /**
+     * Apply learning rules to plastic synapses and refresh the compiled copies of their strengths.
+     */
+    context(Network)
+    fun updateSynapses() {
+        plasticSynapses.forEach { it.update() }
+        for (k in plasticIndices) {
+            strengths[k] = compiledSynapses[k].strength
+        }
+    }
+
+    /**
+     * Post-synaptic response of the compiled static synapse at [index]: its strength times the activation of its
+     * source when inputs were last accumulated, as [Synapse.updatePSR] would have set it. Null before the first
+     * update, in which case the synapse keeps its own value. Values written to [Synapse.psr] in the meantime are
+     * replaced by this one.
+     */
+    fun getPSR(index: Int): Double? = if (hasInputs) strengths[index] * inputActivations[sourceIndex[index]] else null
+
+    /**
+     * Remove all event handlers registered by this snapshot and write the activations and responses it holds back to
+     * the neurons and synapses. Call when it is replaced.
+     */
+    fun release() {
+        unsubscribers.forEach { it() }
+        unsubscribers.clear()
+        for (neuron in neurons) {
+            if (neuron.compiledNetwork === this) {
+                // Written while attached, so that the neuron does not report a change
+                neuron.activation = neuron.activation
+                neuron.compiledNetwork = null
+                neuron.compiledIndex = -1
+            }
+        }
+        for (synapse in compiledSynapses) {
+            if (synapse.compiledNetwork === this) {
+                synapse.psr = synapse.psr
+                synapse.compiledNetwork = null
+                synapse.compiledIndex = -1
+            }
+        }
+    }
+
+    val numCompiledSynapses get() = compiledSynapses.size
+
+    companion object {
+
+        /**
+         * Rules whose activation is a stateless function of total input.
+         */
+        fun isCompilable(rule: NeuronUpdateRule<*, *>) = rule::class == LinearRule::class || rule::class == BinaryRule::class
+
+        /**
+         * Connectionist synapses whose post-synaptic response is simply strength times source activation.
+         */
+        fun isCompilable(synapse: Synapse) = synapse.isEnabled && synapse.delay == 0 &&
+                synapse.spikeResponder is NonResponder
+    }
+}
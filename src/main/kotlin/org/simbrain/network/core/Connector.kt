@@ -1,6 +1,7 @@
 package org.simbrain.network.core
 
 import org.simbrain.network.events.ConnectorEvents
+import org.simbrain.util.addi
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.workspace.AttributeContainer
 import smile.math.matrix.Matrix
@@ -40,10 +41,18 @@ abstract class Connector(var source: Layer, var target: Layer) : NetworkModel(),
      * input vector and a weight matrix, and in the spiking case corresponds to the sum of post-synaptic responses along
      * the dendrite of each output neuron.
      */
-    fun getSummedPSRs(): DoubleArray {
+    open fun getSummedPSRs(): DoubleArray {
         return psrMatrix.rowSums()
     }
 
+    /**
+     * Add the summed PSRs (see [getSummedPSRs]) to an input buffer for the target layer. Override to add them
+     * without creating intermediate arrays.
+     */
+    open fun accumulateSummedPSRs(inputs: DoubleArray) {
+        inputs.addi(getSummedPSRs())
+    }
+
     context(Network)
     abstract fun updatePSR()
 
@@ -0,0 +1,383 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.learningrules.StaticSynapseRule
+import org.simbrain.network.spikeresponders.JumpAndDecay
+import org.simbrain.network.updaterules.AdExIFRule
+import org.simbrain.network.updaterules.NeuronUpdateRule
+import org.simbrain.network.updaterules.PointNeuronRule
+import java.util.*
+import kotlin.math.pow
+
+/**
+ * An event-driven snapshot of the free [Neuron]s and [Synapse]s of a spiking network, used by
+ * [org.simbrain.network.update_actions.EventDrivenUpdate].
+ *
+ * Synapses with a [JumpAndDecay] spike responder are not updated every iteration. When a source neuron spikes, its
+ * outgoing synapses are placed in a spike queue keyed by the iteration at which the spike arrives, which takes
+ * [Synapse.delay] into account. On arrival a synapse's post-synaptic response jumps as usual. Between arrivals the
+ * response decays geometrically towards baseline, so it is not stored per iteration: the responses of synapses onto
+ * the same neuron that share decay parameters are kept as a single sum that is decayed once per iteration, and the
+ * response of an individual synapse is computed from the iteration it last changed when it is needed. The cost of an
+ * update therefore grows with the number of spikes delivered rather than with the number of synapses.
+ *
+ * Only synapses onto neurons whose spiking rule reads total input (rather than the responses of individual synapses)
+ * are event driven. Other neurons and synapses are updated through the object graph as usual.
+ *
+ * A delayed synapse's response is its undelayed response shifted by [Synapse.delay] iterations. This differs from
+ * [Synapse.updatePSR], where the responder continues from the delayed output, so delayed responses are not identical
+ * to those of a buffered update.
+ *
+ * While the snapshot is in use, [Synapse.psr] of event driven synapses is read and written through it, so that the
+ * GUI, couplings and learning rules see the decayed response as of the current iteration. The responses are written
+ * back to the synapses when the snapshot is released. Spikes still in the queue when a snapshot is replaced are carried
+ * over to the snapshot that replaces it, for synapses that are still event driven. The contents of synapse delay
+ * buffers are not read when it is built.
+ *
+ * A snapshot becomes [isStale] when a neuron's update rule or a synapse's learning rule is replaced, or the time step
+ * changes. Changes to spike responders, delays or enabled state are not tracked and require the snapshot to be
+ * rebuilt, which happens automatically whenever models are added to or removed from the network.
+ */
+class EventDrivenNetwork @JvmOverloads constructor(
+    private val network: Network,
+    previous: EventDrivenNetwork? = null
+) {
+
+    /**
+     * The free neurons of the network, in network order.
+     */
+    val neurons: Array<Neuron> = network.freeNeurons.toTypedArray()
+
+    /**
+     * Whether a neuron's incoming [JumpAndDecay] synapses are event driven.
+     */
+    private val eventDrivenTarget = BooleanArray(neurons.size) { isEventDrivenTarget(neurons[it].updateRule) }
+
+    /**
+     * The event driven synapses, grouped by source neuron: the synapses from neuron `i` occupy positions
+     * `outStart[i] until outStart[i + 1]`.
+     */
+    private val synapses: Array<Synapse>
+
+    private val outStart = IntArray(neurons.size + 1)
+
+    /**
+     * Spike responder of each event driven synapse.
+     */
+    private val responders: Array<JumpAndDecay>
+
+    /**
+     * Delay of each event driven synapse, in iterations.
+     */
+    private val delays: IntArray
+
+    /**
+     * Index into the response groups of each event driven synapse.
+     */
+    private val synapseGroup: IntArray
+
+    /**
+     * Deviation of each event driven synapse's response from baseline, as of iteration [lastChanged].
+     */
+    private val deviations: DoubleArray
+
+    /**
+     * Iteration at which each event driven synapse's response last jumped.
+     */
+    private val lastChanged: LongArray
+
+    /**
+     * Response groups (event driven synapses onto the same neuron with the same decay parameters), ordered by target:
+     * the groups of neuron `i` occupy positions `groupStart[i] until groupStart[i + 1]`.
+     */
+    private val groupStart = IntArray(neurons.size + 1)
+
+    /**
+     * Per-iteration decay factor of each group.
+     */
+    private val groupDecay: DoubleArray
+
+    /**
+     * Summed baseline responses of the synapses in each group.
+     */
+    private val groupBaseline: DoubleArray
+
+    /**
+     * Summed deviation from baseline of the responses in each group, as of the current iteration.
+     */
+    private val groupDeviation: DoubleArray
+
+    /**
+     * Synapses onto event driven targets that are updated every iteration, e.g. connectionist synapses or ones with
+     * other spike responders, grouped by target like the response groups.
+     */
+    private val fallbackSynapses: Array<Synapse>
+
+    private val fallbackStart = IntArray(neurons.size + 1)
+
+    /**
+     * All free synapses with a learning rule. These are updated through the object graph.
+     */
+    private val plasticSynapses: List<Synapse> = network.freeSynapses.filter { it.learningRule !is StaticSynapseRule }
+
+    /**
+     * Spike queue, as a ring of buckets indexed by arrival iteration modulo the number of buckets. Each bucket holds
+     * indices of event driven synapses.
+     */
+    private val queue: Array<IntArray>
+
+    private val queueSizes: IntArray
+
+    /**
+     * Number of times [accumulateInputs] has been called.
+     */
+    private var iteration = 0L
+
+    /**
+     * Time step the decay factors were computed for.
+     */
+    private val timeStep = network.timeStep
+
+    /**
+     * Functions that remove the event handlers registered by this snapshot.
+     */
+    private val unsubscribers = mutableListOf<() -> Boolean?>()
+
+    @Volatile
+    private var rulesChanged = false
+
+    /**
+     * True when this snapshot no longer reflects the network and must be rebuilt.
+     */
+    val isStale get() = rulesChanged || network.timeStep != timeStep
+
+    init {
+        val index = HashMap<Neuron, Int>(neurons.size * 2)
+        neurons.forEachIndexed { i, neuron -> index[neuron] = i }
+
+        // Sort synapses onto event driven targets into response groups and fallback synapses
+        val eventSynapses = ArrayList<Synapse>()
+        val eventGroups = ArrayList<Int>()
+        val decays = ArrayList<Double>()
+        val baselines = ArrayList<Double>()
+        val deviationSums = ArrayList<Double>()
+        val fallback = ArrayList<Synapse>()
+        for (i in neurons.indices) {
+            groupStart[i] = decays.size
+            fallbackStart[i] = fallback.size
+            if (!eventDrivenTarget[i]) continue
+            val groupsOfTarget = HashMap<Pair<Double, Double>, Int>()
+            for (synapse in neurons[i].fanIn) {
+                val responder = synapse.spikeResponder
+                if (responder !is JumpAndDecay || index[synapse.source] == null || !synapse.isEnabled) {
+                    fallback.add(synapse)
+                    continue
+                }
+                val group = groupsOfTarget.getOrPut(responder.timeConstant to responder.baseLine) {
+                    decays.add(1 - timeStep / responder.timeConstant)
+                    baselines.add(0.0)
+                    deviationSums.add(0.0)
+                    decays.size - 1
+                }
+                baselines[group] += responder.baseLine
+                deviationSums[group] += synapse.psr - responder.baseLine
+                eventSynapses.add(synapse)
+                eventGroups.add(group)
+            }
+        }
+        groupStart[neurons.size] = decays.size
+        fallbackStart[neurons.size] = fallback.size
+        groupDecay = decays.toDoubleArray()
+        groupBaseline = baselines.toDoubleArray()
+        groupDeviation = deviationSums.toDoubleArray()
+        fallbackSynapses = fallback.toTypedArray()
+
+        // Order event driven synapses by source, so that the synapses of a spiking neuron can be found directly
+        val order = eventSynapses.indices.sortedBy { index[eventSynapses[it].source] }
+        synapses = Array(order.size) { eventSynapses[order[it]] }
+        synapseGroup = IntArray(order.size) { eventGroups[order[it]] }
+        responders = Array(order.size) { synapses[it].spikeResponder as JumpAndDecay }
+        delays = IntArray(order.size) { synapses[it].delay.coerceAtLeast(0) }
+        deviations = DoubleArray(order.size) { synapses[it].psr - responders[it].baseLine }
+        lastChanged = LongArray(order.size)
+        synapses.forEach { outStart[index[it.source]!! + 1]++ }
+        for (i in neurons.indices) {
+            outStart[i + 1] += outStart[i]
+        }
+        synapses.forEachIndexed { k, synapse ->
+            synapse.eventDrivenNetwork = this
+            synapse.eventDrivenIndex = k
+        }
+
+        // A spike at iteration n arrives at iteration n + 1 + delay
+        val synapseIndices = IdentityHashMap<Synapse, Int>(synapses.size * 2)
+        synapses.forEachIndexed { k, synapse -> synapseIndices[synapse] = k }
+        val carriedOver = previous?.pendingSpikes()?.filter { (synapse) -> synapse in synapseIndices } ?: listOf()
+        val numBuckets = maxOf((delays.maxOrNull() ?: 0) + 2, (carriedOver.maxOfOrNull { it.second } ?: 0) + 1)
+        queue = Array(numBuckets) { IntArray(4) }
+        queueSizes = IntArray(numBuckets)
+        carriedOver.forEach { (synapse, arrival) -> enqueue(synapseIndices[synapse]!!, arrival % numBuckets) }
+
+        neurons.forEach { neuron ->
+            unsubscribers.add(neuron.events.updateRuleChanged.on { _, _ -> rulesChanged = true })
+        }
+        network.freeSynapses.forEach { synapse ->
+            unsubscribers.add(synapse.events.learningRuleUpdated.on { _, _ -> rulesChanged = true })
+        }
+    }
+
+    /**
+     * Decay response groups, deliver spikes that arrive at this iteration, and add the total input to each neuron.
+     * Neurons that are not event driven accumulate their inputs through the object graph.
+     */
+    context(Network)
+    fun accumulateInputs() {
+        iteration++
+        for (g in groupDeviation.indices) {
+            groupDeviation[g] *= groupDecay[g]
+        }
+
+        val bucket = (iteration % queue.size).toInt()
+        val arrivals = queue[bucket]
+        for (n in 0 until queueSizes[bucket]) {
+            deliver(arrivals[n])
+        }
+        queueSizes[bucket] = 0
+
+        for (i in neurons.indices) {
+            val neuron = neurons[i]
+            if (!eventDrivenTarget[i]) {
+                neuron.accumulateInputs()
+                continue
+            }
+            var sum = 0.0
+            for (k in fallbackStart[i] until fallbackStart[i + 1]) {
+                val synapse = fallbackSynapses[k]
+                synapse.updatePSR()
+                sum += synapse.psr
+            }
+            for (g in groupStart[i] until groupStart[i + 1]) {
+                sum += groupBaseline[g] + groupDeviation[g]
+            }
+            neuron.addInputValue(sum)
+            neuron.addInputValue(neuron.bias)
+        }
+    }
+
+    /**
+     * Apply the [JumpAndDecay] response to a spike arriving at event driven synapse [k].
+     */
+    context(Network)
+    private fun deliver(k: Int) {
+        val elapsed = (iteration - lastChanged[k]).toInt()
+        if (elapsed == 0) {
+            // Already jumped this iteration, e.g. a carried over spike arriving with a new one. The jump is computed
+            // from the strength and the previous iteration's response, so a second one would give the same response.
+            return
+        }
+        val responder = responders[k]
+        if (!responder.probabilisticSpikeCheck()) {
+            return
+        }
+        val decay = groupDecay[synapseGroup[k]]
+        val current = deviations[k] * decay.pow(elapsed)
+        // As in the iteration-by-iteration update, convolution adds the response from the previous iteration
+        val previous = deviations[k] * decay.pow(elapsed - 1)
+        val psr = synapses[k].strength + if (responder.useConvolution) responder.baseLine + previous else 0.0
+        val deviation = psr - responder.baseLine
+        groupDeviation[synapseGroup[k]] += deviation - current
+        deviations[k] = deviation
+        lastChanged[k] = iteration
+    }
+
+    /**
+     * Update all neurons, then queue the outgoing event driven synapses of neurons that spiked.
+     */
+    context(Network)
+    fun update() {
+        for (neuron in neurons) {
+            neuron.update()
+        }
+        for (i in neurons.indices) {
+            if (!neurons[i].isSpike) continue
+            for (k in outStart[i] until outStart[i + 1]) {
+                enqueue(k, ((iteration + 1 + delays[k]) % queue.size).toInt())
+            }
+        }
+    }
+
+    private fun enqueue(k: Int, bucket: Int) {
+        if (queueSizes[bucket] == queue[bucket].size) {
+            queue[bucket] = queue[bucket].copyOf(queue[bucket].size * 2)
+        }
+        queue[bucket][queueSizes[bucket]++] = k
+    }
+
+    /**
+     * Apply learning rules to plastic synapses.
+     */
+    context(Network)
+    fun updateSynapses() {
+        plasticSynapses.forEach { it.update() }
+    }
+
+    /**
+     * Current post-synaptic response of event driven synapse [k], decayed from its last change to the current
+     * iteration. Read through [Synapse.psr].
+     */
+    fun getPSR(k: Int): Double {
+        val elapsed = (iteration - lastChanged[k]).toInt()
+        return responders[k].baseLine + deviations[k] * groupDecay[synapseGroup[k]].pow(elapsed)
+    }
+
+    /**
+     * Set the response of event driven synapse [k] as of the current iteration, e.g. when the synapse is cleared.
+     * Written through [Synapse.psr].
+     */
+    fun setPSR(k: Int, psr: Double) {
+        val deviation = psr - responders[k].baseLine
+        groupDeviation[synapseGroup[k]] += deviation - (getPSR(k) - responders[k].baseLine)
+        deviations[k] = deviation
+        lastChanged[k] = iteration
+    }
+
+    /**
+     * Spikes in the queue, as event driven synapses paired with the number of iterations until they arrive.
+     */
+    fun pendingSpikes(): List<Pair<Synapse, Int>> = buildList {
+        val current = (iteration % queue.size).toInt()
+        for (bucket in queue.indices) {
+            val arrival = (bucket - current + queue.size) % queue.size
+            for (n in 0 until queueSizes[bucket]) {
+                add(synapses[queue[bucket][n]] to arrival)
+            }
+        }
+    }
+
+    /**
+     * Write back responses to the synapses that are still held by this snapshot, and remove all event handlers
+     * registered by it. Call when it is replaced.
+     */
+    fun release() {
+        synapses.forEachIndexed { k, synapse ->
+            if (synapse.eventDrivenNetwork === this) {
+                val psr = getPSR(k)
+                synapse.eventDrivenNetwork = null
+                synapse.psr = psr
+            }
+        }
+        unsubscribers.forEach { it() }
+        unsubscribers.clear()
+    }
+
+    val numEventDrivenSynapses get() = synapses.size
+
+    companion object {
+
+        /**
+         * Spiking rules whose update depends only on total input, so that the responses of their incoming synapses
+         * can be summed without being stored individually.
+         */
+        fun isEventDrivenTarget(rule: NeuronUpdateRule<*, *>) = rule.isSpikingRule &&
+                rule !is AdExIFRule && rule !is PointNeuronRule
+    }
+}
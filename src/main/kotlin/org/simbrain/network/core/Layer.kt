@@ -91,14 +91,30 @@ abstract class Layer : LocatableModel(), AttributeContainer {
 
     abstract val biasArray: DoubleArray
 
-    @get:Producible
+    @get:Producible(fillMethod = "fillActivationArray")
     val outputArray: DoubleArray
         get() = activations.toDoubleArray()
 
-    @get:Producible
+    /**
+     * Write [activationArray] into [buffer], or into a new array if it does not have the right size. Returns the array
+     * written to. Used by couplings to avoid allocating a new array on each update.
+     */
+    open fun fillActivationArray(buffer: DoubleArray): DoubleArray = activations.toDoubleArray(buffer)
+
+    @get:Producible(fillMethod = "fillSpikes")
     open val spikes: DoubleArray
         get() = DoubleArray(this.size)
 
+    /**
+     * Write [spikes] into [buffer], or into a new array if it does not have the right size. Returns the array written
+     * to.
+     */
+    open fun fillSpikes(buffer: DoubleArray): DoubleArray {
+        val result = if (buffer.size == size) buffer else DoubleArray(size)
+        result.fill(0.0)
+        return result
+    }
+
     /**
      * Width of layer. Mainly used by graphica arrows drawn to represent [Connector]s.
      */
@@ -137,6 +153,30 @@ abstract class Layer : LocatableModel(), AttributeContainer {
             width, height
         )
 
+    /**
+     * Recent activations of this layer, shared by its delayed outgoing connectors. Created when first needed.
+     */
+    @Transient
+    private var history: ActivationHistory? = null
+
+    /**
+     * Returns the shared history of this layer's activations, grown if needed to hold [maxDelay] past iterations.
+     *
+     * The history is sized for the largest delay of all outgoing weight matrices at once, so that connectors updated
+     * concurrently, e.g. by [org.simbrain.network.update_actions.ParallelBufferedUpdate], never grow it while another
+     * one reads it. Creation is synchronized, as is [ActivationHistory.record].
+     */
+    @Synchronized
+    fun activationHistory(maxDelay: Int): ActivationHistory {
+        val capacity = maxOf(maxDelay, outgoingConnectors.maxOfOrNull { (it as? WeightMatrix)?.maxDelay ?: 0 } ?: 0) + 1
+        val current = history
+        if (current != null && current.size == size) {
+            current.ensureCapacity(capacity)
+            return current
+        }
+        return ActivationHistory(size, capacity).also { history = it }
+    }
+
     fun addIncomingConnector(connector: Connector) {
         incomingConnectors.add(connector)
     }
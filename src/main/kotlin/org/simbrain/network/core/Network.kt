@@ -1,6 +1,7 @@
 package org.simbrain.network.core
 
 import kotlinx.coroutines.*
+import org.simbrain.network.events.DirtySet
 import org.simbrain.network.events.NetworkEvents
 import org.simbrain.network.gui.PlacementManager
 import org.simbrain.network.gui.dialogs.NetworkPreferences
@@ -151,18 +152,58 @@ class Network: CoroutineScope, EditableObject {
 
     @Transient
     var random = Random(randomSeed)
+        get() = threadRandom.get() ?: field
         private set
 
+    /**
+     * Per-thread replacement for [random], set while models are updated concurrently. See [withThreadRandom].
+     */
+    @Transient
+    private var threadRandom = ThreadLocal<Random?>()
+
     private var shouldUpdateTimeType = true
 
-    private fun updateInternal(name: String) {
-        // Main update
-        updateManager.actionList.forEach {
-            runBlocking {
-                PerformanceMonitor.record(it, "${name}:${it.description}") {
-                    it.run()
+    /**
+     * Collects the models changed during an update, so that they are reported by a single
+     * [NetworkEvents.modelsUpdated] event.
+     */
+    @Transient
+    private var dirtySet = DirtySet()
+
+    /**
+     * The models [dirtySet] was last attached to, used to detect when it must be attached to new neurons. Neurons
+     * added to an existing group are attached when models are next added to or removed from the network; until then
+     * they fire their own events.
+     */
+    @Transient
+    private var dirtySetModels: List<NetworkModel>? = null
+
+    private fun attachDirtySet() {
+        val models = modelsInReconstructionOrder
+        if (models === dirtySetModels) {
+            return
+        }
+        flatNeuronList.forEach { it.events.dirtySet = dirtySet }
+        dirtySetModels = models
+    }
+
+    /**
+     * Runs the update actions and returns the models that changed.
+     */
+    private fun updateInternal(name: String): List<NetworkModel> {
+        attachDirtySet()
+        dirtySet.begin()
+        try {
+            // Main update
+            updateManager.actionList.forEach {
+                runBlocking {
+                    PerformanceMonitor.record(it, "${name}:${it.description}") {
+                        it.run()
+                    }
                 }
             }
+        } finally {
+            dirtySet.end()
         }
 
         if (shouldUpdateTimeType) {
@@ -172,6 +213,7 @@ class Network: CoroutineScope, EditableObject {
 
         updateTime()
         setUpdateCompleted(true)
+        return dirtySet.drain()
     }
 
     /**
@@ -180,12 +222,18 @@ class Network: CoroutineScope, EditableObject {
      */
     @JvmOverloads
     fun update(name: String = "") {
-        updateInternal(name)
+        val changedModels = updateInternal(name)
+        if (changedModels.isNotEmpty()) {
+            events.modelsUpdated.fire(changedModels)
+        }
         events.updated.fireAndBlock()
     }
 
     suspend fun updateSuspend(name: String = "") {
-        updateInternal(name)
+        val changedModels = updateInternal(name)
+        if (changedModels.isNotEmpty()) {
+            events.modelsUpdated.fire(changedModels)
+        }
         events.updated.fire().await()
     }
 
@@ -239,6 +287,20 @@ class Network: CoroutineScope, EditableObject {
         networkModels.all.forEach { it.update() }
     }
 
+    /**
+     * Run [block] with [random] replaced by [threadRandom] on the current thread only. Used by
+     * [org.simbrain.network.update_actions.ParallelBufferedUpdate] so that models updated concurrently draw from
+     * deterministic per-chunk sequences rather than racing on the shared generator.
+     */
+    fun <T> withThreadRandom(threadRandom: Random, block: () -> T): T {
+        this.threadRandom.set(threadRandom)
+        try {
+            return block()
+        } finally {
+            this.threadRandom.remove()
+        }
+    }
+
     /**
      * Set the activation level of all neurons to zero.
      */
@@ -360,14 +422,12 @@ class Network: CoroutineScope, EditableObject {
     }
 
     /**
-     * Returns a copy of this network based on its xml rep.
+     * Returns a copy of this network, the same as the one obtained by saving it to xml and reading it back, but made
+     * without going through xml. Ids, connector wiring, update actions and data holders are preserved.
      *
      * @return the copied network.
      */
-    fun copy(): Network {
-        val xmlRepresentation = getNetworkXStream().toXML(this)
-        return getNetworkXStream().fromXML(xmlRepresentation) as Network
-    }
+    fun copy(): Network = networkCopier.copy(this)
 
     /**
      * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
@@ -380,7 +440,10 @@ class Network: CoroutineScope, EditableObject {
 
         placementManager = PlacementManager()
 
+        threadRandom = ThreadLocal()
+
         events = NetworkEvents()
+        dirtySet = DirtySet()
         updateCompleted = AtomicBoolean(false)
         prioritySortedNeuronList = CachedObject {
             flatNeuronList.sortedBy { it.updatePriority }.toMutableList()
@@ -21,6 +21,9 @@ package org.simbrain.network.core
 import org.simbrain.network.neurongroups.NeuronGroup
 import org.simbrain.network.subnetworks.Subnetwork
 import org.simbrain.network.update_actions.BufferedUpdate
+import org.simbrain.network.update_actions.CompiledUpdate
+import org.simbrain.network.update_actions.EventDrivenUpdate
+import org.simbrain.network.update_actions.ParallelBufferedUpdate
 import org.simbrain.network.update_actions.PriorityUpdate
 import org.simbrain.network.update_actions.UpdateNetworkModel
 import org.simbrain.workspace.updater.UpdateAction
@@ -70,6 +73,9 @@ class NetworkUpdateManager(private val network: Network) {
             val availableActionList = buildList {
                 // By default these actions are always available
                 add(BufferedUpdate(network))
+                add(ParallelBufferedUpdate(network))
+                add(CompiledUpdate(network))
+                add(EventDrivenUpdate(network))
                 add(PriorityUpdate(network))
 
                 addAll(actionableModels.map { UpdateNetworkModel(it, network) })
@@ -86,6 +92,7 @@ class NetworkUpdateManager(private val network: Network) {
      */
     fun swapElements(index1: Int, index2: Int) {
         Collections.swap(_actionList, index1, index2)
+        releaseSnapshots()
         network.events.updateActionsChanged.fire()
     }
 
@@ -94,6 +101,7 @@ class NetworkUpdateManager(private val network: Network) {
      */
     fun addAction(action: UpdateAction) {
         _actionList.add(action)
+        releaseSnapshots()
         network.events.updateActionsChanged.fire()
     }
 
@@ -102,6 +110,7 @@ class NetworkUpdateManager(private val network: Network) {
      */
     fun addAction(index: Int, action: UpdateAction) {
         _actionList.add(index, action)
+        releaseSnapshots()
     }
 
     /**
@@ -109,6 +118,7 @@ class NetworkUpdateManager(private val network: Network) {
      */
     fun removeAction(action: UpdateAction?) {
         _actionList.remove(action)
+        releaseSnapshots(listOfNotNull(action))
         network.events.updateActionsChanged.fire()
     }
 
@@ -116,7 +126,24 @@ class NetworkUpdateManager(private val network: Network) {
      * Remove all actions completely.
      */
     fun clear() {
+        val removed = _actionList.toList()
         _actionList.clear()
+        releaseSnapshots(removed)
         network.events.updateActionsChanged.fire()
     }
+
+    /**
+     * Release the snapshots of actions that run from one whenever the action list changes. Models of [removed]
+     * actions are updated from the object graph again, and remaining actions build a new snapshot the next time they
+     * run, so that no snapshot is left bound to models that other actions now update. Spikes in flight are kept by
+     * event driven actions that remain in the list.
+     */
+    private fun releaseSnapshots(removed: List<UpdateAction> = listOf()) {
+        (removed + _actionList).forEach {
+            when (it) {
+                is CompiledUpdate -> it.release()
+                is EventDrivenUpdate -> it.release(keepSpikes = it in _actionList)
+            }
+        }
+    }
 }
@@ -139,6 +139,23 @@ fun getNetworkXStream(): XStream {
     return xstream
 }
 
+/**
+ * Copies networks the way a round trip through [getNetworkXStream] would, but without xml. See [Network.copy].
+ */
+val networkCopier by lazy {
+    StructuralCopier(
+        getNetworkXStream(),
+        mapOf(NetworkModelList::class.java to { source: Any, copy: (Any?) -> Any? ->
+            // Same as NetworkModelListConverter: models are added in updating order, so neurons exist before synapses
+            NetworkModelList().apply {
+                (source as NetworkModelList).allInUpdatingOrder.forEach { model ->
+                    putUnsafe(model.javaClass, copy(model) as NetworkModel)
+                }
+            }
+        })
+    )
+}
+
 fun networkUpdateAction(description: String, longDescription: String = description, action: () -> Unit) =
     object : NetworkUpdateAction {
         override val description = description
@@ -88,6 +88,9 @@ class Neuron : LocatableModel, EditableObject, AttributeContainer {
 
     /**
      * Activation value of the neuron. The main state variable.
+     *
+     * While the neuron is part of a [CompiledNetwork], the activation is held there and is read and written through
+     * it.
      */
     @UserParameter(
         label = "Activation",
@@ -100,11 +103,41 @@ class Neuron : LocatableModel, EditableObject, AttributeContainer {
     @get:Producible
     @set:Consumable(defaultVisibility = false, customPriorityMethod = "setActivationCouplingPriority")
     var activation = 0.0
+        get() {
+            val compiled = compiledNetwork
+            return if (compiled != null) compiled.activations[compiledIndex] else field
+        }
         set(value) {
-            val lastActivation = field
+            val lastActivation = activation
             field = value
-            events.activationChanged.fire(lastActivation, value)
+            compiledNetwork?.let { it.activations[compiledIndex] = value }
+            activationChanged(lastActivation, value)
+        }
+
+    /**
+     * The compiled snapshot holding the activation of this neuron, if any, and the index of the neuron in it. See
+     * [CompiledNetwork.activations].
+     */
+    @Transient
+    internal var compiledNetwork: CompiledNetwork? = null
+
+    @Transient
+    internal var compiledIndex = -1
+
+    /**
+     * Report a change of activation, through the network's [org.simbrain.network.events.DirtySet] while it is
+     * updating.
+     */
+    internal fun activationChanged(lastActivation: Double, activation: Double) {
+        val dirtySet = events.dirtySet
+        if (dirtySet != null && dirtySet.isCollecting) {
+            if (lastActivation != activation) {
+                dirtySet.add(this)
+            }
+        } else {
+            events.activationChanged.fire(lastActivation, activation)
         }
+    }
 
     @get:Producible(defaultVisibility = false)
     @set:Consumable(defaultVisibility = false)
@@ -77,11 +77,18 @@ class NeuronArray(inputSize: Int) : ArrayLayer(inputSize), EditableObject, Attri
     /**
      * see [AbstractNeuronCollection.spikes]
      */
-    @get:Producible
+    @get:Producible(fillMethod = "fillSpikes")
     override val spikes: DoubleArray
-        get() = (dataHolder as? SpikingMatrixData)?.spikes?.map { if (it) 1.0 else 0.0 }?.toDoubleArray() ?: DoubleArray(
-            size
-        )
+        get() = fillSpikes(DoubleArray(size))
+
+    override fun fillSpikes(buffer: DoubleArray): DoubleArray {
+        val spikes = (dataHolder as? SpikingMatrixData)?.spikes ?: return super.fillSpikes(buffer)
+        val result = if (buffer.size == spikes.size) buffer else DoubleArray(spikes.size)
+        for (i in result.indices) {
+            result[i] = if (spikes[i]) 1.0 else 0.0
+        }
+        return result
+    }
 
     private var targets: Matrix? = null
 
@@ -150,7 +157,7 @@ class NeuronArray(inputSize: Int) : ArrayLayer(inputSize), EditableObject, Attri
         return copy
     }
 
-    @get:Producible(arrayDescriptionMethod = "getLabelArray")
+    @get:Producible(arrayDescriptionMethod = "getLabelArray", fillMethod = "fillActivationArray")
     override val activationArray: DoubleArray
         get() = activations.toDoubleArray()
 
@@ -221,7 +228,7 @@ class NeuronArray(inputSize: Int) : ArrayLayer(inputSize), EditableObject, Attri
         events.updated.fire()
     }
 
-    @Consumable
+    @Consumable(copiesArray = true)
     override fun setActivations(activations: DoubleArray) {
         this.activations = Matrix.column(activations)
     }
@@ -272,24 +279,34 @@ class NeuronArray(inputSize: Int) : ArrayLayer(inputSize), EditableObject, Attri
     }
 
     /**
-     * For each incoming psr matrix, filter out entries that correspond to excitatory synapses and return the sum of those for
-     * each row (i.e. a vector of excitatory inputs; summed PSRs for each “dendrite”).
+     * For each incoming weight matrix, sum the psrs of excitatory connections in each row, and return the total over all
+     * weight matrices (i.e. a vector of excitatory inputs; summed PSRs for each “dendrite”).
      */
     val excitatoryInputs: DoubleArray
         get() = incomingConnectors
-            .filterIsInstance<WeightMatrix>()
-            .map { it.psrMatrix.clone().mul(it.excitatoryMask).rowSums() }
+            .mapNotNull {
+                when (it) {
+                    is WeightMatrix -> it.excitatoryPSRs()
+                    is SparseWeightMatrix -> it.excitatoryPSRs()
+                    else -> null
+                }
+            }
             .reduceOrNull { base, add -> SimbrainMath.addVector(base, add) }
             ?: DoubleArray(size)
 
     /**
-     * For each incoming psr matrix, filter out entries that correspond to inhibitory synapses and return the sum of those for
-     * each row (i.e. a vector of inhibitory inputs; summed PSRs for each “dendrite”).
+     * For each incoming weight matrix, sum the psrs of inhibitory connections in each row, and return the total over all
+     * weight matrices (i.e. a vector of inhibitory inputs; summed PSRs for each “dendrite”).
      */
     val inhibitoryInputs: DoubleArray
         get() = incomingConnectors
-            .filterIsInstance<WeightMatrix>()
-            .map { it.psrMatrix.clone().mul(it.inhibitoryMask).rowSums() }
+            .mapNotNull {
+                when (it) {
+                    is WeightMatrix -> it.inhibitoryPSRs()
+                    is SparseWeightMatrix -> it.inhibitoryPSRs()
+                    else -> null
+                }
+            }
             .reduceOrNull { base, add -> SimbrainMath.addVector(base, add) }
             ?: DoubleArray(size)
 
@@ -0,0 +1,377 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.gui.dialogs.NetworkPreferences.weightRandomizer
+import org.simbrain.network.gui.nodes.ActivationSequenceProcessor
+import org.simbrain.network.learningrules.StaticSynapseRule
+import org.simbrain.network.learningrules.SynapseUpdateRule
+import org.simbrain.network.spikeresponders.NonResponder
+import org.simbrain.network.spikeresponders.SpikeResponder
+import org.simbrain.network.util.EmptyMatrixData
+import org.simbrain.network.util.MatrixDataHolder
+import org.simbrain.util.UserParameter
+import org.simbrain.util.propertyeditor.GuiEditable
+import org.simbrain.util.stats.ProbabilityDistribution
+import org.simbrain.workspace.Consumable
+import org.simbrain.workspace.Producible
+import smile.math.matrix.Matrix
+import kotlin.math.min
+
+/**
+ * A sparse weight matrix connecting a source and target [Layer]. Use in place of a [WeightMatrix] when most
+ * possible connections are absent, e.g. for large spiking networks, where a dense matrix would be too large to store
+ * or to multiply every iteration.
+ *
+ * Weights are stored in compressed sparse row (CSR) form, using the same target-source layout as [WeightMatrix]: the
+ * non-zero entries of row `i` (i.e. the connections onto target unit `i`) occupy positions
+ * `rowPointers[i] until rowPointers[i + 1]` of [columnIndices] (the source unit of each connection) and [values] (its
+ * weight). The connection pattern is fixed when the matrix is created; weights can be changed in place.
+ *
+ * Spike responders keep one entry of state per connection, so their matrix data holders are created with one row per
+ * connection and a single column, in the same order as [values]. Learning rule data holders are created with the
+ * dimensions of the equivalent dense matrix, as for [WeightMatrix], since learning rules keep state per unit.
+ *
+ * Usually created using the [org.simbrain.network.connections.Sparse] or
+ * [org.simbrain.network.connections.FixedDegree] connection strategies.
+ */
+class SparseWeightMatrix @JvmOverloads constructor(
+    source: Layer,
+    target: Layer,
+    /**
+     * CSR row pointers. One entry per target unit, plus one.
+     */
+    val rowPointers: IntArray = IntArray(target.size + 1),
+    /**
+     * Index of the source unit of each connection.
+     */
+    val columnIndices: IntArray = IntArray(rowPointers.last()),
+    /**
+     * Strength of each connection.
+     */
+    val values: DoubleArray = DoubleArray(columnIndices.size)
+) : Connector(source, target) {
+
+    @UserParameter(label = "Increment amount", increment = .1, order = 20)
+    var increment = .1
+
+    @UserParameter(label = "Learning Rule", order = 100)
+    var learningRule: SynapseUpdateRule<*, *> = StaticSynapseRule()
+        set(value) {
+            field = value
+            learningRuleData = value.createMatrixData(target.size, source.size)
+        }
+
+    /**
+     * Only used if source connector's rule is spiking.
+     */
+    @UserParameter(label = "Spike Responder", showDetails = false, order = 200)
+    var spikeResponder: SpikeResponder = NonResponder()
+        set(value) {
+            field = value
+            spikeResponseData = value.createMatrixData(numConnections, 1)
+        }
+
+    /**
+     * Holds data for learning rule.
+     */
+    var learningRuleData: MatrixDataHolder by GuiEditable(
+        initValue = EmptyMatrixData,
+        order = 210,
+        label = "Learning Rule Data",
+        tab = "Data",
+        onUpdate = {
+            val proposedDataHolder = widgetValue(::learningRule).createMatrixData(target.size, source.size)
+            if (widgetValue(::learningRuleData)::class != proposedDataHolder::class) {
+                refreshValue(proposedDataHolder)
+            }
+        }
+    )
+
+    /**
+     * Holds data for spike responder, one row per connection.
+     */
+    var spikeResponseData: MatrixDataHolder by GuiEditable(
+        initValue = EmptyMatrixData,
+        order = 220,
+        label = "Spike Responder Data",
+        tab = "Data",
+        onUpdate = {
+            val proposedDataHolder = widgetValue(::spikeResponder).createMatrixData(numConnections, 1)
+            if (widgetValue(::spikeResponseData)::class != proposedDataHolder::class) {
+                refreshValue(proposedDataHolder)
+            }
+        }
+    )
+
+    /**
+     * Post-synaptic response of each connection, in the same order as [values]. Only maintained when there is a
+     * spike responder; in the connectionist case weighted inputs are summed directly into [summedPSRs].
+     */
+    val psrValues = DoubleArray(columnIndices.size)
+
+    /**
+     * Buffer for the summed post-synaptic response of each target unit.
+     */
+    @Transient
+    private var summedPSRs = DoubleArray(target.size)
+
+    @UserParameter(label = "Transpose Graphics", order = 10)
+    var transposeGraphics = false
+        set(value) {
+            field = value
+            events.updated.fire()
+        }
+
+    init {
+        require(rowPointers.size == target.size + 1) {
+            "Row pointers must have ${target.size + 1} entries but have ${rowPointers.size}"
+        }
+        require(rowPointers.first() == 0 && rowPointers.last() == columnIndices.size) {
+            "Row pointers must run from 0 to the number of connections (${columnIndices.size})"
+        }
+        require(values.size == columnIndices.size) {
+            "There are ${columnIndices.size} column indices but ${values.size} values"
+        }
+        for (i in 0 until target.size) {
+            require(rowPointers[i] <= rowPointers[i + 1]) { "Row pointers must be non-decreasing" }
+        }
+        require(columnIndices.all { it in 0 until source.size }) {
+            "Column indices must be between 0 and ${source.size - 1}"
+        }
+
+        source.addOutgoingConnector(this)
+        target.addIncomingConnector(this)
+    }
+
+    /**
+     * Number of connections, i.e. of non-zero entries.
+     */
+    val numConnections get() = columnIndices.size
+
+    /**
+     * Fraction of possible connections that are present.
+     */
+    val density get() = numConnections.toDouble() / (source.size.toLong() * target.size).coerceAtLeast(1)
+
+    /**
+     * Weight of each connection, in row order.
+     */
+    @get:Producible
+    val weights: DoubleArray
+        get() = values.copyOf()
+
+    /**
+     * Set connection weights, in row order. The connection pattern is not changed.
+     */
+    @Consumable(copiesArray = true)
+    fun setWeights(newWeights: DoubleArray) {
+        newWeights.copyInto(values, endIndex = min(values.size, newWeights.size))
+        events.updated.fire()
+    }
+
+    /**
+     * Index into [values] of the connection from source unit [col] to target unit [row], or -1 if there is none.
+     */
+    fun indexOf(row: Int, col: Int): Int {
+        for (k in rowPointers[row] until rowPointers[row + 1]) {
+            if (columnIndices[k] == col) return k
+        }
+        return -1
+    }
+
+    /**
+     * Returns the weight from source unit [col] to target unit [row], which is 0 if they are not connected.
+     */
+    operator fun get(row: Int, col: Int): Double = indexOf(row, col).let { if (it < 0) 0.0 else values[it] }
+
+    /**
+     * Set the weight from source unit [col] to target unit [row]. Throws an exception if they are not connected,
+     * since the connection pattern cannot be changed.
+     */
+    operator fun set(row: Int, col: Int, value: Double) {
+        val k = indexOf(row, col)
+        require(k >= 0) { "No connection from $col to $row" }
+        values[k] = value
+    }
+
+    /**
+     * Dense copy of the weights, for display and for interoperating with code that expects a [Matrix]. Avoid for large
+     * layers.
+     */
+    fun toDenseMatrix(): Matrix = denseMatrixOf(values)
+
+    /**
+     * Dense copy of [psrValues]. Computed on demand, so it is only suitable for display. When there is no spike
+     * responder, the connectionist psr (weight times source activation) is computed from current values.
+     */
+    override val psrMatrix: Matrix
+        get() = if (spikeResponder is NonResponder) {
+            val activations = sourceActivations()
+            denseMatrixOf(DoubleArray(numConnections) { k -> values[k] * activations[columnIndices[k]] })
+        } else {
+            denseMatrixOf(psrValues)
+        }
+
+    private fun denseMatrixOf(entries: DoubleArray): Matrix {
+        val matrix = Matrix(target.size, source.size)
+        for (i in 0 until target.size) {
+            for (k in rowPointers[i] until rowPointers[i + 1]) {
+                matrix[i, columnIndices[k]] = entries[k]
+            }
+        }
+        return matrix
+    }
+
+    private fun sourceActivations(): DoubleArray {
+        val source = source
+        return if (source is ActivationSequenceProcessor) {
+            source.activations.row(source.activations.nrow() - 1)
+        } else {
+            source.activationArray
+        }
+    }
+
+    /**
+     * Returns the summed post-synaptic response of each target unit, computed by the last call to [updatePSR]. The
+     * returned array is reused on the next update.
+     */
+    override fun getSummedPSRs(): DoubleArray {
+        return summedPSRs
+    }
+
+    context(Network)
+    override fun update() {
+        if (learningRule !is StaticSynapseRule) {
+            learningRule.apply(this, learningRuleData)
+            events.updated.fire()
+        }
+    }
+
+    /**
+     * Compute the summed post-synaptic responses. In the connectionist case this is a sparse matrix-vector product
+     * with the source activations; otherwise the spike responder updates [psrValues], which are then summed by row.
+     */
+    context(Network)
+    override fun updatePSR() {
+        if (summedPSRs.size != target.size) {
+            summedPSRs = DoubleArray(target.size)
+        }
+        if (spikeResponder is NonResponder) {
+            val activations = sourceActivations()
+            for (i in 0 until target.size) {
+                var sum = 0.0
+                for (k in rowPointers[i] until rowPointers[i + 1]) {
+                    sum += values[k] * activations[columnIndices[k]]
+                }
+                summedPSRs[i] = sum
+            }
+        } else {
+            spikeResponder.apply(this, spikeResponseData)
+            for (i in 0 until target.size) {
+                var sum = 0.0
+                for (k in rowPointers[i] until rowPointers[i + 1]) {
+                    sum += psrValues[k]
+                }
+                summedPSRs[i] = sum
+            }
+        }
+    }
+
+    /**
+     * Sum of the post-synaptic responses of excitatory (positive weight) connections onto each target unit.
+     */
+    fun excitatoryPSRs(): DoubleArray = signedPSRSums { it > 0 }
+
+    /**
+     * Sum of the post-synaptic responses of inhibitory (negative weight) connections onto each target unit.
+     */
+    fun inhibitoryPSRs(): DoubleArray = signedPSRSums { it < 0 }
+
+    private inline fun signedPSRSums(include: (Double) -> Boolean): DoubleArray {
+        val sums = DoubleArray(target.size)
+        if (spikeResponder is NonResponder) {
+            val activations = sourceActivations()
+            forEachConnection { i, j, k -> if (include(values[k])) sums[i] += values[k] * activations[j] }
+        } else {
+            forEachConnection { i, _, k -> if (include(values[k])) sums[i] += psrValues[k] }
+        }
+        return sums
+    }
+
+    /**
+     * Apply [block] to each connection, passing the target unit (row), source unit (column) and index into [values].
+     */
+    inline fun forEachConnection(block: (row: Int, col: Int, k: Int) -> Unit) {
+        for (i in 0 until target.size) {
+            for (k in rowPointers[i] until rowPointers[i + 1]) {
+                block(i, columnIndices[k], k)
+            }
+        }
+    }
+
+    override fun randomize(randomizer: ProbabilityDistribution?) {
+        for (k in values.indices) {
+            values[k] = (randomizer ?: weightRandomizer).sampleDouble()
+        }
+        events.updated.fire()
+    }
+
+    override fun increment() {
+        for (k in values.indices) {
+            values[k] += increment
+        }
+        events.updated.fire()
+    }
+
+    override fun decrement() {
+        for (k in values.indices) {
+            values[k] -= increment
+        }
+        events.updated.fire()
+    }
+
+    /**
+     * Set all weights to 0. Connections are kept.
+     */
+    override fun clear() {
+        values.fill(0.0)
+        psrValues.fill(0.0)
+        events.updated.fire()
+    }
+
+    override fun toString(): String {
+        return (id
+                + " (" + target.size + "x" + source.size + ", " + numConnections + " connections) "
+                + "connecting " + source.id + " to " + target.id)
+    }
+
+    companion object {
+
+        /**
+         * Create a sparse weight matrix from the source units connected to each target unit. Indices within each row
+         * are sorted.
+         *
+         * @param rows for each target unit, the indices of the source units that connect to it
+         * @param weight initial weight of each connection, given its target and source index
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun fromRows(
+            source: Layer,
+            target: Layer,
+            rows: List<IntArray>,
+            weight: (row: Int, col: Int) -> Double = { _, _ -> 0.0 }
+        ): SparseWeightMatrix {
+            require(rows.size == target.size) { "Expected ${target.size} rows but got ${rows.size}" }
+            val rowPointers = IntArray(target.size + 1)
+            rows.forEachIndexed { i, row -> rowPointers[i + 1] = rowPointers[i] + row.size }
+            val columnIndices = IntArray(rowPointers.last())
+            val values = DoubleArray(rowPointers.last())
+            rows.forEachIndexed { i, row ->
+                val sorted = row.sortedArray()
+                sorted.copyInto(columnIndices, rowPointers[i])
+                sorted.forEachIndexed { offset, j -> values[rowPointers[i] + offset] = weight(i, j) }
+            }
+            return SparseWeightMatrix(source, target, rowPointers, columnIndices, values)
+        }
+    }
+}
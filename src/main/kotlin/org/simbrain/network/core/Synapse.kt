@@ -125,8 +125,35 @@ class Synapse : NetworkModel, EditableObject, AttributeContainer {
      *
      * In the case of a non-spiking node this is the product of the source activation and the
      * weight of a synapse, i.e. one term in a classical weighted input.
+     *
+     * While the synapse is part of an [EventDrivenNetwork], the response is held there and is read and written
+     * through it. While it is compiled in a [CompiledNetwork], the response is computed from the snapshot when read,
+     * see [CompiledNetwork.getPSR].
      */
     var psr: Double = 0.0
+        get() = eventDrivenNetwork?.getPSR(eventDrivenIndex) ?: compiledNetwork?.getPSR(compiledIndex) ?: field
+        set(value) {
+            field = value
+            eventDrivenNetwork?.setPSR(eventDrivenIndex, value)
+        }
+
+    /**
+     * The event driven snapshot holding the response of this synapse, if any, and the index of the synapse in it.
+     */
+    @Transient
+    internal var eventDrivenNetwork: EventDrivenNetwork? = null
+
+    @Transient
+    internal var eventDrivenIndex = -1
+
+    /**
+     * The compiled snapshot this synapse is part of, if any, and the index of the synapse in it.
+     */
+    @Transient
+    internal var compiledNetwork: CompiledNetwork? = null
+
+    @Transient
+    internal var compiledIndex = -1
 
     /**
      * Amount to increment the neuron.
@@ -8,11 +8,13 @@ import org.simbrain.network.spikeresponders.NonResponder
 import org.simbrain.network.spikeresponders.SpikeResponder
 import org.simbrain.network.util.EmptyMatrixData
 import org.simbrain.network.util.MatrixDataHolder
+import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.util.*
 import org.simbrain.util.propertyeditor.GuiEditable
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.workspace.Consumable
 import org.simbrain.workspace.Producible
+import smile.math.blas.Transpose
 import smile.math.matrix.Matrix
 import kotlin.math.min
 
@@ -35,6 +37,10 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
 
     @UserParameter(label = "Learning Rule", order = 100)
     var learningRule: SynapseUpdateRule<*, *> = StaticSynapseRule()
+        set(value) {
+            field = value
+            learningRuleData = value.createMatrixData(weightMatrix.nrow(), weightMatrix.ncol())
+        }
 
     /**
      * Only used if source connector's rule is spiking.
@@ -42,6 +48,8 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
     @UserParameter(label = "Spike Responder", showDetails = false, order = 200)
     var spikeResponder: SpikeResponder = NonResponder()
         set(value) {
+            // Responders update the psr matrix incrementally, so it must be current before switching
+            psrMatrix
             field = value
             spikeResponseData = value.createMatrixData(weightMatrix.nrow(), weightMatrix.ncol())
         }
@@ -53,7 +61,13 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
         initValue = EmptyMatrixData,
         order = 210,
         label = "Learning Rule Data",
-        tab = "Data"
+        tab = "Data",
+        onUpdate = {
+            val proposedDataHolder = widgetValue(::learningRule).createMatrixData(weightMatrix.nrow(), weightMatrix.ncol())
+            if (widgetValue(::learningRuleData)::class != proposedDataHolder::class) {
+                refreshValue(proposedDataHolder)
+            }
+        }
     )
 
     /**
@@ -79,22 +93,98 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
     @get:Producible
     val weightMatrix: Matrix
 
+    /**
+     * In the connectionist case ([NonResponder]) the psr matrix is not needed to compute inputs to the target layer,
+     * so it is only computed when it is read, e.g. by the GUI or [NeuronArray.excitatoryInputs].
+     */
     @UserParameter(label = "PSR Matrix", order = 300, tab = "Data")
-    override var psrMatrix: Matrix
+    override var psrMatrix: Matrix = Matrix(target.size, source.size)
+        get() {
+            if (psrMatrixStale) {
+                psrMatrixStale = false
+                for (j in 0 until field.ncol()) {
+                    val activation = psrSourceActivations[j]
+                    for (i in 0 until field.nrow()) {
+                        field[i, j] = weightMatrix[i, j] * activation
+                    }
+                }
+            }
+            return field
+        }
+        set(value) {
+            psrMatrixStale = false
+            field = value
+        }
 
     /**
-     * A binary matrix with 1s corresponding to entries of the weight matrix that are greater than 1 and thus
-     * excitatory, and 0s otherwise. Used by [.getExcitatoryOutputs]
+     * Source activations read by the last connectionist [updatePSR], from which [psrMatrix] is computed on demand.
      */
     @Transient
-    val excitatoryMask: Matrix
+    private var psrSourceActivations = DoubleArray(source.size)
 
     /**
-     * A binary matrix with 1s corresponding to entries of the weight matrix that are less than 1 and thus
-     * inhibitory, and 0s otherwise. Used by [.getInhibitoryOutputs] }
+     * True when [psrMatrix] has not been computed since the last connectionist [updatePSR].
      */
     @Transient
+    private var psrMatrixStale = false
+
+    /**
+     * Buffer for [getSummedPSRs] in the connectionist case.
+     */
+    @Transient
+    private var summedPSRs = DoubleArray(target.size)
+
+    /**
+     * A binary matrix with 1s corresponding to entries of the weight matrix that are greater than 0 and thus
+     * excitatory, and 0s otherwise. Computed from the current weights when read.
+     */
+    val excitatoryMask: Matrix
+        get() = signMask { it > 0 }
+
+    /**
+     * A binary matrix with 1s corresponding to entries of the weight matrix that are less than 0 and thus
+     * inhibitory, and 0s otherwise. Computed from the current weights when read.
+     */
     val inhibitoryMask: Matrix
+        get() = signMask { it < 0 }
+
+    /**
+     * Delay in iterations of all connections, unless [delayMatrix] is set. As with [Synapse.delay], a delay of d means
+     * that source activations (or spikes) reach the target d iterations later.
+     */
+    @UserParameter(label = "Delay", description = "Delay in iterations for all connections", minimumValue = 0.0, order = 30)
+    var delay = 0
+        set(value) {
+            field = value.coerceAtLeast(0)
+            cachedMaxDelay = -1
+        }
+
+    /**
+     * Per-connection delays in iterations, in the same target-source layout as [weightMatrix]. Overrides [delay] when
+     * set. See [setDelays].
+     */
+    var delayMatrix: Array<IntArray>? = null
+        private set
+
+    @Transient
+    private var cachedMaxDelay = -1
+
+    /**
+     * The largest delay of any connection.
+     */
+    val maxDelay: Int
+        get() {
+            if (cachedMaxDelay < 0) {
+                cachedMaxDelay = delayMatrix?.maxOf { row -> row.maxOrNull() ?: 0 } ?: delay
+            }
+            return cachedMaxDelay
+        }
+
+    /**
+     * History of source activations used by the last [updatePSR], or null if there are no delays.
+     */
+    @Transient
+    private var sourceHistory: ActivationHistory? = null
 
     @UserParameter(label = "Transpose Graphics", order = 10)
     var transposeGraphics = false
@@ -115,20 +205,19 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
 
         weightMatrix = Matrix(target.size, source.size)
 
-        excitatoryMask = Matrix(target.size, source.size)
-        inhibitoryMask = Matrix(target.size, source.size)
-
         diagonalize()
-        updateMasks()
-
-        psrMatrix = Matrix(target.size, source.size)
-
     }
 
-    @get:Producible
+    @get:Producible(fillMethod = "fillWeights")
     val weights: DoubleArray
         get() = weightMatrix.flatten()
 
+    /**
+     * Write [weights] into [buffer], or into a new array if it does not have the right size. Returns the array written
+     * to.
+     */
+    fun fillWeights(buffer: DoubleArray): DoubleArray = weightMatrix.flatten(buffer)
+
     /**
      * Set the weights using a double array.
      */
@@ -140,20 +229,59 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
         }
     }
 
-    @Consumable
+    @Consumable(copiesArray = true)
     fun setWeights(newWeights: DoubleArray) {
         val len = min(weightMatrix.size().toInt().toDouble(), newWeights.size.toDouble()).toInt()
         for (i in 0 until len) {
             weightMatrix[i / weightMatrix.ncol(), i % weightMatrix.ncol()] = newWeights[i]
         }
-        updateMasks()
         events.updated.fire()
     }
 
+    /**
+     * Set a delay for each connection, in the same target-source layout as [weightMatrix], or null to use [delay] for
+     * all connections.
+     */
+    fun setDelays(delays: Array<IntArray>?) {
+        if (delays != null) {
+            require(delays.size == weightMatrix.nrow() && delays.all { it.size == weightMatrix.ncol() }) {
+                "Delays must be ${weightMatrix.nrow()}x${weightMatrix.ncol()}"
+            }
+            require(delays.all { row -> row.all { it >= 0 } }) { "Delays must not be negative" }
+        }
+        delayMatrix = delays?.map { it.copyOf() }?.toTypedArray()
+        cachedMaxDelay = -1
+        events.updated.fire()
+    }
+
+    /**
+     * Delay of the connection from source unit [j] to target unit [i].
+     */
+    fun delayOf(i: Int, j: Int): Int = delayMatrix?.get(i)?.get(j) ?: delay
+
+    /**
+     * Whether source unit [j] spiked, as seen by target unit [i] after the delay of the connection between them. Used
+     * by spike responders.
+     */
+    fun sourceSpiked(i: Int, j: Int, spikeData: SpikingMatrixData): Boolean {
+        val history = sourceHistory ?: return spikeData.spikes[j]
+        return history.spikes(delayOf(i, j))[j]
+    }
+
+    /**
+     * Time at which the most recent spike of source unit [j] reached target unit [i], taking the delay of the
+     * connection between them into account. Used by spike responders.
+     */
+    context(Network)
+    fun sourceLastSpikeTime(i: Int, j: Int, spikeData: SpikingMatrixData): Double {
+        val history = sourceHistory ?: return spikeData.lastSpikeTimes[j]
+        val delay = delayOf(i, j)
+        return history.lastSpikeTimes(delay)[j] + delay * timeStep
+    }
+
     @Consumable
     fun setMatrixValues(otherWeightMatrix: Matrix?) {
         weightMatrix.copyFrom(otherWeightMatrix!!)
-        updateMasks()
         events.updated.fire()
     }
 
@@ -164,7 +292,6 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
         clear()
         val diag = Matrix.eye(target.size, source.size)
         weightMatrix.copyFrom(diag)
-        updateMasks()
         events.updated.fire()
     }
 
@@ -173,47 +300,119 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
         // TODO: Check for clamping and enabling
         if (learningRule !is StaticSynapseRule) {
             learningRule.apply(this, learningRuleData)
-            updateMasks()
             events.updated.fire()
         }
     }
 
     /**
-     * Update the psr matrix in the connectionist case.
+     * Update post-synaptic responses. In the connectionist case this only records the source activations: the
+     * weighted inputs are computed directly as a matrix-vector product by [accumulateSummedPSRs], and [psrMatrix] is
+     * computed from the recorded activations if something reads it.
      */
     context(Network)
     override fun updatePSR() {
+        val currentActivations = if (source is ActivationSequenceProcessor) {
+            source.activations.row(source.activations.nrow() - 1)
+        } else {
+            source.activationArray
+        }
+        val history = if (maxDelay > 0) {
+            source.activationHistory(maxDelay).also {
+                it.record(currentActivations, (source as? NeuronArray)?.dataHolder as? SpikingMatrixData)
+            }
+        } else {
+            null
+        }
+        sourceHistory = history
+
         if (spikeResponder is NonResponder) {
-            // For "connectionist" case. Unusual to need this, but could happen with excitatory inputs and no spike
-            // responder, for example.
-            // Populate each row of the psrMatrix with the element-wise product of the pre-synaptic output vector and
-            // that row of the matrix
-            if (source is ActivationSequenceProcessor) {
-                psrMatrix.copyFrom(weightMatrix.broadcastMultiply(source.activations.row(source.activations.nrow() - 1).toMatrix()))
-            } else {
-                psrMatrix.copyFrom(weightMatrix.broadcastMultiply(source.activations))
+            if (history != null && delayMatrix != null) {
+                // Each connection reads its own delayed activation, so compute the psr matrix directly
+                psrMatrixStale = false
+                val psrs = psrMatrix
+                for (j in 0 until weightMatrix.ncol()) {
+                    for (i in 0 until weightMatrix.nrow()) {
+                        psrs[i, j] = weightMatrix[i, j] * history.activations(delayOf(i, j))[j]
+                    }
+                }
+                return
             }
+            val activations = history?.activations(delay) ?: currentActivations
+            if (psrSourceActivations.size != activations.size) {
+                psrSourceActivations = DoubleArray(activations.size)
+            }
+            activations.copyInto(psrSourceActivations)
+            psrMatrixStale = true
         } else {
             spikeResponder.apply(this, spikeResponseData)
         }
     }
 
-    private fun updateExcitatoryMask() {
-        for (i in 0 until weightMatrix.nrow()) {
+    /**
+     * True when the summed psrs are the product of the weight matrix and a single vector of source activations.
+     */
+    private val isActivationProduct get() = spikeResponder is NonResponder && delayMatrix == null
+
+    override fun getSummedPSRs(): DoubleArray {
+        if (!isActivationProduct) {
+            return super.getSummedPSRs()
+        }
+        if (summedPSRs.size != weightMatrix.nrow()) {
+            summedPSRs = DoubleArray(weightMatrix.nrow())
+        }
+        weightMatrix.mv(Transpose.NO_TRANSPOSE, 1.0, psrSourceActivations, 0.0, summedPSRs)
+        return summedPSRs
+    }
+
+    override fun accumulateSummedPSRs(inputs: DoubleArray) {
+        if (isActivationProduct) {
+            weightMatrix.mv(Transpose.NO_TRANSPOSE, 1.0, psrSourceActivations, 1.0, inputs)
+        } else {
+            super.accumulateSummedPSRs(inputs)
+        }
+    }
+
+    /**
+     * Sum of the post-synaptic responses of excitatory (positive weight) connections onto each target unit. Computed
+     * on demand from the signs of the current weights, so nothing needs to be maintained when weights change.
+     */
+    fun excitatoryPSRs(): DoubleArray = signedPSRSums { it > 0 }
+
+    /**
+     * Sum of the post-synaptic responses of inhibitory (negative weight) connections onto each target unit.
+     */
+    fun inhibitoryPSRs(): DoubleArray = signedPSRSums { it < 0 }
+
+    private inline fun signedPSRSums(include: (Double) -> Boolean): DoubleArray {
+        val sums = DoubleArray(weightMatrix.nrow())
+        if (psrMatrixStale) {
+            // Connectionist case: compute the psrs from the recorded activations rather than materializing them
             for (j in 0 until weightMatrix.ncol()) {
-                val newVal = if ((weightMatrix[i, j] > 0)) 1 else 0
-                excitatoryMask[i, j] = newVal.toDouble()
+                val activation = psrSourceActivations[j]
+                for (i in 0 until weightMatrix.nrow()) {
+                    val weight = weightMatrix[i, j]
+                    if (include(weight)) sums[i] += weight * activation
+                }
+            }
+        } else {
+            val psrs = psrMatrix
+            for (j in 0 until weightMatrix.ncol()) {
+                for (i in 0 until weightMatrix.nrow()) {
+                    if (include(weightMatrix[i, j])) sums[i] += psrs[i, j]
+                }
             }
         }
+        return sums
     }
 
-    private fun updateInhibitoryMask() {
-        for (i in 0 until weightMatrix.nrow()) {
-            for (j in 0 until weightMatrix.ncol()) {
-                val newVal = if ((weightMatrix[i, j] < 0)) 1 else 0
-                inhibitoryMask[i, j] = newVal.toDouble()
+    private inline fun signMask(include: (Double) -> Boolean): Matrix {
+        val mask = Matrix(weightMatrix.nrow(), weightMatrix.ncol())
+        for (j in 0 until weightMatrix.ncol()) {
+            for (i in 0 until weightMatrix.nrow()) {
+                if (include(weightMatrix[i, j])) mask[i, j] = 1.0
             }
         }
+        return mask
     }
 
     override fun randomize(randomizer: ProbabilityDistribution?) {
@@ -222,19 +421,16 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
                 weightMatrix[i, j] = (randomizer ?: weightRandomizer).sampleDouble()
             }
         }
-        updateMasks()
         events.updated.fire()
     }
 
     override fun increment() {
         weightMatrix.add(increment)
-        updateMasks()
         events.updated.fire()
     }
 
     override fun decrement() {
         weightMatrix.sub(increment)
-        updateMasks()
         events.updated.fire()
     }
 
@@ -251,9 +447,4 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
                 + " (" + weightMatrix.nrow() + "x" + weightMatrix.ncol() + ") "
                 + "connecting " + source.id + " to " + target.id)
     }
-
-    fun updateMasks() {
-        updateExcitatoryMask()
-        updateInhibitoryMask()
-    }
 }
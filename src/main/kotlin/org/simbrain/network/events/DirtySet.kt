@@ -0,0 +1,49 @@
+package org.simbrain.network.events
+
+import org.simbrain.network.core.NetworkModel
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Models whose state changed during a [org.simbrain.network.core.Network] update.
+ *
+ * While the network is updating, models add themselves here instead of firing their own change events (which would
+ * launch a coroutine per write), and the network fires one [NetworkEvents.modelsUpdated] event with the whole set when
+ * the update is done. Outside of updates [isCollecting] is false and models fire their events as usual.
+ *
+ * Models may be added from several threads, e.g. by [org.simbrain.network.update_actions.ParallelBufferedUpdate].
+ */
+class DirtySet {
+
+    @Volatile
+    var isCollecting = false
+        private set
+
+    private val models: MutableSet<NetworkModel> = ConcurrentHashMap.newKeySet()
+
+    /**
+     * Mark a model as changed during the current update.
+     */
+    fun add(model: NetworkModel) {
+        models.add(model)
+    }
+
+    /**
+     * Start collecting changed models, discarding any left over from an update that did not complete.
+     */
+    fun begin() {
+        models.clear()
+        isCollecting = true
+    }
+
+    /**
+     * Stop collecting. Models fire their own change events again.
+     */
+    fun end() {
+        isCollecting = false
+    }
+
+    /**
+     * Return the models collected between [begin] and [end] and clear the set.
+     */
+    fun drain(): List<NetworkModel> = models.toList().also { models.clear() }
+}
@@ -9,6 +9,10 @@ import org.simbrain.util.Events
 class NetworkEvents: Events() {
     val zoomToFitPage = NoArgEvent(interval = 20)
     val updated = NoArgEvent()
+    /**
+     * Fired once per update with the models whose state changed during it. See [DirtySet].
+     */
+    val modelsUpdated = OneArgEvent<List<NetworkModel>>()
     val modelAdded = OneArgEvent<NetworkModel>()
     val modelRemoved = OneArgEvent<NetworkModel>()
     val updateActionsChanged = NoArgEvent()
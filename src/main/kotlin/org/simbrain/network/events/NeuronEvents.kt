@@ -8,9 +8,19 @@ import org.simbrain.util.Events
  */
 class NeuronEvents: LocationEvents() {
 
+    /**
+     * Not fired while the neuron's network is updating. Changes made then are reported by
+     * [NetworkEvents.modelsUpdated] instead.
+     */
     val activationChanged = ChangedEvent<Double>()
     val spiked = OneArgEvent<Boolean>()
     val colorChanged = NoArgEvent()
     val updateRuleChanged = ChangedEvent<NeuronUpdateRule<*, *>>()
     val priorityChanged = ChangedEvent<Int>()
+
+    /**
+     * Set by the network that updates the neuron. See [DirtySet].
+     */
+    @Volatile
+    var dirtySet: DirtySet? = null
 }
\ No newline at end of file
@@ -648,7 +648,7 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
         if (sources.isNotEmpty() && targets.isNotEmpty()) {
             // TODO: Ability to set defaults for weight matrix that is added
             sources.cartesianProduct(targets).mapNotNull { (s, t) ->
-                network.addNetworkModel(WeightMatrix(s, t))
+                network.addNetworkModel(NetworkPreferences.connectionStrategy.copy().connectLayers(s, t))
             }
             return true
         }
@@ -712,6 +712,11 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
                 withContext(Swing) { canvas.layer.removeChildren(nodes) }
                 modelsUniq.forEach { modelNodeMap.remove(it) }
             }
+            modelsUpdated.on(Dispatchers.Swing) { models ->
+                models.forEach { model ->
+                    (modelNodeMap.getImmediately<ScreenElement>(model) as? NeuronNode)?.updateActivation()
+                }
+            }
             updateActionsChanged.on(Dispatchers.Swing) { timeLabel.update() }
             updated.on(Dispatchers.Swing, wait = true) {
                 repaint()
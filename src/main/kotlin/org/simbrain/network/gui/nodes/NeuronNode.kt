@@ -122,10 +122,7 @@ class NeuronNode(net: NetworkPanel, val neuron: Neuron) : ScreenElement(net) {
 
         // Handle events
         val events = neuron.events
-        events.activationChanged.on(Dispatchers.Swing) { _, _ ->
-            updateColor()
-            updateText()
-        }
+        events.activationChanged.on(Dispatchers.Swing) { _, _ -> updateActivation() }
         events.spiked.on(Dispatchers.Swing) { updateSpikeColor() }
         events.colorChanged.on(Dispatchers.Swing) { updateColor() }
         events.labelChanged.on(Dispatchers.Swing) { _, _ ->
@@ -137,6 +134,15 @@ class NeuronNode(net: NetworkPanel, val neuron: Neuron) : ScreenElement(net) {
         events.updateRuleChanged.on(Dispatchers.Swing) { _, _ -> updateShape() }
     }
 
+    /**
+     * Update the color and text of the node to reflect the neuron's activation. Called directly by [NetworkPanel] for
+     * neurons changed during a network update.
+     */
+    fun updateActivation() {
+        updateColor()
+        updateText()
+    }
+
     /**
      * Update the shape (square or circle) of the neuron based on whether it's an activity generator or not.
      */
@@ -5,6 +5,7 @@ import kotlinx.coroutines.swing.Swing
 import org.piccolo2d.util.PPaintContext
 import org.simbrain.network.core.AbstractNeuronCollection
 import org.simbrain.network.core.Connector
+import org.simbrain.network.core.SparseWeightMatrix
 import org.simbrain.network.core.WeightMatrix
 import org.simbrain.network.gui.ImageBox
 import org.simbrain.network.gui.NetworkPanel
@@ -89,8 +90,11 @@ class WeightMatrixNode(networkPanel: NetworkPanel, val weightMatrix: Connector)
      * be scaled down to 1000x1000 using nearest neighbor interpolation.
      */
     private fun renderMatrixToImage() {
-        val weightMatrix = weightMatrix as WeightMatrix
-        val matrix = weightMatrix.weightMatrix
+        val (matrix, transposed) = when (val weightMatrix = weightMatrix) {
+            is WeightMatrix -> weightMatrix.weightMatrix to weightMatrix.transposeGraphics
+            is SparseWeightMatrix -> weightMatrix.toDenseMatrix() to weightMatrix.transposeGraphics
+            else -> return
+        }
         val screenScalingFactor = getScreenScalingFactor()
         networkPanelScalingFactor = networkPanel.scalingFactor
         val scale = networkPanel.scalingFactor * screenScalingFactor
@@ -98,7 +102,7 @@ class WeightMatrixNode(networkPanel: NetworkPanel, val weightMatrix: Connector)
         // Create the image data from the weight matrix using nearest neighbor interpolation
         val imageData = matrix.toScaledImageData(imageWidth, imageHeight, scale)
 
-        val img = imageData.toSimbrainColorImage().let { if (weightMatrix.transposeGraphics) it.transposed() else it }
+        val img = imageData.toSimbrainColorImage().let { if (transposed) it.transposed() else it }
         imageBox.image = img
     }
 
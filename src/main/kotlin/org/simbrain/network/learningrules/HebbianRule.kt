@@ -51,6 +51,12 @@ class HebbianRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData>() {
             val output = (connector.target as NeuronArray).activations
             // delta = rate * (input * output^T)
             wm.add(output.mt(input).mul(learningRate))
+        } else if (connector is SparseWeightMatrix) {
+            val input = connector.source.activationArray
+            val output = connector.target.activationArray
+            connector.forEachConnection { i, j, k ->
+                connector.values[k] += learningRate * input[j] * output[i]
+            }
         }
     }
 
@@ -12,9 +12,9 @@
  */
 package org.simbrain.network.learningrules
 
-import org.simbrain.network.core.Network
-import org.simbrain.network.core.Synapse
+import org.simbrain.network.core.*
 import org.simbrain.network.util.EmptyScalarData
+import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.util.stats.distributions.NormalDistribution
 import kotlin.math.abs
 import kotlin.math.exp
@@ -34,6 +34,12 @@ import kotlin.math.ln
  * allows for specialization of synapses, and fits very well with experimental
  * data concerning synaptic efficacy.
  *
+ *
+ * The synapse version changes [w_plus] and [w_minus] as it learns, so each
+ * synapse needs its own rule. The matrix version keeps those amplitudes for
+ * each weight in its [STDPMatrixData], starting from the values of the rule,
+ * and otherwise reproduces the synapse version weight by weight.
+ *
  * @author Zoë Tosi
  */
 class LogSTDPRule : STDPRule() {
@@ -88,6 +94,53 @@ class LogSTDPRule : STDPRule() {
 
     private val dist = NormalDistribution(0.0, noiseVar)
 
+    context(Network)
+    override fun apply(connector: Connector, data: STDPMatrixData) {
+        val pre = (connector.source as? NeuronArray)?.dataHolder as? SpikingMatrixData ?: return
+        val post = (connector.target as? NeuronArray)?.dataHolder as? SpikingMatrixData ?: return
+        if (connector is WeightMatrix) {
+            val wm = connector.weightMatrix
+            val cols = pre.size
+            data.amplitudesFor(post.size * cols, w_plus, w_minus)
+            for (i in 0 until post.size) {
+                for (j in 0 until cols) {
+                    val delta_t = pre.lastSpikeTimes[j] - post.lastSpikeTimes[i]
+                    wm[i, j] -= deltaW(wm[i, j], delta_t, data, i * cols + j)
+                }
+            }
+        } else if (connector is SparseWeightMatrix) {
+            val values = connector.values
+            data.amplitudesFor(values.size, w_plus, w_minus)
+            connector.forEachConnection { i, j, k ->
+                values[k] -= deltaW(values[k], pre.lastSpikeTimes[j] - post.lastSpikeTimes[i], data, k)
+            }
+        }
+    }
+
+    /**
+     * The weight change of the synapse version for weight [k] of a matrix,
+     * updating the amplitudes of that weight in [data].
+     */
+    context(Network)
+    private fun deltaW(strength: Double, delta_t: Double, data: STDPMatrixData, k: Int) = if (strength >= 0) {
+        val noise = 1 + dist.sampleDouble()
+        if (delta_t < 0) {
+            data.wPlus[k] = ltpAmplitude(data.wPlus[k], strength)
+            timeStep * learningRate * (data.wPlus[k] * exp(delta_t / tau_plus)) * (1 + noise)
+        } else if (delta_t > 0) {
+            data.wMinus[k] = ltdAmplitude(data.wMinus[k], strength)
+            timeStep * learningRate * (-data.wMinus[k] * exp(-delta_t / tau_minus)) * (1 + noise)
+        } else {
+            0.0
+        }
+    } else if (delta_t > 0) {
+        learningRate * 1.5 * exp(-delta_t / tau_plus)
+    } else if (delta_t < 0) {
+        learningRate * -1 * exp(delta_t / tau_minus)
+    } else {
+        0.0
+    }
+
     /**
      * Updates the synapse's strength using Log-STDP.
      */
@@ -135,7 +188,7 @@ class LogSTDPRule : STDPRule() {
      * @return
      */
     private fun calcW_plusTerm(s: Synapse): Double {
-        w_plus = w_plus * exp(-abs(s.strength) / (smallWtThreshold * ltpMod))
+        w_plus = ltpAmplitude(w_plus, s.strength)
         // if (s.getStrength() > 0) {
         // if (s.getStrength() >= s.getUpperBound()) {
         // w_plus = 0;
@@ -159,13 +212,7 @@ class LogSTDPRule : STDPRule() {
      * @return
      */
     private fun calcW_minusTerm(s: Synapse): Double {
-        val wt = abs(s.strength)
-        if (wt <= smallWtThreshold) {
-            w_minus = w_minus * wt / smallWtThreshold
-        } else {
-            val numerator = ln(1 + (logSaturation * ((wt / smallWtThreshold) - 1)))
-            w_minus = w_minus * (1 + (numerator / logSaturation))
-        }
+        w_minus = ltdAmplitude(w_minus, s.strength)
         // if (s.getStrength() < 0) {
         // if (s.getStrength() >= s.getUpperBound()) {
         // w_minus = 0;
@@ -185,4 +232,23 @@ class LogSTDPRule : STDPRule() {
         // }
         return w_minus
     }
+
+    /**
+     * The LTP amplitude [w_plus] becomes after potentiating a weight of [strength].
+     */
+    private fun ltpAmplitude(w_plus: Double, strength: Double) =
+        w_plus * exp(-abs(strength) / (smallWtThreshold * ltpMod))
+
+    /**
+     * The LTD amplitude [w_minus] becomes after depressing a weight of [strength].
+     */
+    private fun ltdAmplitude(w_minus: Double, strength: Double): Double {
+        val wt = abs(strength)
+        return if (wt <= smallWtThreshold) {
+            w_minus * wt / smallWtThreshold
+        } else {
+            val numerator = ln(1 + (logSaturation * ((wt / smallWtThreshold) - 1)))
+            w_minus * (1 + (numerator / logSaturation))
+        }
+    }
 }
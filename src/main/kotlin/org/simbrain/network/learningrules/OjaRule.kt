@@ -73,6 +73,12 @@ class OjaRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData>() {
             val hebbTerm = output.mt(input)
             val weightDecayTerm = wm.broadcastMultiply(input)
             wm.add(hebbTerm.sub(weightDecayTerm).mul(learningRate))
+        } else if (connector is SparseWeightMatrix) {
+            val input = connector.source.activationArray
+            val output = connector.target.activationArray
+            connector.forEachConnection { i, j, k ->
+                connector.values[k] += learningRate * (output[i] * input[j] - connector.values[k] * input[j])
+            }
         }
     }
 }
\ No newline at end of file
@@ -18,10 +18,10 @@
  */
 package org.simbrain.network.learningrules
 
-import org.simbrain.network.core.Network
-import org.simbrain.network.core.Synapse
-import org.simbrain.network.util.EmptyMatrixData
+import org.simbrain.network.core.*
 import org.simbrain.network.util.EmptyScalarData
+import org.simbrain.network.util.MatrixDataHolder
+import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.util.UserParameter
 
 /**
@@ -32,9 +32,16 @@ import org.simbrain.util.UserParameter
  *
  * Only works if source and target neurons are spiking neurons.
  *
+ *
+ * The traces only depend on the spikes of the source (r1, r2) or target (o1,
+ * o2) neuron, so the matrix version keeps one set per neuron in a
+ * [PfisterGerstnerMatrixData] rather than one per connection, and only changes
+ * the rows and columns of neurons that spiked. Trace decay rates are taken
+ * from [tauPlus], [tauX], [tauNeg] and [tauY].
+ *
  * @author Oliver J. Coleman
  */
-class PfisterGerstner2006Rule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData>(), Cloneable {
+class PfisterGerstner2006Rule : SynapseUpdateRule<EmptyScalarData, PfisterGerstnerMatrixData>(), Cloneable {
     @UserParameter(
         label = "Tau+",
         description = "Decay rate for r1 trace",
@@ -206,6 +213,68 @@ class PfisterGerstner2006Rule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixDa
         }
     }
 
+    override fun createMatrixData(rows: Int, cols: Int): PfisterGerstnerMatrixData {
+        return PfisterGerstnerMatrixData(rows, cols)
+    }
+
+    /**
+     * Same update as the synapse version, in the same order: weights are depressed using the updated o1 and
+     * previous r2 traces, then potentiated using the updated r1 and previous o2 traces.
+     */
+    context(Network)
+    override fun apply(connector: Connector, data: PfisterGerstnerMatrixData) {
+        val preSpikes = ((connector.source as? NeuronArray)?.dataHolder as? SpikingMatrixData)?.spikes ?: return
+        val postSpikes = ((connector.target as? NeuronArray)?.dataHolder as? SpikingMatrixData)?.spikes ?: return
+
+        updateTraces(data.r1, preSpikes, timeStep / tauPlus)
+        updateTraces(data.o1, postSpikes, timeStep / tauNeg)
+
+        // r2 and o2 have not been updated yet, so they hold the previous values
+        val r1 = data.r1
+        val r2 = data.r2
+        val o1 = data.o1
+        val o2 = data.o2
+        if (connector is WeightMatrix) {
+            val wm = connector.weightMatrix
+            for (j in preSpikes.indices) {
+                if (!preSpikes[j]) continue
+                val depression = a2N + a3N * r2[j]
+                for (i in o1.indices) {
+                    wm[i, j] = wm[i, j] - o1[i] * depression
+                }
+            }
+            for (i in postSpikes.indices) {
+                if (!postSpikes[i]) continue
+                val potentiation = a2P + a3P * o2[i]
+                for (j in r1.indices) {
+                    wm[i, j] = wm[i, j] + r1[j] * potentiation
+                }
+            }
+        } else if (connector is SparseWeightMatrix) {
+            val values = connector.values
+            connector.forEachConnection { i, j, k ->
+                if (preSpikes[j]) {
+                    values[k] -= o1[i] * (a2N + a3N * r2[j])
+                }
+                if (postSpikes[i]) {
+                    values[k] += r1[j] * (a2P + a3P * o2[i])
+                }
+            }
+        }
+
+        updateTraces(r2, preSpikes, timeStep / tauX)
+        updateTraces(o2, postSpikes, timeStep / tauY)
+    }
+
+    /**
+     * Reset the traces of neurons that spiked to 1 and decay the rest.
+     */
+    private fun updateTraces(traces: DoubleArray, spikes: BooleanArray, decay: Double) {
+        for (i in traces.indices) {
+            traces[i] = if (spikes[i]) 1.0 else traces[i] - traces[i] * decay
+        }
+    }
+
     var tauPlusDecay: Double
         /**
          * @return Decay rate for r1 trace.
@@ -254,3 +323,36 @@ class PfisterGerstner2006Rule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixDa
             this.tauYMult = 1 / tauY
         }
 }
+
+/**
+ * Spike traces for the matrix version of [PfisterGerstner2006Rule]: r1 and r2 for each source neuron, o1 and o2 for
+ * each target neuron.
+ */
+class PfisterGerstnerMatrixData(val rows: Int, val cols: Int) : MatrixDataHolder {
+
+    @UserParameter(label = "r1", description = "Fast pre-synaptic trace")
+    var r1 = DoubleArray(cols)
+
+    @UserParameter(label = "r2", description = "Slow pre-synaptic trace")
+    var r2 = DoubleArray(cols)
+
+    @UserParameter(label = "o1", description = "Fast post-synaptic trace")
+    var o1 = DoubleArray(rows)
+
+    @UserParameter(label = "o2", description = "Slow post-synaptic trace")
+    var o2 = DoubleArray(rows)
+
+    override fun copy() = PfisterGerstnerMatrixData(rows, cols).also {
+        r1.copyInto(it.r1)
+        r2.copyInto(it.r2)
+        o1.copyInto(it.o1)
+        o2.copyInto(it.o2)
+    }
+
+    override fun clear() {
+        r1.fill(0.0)
+        r2.fill(0.0)
+        o1.fill(0.0)
+        o2.fill(0.0)
+    }
+}
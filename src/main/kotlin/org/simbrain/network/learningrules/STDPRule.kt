@@ -18,10 +18,10 @@
  */
 package org.simbrain.network.learningrules
 
-import org.simbrain.network.core.Network
-import org.simbrain.network.core.Synapse
-import org.simbrain.network.util.EmptyMatrixData
+import org.simbrain.network.core.*
 import org.simbrain.network.util.EmptyScalarData
+import org.simbrain.network.util.MatrixDataHolder
+import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.util.UserParameter
 import kotlin.math.exp
 import kotlin.math.sign
@@ -36,8 +36,17 @@ import kotlin.math.sign
  * Drew on: Jean-Philippe Thivierge and Paul Cisek (2008), Journal of
  * Neuroscience. Nonperiodic Synchronization in Heterogeneous Networks of
  * Spiking Neurons. Also drew on the Scholarpedia article.
+ *
+ *
+ * The matrix version, for spiking [NeuronArray]s connected by a [WeightMatrix]
+ * or [SparseWeightMatrix], reproduces the synapse version weight by weight,
+ * using the last spike times of the arrays. The synapse version keeps its last
+ * weight change in [delta_w] and applies it at every update, recomputing it
+ * only when the source or target neuron spikes; the matrix version keeps one
+ * such change per weight in its [STDPMatrixData]. Each synapse using the synapse
+ * version therefore needs its own rule.
  */
-open class STDPRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData> {
+open class STDPRule : SynapseUpdateRule<EmptyScalarData, STDPMatrixData> {
     // TODO: check description
     /**
      * Time constant for LTD.
@@ -125,6 +134,7 @@ open class STDPRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData> {
         duplicateSynapse.w_minus = w_minus
         duplicateSynapse.w_plus = w_plus
         duplicateSynapse.learningRate = learningRate
+        duplicateSynapse.isContinuous = isContinuous
         duplicateSynapse.isHebbian = isHebbian
         return duplicateSynapse
     }
@@ -133,6 +143,65 @@ open class STDPRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData> {
 
     open var delta_w: Double = 0.0
 
+    override fun createMatrixData(rows: Int, cols: Int): STDPMatrixData {
+        return STDPMatrixData(rows, cols)
+    }
+
+    context(Network)
+    override fun apply(connector: Connector, data: STDPMatrixData) {
+        val pre = (connector.source as? NeuronArray)?.dataHolder as? SpikingMatrixData ?: return
+        val post = (connector.target as? NeuronArray)?.dataHolder as? SpikingMatrixData ?: return
+        val direction = if (isHebbian) 1 else -1
+        if (connector is WeightMatrix) {
+            val wm = connector.weightMatrix
+            val cols = pre.size
+            val deltas = data.deltaWFor(post.size * cols)
+            for (i in 0 until post.size) {
+                for (j in 0 until cols) {
+                    val k = i * cols + j
+                    if (post.spikes[i] || pre.spikes[j]) {
+                        deltas[k] = deltaW(deltas[k], (pre.lastSpikeTimes[j] - post.lastSpikeTimes[i]) * direction)
+                    }
+                    if (deltas[k] != 0.0) {
+                        wm[i, j] = changeStrength(wm[i, j], deltas[k] * timeStep)
+                    }
+                }
+            }
+        } else if (connector is SparseWeightMatrix) {
+            val values = connector.values
+            val deltas = data.deltaWFor(values.size)
+            connector.forEachConnection { i, j, k ->
+                if (post.spikes[i] || pre.spikes[j]) {
+                    deltas[k] = deltaW(deltas[k], (pre.lastSpikeTimes[j] - post.lastSpikeTimes[i]) * direction)
+                }
+                if (deltas[k] != 0.0) {
+                    values[k] = changeStrength(values[k], deltas[k] * timeStep)
+                }
+            }
+        }
+    }
+
+    /**
+     * The weight change of the synapse version for a spike time difference of
+     * [delta_t], or [current] if there is no difference.
+     */
+    private fun deltaW(current: Double, delta_t: Double) = if (delta_t < 0) {
+        w_plus * exp(delta_t / tau_plus) * learningRate
+    } else if (delta_t > 0) {
+        -w_minus * exp(-delta_t / tau_minus) * learningRate
+    } else {
+        current
+    }
+
+    /**
+     * Apply a change to a weight as the synapse version does.
+     */
+    private fun changeStrength(strength: Double, change: Double) = if (isContinuous && strength < 0) {
+        strength - change
+    } else {
+        strength + change
+    }
+
     context(Network)
     override fun apply(synapse: Synapse, data: EmptyScalarData) {
         val strength = synapse.strength
@@ -164,3 +233,61 @@ open class STDPRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData> {
         }
     }
 }
+
+/**
+ * State for the matrix version of [STDPRule], with one entry per weight in the
+ * order of the weights of the connector.
+ */
+class STDPMatrixData(val rows: Int, val cols: Int) : MatrixDataHolder {
+
+    /**
+     * The last weight change of each weight, as held by [STDPRule.delta_w] in
+     * the synapse version.
+     */
+    var deltaW = DoubleArray(0)
+
+    /**
+     * LTP amplitude of each weight, as held by [LogSTDPRule.w_plus] in the
+     * synapse version. Empty until first used.
+     */
+    var wPlus = DoubleArray(0)
+
+    /**
+     * LTD amplitude of each weight, as held by [LogSTDPRule.w_minus] in the
+     * synapse version. Empty until first used.
+     */
+    var wMinus = DoubleArray(0)
+
+    /**
+     * [deltaW], allocated for [size] weights if needed.
+     */
+    fun deltaWFor(size: Int): DoubleArray {
+        if (deltaW.size != size) {
+            deltaW = DoubleArray(size)
+        }
+        return deltaW
+    }
+
+    /**
+     * Allocate [wPlus] and [wMinus] for [size] weights if needed, starting
+     * from the amplitudes of the rule.
+     */
+    fun amplitudesFor(size: Int, initialWPlus: Double, initialWMinus: Double) {
+        if (wPlus.size != size || wMinus.size != size) {
+            wPlus = DoubleArray(size) { initialWPlus }
+            wMinus = DoubleArray(size) { initialWMinus }
+        }
+    }
+
+    override fun copy() = STDPMatrixData(rows, cols).also {
+        it.deltaW = deltaW.copyOf()
+        it.wPlus = wPlus.copyOf()
+        it.wMinus = wMinus.copyOf()
+    }
+
+    override fun clear() {
+        deltaW.fill(0.0)
+        wPlus = DoubleArray(0)
+        wMinus = DoubleArray(0)
+    }
+}
@@ -18,15 +18,19 @@
  */
 package org.simbrain.network.learningrules
 
-import org.simbrain.network.core.Network
-import org.simbrain.network.core.SpikingNeuronUpdateRule
-import org.simbrain.network.core.Synapse
+import org.simbrain.network.core.*
+import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.network.util.EmptyMatrixData
 import org.simbrain.network.util.EmptyScalarData
 import org.simbrain.util.UserParameter
 
 /**
  * **ShortTermPlasticitySynapse**.
+ *
+ * In the matrix version each column of weights depends only on its source neuron, so whether the short term
+ * dynamics are activated is determined once per source neuron. Since weights relax toward baseline whenever their
+ * source is not active, every weight is updated each iteration. Weight matrices have no bounds, so the default
+ * synapse bounds are used.
  */
 class ShortTermPlasticityRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData>() {
     /**
@@ -92,6 +96,46 @@ class ShortTermPlasticityRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixDa
         return stp
     }
 
+    context(Network)
+    override fun apply(connector: Connector, data: EmptyMatrixData) {
+        val source = connector.source
+        val spikes = if (source is NeuronArray && source.updateRule.isSpikingRule) {
+            (source.dataHolder as? SpikingMatrixData)?.spikes
+        } else {
+            null
+        }
+        val activations = source.activationArray
+        val isActive = BooleanArray(activations.size) { j -> spikes?.get(j) ?: (activations[j] > firingThreshold) }
+        if (connector is WeightMatrix) {
+            val wm = connector.weightMatrix
+            for (j in 0 until wm.ncol()) {
+                for (i in 0 until wm.nrow()) {
+                    wm[i, j] = shortTermPlasticity(isActive[j], wm[i, j])
+                }
+            }
+        } else if (connector is SparseWeightMatrix) {
+            val values = connector.values
+            connector.forEachConnection { _, j, k ->
+                values[k] = shortTermPlasticity(isActive[j], values[k])
+            }
+        }
+    }
+
+    private fun shortTermPlasticity(
+        active: Boolean,
+        strength: Double,
+        lowerBound: Double = Synapse.DEFAULT_LOWER_BOUND,
+        upperBound: Double = Synapse.DEFAULT_UPPER_BOUND
+    ) = if (active) {
+        if (plasticityType == STD) {
+            strength - bumpRate * (strength - lowerBound)
+        } else {
+            strength + bumpRate * (upperBound - strength)
+        }
+    } else {
+        strength - decayRate * (strength - baseLineStrength)
+    }
+
     context(Network)
     override fun apply(synapse: Synapse, data: EmptyScalarData) {
         // Determine whether to activate short term dynamics
@@ -109,17 +153,7 @@ class ShortTermPlasticityRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixDa
                 false
             }
         }
-        var strength = synapse.strength
-        if (activated) {
-            if (plasticityType == STD) {
-                strength -= (bumpRate * (strength - synapse.lowerBound))
-            } else {
-                strength += (bumpRate * (synapse.upperBound - strength))
-            }
-        } else {
-            strength -= (decayRate * (strength - baseLineStrength))
-        }
-        synapse.strength = strength
+        synapse.strength = shortTermPlasticity(activated, synapse.strength, synapse.lowerBound, synapse.upperBound)
     }
 
     companion object {
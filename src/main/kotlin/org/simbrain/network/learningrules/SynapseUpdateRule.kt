@@ -70,9 +70,12 @@ abstract class SynapseUpdateRule<out DS : ScalarDataHolder, out DM : MatrixDataH
     open fun apply(connector: Connector, dataHolder: @UnsafeVariance DM) {}
 
     /**
-     * Override to return an appropriate data holder for a given rule.
+     * Override to return an appropriate data holder for the matrix version of a rule, e.g. one holding spike traces.
+     *
+     * @param rows number of target units
+     * @param cols number of source units
      */
-    fun createMatrixData(size: Int): DM {
+    open fun createMatrixData(rows: Int, cols: Int): DM {
         return DEFAULT_MATRIX_DATA as DM
     }
 
@@ -69,14 +69,25 @@ class JumpAndDecay : SpikeResponder() {
 
     context(Network)
     override fun apply(connector: Connector, responderData: MatrixDataHolder) {
-        val wm = connector.let { if (it is WeightMatrix) it else return }
         val na = connector.source.let { if (it is NeuronArray) it else return }
         val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
         if (na.updateRule.isSpikingRule) {
+            if (connector is SparseWeightMatrix) {
+                connector.forEachConnection { _, j, k ->
+                    connector.psrValues[k] = jumpAndDecay(
+                        spikeData.spikes[j],
+                        connector.psrValues[k],
+                        connector.values[k],
+                        timeStep
+                    )
+                }
+                return
+            }
+            val wm = connector.let { if (it is WeightMatrix) it else return }
             for (i in 0 until wm.weightMatrix.nrow()) {
                 for (j in 0 until wm.weightMatrix.ncol()) {
                     val psr = jumpAndDecay(
-                            spikeData.spikes[j],
+                            wm.sourceSpiked(i, j, spikeData),
                             wm.psrMatrix[i, j],
                             wm.weightMatrix[i, j],
                             timeStep
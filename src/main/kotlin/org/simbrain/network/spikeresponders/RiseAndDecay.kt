@@ -51,15 +51,29 @@ class RiseAndDecay : SpikeResponder() {
 
     context(Network)
     override fun apply(connector: Connector, responderData: MatrixDataHolder) {
-        val wm = connector as WeightMatrix
         val na = connector.source as NeuronArray
         val responseData = responderData as RiseAndDecayMatrixData
         val spikeData = na.dataHolder as SpikingMatrixData
         if (na.updateRule.isSpikingRule) {
+            if (connector is SparseWeightMatrix) {
+                connector.forEachConnection { _, j, k ->
+                    val (psr, recovery) = riseAndDecay(
+                        spikeData.spikes[j],
+                        connector.psrValues[k],
+                        responseData.recoveryMatrix[k, 0],
+                        connector.values[k],
+                        timeStep
+                    )
+                    connector.psrValues[k] = psr
+                    responseData.recoveryMatrix.set(k, 0, recovery)
+                }
+                return
+            }
+            val wm = connector as WeightMatrix
             for (i in 0 until wm.weightMatrix.nrow()) {
                 for (j in 0 until wm.weightMatrix.ncol()) {
                     val (psr, recovery) = riseAndDecay(
-                        spikeData.spikes[j],
+                        wm.sourceSpiked(i, j, spikeData),
                         wm.psrMatrix[i, j],
                         responseData.recoveryMatrix[i,j],
                         wm.weightMatrix[i, j],
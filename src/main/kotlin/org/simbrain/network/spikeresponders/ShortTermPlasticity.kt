@@ -127,22 +127,36 @@ class ShortTermPlasticity : SpikeResponder() {
 
     context(Network)
     override fun apply(connector: Connector, responderData: MatrixDataHolder) {
-        val wm = connector as WeightMatrix
         val na = connector.source as NeuronArray
         val stpData = responderData as STPMatrixData
         val spikeData = na.dataHolder as SpikingMatrixData
         if (na.updateRule.isSpikingRule) {
+            if (connector is SparseWeightMatrix) {
+                connector.forEachConnection { _, j, k ->
+                    val (u, R) = shortTermPlasticity(spikeData.lastSpikeTimes[j], stpData.u[k, 0], stpData.R[k, 0])
+                    stpData.u.set(k, 0, u)
+                    stpData.R.set(k, 0, R)
+                    val jumpHeight = R * connector.values[k] * u
+                    val spiked = spikeData.spikes[j] && probabilisticSpikeCheck()
+                    connector.psrValues[k] = when (val sr = spikeResponderLocal) {
+                        is JumpAndDecay -> sr.jumpAndDecay(spiked, connector.psrValues[k], jumpHeight, timeStep)
+                        else -> throw IllegalStateException("STP can only be used with JumpAndDecay")
+                    }
+                }
+                return
+            }
+            val wm = connector as WeightMatrix
             for (i in 0 until wm.weightMatrix.nrow()) {
                 for (j in 0 until wm.weightMatrix.ncol()) {
                     val (u, R) = shortTermPlasticity(
-                        spikeData.lastSpikeTimes[j],
+                        wm.sourceLastSpikeTime(i, j, spikeData),
                         stpData.u[i,j],
                         stpData.R[i,j],
                     )
                     stpData.u.set(i, j, u)
                     stpData.R.set(i, j, R)
                     val jumpHeight = R * wm.weightMatrix[i, j] * u
-                    val spiked = spikeData.spikes[j] && probabilisticSpikeCheck()
+                    val spiked = wm.sourceSpiked(i, j, spikeData) && probabilisticSpikeCheck()
                     wm.psrMatrix.set(
                         i, j, when (val sr = spikeResponderLocal) {
                             is JumpAndDecay -> sr.jumpAndDecay(spiked, wm.psrMatrix[i, j], jumpHeight, timeStep)
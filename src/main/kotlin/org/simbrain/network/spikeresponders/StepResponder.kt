@@ -39,11 +39,23 @@ class StepResponder(
 
     context(Network)
     override fun apply(connector: Connector, responderData: MatrixDataHolder) {
-        val weightMatrix = connector as WeightMatrix
-        val lastSpikeTimes = ((weightMatrix.source as NeuronArray).dataHolder as SpikingMatrixData).lastSpikeTimes
+        val spikeData = (connector.source as NeuronArray).dataHolder as SpikingMatrixData
+        val lastSpikeTimes = spikeData.lastSpikeTimes
+        if (connector is SparseWeightMatrix) {
+            connector.forEachConnection { _, j, k ->
+                connector.psrValues[k] = if (lastSpikeTimes[j] + responseDuration * timeStep >= time && probabilisticSpikeCheck()) {
+                    connector.values[k]
+                } else {
+                    0.0
+                }
+            }
+            return
+        }
+        connector as WeightMatrix
         for (i in 0 until connector.psrMatrix.ncol()) {
             for (j in 0 until connector.psrMatrix.nrow()) {
-                if (lastSpikeTimes[i] + responseDuration * timeStep >= time && probabilisticSpikeCheck()) {
+                if (connector.sourceLastSpikeTime(j, i, spikeData) + responseDuration * timeStep >= time &&
+                    probabilisticSpikeCheck()) {
                     connector.psrMatrix[j, i] = connector.weightMatrix[j, i]
                 } else {
                     connector.psrMatrix[j, i] = 0.0
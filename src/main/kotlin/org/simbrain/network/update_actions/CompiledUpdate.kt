@@ -0,0 +1,71 @@
+package org.simbrain.network.update_actions
+
+import org.simbrain.network.core.CompiledNetwork
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.NetworkModel
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.updater.UpdateAction
+
+/**
+ * Buffered update in which free neurons and synapses are run from a [CompiledNetwork], i.e. from primitive arrays
+ * rather than the object graph. Other models are updated as in [BufferedUpdate].
+ *
+ * The compiled snapshot is rebuilt whenever models are added to or removed from the network, or when it reports
+ * itself stale. It is not serialized, and is released by [org.simbrain.network.core.NetworkUpdateManager] whenever
+ * the update actions of the network change.
+ */
+class CompiledUpdate(private val network: Network) : UpdateAction(
+    "Compiled buffered update",
+    "Buffered update with free neurons and synapses compiled to arrays"
+) {
+
+    /**
+     * The model list the current snapshot was built from. The network replaces this list whenever models are
+     * added or removed.
+     */
+    @Transient
+    private var compiledModels: List<NetworkModel>? = null
+
+    @Transient
+    private var compiled: CompiledNetwork? = null
+
+    /**
+     * Models other than free neurons and synapses.
+     */
+    @Transient
+    private var otherModels: List<NetworkModel> = listOf()
+
+    override suspend fun run() {
+        val compiled = currentSnapshot()
+        with(network) {
+            otherModels.forEach { it.accumulateInputs() }
+            compiled.accumulateInputs()
+            otherModels.forEach { it.update() }
+            compiled.update()
+            compiled.updateSynapses()
+        }
+    }
+
+    private fun currentSnapshot(): CompiledNetwork {
+        val models = network.modelsInReconstructionOrder
+        val current = compiled
+        if (current != null && models === compiledModels && !current.isStale) {
+            return current
+        }
+        current?.release()
+        otherModels = models.filter { it !is Neuron && it !is Synapse }
+        compiledModels = models
+        return CompiledNetwork(network).also { compiled = it }
+    }
+
+    /**
+     * Write the snapshot back to the network and detach its models from it. A new snapshot is built the next time
+     * the action runs.
+     */
+    fun release() {
+        compiled?.release()
+        compiled = null
+        compiledModels = null
+    }
+}
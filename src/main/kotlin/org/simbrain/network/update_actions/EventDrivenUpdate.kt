@@ -0,0 +1,81 @@
+package org.simbrain.network.update_actions
+
+import org.simbrain.network.core.EventDrivenNetwork
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.NetworkModel
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.updater.UpdateAction
+
+/**
+ * Buffered update in which spikes between free neurons are delivered through an [EventDrivenNetwork], so that
+ * synapses are only processed when their source neuron fires. Other models are updated as in [BufferedUpdate].
+ *
+ * The snapshot is rebuilt whenever models are added to or removed from the network, or when it reports itself stale.
+ * Spikes in flight are carried over to the rebuilt snapshot. The snapshot is released by
+ * [org.simbrain.network.core.NetworkUpdateManager] whenever the update actions of the network change.
+ */
+class EventDrivenUpdate(private val network: Network) : UpdateAction(
+    "Event driven update",
+    "Buffered update that only propagates spikes of neurons that fired"
+) {
+
+    /**
+     * The model list the current snapshot was built from. The network replaces this list whenever models are
+     * added or removed.
+     */
+    @Transient
+    private var snapshotModels: List<NetworkModel>? = null
+
+    @Transient
+    private var snapshot: EventDrivenNetwork? = null
+
+    /**
+     * A released snapshot whose spikes in flight are carried over to the next one.
+     */
+    @Transient
+    private var released: EventDrivenNetwork? = null
+
+    /**
+     * Models other than free neurons and synapses.
+     */
+    @Transient
+    private var otherModels: List<NetworkModel> = listOf()
+
+    override suspend fun run() {
+        val snapshot = currentSnapshot()
+        with(network) {
+            otherModels.forEach { it.accumulateInputs() }
+            snapshot.accumulateInputs()
+            otherModels.forEach { it.update() }
+            snapshot.update()
+            snapshot.updateSynapses()
+        }
+    }
+
+    private fun currentSnapshot(): EventDrivenNetwork {
+        val models = network.modelsInReconstructionOrder
+        val current = snapshot
+        if (current != null && models === snapshotModels && !current.isStale) {
+            return current
+        }
+        current?.release()
+        otherModels = models.filter { it !is Neuron && it !is Synapse }
+        snapshotModels = models
+        return EventDrivenNetwork(network, current ?: released).also {
+            snapshot = it
+            released = null
+        }
+    }
+
+    /**
+     * Write the snapshot's responses back to the synapses and detach them from it. A new snapshot is built the next
+     * time the action runs, and carries over the spikes in flight if [keepSpikes] is true. Otherwise they are dropped.
+     */
+    fun release(keepSpikes: Boolean = false) {
+        snapshot?.release()
+        released = if (keepSpikes) snapshot ?: released else null
+        snapshot = null
+        snapshotModels = null
+    }
+}
@@ -0,0 +1,144 @@
+package org.simbrain.network.update_actions
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.simbrain.network.core.*
+import org.simbrain.network.neurongroups.NeuronGroup
+import org.simbrain.network.subnetworks.Subnetwork
+import org.simbrain.workspace.updater.UpdateAction
+import kotlin.random.Random
+
+/**
+ * Multi-core version of [BufferedUpdate]. Top-level network models are split into work-balanced chunks that are run
+ * concurrently on the default (work-stealing) dispatcher, with a barrier between the accumulate and update phases.
+ * Since no model writes state that another model reads within a phase, the result does not depend on how the chunks
+ * are scheduled.
+ *
+ * Models that read the activations of other models while updating (synapses, synapse groups and connectors) are
+ * updated after a second barrier, once all neurons and layers have been updated. Neuron collections, which add inputs
+ * to free neurons they share with the rest of the network, are run serially after each phase.
+ *
+ * Each chunk is given its own generator, seeded from [Network.random], which replaces [Network.random] while that
+ * chunk runs. Results are therefore reproducible for a given [Network.randomSeed] and [numChunks]. [numChunks]
+ * defaults to [DEFAULT_NUM_CHUNKS] rather than the number of cores, so that a network gives the same results on every
+ * machine. The number of cores only affects how the chunks are scheduled.
+ */
+class ParallelBufferedUpdate @JvmOverloads constructor(
+    private val network: Network,
+    val numChunks: Int = DEFAULT_NUM_CHUNKS
+) : UpdateAction(
+    "Parallel buffered update",
+    "Buffered update of all top-level network models, split across multiple cores"
+) {
+
+    /**
+     * The model list the current partition was built from. The network replaces this list whenever models are
+     * added or removed, so identity comparison is enough to detect that the partition is stale.
+     */
+    private var partitionedModels: List<NetworkModel>? = null
+
+    private var partition = UpdatePartition(listOf(), listOf(), listOf())
+
+    override suspend fun run() {
+        val models = network.modelsInReconstructionOrder
+        if (models !== partitionedModels) {
+            partition = partitionModels(models, numChunks)
+            partitionedModels = models
+        }
+        with(network) {
+            runPhase(partition.nodeChunks + partition.edgeChunks) { it.accumulateInputs() }
+            partition.sharedModels.forEach { it.accumulateInputs() }
+            runPhase(partition.nodeChunks) { it.update() }
+            runPhase(partition.edgeChunks) { it.update() }
+            partition.sharedModels.forEach { it.update() }
+        }
+    }
+
+    /**
+     * Run one phase over all chunks and wait for all of them to finish.
+     */
+    private suspend fun runPhase(chunks: List<List<NetworkModel>>, action: (NetworkModel) -> Unit) {
+        if (chunks.isEmpty()) return
+        // Seeds are drawn serially so that the main generator advances the same way on every run
+        val seeds = LongArray(chunks.size) { network.random.nextLong() }
+        coroutineScope {
+            chunks.mapIndexed { i, chunk ->
+                async(Dispatchers.Default) {
+                    network.withThreadRandom(Random(seeds[i])) {
+                        chunk.forEach(action)
+                    }
+                }
+            }.awaitAll()
+        }
+    }
+
+    companion object {
+        /**
+         * Enough chunks to keep the cores of most machines busy, with some slack for work stealing.
+         */
+        const val DEFAULT_NUM_CHUNKS = 32
+    }
+}
+
+/**
+ * Top-level models of a network split up for [ParallelBufferedUpdate].
+ */
+class UpdatePartition(
+    /**
+     * Neurons, groups, arrays and subnetworks. These only write their own state.
+     */
+    val nodeChunks: List<List<NetworkModel>>,
+
+    /**
+     * Synapses, synapse groups and connectors, which read node state when they update.
+     */
+    val edgeChunks: List<List<NetworkModel>>,
+
+    /**
+     * Models that write state owned by other top-level models and so must be run serially.
+     */
+    val sharedModels: List<NetworkModel>
+)
+
+/**
+ * Split [models] into node chunks, edge chunks and shared models, balancing the estimated work of each chunk.
+ */
+fun partitionModels(models: List<NetworkModel>, numChunks: Int): UpdatePartition {
+    val (shared, parallel) = models.partition { it is NeuronCollection }
+    val (edges, nodes) = parallel.partition { it is Synapse || it is SynapseGroup || it is Connector }
+    return UpdatePartition(balancedChunks(nodes, numChunks), balancedChunks(edges, numChunks), shared)
+}
+
+/**
+ * Greedily assign models, heaviest first, to whichever of [numChunks] chunks currently has the least work. Ties are
+ * broken by id so that the same network is always split the same way.
+ */
+fun balancedChunks(models: List<NetworkModel>, numChunks: Int): List<List<NetworkModel>> {
+    val chunks = List(numChunks.coerceAtLeast(1)) { mutableListOf<NetworkModel>() }
+    val loads = LongArray(chunks.size)
+    models
+        .map { it to updateCost(it) }
+        .sortedWith(compareByDescending<Pair<NetworkModel, Long>> { it.second }.thenBy { it.first.id })
+        .forEach { (model, cost) ->
+            val lightest = loads.indices.minBy { loads[it] }
+            chunks[lightest].add(model)
+            loads[lightest] += cost
+        }
+    return chunks.filter { it.isNotEmpty() }
+}
+
+/**
+ * Rough estimate of the work needed to accumulate inputs for and update a model, in units of multiply-adds.
+ */
+fun updateCost(model: NetworkModel): Long = when (model) {
+    is Neuron -> 1L + model.fanIn.size
+    is NeuronGroup -> model.neuronList.sumOf { updateCost(it) }
+    is Layer -> model.size.toLong() + model.incomingConnectors.sumOf { updateCost(it) }
+    is SparseWeightMatrix -> model.numConnections.toLong()
+    is Connector -> model.source.size.toLong() * model.target.size
+    is SynapseGroup -> model.synapses.size.toLong()
+    is Subnetwork -> model.modelList.all.sumOf { updateCost(it) }
+    else -> 1L
+}
@@ -269,21 +269,24 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
     context(Network)
     override fun apply(layer: Layer, dataHolder: AdexMatrixData) {
         if (layer is NeuronArray) {
+            // Computed once per update rather than once per neuron
+            val excitInputs = layer.excitatoryInputs
+            val inhibInputs = layer.inhibitoryInputs
+            val activations = layer.activations
             for (i in 0 until layer.size) {
-                val excitInputs = layer.excitatoryInputs
-                val inhibInputs = layer.inhibitoryInputs
-                val (spiked, v, w) = adExRule(
-                    layer.activations.get(i, 0),
+                adExRule(
+                    activations[i, 0],
                     dataHolder.w[i],
                     excitInputs[i],
                     inhibInputs[i],
                     dataHolder.lastSpikeTimes[i],
                     time,
                     timeStep
-                )
-                dataHolder.setHasSpiked(i, spiked)
-                layer.activations.set(i, 0, v)
-                dataHolder.w[i] = w
+                ) { spiked, v, w ->
+                    dataHolder.setHasSpiked(i, spiked)
+                    activations[i, 0] = v
+                    dataHolder.w[i] = w
+                }
             }
         }
     }
@@ -294,25 +297,27 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
 
     context(Network)
     override fun apply(neuron: Neuron, data: AdexData) {
-        val (spiked, v, w) = adExRule(
+        adExRule(
             neuron.activation, data.w, neuron.excitatoryInputs, neuron.inhibitoryInputs,
             neuron.lastSpikeTime, time, timeStep
-        )
-        neuron.isSpike = spiked
-        neuron.activation = v
-        data.w = w
+        ) { spiked, v, w ->
+            neuron.isSpike = spiked
+            neuron.activation = v
+            data.w = w
+        }
 
     }
 
-    private fun adExRule(
+    private inline fun adExRule(
         initV: Double,
         initW: Double,
         excIn: Double,
         inhIn: Double,
         lastSpikeTime: Double,
         t: Double,
-        dt: Double
-    ): Triple<Boolean, Double, Double> {
+        dt: Double,
+        result: (spiked: Boolean, v: Double, w: Double) -> Unit
+    ) {
 
         var v_mem = initV
         var w = initW
@@ -361,7 +366,7 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
         }
         v_mem = clip(v_mem, -1000.0, 1000.0)
 
-        return Triple(isSpike, v_mem, w)
+        result(isSpike, v_mem, w)
 
     }
 
@@ -113,35 +113,36 @@ class FitzhughNagumo : SpikingNeuronUpdateRule<FitzHughData, FitzHughMatrixData>
 
     context(Network)
     override fun apply(neuron: Neuron, data: FitzHughData) {
-        val (spiked, v, w) = fitzhughNagumoRule(neuron.activation, data.w, neuron.input, timeStep)
-        neuron.isSpike = spiked
-        neuron.activation = v
-        data.w = w
+        fitzhughNagumoRule(neuron.activation, data.w, neuron.input, timeStep) { spiked, v, w ->
+            neuron.isSpike = spiked
+            neuron.activation = v
+            data.w = w
+        }
     }
 
     context(Network)
     override fun apply(layer: Layer, dataHolder: FitzHughMatrixData) {
         if (layer is NeuronArray) {
+            val activations = layer.activations
+            val inputs = layer.inputs
+            val recovery = dataHolder.w
             for (i in 0 until layer.size) {
-                val (spiked, v, w) = fitzhughNagumoRule(
-                    layer.activations.get(i, 0),
-                    dataHolder.w[i],
-                    layer.inputs.get(i, 0),
-                    timeStep
-                )
-                dataHolder.setHasSpiked(i, spiked)
-                layer.activations.set(i, 0, v)
-                dataHolder.w[i] = w
+                fitzhughNagumoRule(activations[i, 0], recovery[i], inputs[i, 0], timeStep) { spiked, v, w ->
+                    dataHolder.setHasSpiked(i, spiked)
+                    activations[i, 0] = v
+                    recovery[i] = w
+                }
             }
         }
     }
 
-    private fun fitzhughNagumoRule(
+    private inline fun fitzhughNagumoRule(
         initV: Double,
         initW: Double,
         externalInput: Double,
-        timeStep: Double
-    ): Triple<Boolean, Double, Double> {
+        timeStep: Double,
+        result: (spiked: Boolean, v: Double, w: Double) -> Unit
+    ) {
         var inputs = externalInput
         var v = initV
         var w = initW
@@ -154,11 +155,7 @@ class FitzhughNagumo : SpikingNeuronUpdateRule<FitzHughData, FitzHughMatrixData>
 
         v = clip(v, -1000.0, 1000.0)
 
-        if (v >= threshold) {
-            return Triple(true, v, w)
-        } else {
-            return Triple(false, v, w)
-        }
+        result(v >= threshold, v, w)
     }
 
     override fun createScalarData(): FitzHughData {
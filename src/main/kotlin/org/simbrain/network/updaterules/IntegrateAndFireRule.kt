@@ -136,24 +136,29 @@ open class IntegrateAndFireRule : SpikingNeuronUpdateRule<SpikingScalarData, Spi
     context(Network)
     override fun apply(layer: Layer, dataHolder: SpikingMatrixData) {
         if (layer is NeuronArray) {
+            val activations = layer.activations
+            val inputs = layer.inputs
             for (i in 0 until layer.size) {
-                val(spiked, V) = intFireRule(
+                intFireRule(
                     time,
                     dataHolder.lastSpikeTimes[i],
                     timeStep,
-                    layer.inputs.get(i, 0),
-                    layer.activations.get(i, 0))
-                dataHolder.setHasSpiked(i, spiked)
-                layer.activations.set(i, 0, V)
+                    inputs[i, 0],
+                    activations[i, 0]
+                ) { spiked, v ->
+                    dataHolder.setHasSpiked(i, spiked)
+                    activations[i, 0] = v
+                }
             }
         }
     }
 
     context(Network)
     override fun apply(neuron: Neuron, data: SpikingScalarData) {
-        val (spiked, v) = intFireRule(time, neuron.lastSpikeTime, timeStep, neuron.input, neuron.activation)
-        neuron.isSpike = spiked
-        neuron.activation = v
+        intFireRule(time, neuron.lastSpikeTime, timeStep, neuron.input, neuron.activation) { spiked, v ->
+            neuron.isSpike = spiked
+            neuron.activation = v
+        }
     }
 
     /*
@@ -164,20 +169,21 @@ open class IntegrateAndFireRule : SpikingNeuronUpdateRule<SpikingScalarData, Spi
     * Isyn: synaptic input current Ibg: background input current tau: time
     * constant Vreset: reset potential theta: threshold
     */
-    fun intFireRule(t: Double,
-                    lastSpikeTime: Double,
-                    timeStep: Double,
-                    input: Double,
-                    memPotential: Double): Pair<Boolean, Double> {
+    private inline fun intFireRule(
+        t: Double,
+        lastSpikeTime: Double,
+        timeStep: Double,
+        input: Double,
+        memPotential: Double,
+        result: (spiked: Boolean, memPotential: Double) -> Unit
+    ) {
 
         // Incoming current is 0 during the refractory period, otherwise it's
         // equal to input and background current
         var synCurrent: Double =
             if (t < lastSpikeTime + refractoryPeriod) {
-                // println("Refractory")
                 0.0
             } else {
-                // println("syncurrent = ${neuron.input + backgroundCurrent}")
                 input + backgroundCurrent
             }
 
@@ -188,11 +194,10 @@ open class IntegrateAndFireRule : SpikingNeuronUpdateRule<SpikingScalarData, Spi
         val dVm =
             timeStep * (-(memPotential - restingPotential) + resistance * synCurrent) / timeConstant
 
-        return if (memPotential >= threshold && t > lastSpikeTime + refractoryPeriod) {
-            // println("Spike!")
-            Pair(true, resetPotential)
+        if (memPotential >= threshold && t > lastSpikeTime + refractoryPeriod) {
+            result(true, resetPotential)
         } else {
-            Pair(false, memPotential + dVm)
+            result(false, memPotential + dVm)
         }
 
     }
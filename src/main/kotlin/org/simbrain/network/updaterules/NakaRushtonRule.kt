@@ -132,29 +132,32 @@ class NakaRushtonRule : NeuronUpdateRule<NakaScalarData, NakaMatrixData>(), Clip
 
     context(Network)
     override fun apply(layer: Layer, dataHolder: NakaMatrixData) {
+        val activations = layer.activations
+        val inputs = layer.inputs
+        val adaptation = dataHolder.a
         for (i in 0 until layer.size) {
-            val result = nakaRushtonRule(
-                layer.inputs[i, 0],
-                layer.activations[i, 0],
-                timeStep,
-                dataHolder.a[i, 0]
-            )
-            layer.activations[i, 0] = result.first
-            dataHolder.a[i, 0] = result.second
+            nakaRushtonRule(inputs[i, 0], activations[i, 0], timeStep, adaptation[i, 0]) { newActivation, newA ->
+                activations[i, 0] = newActivation
+                adaptation[i, 0] = newA
+            }
         }
     }
 
     context(Network)
     override fun apply(neuron: Neuron, data: NakaScalarData) {
-        val result = nakaRushtonRule(
-            neuron.input, neuron.activation,
-            timeStep, data.a
-        )
-        neuron.activation = result.first
-        data.a = result.second
+        nakaRushtonRule(neuron.input, neuron.activation, timeStep, data.a) { newActivation, newA ->
+            neuron.activation = newActivation
+            data.a = newA
+        }
     }
 
-    fun nakaRushtonRule(input: Double, activation: Double, timeStep: Double, a: Double): Pair<Double, Double> {
+    private inline fun nakaRushtonRule(
+        input: Double,
+        activation: Double,
+        timeStep: Double,
+        a: Double,
+        result: (activation: Double, a: Double) -> Unit
+    ) {
         var newActivation = activation
         var newA = a
 
@@ -177,7 +180,7 @@ class NakaRushtonRule : NeuronUpdateRule<NakaScalarData, NakaMatrixData>(), Clip
             timeStep * ((1 / timeConstant) * (-newActivation + s))
         }
 
-        return Pair(newActivation, newA)
+        result(newActivation, newA)
     }
 
     override fun createMatrixData(size: Int): NakaMatrixData {
@@ -24,7 +24,6 @@ import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.NeuronArray
 import org.simbrain.network.util.EmptyMatrixData
 import org.simbrain.network.util.EmptyScalarData
-import org.simbrain.util.addi
 
 /**
  * Discrete sigmoidal provides various implementations of a standard sigmoidal neuron.
@@ -48,11 +47,15 @@ class SigmoidalRule : AbstractSigmoidalRule() {
     context(Network)
     override fun apply(layer: Layer, dataHolder: EmptyMatrixData) {
         val array = layer as NeuronArray
-        val weightedInputs = array.inputs.clone()
-        if (addNoise) {
-            weightedInputs.addi(noiseGenerator.sampleDouble(array.size))
+        val activations = array.activations
+        val inputs = array.inputs
+        for (i in 0 until array.size) {
+            var weightedInput = inputs[i, 0]
+            if (addNoise) {
+                weightedInput += noiseGenerator.sampleDouble()
+            }
+            activations[i, 0] = type.valueOf(weightedInput, upperBound, lowerBound, slope)
         }
-        array.activations = type.valueOf(weightedInputs, lowerBound, upperBound, slope)
     }
 
     override fun copy(): SigmoidalRule {
@@ -3,6 +3,7 @@ package org.simbrain.network.updaterules
 import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronArray
 import org.simbrain.network.updaterules.interfaces.BoundedUpdateRule
 import org.simbrain.network.util.EmptyMatrixData
 import org.simbrain.network.util.EmptyScalarData
@@ -29,7 +30,23 @@ class SoftmaxRule: NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(), Bounded
     }
 
     context(Network) override fun apply(layer: Layer, dataHolder: EmptyMatrixData) {
-        layer.setActivations(softmax(layer.inputs, temperature, layer.biases))
+        if (layer !is NeuronArray) {
+            layer.setActivations(softmax(layer.inputs, temperature, layer.biases))
+            return
+        }
+        // Exponentiate into the activation vector, then normalize in place
+        val activations = layer.activations
+        val inputs = layer.inputs
+        val biases = layer.biases
+        var total = 0.0
+        for (i in 0 until layer.size) {
+            val exponential = exp((inputs[i, 0] + biases[i, 0]) / temperature)
+            activations[i, 0] = exponential
+            total += exponential
+        }
+        for (i in 0 until layer.size) {
+            activations[i, 0] = activations[i, 0] / total
+        }
     }
 
     context(Network) override fun apply(neuron: Neuron, data: EmptyScalarData) {
@@ -0,0 +1,182 @@
+package org.simbrain.util
+
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.Channels
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/**
+ * Storage of large double arrays outside of XML, used by the workspace archive format.
+ *
+ * While a workspace is saved, [DoubleArrayConverter.arrayToString] (and so [MatrixConverter]) replaces arrays with at
+ * least [THRESHOLD] elements by a short reference like `@12`, and the array itself is written to its own zip entry
+ * `arrays/12.bin`. The entry holds the length of the array as a little-endian long followed by the values as
+ * little-endian doubles, written and read in chunks through NIO buffers, so that no text is produced and no copy of the
+ * whole array is made. When the archive is loaded the array entries are read first and references are resolved from
+ * them.
+ *
+ * Outside of [writeArrays] and [readArrays] (e.g. when a single network is saved as xml) arrays stay in the xml.
+ */
+object BinaryArrays {
+
+    /**
+     * Arrays with at least this many elements are stored as binary entries.
+     */
+    const val THRESHOLD = 1024
+
+    /**
+     * Folder of the array entries in a workspace archive.
+     */
+    const val ENTRY_FOLDER = "arrays/"
+
+    private const val REFERENCE_PREFIX = "@"
+
+    private const val CHUNK_SIZE = 1 shl 16
+
+    private val writer = ThreadLocal<ArrayWriter?>()
+
+    private val reader = ThreadLocal<Map<String, DoubleArray>?>()
+
+    /**
+     * Collects the arrays referenced while saving, until they are written to the archive with [flush].
+     */
+    class ArrayWriter internal constructor(private val zipStream: ZipOutputStream) {
+
+        private var nextId = 0
+
+        private val pending = LinkedHashMap<String, DoubleArray>()
+
+        internal fun add(array: DoubleArray): String {
+            val id = (nextId++).toString()
+            pending[id] = array
+            return id
+        }
+
+        /**
+         * Write the arrays collected since the last flush as zip entries. Must not be called while another entry is
+         * being written.
+         */
+        fun flush() {
+            pending.forEach { (id, array) ->
+                zipStream.putNextEntry(ZipEntry("$ENTRY_FOLDER$id.bin"))
+                write(array, zipStream)
+                zipStream.closeEntry()
+            }
+            pending.clear()
+        }
+    }
+
+    /**
+     * Run [block] with large arrays written to [zipStream] rather than to xml. The block must call
+     * [ArrayWriter.flush] after each xml entry it writes.
+     */
+    fun <T> writeArrays(zipStream: ZipOutputStream, block: (ArrayWriter) -> T): T {
+        val arrayWriter = ArrayWriter(zipStream)
+        writer.set(arrayWriter)
+        try {
+            return block(arrayWriter).also { arrayWriter.flush() }
+        } finally {
+            writer.remove()
+        }
+    }
+
+    /**
+     * Run [block] with array references resolved from [arrays], a map from array ids to arrays read with [read].
+     */
+    fun <T> readArrays(arrays: Map<String, DoubleArray>, block: () -> T): T {
+        reader.set(arrays)
+        try {
+            return block()
+        } finally {
+            reader.remove()
+        }
+    }
+
+    /**
+     * If arrays are currently being written to an archive and [array] is large, store it and return a reference to it.
+     * Otherwise return null.
+     */
+    @JvmStatic
+    fun store(array: DoubleArray): String? {
+        val arrayWriter = writer.get() ?: return null
+        if (array.size < THRESHOLD) {
+            return null
+        }
+        return REFERENCE_PREFIX + arrayWriter.add(array)
+    }
+
+    @JvmStatic
+    fun isReference(string: String) = string.startsWith(REFERENCE_PREFIX)
+
+    /**
+     * Return the array a reference created by [store] points to.
+     */
+    @JvmStatic
+    fun load(reference: String): DoubleArray {
+        val arrays = reader.get() ?: throw IllegalStateException("Array $reference can only be read from a workspace archive")
+        val id = reference.removePrefix(REFERENCE_PREFIX)
+        return arrays[id] ?: throw IOException("Array entry $id is missing from the archive")
+    }
+
+    /**
+     * If [entryName] is an array entry, return the id of the array it holds.
+     */
+    fun arrayId(entryName: String): String? {
+        val name = entryName.substringAfterLast('/')
+        val folder = entryName.removeSuffix(name)
+        return if (folder.endsWith(ENTRY_FOLDER) && name.endsWith(".bin")) name.removeSuffix(".bin") else null
+    }
+
+    /**
+     * Write an array entry to [output].
+     */
+    fun write(array: DoubleArray, output: OutputStream) {
+        val channel = Channels.newChannel(output)
+        val buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+        buffer.putLong(array.size.toLong())
+        var offset = 0
+        while (offset < array.size || buffer.position() > 0) {
+            val count = minOf(array.size - offset, buffer.remaining() / java.lang.Double.BYTES)
+            buffer.asDoubleBuffer().put(array, offset, count)
+            buffer.position(buffer.position() + count * java.lang.Double.BYTES)
+            offset += count
+            buffer.flip()
+            while (buffer.hasRemaining()) {
+                channel.write(buffer)
+            }
+            buffer.clear()
+        }
+    }
+
+    /**
+     * Read an array entry from [input], e.g. a zip input stream positioned at the entry.
+     */
+    fun read(input: InputStream): DoubleArray {
+        val channel = Channels.newChannel(input)
+        val buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+        fun fill(minBytes: Int) {
+            while (buffer.position() < minBytes) {
+                if (channel.read(buffer) < 0) throw IOException("Premature end of array entry")
+            }
+        }
+        fill(java.lang.Long.BYTES)
+        buffer.flip()
+        val array = DoubleArray(buffer.getLong().toInt())
+        buffer.compact()
+        var offset = 0
+        while (offset < array.size) {
+            fill(minOf(array.size - offset, CHUNK_SIZE / java.lang.Double.BYTES) * java.lang.Double.BYTES)
+            buffer.flip()
+            val count = minOf(array.size - offset, buffer.remaining() / java.lang.Double.BYTES)
+            buffer.asDoubleBuffer().get(array, offset, count)
+            buffer.position(buffer.position() + count * java.lang.Double.BYTES)
+            offset += count
+            buffer.compact()
+        }
+        return array
+    }
+}
@@ -52,6 +52,21 @@ fun flattenArray(array: Array<DoubleArray>) = sequence {
     }
 }.toList().toDoubleArray()
 
+/**
+ * Flatten a 2d double array into [buffer], or into a new array if [buffer] does not have the right size. Returns the
+ * array written to.
+ */
+fun flattenArray(array: Array<DoubleArray>, buffer: DoubleArray): DoubleArray {
+    val size = array.sumOf { it.size }
+    val result = if (buffer.size == size) buffer else DoubleArray(size)
+    var offset = 0
+    for (row in array) {
+        row.copyInto(result, offset)
+        offset += row.size
+    }
+    return result
+}
+
 /**
  * Flatten a 2d double array into a 1-d double array
  */
@@ -84,6 +84,19 @@ class SmellSource : EditableObject {
             .toArray()
     }
 
+    /**
+     * Add the proximal stimulus at [distance] (see [getStimulus]) to [target], starting at index [offset], without
+     * allocating a new array.
+     */
+    @JvmOverloads
+    fun addStimulus(distance: Double, target: DoubleArray, offset: Int = 0) {
+        val stimulusVector = stimulusVector ?: return
+        val scalingFactor = decayFunction.getScalingFactor(distance)
+        for (i in stimulusVector.indices) {
+            target[offset + i] += stimulusVector[i] * scalingFactor + noise
+        }
+    }
+
     private val noise: Double
         private get() = if (addNoise) {
             randomizer.sampleDouble()
@@ -108,6 +121,12 @@ class SmellSource : EditableObject {
             0
         } else stimulusVector!!.size
 
+    /**
+     * Distance beyond which this source has no effect on smell sensors. Noisy sources add noise at any distance.
+     */
+    val range: Double
+        get() = if (addNoise) Double.POSITIVE_INFINITY else decayFunction.cutoffDistance
+
     var dispersion: Double
         get() = decayFunction.dispersion
         set(d) {
@@ -128,6 +128,19 @@ operator fun Matrix.get(i: Int) = if (ncol() != 1) throw IllegalStateException("
 
 fun Matrix.toDoubleArray() = if (ncol() != 1) throw IllegalStateException("Must be a column vector") else col(0)!!
 
+/**
+ * Copy a column vector into [buffer], or into a new array if [buffer] does not have the right size. Returns the array
+ * written to.
+ */
+fun Matrix.toDoubleArray(buffer: DoubleArray): DoubleArray {
+    if (ncol() != 1) throw IllegalStateException("Must be a column vector")
+    val result = if (buffer.size == nrow()) buffer else DoubleArray(nrow())
+    for (i in result.indices) {
+        result[i] = get(i, 0)
+    }
+    return result
+}
+
 fun Matrix.toSequence(): Sequence<Double> = if (ncol() != 1) throw IllegalStateException("Must be a column vector")
 else sequence {
     for (i in (0 until this@Matrix.nrow())) {
@@ -214,6 +227,21 @@ fun Matrix.broadcastMultiply(vector: Matrix): Matrix {
 
 fun Matrix.flatten(): DoubleArray = flattenArray(toArray())
 
+/**
+ * Like [flatten] (row by row), but writes into [buffer], or into a new array if [buffer] does not have the right size.
+ * Returns the array written to.
+ */
+fun Matrix.flatten(buffer: DoubleArray): DoubleArray {
+    val ncol = ncol()
+    val result = if (buffer.size == nrow() * ncol) buffer else DoubleArray(nrow() * ncol)
+    for (i in 0 until nrow()) {
+        for (j in 0 until ncol) {
+            result[i * ncol + j] = get(i, j)
+        }
+    }
+    return result
+}
+
 /**
  * Display a histogram for the (flattened) matrix.
  * Returns an updater function so that the histogram can be updated when the matrix changes.  That function takes a
@@ -0,0 +1,349 @@
+package org.simbrain.util
+
+import com.thoughtworks.xstream.XStream
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter
+import org.simbrain.network.core.XStreamConstructor
+import smile.math.matrix.Matrix
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+import java.lang.reflect.Modifier
+import java.math.BigDecimal
+import java.math.BigInteger
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.reflect.KFunction
+import kotlin.reflect.KMutableProperty
+import kotlin.reflect.KParameter
+import kotlin.reflect.KProperty1
+import kotlin.reflect.full.*
+import kotlin.reflect.jvm.isAccessible
+import kotlin.reflect.jvm.javaField
+import kotlin.reflect.jvm.javaGetter
+import kotlin.reflect.jvm.javaSetter
+
+/**
+ * Deep copies object graphs the way a round trip through [xstream] (`fromXML(toXML(source))`) would, but directly,
+ * without producing and parsing xml.
+ *
+ * For each class the copier looks up the converter XStream would use and does what that converter would do:
+ * - Classes handled by [createConstructorCallingConverter] are rebuilt by calling their constructor with the copied
+ * values of their properties, and then setting those properties, see [ConstructorCallingConverter].
+ * - Classes handled by reflection are allocated without a constructor call, their non-transient fields are copied and
+ * `readResolve` is called.
+ * - Arrays, matrices and standard collections are copied element by element. Immutable values like strings, boxed
+ * primitives, enums and Kotlin objects are shared, and lambdas that XStream cannot serialize become null.
+ * - Anything else (e.g. classes with their own XStream converter) is copied with an actual XStream round trip.
+ *
+ * Shared references and cycles are preserved: an object reachable along several paths is copied once. As with XStream,
+ * a reference to an object that is still being rebuilt by a constructor call (e.g. a child pointing back at its
+ * parent) is copied as null.
+ *
+ * Classes whose XStream converter is not generic can be given a [customCopiers] entry, which is passed the object to
+ * copy and a function that copies its parts.
+ *
+ * How to copy each class is worked out once, so copiers are meant to be created once and reused. They are thread
+ * safe.
+ */
+class StructuralCopier(
+    private val xstream: XStream,
+    private val customCopiers: Map<Class<*>, (source: Any, copy: (Any?) -> Any?) -> Any> = mapOf()
+) {
+
+    private val strategies = ConcurrentHashMap<Class<*>, Strategy>()
+
+    /**
+     * Returns a deep copy of [source].
+     */
+    fun <T> copy(source: T): T {
+        @Suppress("UNCHECKED_CAST")
+        return CopyContext().copy(source) as T
+    }
+
+    /**
+     * State of one call to [copy]: a map from the objects copied so far to their copies.
+     */
+    private inner class CopyContext {
+
+        private val copies = IdentityHashMap<Any, Any?>()
+
+        fun copy(value: Any?): Any? {
+            if (value == null) return null
+            val strategy = strategyFor(value.javaClass)
+            if (strategy === Share) return value
+            if (strategy === Drop) return null
+            if (copies.containsKey(value)) {
+                return copies[value].takeUnless { it === InProgress }
+            }
+            return strategy.copy(value, this)
+        }
+
+        fun register(source: Any, copy: Any?) {
+            copies[source] = copy
+        }
+    }
+
+    private fun strategyFor(cls: Class<*>) = strategies.computeIfAbsent(cls) { createStrategy(it) }
+
+    private fun createStrategy(cls: Class<*>): Strategy {
+        customCopiers[cls]?.let { return Custom(it) }
+        if (isImmutable(cls) || cls.kotlinObjectInstance() != null) return Share
+        if (cls.isHidden || cls.name.contains("\$\$Lambda")) return Drop
+        if (cls.isArray) {
+            return if (cls.componentType.isPrimitive) PrimitiveArray else ObjectArray
+        }
+        if (cls.name.startsWith("java.util.") && cls.hasPublicNoArgConstructor()) {
+            if (Collection::class.java.isAssignableFrom(cls) && !SortedSet::class.java.isAssignableFrom(cls)) {
+                return RebuiltCollection(cls)
+            }
+            if (Map::class.java.isAssignableFrom(cls) && !SortedMap::class.java.isAssignableFrom(cls)) {
+                return RebuiltMap(cls)
+            }
+        }
+        return when (xstream.converterLookup.lookupConverterForType(cls)) {
+            is MatrixConverter -> CopiedMatrix
+            is ConstructorCallingConverter -> {
+                if (cls.kotlin.companionObjectInstance is WithXStreamPropertyConverter) {
+                    RoundTrip()
+                } else {
+                    ConstructorCall(cls)
+                }
+            }
+            is ReflectionConverter -> try {
+                CopiedFields(cls)
+            } catch (e: RuntimeException) {
+                // Fields of classes in modules that are not opened to Simbrain cannot be accessed
+                RoundTrip()
+            }
+            else -> RoundTrip()
+        }
+    }
+
+    private fun isImmutable(cls: Class<*>) = cls in immutableTypes || cls.isEnum || cls.superclass?.isEnum == true
+
+    private fun Class<*>.kotlinObjectInstance() = if (isKotlinClass()) {
+        try {
+            kotlin.objectInstance
+        } catch (e: Error) {
+            null
+        } catch (e: UnsupportedOperationException) {
+            null
+        }
+    } else {
+        null
+    }
+
+    private fun Class<*>.hasPublicNoArgConstructor() = constructors.any { it.parameterCount == 0 }
+
+    /**
+     * How to copy instances of a class.
+     */
+    private abstract class Strategy {
+        abstract fun copy(source: Any, context: CopyContext): Any?
+    }
+
+    private object Share : Strategy() {
+        override fun copy(source: Any, context: CopyContext) = source
+    }
+
+    private object Drop : Strategy() {
+        override fun copy(source: Any, context: CopyContext) = null
+    }
+
+    /**
+     * Placeholder for objects whose copy is not constructed yet.
+     */
+    private object InProgress
+
+    private class Custom(val copier: (source: Any, copy: (Any?) -> Any?) -> Any) : Strategy() {
+        override fun copy(source: Any, context: CopyContext) = copier(source, context::copy).also {
+            context.register(source, it)
+        }
+    }
+
+    private object PrimitiveArray : Strategy() {
+        override fun copy(source: Any, context: CopyContext): Any {
+            val length = java.lang.reflect.Array.getLength(source)
+            return java.lang.reflect.Array.newInstance(source.javaClass.componentType, length).also {
+                System.arraycopy(source, 0, it, 0, length)
+                context.register(source, it)
+            }
+        }
+    }
+
+    private object ObjectArray : Strategy() {
+        override fun copy(source: Any, context: CopyContext): Any {
+            source as Array<*>
+            @Suppress("UNCHECKED_CAST")
+            val result = java.lang.reflect.Array.newInstance(source.javaClass.componentType, source.size) as Array<Any?>
+            context.register(source, result)
+            for (i in source.indices) {
+                result[i] = context.copy(source[i])
+            }
+            return result
+        }
+    }
+
+    private object CopiedMatrix : Strategy() {
+        override fun copy(source: Any, context: CopyContext) = (source as Matrix).clone().also {
+            context.register(source, it)
+        }
+    }
+
+    private class RebuiltCollection(cls: Class<*>) : Strategy() {
+        private val constructor = cls.getConstructor()
+
+        override fun copy(source: Any, context: CopyContext): Any {
+            @Suppress("UNCHECKED_CAST")
+            val result = constructor.newInstance() as MutableCollection<Any?>
+            context.register(source, result)
+            (source as Collection<*>).forEach { result.add(context.copy(it)) }
+            return result
+        }
+    }
+
+    private class RebuiltMap(cls: Class<*>) : Strategy() {
+        private val constructor = cls.getConstructor()
+
+        override fun copy(source: Any, context: CopyContext): Any {
+            @Suppress("UNCHECKED_CAST")
+            val result = constructor.newInstance() as MutableMap<Any?, Any?>
+            context.register(source, result)
+            (source as Map<*, *>).forEach { (key, value) -> result[context.copy(key)] = context.copy(value) }
+            return result
+        }
+    }
+
+    private inner class RoundTrip : Strategy() {
+        override fun copy(source: Any, context: CopyContext): Any = xstream.fromXML(xstream.toXML(source)).also {
+            context.register(source, it)
+        }
+    }
+
+    /**
+     * Copies what [ReflectionConverter] writes and reads: the fields of the class and its superclasses that
+     * are neither static nor transient, nor omitted by the XStream mapper.
+     */
+    private inner class CopiedFields(private val cls: Class<*>) : Strategy() {
+
+        private val fields: List<Field> = generateSequence(cls) { it.superclass }
+            .flatMap { it.declaredFields.asSequence() }
+            .filter { !Modifier.isStatic(it.modifiers) && !Modifier.isTransient(it.modifiers) }
+            .filter { xstream.mapper.shouldSerializeMember(it.declaringClass, it.name) }
+            .onEach { it.isAccessible = true }
+            .toList()
+
+        private val readResolve: Method? = generateSequence(cls) { it.superclass }
+            .firstNotNullOfOrNull { c -> c.declaredMethods.firstOrNull { it.name == "readResolve" && it.parameterCount == 0 } }
+            ?.also { it.isAccessible = true }
+
+        override fun copy(source: Any, context: CopyContext): Any? {
+            val result = xstream.reflectionProvider.newInstance(cls)
+            context.register(source, result)
+            for (field in fields) {
+                field.set(result, context.copy(field.get(source)))
+            }
+            if (readResolve == null) {
+                return result
+            }
+            return readResolve.invoke(result).also { context.register(source, it) }
+        }
+    }
+
+    /**
+     * Copies what [ConstructorCallingConverter] writes and reads: the non-transient properties with backing fields of
+     * the class and its superclasses are copied, passed to the constructor XStream would pick, and then set on the new
+     * object.
+     */
+    private class ConstructorCall(cls: Class<*>) : Strategy() {
+
+        private class Property(val name: String, val get: (Any) -> Any?)
+
+        private val kClass = cls.kotlin
+
+        private val marshalled: List<Property> = (listOf(kClass) + kClass.allSuperclasses)
+            .flatMap { it.declaredMemberProperties }
+            .filter { it.javaField?.isTransient() == false }
+            .map { Property(it.name, getter(it)) }
+
+        /**
+         * Property each name is read into: the one closest to the class if several share the name.
+         */
+        private val setters: Map<String, (Any, Any?) -> Unit> = (listOf(kClass) + kClass.allSuperclasses)
+            .flatMap { it.declaredMemberProperties }
+            .groupBy { it.name }
+            .filterKeys { name -> marshalled.any { it.name == name } }
+            .mapValues { (_, properties) -> setter(properties.first()) }
+
+        @OptIn(ExperimentalStdlibApi::class)
+        private val constructor: KFunction<Any> = kClass.constructors.firstOrNull { it.hasAnnotation<XStreamConstructor>() }
+            ?: kClass.primaryConstructor
+            ?: kClass.constructors.firstOrNull { it.parameters.none { p -> !p.isOptional } }
+            ?: throw IllegalArgumentException("Class $kClass does not have a primary constructor or a no arg constructor.")
+
+        private val parameters: Map<String, KParameter> = constructor.findAnnotation<XStreamConstructor>()?.names
+            ?.takeIf { it.isNotEmpty() }
+            ?.let { names -> (names.toList() zip constructor.parameters).toMap() }
+            ?: constructor.parameters.associateBy { it.name ?: "" }
+
+        init {
+            constructor.isAccessible = true
+        }
+
+        override fun copy(source: Any, context: CopyContext): Any {
+            context.register(source, InProgress)
+            // Null values are not written by the converter, so they are not passed on either
+            val values = HashMap<String, Any?>()
+            for (property in marshalled) {
+                property.get(source)?.let { values[property.name] = context.copy(it) }
+            }
+            val arguments = parameters.entries
+                .map { (name, parameter) -> parameter to values[name] }
+                .filter { (parameter, value) -> !parameter.isOptional || value != null }
+                .toMap()
+            val result = constructor.callBy(arguments)
+            values.forEach { (name, value) -> setters[name]?.invoke(result, value) }
+            context.register(source, result)
+            return result
+        }
+
+        private fun getter(property: KProperty1<out Any, *>): (Any) -> Any? {
+            property.javaGetter?.let { method ->
+                method.isAccessible = true
+                return { method.invoke(it) }
+            }
+            val field = property.javaField!!.apply { isAccessible = true }
+            return { field.get(it) }
+        }
+
+        private fun setter(property: KProperty1<out Any, *>): (Any, Any?) -> Unit {
+            if (property is KMutableProperty<*>) {
+                property.javaSetter?.let { method ->
+                    method.isAccessible = true
+                    return { obj, value -> method.invoke(obj, value) }
+                }
+            }
+            val field = property.javaField?.apply { isAccessible = true }
+                ?: throw IllegalArgumentException("Property $property for class ${kClass.simpleName} does not have a backing field.")
+            return { obj, value -> field.set(obj, value) }
+        }
+    }
+
+    companion object {
+        private val immutableTypes = setOf(
+            String::class.java,
+            java.lang.Boolean::class.java,
+            java.lang.Character::class.java,
+            java.lang.Byte::class.java,
+            java.lang.Short::class.java,
+            java.lang.Integer::class.java,
+            java.lang.Long::class.java,
+            java.lang.Float::class.java,
+            java.lang.Double::class.java,
+            BigInteger::class.java,
+            BigDecimal::class.java,
+            Class::class.java,
+            java.awt.Color::class.java,
+            java.awt.Font::class.java
+        )
+    }
+}
@@ -4,9 +4,12 @@ import org.simbrain.util.Utils.FS
 import org.simbrain.world.textworld.TokenEmbedding
 import smile.math.matrix.Matrix
 import smile.nlp.tokenizer.SimpleSentenceSplitter
+import java.io.Reader
 import java.util.*
 import javax.swing.JScrollPane
 import javax.swing.JTextArea
+import kotlin.math.abs
+import kotlin.math.sqrt
 
 val stopWords by lazy {
     ResourceManager
@@ -193,6 +196,380 @@ fun generateCooccurrenceMatrix(
     return TokenEmbedding(tokens, cocMatrix.replaceNaN(0.0))
 }
 
+/**
+ * Streaming version of [generateCooccurrenceMatrix] for documents too large for a dense co-occurrence matrix, such as
+ * whole books.
+ *
+ * Text is added piece by piece with [addText] or [addDocument]. Tokens are mapped to indices through a hash map as
+ * they are first seen, and co-occurrences are counted in a sparse table keyed by (token, context) index pairs, so
+ * memory grows with the number of distinct pairs rather than with the square of the vocabulary. [build] weights the
+ * counts as [manualPPMI] does, touching only the non-zero counts, and can reduce the embedding to a few dimensions with
+ * a truncated SVD.
+ *
+ * Windows do not extend across sentences, nor across calls to [addText].
+ *
+ * @param windowSize how many words are included in a context, see [generateCooccurrenceMatrix].
+ * @param bidirectional if true, the window includes tokens after the current token as well as before it.
+ * @param removeStopwords if true, stopwords are removed from the text before counting.
+ */
+class CooccurrenceMatrixBuilder(
+    val windowSize: Int = 2,
+    val bidirectional: Boolean = false,
+    val removeStopwords: Boolean = false
+) {
+
+    init {
+        if (windowSize <= 0) throw IllegalArgumentException("windowsize must be greater than 0")
+    }
+
+    private val tokenIndices = HashMap<String, Int>()
+
+    private val tokenList = ArrayList<String>()
+
+    private val counts = CooccurrenceCounts()
+
+    /**
+     * Tokens seen so far, in order of first appearance. Rows and columns of the matrix follow this order.
+     */
+    val tokens: List<String> get() = tokenList
+
+    /**
+     * Number of distinct (token, context) pairs seen so far.
+     */
+    val numPairs get() = counts.size
+
+    /**
+     * Count the co-occurrences in [text], which should consist of whole sentences.
+     */
+    fun addText(text: String) {
+        var convertedText = text.lowercase().removeSpecialCharacters()
+        if (removeStopwords) {
+            convertedText = convertedText.removeWords(stopWords)
+        }
+        for (sentence in convertedText.tokenizeSentencesFromDoc()) {
+            addSentence(sentence.tokenizeWordsFromString())
+        }
+    }
+
+    /**
+     * Count the co-occurrences in a document read one paragraph (block of lines separated by a blank line) at a time.
+     * The reader is closed afterwards.
+     */
+    fun addDocument(reader: Reader) {
+        val paragraph = StringBuilder()
+        reader.useLines { lines ->
+            for (line in lines) {
+                if (line.isBlank()) {
+                    if (paragraph.isNotEmpty()) addText(paragraph.toString())
+                    paragraph.setLength(0)
+                } else {
+                    paragraph.append(line).append(' ')
+                }
+            }
+        }
+        if (paragraph.isNotEmpty()) addText(paragraph.toString())
+    }
+
+    /**
+     * Count the co-occurrences in a sentence that is already tokenized.
+     */
+    fun addSentence(words: List<String>) {
+        val indices = IntArray(words.size) { i ->
+            tokenIndices.getOrPut(words[i]) {
+                tokenList.add(words[i])
+                tokenList.size - 1
+            }
+        }
+        val maxIndex = indices.size - 1
+        for (sentenceIndex in indices.indices) {
+            val contextLowerLimit = maxOf(sentenceIndex - windowSize, 0)
+            val contextUpperLimit = if (bidirectional) minOf(sentenceIndex + windowSize, maxIndex) else sentenceIndex
+            for (contextIndex in contextLowerLimit..contextUpperLimit) {
+                if (contextIndex != sentenceIndex) {
+                    counts.increment(indices[sentenceIndex], indices[contextIndex])
+                }
+            }
+        }
+    }
+
+    /**
+     * Create an embedding from the counts so far.
+     *
+     * @param usePPMI if true, weight the counts as [manualPPMI] does.
+     * @param dimension if greater than 0, the number of dimensions of the embedding, which is then made of the top
+     * left singular vectors of the matrix scaled by their singular values. Otherwise the rows of the (dense) matrix are
+     * used, which is only practical for vocabularies of a few thousand tokens.
+     * @param seed seed of the random projection used by the truncated SVD.
+     */
+    @JvmOverloads
+    fun build(usePPMI: Boolean = true, dimension: Int = 0, seed: Long = 42): TokenEmbedding {
+        val matrix = toSparseMatrix(usePPMI)
+        if (dimension <= 0) {
+            val dense = Matrix(matrix.numRows, matrix.numRows)
+            matrix.forEach { row, column, value -> dense[row, column] = value }
+            return TokenEmbedding(tokenList.toList(), dense)
+        }
+        return TokenEmbedding(tokenList.toList(), matrix.truncatedSVD(dimension, seed))
+    }
+
+    private fun toSparseMatrix(usePPMI: Boolean): SparseRowMatrix {
+        val size = tokenList.size
+        val rowTotals = DoubleArray(size)
+        val columnTotals = DoubleArray(size)
+        var totalSum = 0.0
+        val rowStarts = IntArray(size + 1)
+        counts.forEach { row, column, count ->
+            rowTotals[row] += count.toDouble()
+            columnTotals[column] += count.toDouble()
+            totalSum += count
+            rowStarts[row + 1]++
+        }
+        for (row in 0 until size) {
+            rowStarts[row + 1] += rowStarts[row]
+        }
+        val next = rowStarts.copyOf(size)
+        val columns = IntArray(counts.size)
+        val values = DoubleArray(counts.size)
+        counts.forEach { row, column, count ->
+            val i = next[row]++
+            columns[i] = column
+            values[i] = if (usePPMI) {
+                count / (rowTotals[row] * columnTotals[column] / totalSum)
+            } else {
+                count.toDouble()
+            }
+        }
+        return SparseRowMatrix(size, size, rowStarts, columns, values)
+    }
+}
+
+/**
+ * Counts of (row, column) pairs of non-negative ints, packed into longs and stored in an open-addressing hash table.
+ */
+private class CooccurrenceCounts {
+
+    var keys = LongArray(1024) { EMPTY }
+        private set
+
+    var values = IntArray(1024)
+        private set
+
+    var size = 0
+        private set
+
+    fun increment(row: Int, column: Int) {
+        val key = (row.toLong() shl 32) or column.toLong()
+        val mask = keys.size - 1
+        var slot = hash(key) and mask
+        while (true) {
+            when (keys[slot]) {
+                key -> {
+                    values[slot]++
+                    return
+                }
+                EMPTY -> {
+                    keys[slot] = key
+                    values[slot] = 1
+                    if (++size * 2 > keys.size) grow()
+                    return
+                }
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+
+    inline fun forEach(block: (row: Int, column: Int, count: Int) -> Unit) {
+        for (slot in keys.indices) {
+            val key = keys[slot]
+            if (key != EMPTY) {
+                block((key ushr 32).toInt(), key.toInt(), values[slot])
+            }
+        }
+    }
+
+    private fun grow() {
+        val oldKeys = keys
+        val oldValues = values
+        keys = LongArray(oldKeys.size * 2) { EMPTY }
+        values = IntArray(oldKeys.size * 2)
+        val mask = keys.size - 1
+        for (i in oldKeys.indices) {
+            if (oldKeys[i] != EMPTY) {
+                var slot = hash(oldKeys[i]) and mask
+                while (keys[slot] != EMPTY) slot = (slot + 1) and mask
+                keys[slot] = oldKeys[i]
+                values[slot] = oldValues[i]
+            }
+        }
+    }
+
+    private fun hash(key: Long) = ((key * -7046029254386353131L) ushr 32).toInt()
+
+    companion object {
+        const val EMPTY = -1L
+    }
+}
+
+/**
+ * Sparse matrix in compressed row form: the entries of row `i` are at `rowStarts[i] until rowStarts[i + 1]` in
+ * [columns] and [values].
+ */
+private class SparseRowMatrix(
+    val numRows: Int,
+    val numColumns: Int,
+    val rowStarts: IntArray,
+    val columns: IntArray,
+    val values: DoubleArray
+) {
+
+    inline fun forEach(block: (row: Int, column: Int, value: Double) -> Unit) {
+        for (row in 0 until numRows) {
+            for (i in rowStarts[row] until rowStarts[row + 1]) {
+                block(row, columns[i], values[i])
+            }
+        }
+    }
+
+    /**
+     * This matrix times [x], a [numColumns] by `k` matrix stored row by row.
+     */
+    fun times(x: DoubleArray, k: Int): DoubleArray {
+        val result = DoubleArray(numRows * k)
+        forEach { row, column, value ->
+            for (j in 0 until k) {
+                result[row * k + j] += value * x[column * k + j]
+            }
+        }
+        return result
+    }
+
+    /**
+     * The transpose of this matrix times [x], a [numRows] by `k` matrix stored row by row.
+     */
+    fun transposeTimes(x: DoubleArray, k: Int): DoubleArray {
+        val result = DoubleArray(numColumns * k)
+        forEach { row, column, value ->
+            for (j in 0 until k) {
+                result[column * k + j] += value * x[row * k + j]
+            }
+        }
+        return result
+    }
+
+    /**
+     * Rows of the rank [dimension] approximation of this matrix in the basis of its top right singular vectors, i.e.
+     * the top left singular vectors scaled by the singular values. Computed with a randomized range finder followed by
+     * a few power iterations (Halko, Martinsson and Tropp, 2011), so that only products with the sparse matrix and
+     * dense matrices with a few more columns than [dimension] are needed.
+     */
+    fun truncatedSVD(dimension: Int, seed: Long, oversampling: Int = 10, powerIterations: Int = 2): Matrix {
+        val rank = minOf(dimension, numRows, numColumns)
+        val k = minOf(rank + oversampling, numRows, numColumns)
+        val random = Random(seed)
+        val projection = DoubleArray(numColumns * k) { random.nextGaussian() }
+
+        // Orthonormal basis of the range of the matrix
+        var basis = times(projection, k).also { orthonormalizeColumns(it, k) }
+        repeat(powerIterations) {
+            val coRange = transposeTimes(basis, k).also { orthonormalizeColumns(it, k) }
+            basis = times(coRange, k).also { orthonormalizeColumns(it, k) }
+        }
+
+        // Singular values and left singular vectors in the basis, from the eigenvectors of (Q^T A)(Q^T A)^T
+        val projected = transposeTimes(basis, k)
+        val gram = Array(k) { DoubleArray(k) }
+        for (row in 0 until numColumns) {
+            for (a in 0 until k) {
+                val value = projected[row * k + a]
+                if (value == 0.0) continue
+                for (b in 0 until k) {
+                    gram[a][b] += value * projected[row * k + b]
+                }
+            }
+        }
+        val (eigenvalues, eigenvectors) = symmetricEigen(gram)
+        val order = eigenvalues.indices.sortedByDescending { eigenvalues[it] }.take(rank)
+
+        val result = Matrix(numRows, dimension)
+        for ((j, e) in order.withIndex()) {
+            val singularValue = sqrt(maxOf(eigenvalues[e], 0.0))
+            for (row in 0 until numRows) {
+                var sum = 0.0
+                for (a in 0 until k) {
+                    sum += basis[row * k + a] * eigenvectors[a][e]
+                }
+                result[row, j] = sum * singularValue
+            }
+        }
+        return result
+    }
+}
+
+/**
+ * Orthonormalize the [k] columns of [matrix], stored row by row, with modified Gram-Schmidt applied twice. Columns
+ * that are linearly dependent on the previous ones are set to 0.
+ */
+private fun orthonormalizeColumns(matrix: DoubleArray, k: Int) {
+    val numRows = matrix.size / k
+    for (j in 0 until k) {
+        repeat(2) {
+            for (previous in 0 until j) {
+                var dot = 0.0
+                for (row in 0 until numRows) dot += matrix[row * k + j] * matrix[row * k + previous]
+                for (row in 0 until numRows) matrix[row * k + j] -= dot * matrix[row * k + previous]
+            }
+        }
+        var norm = 0.0
+        for (row in 0 until numRows) norm += matrix[row * k + j] * matrix[row * k + j]
+        norm = sqrt(norm)
+        val scale = if (norm > 1e-10) 1 / norm else 0.0
+        for (row in 0 until numRows) matrix[row * k + j] *= scale
+    }
+}
+
+/**
+ * Eigenvalues and eigenvectors (as columns) of a small symmetric matrix, using the cyclic Jacobi method. [matrix] is
+ * overwritten.
+ */
+private fun symmetricEigen(matrix: Array<DoubleArray>): Pair<DoubleArray, Array<DoubleArray>> {
+    val n = matrix.size
+    val vectors = Array(n) { i -> DoubleArray(n).also { it[i] = 1.0 } }
+    val scale = matrix.sumOf { row -> row.sumOf { it * it } }
+    for (sweep in 0 until 100) {
+        var offDiagonal = 0.0
+        for (p in 0 until n) for (q in p + 1 until n) offDiagonal += matrix[p][q] * matrix[p][q]
+        if (offDiagonal <= 1e-30 * scale) break
+        for (p in 0 until n - 1) {
+            for (q in p + 1 until n) {
+                if (matrix[p][q] == 0.0) continue
+                val theta = (matrix[q][q] - matrix[p][p]) / (2 * matrix[p][q])
+                val t = (if (theta >= 0) 1.0 else -1.0) / (abs(theta) + sqrt(theta * theta + 1))
+                val c = 1 / sqrt(t * t + 1)
+                val s = t * c
+                for (i in 0 until n) {
+                    val ip = matrix[i][p]
+                    val iq = matrix[i][q]
+                    matrix[i][p] = c * ip - s * iq
+                    matrix[i][q] = s * ip + c * iq
+                }
+                for (i in 0 until n) {
+                    val pi = matrix[p][i]
+                    val qi = matrix[q][i]
+                    matrix[p][i] = c * pi - s * qi
+                    matrix[q][i] = s * pi + c * qi
+                }
+                for (i in 0 until n) {
+                    val ip = vectors[i][p]
+                    val iq = vectors[i][q]
+                    vectors[i][p] = c * ip - s * iq
+                    vectors[i][q] = s * ip + c * iq
+                }
+            }
+        }
+    }
+    return DoubleArray(n) { matrix[it][it] } to vectors
+}
+
 /**
  * Generalized embedding similarity function.
  * The parameter [useCosine] defaults to true, so it calculates cosine similarity
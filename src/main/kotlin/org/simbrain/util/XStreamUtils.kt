@@ -86,7 +86,7 @@ fun createConstructorCallingConverter(
     reflectionProvider: ReflectionProvider,
     excludedTypes: List<Class<*>> = listOf()
 ): ReflectionConverter {
-    return object : ReflectionConverter(mapper, reflectionProvider) {
+    return object : ReflectionConverter(mapper, reflectionProvider), ConstructorCallingConverter {
 
         override fun marshal(source: Any, writer: HierarchicalStreamWriter, context: MarshallingContext) {
             val customMarshaller = (source::class.companionObjectInstance as? WithXStreamPropertyConverter)
@@ -252,6 +252,13 @@ fun createConstructorCallingConverter(
 }
 
 
+/**
+ * Marks converters created by [createConstructorCallingConverter], so that code that copies objects the way XStream
+ * would (see [StructuralCopier]) can tell which classes are rebuilt by calling a constructor.
+ */
+interface ConstructorCallingConverter
+
+
 /**
  * Allows a subset of properties to be marshalled and unmarshalled by custom converters.
  * Useful when the properties have references to an instance of this class that is not yet fully constructed.
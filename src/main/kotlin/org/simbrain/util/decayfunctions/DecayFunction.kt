@@ -34,6 +34,13 @@ abstract class DecayFunction(
      */
     abstract fun getScalingFactor(distance: Double): Double
 
+    /**
+     * Distance beyond which [getScalingFactor] is zero, or small enough to be ignored when the function never reaches
+     * zero. Used to skip far away objects.
+     */
+    open val cutoffDistance: Double
+        get() = peakDistance + dispersion
+
     // TODO: Stub for future implementation of, for example, elliptical decay functions
     // open fun getScalingFactor(relativeLocation: Point2D): Double {
     //     return 0.0
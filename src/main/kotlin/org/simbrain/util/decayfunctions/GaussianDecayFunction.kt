@@ -22,6 +22,12 @@ class GaussianDecayFunction @JvmOverloads constructor(dispersion: Double = 70.0)
         return exp(-.5 * ((distance - mean) / std).pow(2.0))
     }
 
+    /**
+     * Six standard deviations past the peak, where the scaling factor is below 1e-7.
+     */
+    override val cutoffDistance: Double
+        get() = peakDistance + 3 * dispersion
+
     override fun copy(): GaussianDecayFunction {
         return GaussianDecayFunction(dispersion)
             .also {
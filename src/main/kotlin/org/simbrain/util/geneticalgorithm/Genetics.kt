@@ -118,12 +118,18 @@ suspend fun evaluator(
     population
 }
 
+/**
+ * Runs [parallelEvaluator] with the settings of [evaluatorParams], so that sims are evaluated off the calling thread
+ * by a bounded number of workers, and reports progress to the progress window of the params. As in the other
+ * [evaluator], selection draws from a single generator seeded with the seed of the params, so that a seed gives the
+ * same run as with the other [evaluator].
+ */
 suspend fun evaluator(
     evaluatorParams: EvaluatorParams,
     populatingFunction: PopulatingFunctionParams.() -> EvoSim,
     peek: GenerationFitnessPair.() -> Unit = {}
 ): List<EvoSim> {
-    val lastGeneration = evaluator(
+    val lastGeneration = parallelEvaluator(
         populatingFunction = populatingFunction,
         populationSize = evaluatorParams.populationSize,
         eliminationRatio = evaluatorParams.eliminationRatio,
@@ -140,7 +146,8 @@ suspend fun evaluator(
             }
             peek()
         },
-        seed = evaluatorParams.seed.toLong()
+        seed = evaluatorParams.seed.toLong(),
+        random = Random(evaluatorParams.seed.toLong())
     )
     evaluatorParams.closeProgressWindow()
     return lastGeneration
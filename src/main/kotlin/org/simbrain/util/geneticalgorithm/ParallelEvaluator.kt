@@ -0,0 +1,207 @@
+package org.simbrain.util.geneticalgorithm
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import org.simbrain.util.getSimbrainXStream
+import org.simbrain.util.sampleWithReplacement
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.*
+import kotlin.math.roundToInt
+import kotlin.random.Random
+
+/**
+ * An [EvoSim] whose genotype can be saved in a checkpoint by [parallelEvaluator], and turned back into a sim when the
+ * run is resumed.
+ */
+interface CheckpointableEvoSim : EvoSim {
+
+    /**
+     * The genotype of this sim. Must be serializable with [getSimbrainXStream].
+     */
+    val genotype: Any
+}
+
+/**
+ * Timing of one generation of [parallelEvaluator].
+ *
+ * @param evaluated number of sims whose fitness was evaluated
+ * @param cached number of sims whose fitness was reused from the previous generation
+ */
+data class GenerationMetrics(
+    val generation: Int,
+    val evaluated: Int,
+    val cached: Int,
+    val evaluationNanos: Long,
+    val reproductionNanos: Long,
+    val checkpointNanos: Long
+) {
+    val totalNanos get() = evaluationNanos + reproductionNanos + checkpointNanos
+
+    val evaluationsPerSecond get() = if (evaluationNanos == 0L) 0.0 else evaluated * 1e9 / evaluationNanos
+
+    override fun toString() = "[$generation] evaluated $evaluated (cached $cached) in ${evaluationNanos / 1_000_000} ms, " +
+            "reproduction ${reproductionNanos / 1_000_000} ms, checkpoint ${checkpointNanos / 1_000_000} ms"
+}
+
+/**
+ * The population of a run of [parallelEvaluator] at the end of a generation, i.e. the sims that will be evaluated in
+ * the next generation, stored by their genotypes.
+ *
+ * @param fitness fitness already known for each genotype, null if it still has to be evaluated
+ */
+class EvolutionCheckpoint(
+    val generation: Int,
+    val seed: Long,
+    val genotypes: List<Any>,
+    val fitness: List<Double?>
+) {
+
+    /**
+     * Write the checkpoint to [file]. The file is replaced in one step, so a crash while saving leaves the previous
+     * checkpoint intact.
+     */
+    fun save(file: File) {
+        val temporary = File(file.absoluteFile.parentFile, "${file.name}.tmp")
+        temporary.outputStream().buffered().use { xstream.toXML(this, it) }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+
+    companion object {
+
+        private val xstream by lazy {
+            getSimbrainXStream().apply {
+                // Genotypes usually hold a kotlin.random.Random
+                allowTypesByWildcard(arrayOf("kotlin.**"))
+            }
+        }
+
+        @JvmStatic
+        fun load(file: File) = file.inputStream().buffered().use { xstream.fromXML(it) as EvolutionCheckpoint }
+    }
+}
+
+/**
+ * A version of [evaluator] for long runs with expensive sims.
+ *
+ * - Sims are evaluated on [Dispatchers.Default] rather than in the caller's context (which might be the Swing thread),
+ * and at most [workers] of them are evaluated at a time, so that no more than [workers] sims build their workspaces
+ * at once.
+ * - If [reuseSurvivorFitness] is true, survivors are carried over to the next generation unchanged rather than copied,
+ * and their fitness is reused rather than evaluated again. Only use this when evaluation is deterministic.
+ * - If a [checkpointFile] is given, the population is saved to it at the end of each generation (see
+ * [EvolutionCheckpoint]), and if the file already exists the run resumes from it. Sims must then be
+ * [CheckpointableEvoSim]s, and [restore] must turn their genotypes back into sims.
+ * - [metrics] is called with the timing of each generation.
+ *
+ * The random numbers used for selection in a generation only depend on [seed] and the generation number, so a
+ * resumed run makes the same choices as an uninterrupted one. If a [random] generator is given instead, selection draws
+ * from it throughout the run, as [evaluator] does; such runs cannot be resumed from a checkpoint.
+ *
+ * Returns all simulations from the last generation of the run, the survivors first, best first.
+ */
+suspend fun parallelEvaluator(
+    populatingFunction: PopulatingFunctionParams.() -> EvoSim,
+    populationSize: Int,
+    eliminationRatio: Double,
+    stoppingFunction: GenerationFitnessPair.() -> Boolean,
+    peek: GenerationFitnessPair.() -> Unit = {},
+    sortDescending: Boolean = true,
+    seed: Long = Random.nextLong(),
+    workers: Int = Runtime.getRuntime().availableProcessors(),
+    reuseSurvivorFitness: Boolean = false,
+    checkpointFile: File? = null,
+    restore: ((genotype: Any) -> EvoSim)? = null,
+    metrics: (GenerationMetrics) -> Unit = {},
+    random: Random? = null
+): List<EvoSim> {
+    require(workers > 0) { "Number of workers must be positive" }
+    require(checkpointFile == null || restore != null) { "Checkpoints require a function to restore sims" }
+    require(checkpointFile == null || random == null) { "Runs with a single generator cannot be checkpointed" }
+
+    // Fitness of the sims in the population that were already evaluated
+    val knownFitness = IdentityHashMap<EvoSim, Double>()
+    val checkpoint = checkpointFile?.takeIf { it.exists() }?.let { EvolutionCheckpoint.load(it) }
+    var generation = checkpoint?.generation ?: 0
+    val runSeed = checkpoint?.seed ?: seed
+    var population = if (checkpoint != null) {
+        checkpoint.genotypes.zip(checkpoint.fitness).map { (genotype, fitness) ->
+            restore!!(genotype).also { sim -> if (fitness != null) knownFitness[sim] = fitness }
+        }
+    } else {
+        val populatingFunctionParams = PopulatingFunctionParams(seed)
+        List(populationSize) { populatingFunction(populatingFunctionParams) }
+    }
+    val semaphore = Semaphore(workers)
+
+    do {
+        generation++
+        val selectionRandom = random ?: Random(runSeed + generation)
+
+        val evaluationStart = System.nanoTime()
+        val toEvaluate = population.filter { it !in knownFitness }
+        val scores = withContext(Dispatchers.Default) {
+            toEvaluate.map { sim -> async { semaphore.withPermit { sim.eval() } } }.awaitAll()
+        }
+        (toEvaluate zip scores).forEach { (sim, score) -> knownFitness[sim] = score }
+        val evaluationNanos = System.nanoTime() - evaluationStart
+
+        val reproductionStart = System.nanoTime()
+        val agentFitnessPair = population.map { it to knownFitness[it]!! }.shuffled(selectionRandom).let {
+            if (sortDescending) {
+                it.sortedByDescending { it.second }
+            } else {
+                it.sortedBy { it.second }
+            }
+        }
+        val eliminationCount = (agentFitnessPair.size * eliminationRatio).roundToInt()
+        val survivorPairs = agentFitnessPair.take(population.size - eliminationCount)
+        val survivors = survivorPairs.map { (sim) -> sim }
+        // Survivors are copied before children, as in evaluator, since copying may draw from a sim's generator
+        val nextSurvivors = if (reuseSurvivorFitness) survivors else survivors.map { it.copy() }
+        val children = survivors.sampleWithReplacement(selectionRandom).take(eliminationCount).toList().map {
+            it.copy().apply {
+                mutate()
+            }
+        }
+        knownFitness.clear()
+        if (reuseSurvivorFitness) {
+            survivorPairs.forEach { (sim, fitness) -> knownFitness[sim] = fitness }
+        }
+        population = nextSurvivors + children
+        val reproductionNanos = System.nanoTime() - reproductionStart
+
+        val checkpointStart = System.nanoTime()
+        if (checkpointFile != null) {
+            EvolutionCheckpoint(
+                generation,
+                runSeed,
+                population.map {
+                    (it as? CheckpointableEvoSim)?.genotype
+                        ?: throw IllegalArgumentException("${it::class.simpleName} does not implement CheckpointableEvoSim")
+                },
+                population.map { knownFitness[it] }
+            ).save(checkpointFile)
+        }
+        val checkpointNanos = System.nanoTime() - checkpointStart
+
+        val generationFitnessPair = GenerationFitnessPair(generation, agentFitnessPair.map { it.second })
+        metrics(
+            GenerationMetrics(
+                generation,
+                toEvaluate.size,
+                agentFitnessPair.size - toEvaluate.size,
+                evaluationNanos,
+                reproductionNanos,
+                checkpointNanos
+            )
+        )
+        peek(generationFitnessPair)
+    } while (!stoppingFunction(generationFitnessPair))
+    return population
+}
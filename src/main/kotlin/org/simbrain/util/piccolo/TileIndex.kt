@@ -0,0 +1,175 @@
+package org.simbrain.util.piccolo
+
+import org.simbrain.world.odorworld.entities.Bounded
+import java.util.*
+import kotlin.math.floor
+
+/**
+ * Snapshot of the tiles of a [TileMap] organized for fast queries, so that collision checks and tile sensors do not go
+ * through every tile of the map. Obtained from [TileMap.tileIndex], which builds a new one when a layer of the map
+ * changes. Changes to the type of a [Tile] are not tracked.
+ *
+ * - Collision tiles (the tiles of blocking layers) are filed by cell, for the broad phase of collision detection.
+ * - For each tile type that is queried, a bitmap of the cells whose tile stack contains a tile of that type, with a
+ * summed-area table to count such cells in a rectangle in constant time.
+ */
+class TileIndex(private val tileMap: TileMap) {
+
+    /**
+     * Index of the cells whose tile stack contains a tile of a given type.
+     */
+    inner class TypeIndex(type: String) {
+
+        private val cells = BitSet(width * height)
+
+        /**
+         * Number of matching cells above and to the left of each corner of the cells, with a row and column of zeros.
+         */
+        private val summedArea = IntArray((width + 1) * (height + 1))
+
+        /**
+         * Total number of matching cells.
+         */
+        val count: Int
+
+        init {
+            for (j in 0 until height) {
+                for (i in 0 until width) {
+                    if (tileMap.layers.any { tileMap.getTile(it[i, j]).type == type }) {
+                        cells.set(j * width + i)
+                    }
+                }
+            }
+            for (j in 0 until height) {
+                var rowSum = 0
+                for (i in 0 until width) {
+                    if (cells[j * width + i]) rowSum++
+                    summedArea[(j + 1) * (width + 1) + i + 1] = summedArea[j * (width + 1) + i + 1] + rowSum
+                }
+            }
+            count = cells.cardinality()
+        }
+
+        /**
+         * True if the tile stack at grid coordinate ([x], [y]) contains a tile of the type. Coordinates wrap around the
+         * map, as in [TileMapLayer.get].
+         */
+        operator fun get(x: Int, y: Int) = count > 0 && cells[y.wrap(height) * width + x.wrap(width)]
+
+        /**
+         * Number of matching cells in the rectangle of grid coordinates from ([x0], [y0]) to ([x1], [y1]) inclusive.
+         * Coordinates wrap around the map, as in [TileMapLayer.get].
+         */
+        fun count(x0: Int, y0: Int, x1: Int, y1: Int): Int {
+            if (count == 0) return 0
+            var total = 0
+            wrappedRanges(x0, x1, width) { fromX, toX ->
+                wrappedRanges(y0, y1, height) { fromY, toY ->
+                    total += summedArea[(toY + 1) * (width + 1) + toX + 1] -
+                            summedArea[fromY * (width + 1) + toX + 1] -
+                            summedArea[(toY + 1) * (width + 1) + fromX] +
+                            summedArea[fromY * (width + 1) + fromX]
+                }
+            }
+            return total
+        }
+    }
+
+    val width = tileMap.width
+
+    val height = tileMap.height
+
+    /**
+     * Collision tiles of each cell, null for cells without any.
+     */
+    private val collisionCells = arrayOfNulls<MutableList<Bounded>>(width * height)
+
+    private val typeIndices = HashMap<String, TypeIndex>()
+
+    /**
+     * Whether the map has any collision tiles.
+     */
+    val hasCollisionTiles: Boolean
+
+    init {
+        with(tileMap) {
+            for (layer in layers.filter { it.blocking }) {
+                for (j in 0 until height) {
+                    for (i in 0 until width) {
+                        val tileId = layer[i, j]
+                        if (tileId != 0) {
+                            val cell = collisionCells[j * width + i]
+                                ?: ArrayList<Bounded>(1).also { collisionCells[j * width + i] = it }
+                            cell.add(TileInstance(getTile(tileId), GridCoordinate(i, j)))
+                        }
+                    }
+                }
+            }
+        }
+        hasCollisionTiles = collisionCells.any { it != null }
+    }
+
+    @Synchronized
+    fun getTypeIndex(type: String) = typeIndices.getOrPut(type) { TypeIndex(type) }
+
+    /**
+     * Collision tiles in the cells that overlap [region], given in pixels. Tiles that only touch the region may be
+     * included.
+     */
+    fun getCollisionBounds(region: Bounded): List<Bounded> {
+        if (!hasCollisionTiles) return listOf()
+        val topLeft = region.topLeftLocation
+        return collectCollisionBounds(
+            topLeft.x,
+            topLeft.y,
+            topLeft.x + region.width,
+            topLeft.y + region.height,
+            ArrayList()
+        )
+    }
+
+    /**
+     * Add to [result] the collision tiles in the cells that overlap the rectangle from ([minX], [minY]) to ([maxX],
+     * [maxY]) in pixels, and return [result]. See [getCollisionBounds].
+     */
+    fun collectCollisionBounds(
+        minX: Double,
+        minY: Double,
+        maxX: Double,
+        maxY: Double,
+        result: MutableList<Bounded>
+    ): MutableList<Bounded> {
+        if (!hasCollisionTiles) return result
+        val minCellX = floor(minX / tileMap.tileWidth).toInt().coerceIn(0, width - 1)
+        val minCellY = floor(minY / tileMap.tileHeight).toInt().coerceIn(0, height - 1)
+        val maxCellX = floor(maxX / tileMap.tileWidth).toInt().coerceIn(0, width - 1)
+        val maxCellY = floor(maxY / tileMap.tileHeight).toInt().coerceIn(0, height - 1)
+        for (j in minCellY..maxCellY) {
+            for (i in minCellX..maxCellX) {
+                collisionCells[j * width + i]?.let { result.addAll(it) }
+            }
+        }
+        return result
+    }
+
+    private fun Int.wrap(size: Int) = (this % size).let { if (it < 0) it + size else it }
+
+    /**
+     * Split the range [from]..[to] of coordinates that wrap around [size] into at most two ranges within 0 until
+     * [size].
+     */
+    private inline fun wrappedRanges(from: Int, to: Int, size: Int, block: (Int, Int) -> Unit) {
+        if (to - from + 1 >= size) {
+            block(0, size - 1)
+            return
+        }
+        val start = from.wrap(size)
+        val end = start + (to - from)
+        if (end < size) {
+            block(start, end)
+        } else {
+            block(start, size - 1)
+            block(0, end - size)
+        }
+    }
+}
@@ -120,6 +120,34 @@ class TileMap(width: Int, height: Int) {
             _collisionBoundsCache = value
         }
 
+    @Transient
+    private var _tileIndex: TileIndex? = null
+
+    /**
+     * Layers and their modification counts when [_tileIndex] was built.
+     */
+    @Transient
+    private var indexedLayers: List<Pair<TileMapLayer, Int>> = listOf()
+
+    /**
+     * Index of the tiles of the map, rebuilt when a layer has changed since it was last built.
+     */
+    val tileIndex: TileIndex
+        @Synchronized get() {
+            val index = _tileIndex
+            val isCurrent = index != null && indexedLayers.size == layers.size &&
+                    indexedLayers.indices.all { i ->
+                        val (layer, modificationCount) = indexedLayers[i]
+                        layer === layers[i] && layer.modificationCount == modificationCount
+                    }
+            return if (isCurrent) {
+                index!!
+            } else {
+                indexedLayers = layers.map { it to it.modificationCount }
+                TileIndex(this).also { _tileIndex = it }
+            }
+        }
+
     /**
      * The background color of the map. (optional, may include alpha value since 0.15 in the form #AARRGGBB)
      * (Not used for now)
@@ -209,12 +237,14 @@ class TileMap(width: Int, height: Int) {
 
     fun addLayer(layer: TileMapLayer): TileMapLayer {
         _layers.add(layer)
+        _collisionBoundsCache = null
         events.layersChanged.fire()
         return layer
     }
 
     fun removeLayer(layer: TileMapLayer) {
         _layers.remove(layer)
+        _collisionBoundsCache = null
         events.layersChanged.fire()
     }
 
@@ -319,12 +349,20 @@ class TileMap(width: Int, height: Int) {
         events.mapSizeChanged.fire()
     }
 
-    val boundsNeedRecompute get() = layers.any { it.boundsNeedRecompute != true }
+    val boundsNeedRecompute get() = layers.any { it.boundsNeedRecompute != false }
 
     fun computeCollisionBounds(): List<Bounded> {
-        return layers.filter { it.blocking }.flatMap { it.getCollisionBounds() }
+        val bounds = layers.filter { it.blocking }.flatMap { it.getCollisionBounds() }
+        // Non-blocking layers have no bounds, but are up to date as well
+        layers.forEach { it.boundsNeedRecompute = false }
+        return bounds
     }
 
+    /**
+     * Collision bounds of the tiles near [region], given in pixels. See [TileIndex.getCollisionBounds].
+     */
+    fun getCollisionBounds(region: Bounded) = tileIndex.getCollisionBounds(region)
+
     /**
      * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
      */
@@ -332,6 +370,7 @@ class TileMap(width: Int, height: Int) {
         events = TileMapEvents()
         tileSetRanges = tileSets.map { it.firstgid..(it.tilecount + it.firstgid) to it }
         idTileMapping = HashMap()
+        indexedLayers = listOf()
         return this
     }
 
@@ -61,6 +61,14 @@ class TileMapLayer(
 
     var boundsNeedRecompute: Boolean? = null
 
+    /**
+     * Incremented whenever a tile or a property of this layer changes, so that indices of the tiles can tell when
+     * they are out of date. See [TileIndex].
+     */
+    @Transient
+    var modificationCount = 0
+        private set
+
     val properties: HashMap<String, String?>
         get() = _properties ?: HashMap<String, String?>().also { _properties = it }
 
@@ -119,6 +127,7 @@ class TileMapLayer(
         set(value) {
             properties["blocking"] = if (value) "true" else "false"
             boundsNeedRecompute = true
+            modificationCount++
         }
 
     /**
@@ -145,6 +154,7 @@ class TileMapLayer(
     operator fun set(x: Int, y: Int, tileID: Int) {
         data[x, y] = tileID
         boundsNeedRecompute = true
+        modificationCount++
     }
 
     /**
@@ -161,11 +171,14 @@ class TileMapLayer(
         this.width = width
         this.height = height
         data = TileMapLayerData(width, height)
+        boundsNeedRecompute = true
+        modificationCount++
     }
 
     fun setProperty(propertyName: String, propertyValue: String?) {
         properties[propertyName] = propertyValue
         boundsNeedRecompute = true
+        modificationCount++
     }
 
     context(TileMap)
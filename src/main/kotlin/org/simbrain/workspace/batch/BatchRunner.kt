@@ -0,0 +1,183 @@
+package org.simbrain.workspace.batch
+
+import kotlinx.coroutines.runBlocking
+import org.simbrain.workspace.Producer
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.serialization.WorkspaceSerializer
+import org.simbrain.workspace.updater.WorkspaceUpdater
+import java.io.BufferedInputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.InputStream
+import kotlin.system.exitProcess
+
+/**
+ * Runs a saved workspace without a desktop, e.g. on a compute node with no display, and records selected producers.
+ *
+ * The workspace is opened with [WorkspaceSerializer] in headless mode, so no Swing component is created, and iterated
+ * with [WorkspaceUpdater.iterate]. Every [recordInterval] iterations the producers matching [producerIds] are recorded
+ * to [output] by a [ProducerRecorder].
+ *
+ * A producer id has the form `[component/]id[:method]`, e.g. `Neuron_1`, `Neuron_1:getActivation` or
+ * `net.xml/NeuronArray_2:getActivationArray`, where `id` is the [Producer.getId] of the producer, i.e. the id of the
+ * model it belongs to. The component and method parts narrow the match when the same id is used in several components,
+ * or when a model has several producers.
+ */
+class BatchRunner(
+    val workspaceFile: File,
+    val iterations: Int,
+    val recordInterval: Int = 1,
+    val producerIds: List<String> = listOf(),
+    val output: File? = null,
+    val format: ProducerRecorder.RecordingFormat = ProducerRecorder.RecordingFormat.CSV,
+    val updateMode: WorkspaceUpdater.UpdateMode = WorkspaceUpdater.UpdateMode.Serial
+) {
+
+    /**
+     * Throughput of a batch run.
+     */
+    data class Statistics(val iterations: Int, val rows: Int, val loadNanos: Long, val runNanos: Long) {
+
+        val iterationsPerSecond get() = if (runNanos == 0L) 0.0 else iterations * 1e9 / runNanos
+
+        override fun toString() = """
+            |Loaded workspace in ${"%.1f".format(loadNanos / 1e6)} ms
+            |Ran $iterations iterations in ${"%.1f".format(runNanos / 1e6)} ms (${"%.1f".format(iterationsPerSecond)} iterations / s, ${"%.4f".format(if (iterations == 0) 0.0 else runNanos / 1e6 / iterations)} ms / iteration)
+            |Recorded $rows rows
+        """.trimMargin()
+    }
+
+    init {
+        require(iterations >= 0) { "Number of iterations must not be negative" }
+        require(recordInterval > 0) { "Record interval must be positive" }
+        require(producerIds.isEmpty() || output != null) { "Recording producers requires an output file" }
+    }
+
+    /**
+     * Open the workspace, run it, and return throughput statistics.
+     */
+    suspend fun run(): Statistics {
+        val loadStart = System.nanoTime()
+        val workspace = BufferedInputStream(FileInputStream(workspaceFile)).use { openWorkspace(it) }
+        return run(workspace, System.nanoTime() - loadStart)
+    }
+
+    /**
+     * Run a workspace that is already open, e.g. one opened with [openWorkspace] and then modified, and return
+     * throughput statistics. [loadNanos] is the time it took to open it.
+     */
+    suspend fun run(workspace: Workspace, loadNanos: Long = 0): Statistics {
+        workspace.updater.updateMode = updateMode
+
+        val producers = producerIds.map { id -> id to findProducers(workspace, id) }
+        val recorder = output?.takeIf { producers.isNotEmpty() }?.let { file ->
+            ProducerRecorder(
+                producers.flatMap { (_, matches) -> matches.map { it.second } },
+                producers.flatMap { (_, matches) -> matches.map { it.first } },
+                FileOutputStream(file),
+                format
+            )
+        }
+
+        val updater = workspace.updater
+        val runStart = System.nanoTime()
+        recorder.use {
+            recorder?.record(updater.time)
+            var remaining = iterations
+            while (remaining > 0) {
+                val steps = minOf(recordInterval, remaining)
+                updater.iterate(steps)
+                remaining -= steps
+                recorder?.record(updater.time)
+            }
+        }
+        val runNanos = System.nanoTime() - runStart
+        return Statistics(iterations, recorder?.numRows ?: 0, loadNanos, runNanos)
+    }
+
+    /**
+     * Producers matching an id, with the column names to record them under.
+     */
+    private fun findProducers(workspace: Workspace, producerId: String): List<Pair<String, Producer>> {
+        val componentName = producerId.substringBefore('/', "").takeIf { it.isNotEmpty() }
+        val id = producerId.substringAfter('/').substringBefore(':')
+        val methodName = producerId.substringAfter('/').substringAfter(':', "").takeIf { it.isNotEmpty() }
+        val matches = with(workspace.couplingManager) {
+            workspace.componentList
+                .filter { componentName == null || it.name == componentName }
+                .flatMap { component ->
+                    component.producers
+                        .filter { it.id == id && (methodName == null || it.method.name == methodName) }
+                        .map { "${component.name}/${it.id}:${it.method.name}" to it }
+                        .toList()
+                }
+        }
+        require(matches.isNotEmpty()) { "No producer matches $producerId" }
+        return matches
+    }
+
+    companion object {
+
+        /**
+         * Open a workspace archive without creating any desktop component.
+         */
+        @JvmStatic
+        fun openWorkspace(input: InputStream) = Workspace().also {
+            WorkspaceSerializer(it).deserialize(input, headless = true)
+        }
+
+        /**
+         * Called by build.gradle#runBatch to run a saved workspace from the command line without a display.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) = runBlocking<Unit> {
+            System.setProperty("java.awt.headless", "true")
+
+            if (args.isEmpty()) {
+                System.err.println(USAGE)
+                exitProcess(1)
+            }
+
+            val options = HashMap<String, String>()
+            var index = 1
+            while (index < args.size) {
+                val option = args[index++]
+                when (option) {
+                    "--parallel" -> options[option] = "true"
+                    "--iterations", "--every", "--producers", "--out", "--format" -> {
+                        require(index < args.size) { "Missing value for $option\n$USAGE" }
+                        options[option] = args[index++]
+                    }
+                    else -> throw IllegalArgumentException("Unknown option $option\n$USAGE")
+                }
+            }
+
+            val format = when (options["--format"]?.lowercase()) {
+                null, "csv" -> ProducerRecorder.RecordingFormat.CSV
+                "binary" -> ProducerRecorder.RecordingFormat.Binary
+                else -> throw IllegalArgumentException("Unknown format ${options["--format"]}\n$USAGE")
+            }
+
+            val runner = BatchRunner(
+                workspaceFile = File(args[0]),
+                iterations = options["--iterations"]?.toInt() ?: 1000,
+                recordInterval = options["--every"]?.toInt() ?: 1,
+                producerIds = options["--producers"]?.split(',')?.map { it.trim() }?.filter { it.isNotEmpty() } ?: listOf(),
+                output = options["--out"]?.let { File(it) },
+                format = format,
+                updateMode = if ("--parallel" in options) WorkspaceUpdater.UpdateMode.Parallel else WorkspaceUpdater.UpdateMode.Serial
+            )
+            println(runner.run())
+            exitProcess(0)
+        }
+    }
+}
+
+private const val USAGE = """Usage: <workspace.zip> [options]
+    --iterations N          number of iterations to run (default 1000)
+    --every K               record every K iterations (default 1)
+    --producers ID,ID,...   producers to record, each of the form [component/]id[:method]
+    --out FILE              file to record to
+    --format csv|binary     format of the recording (default csv)
+    --parallel              update components in parallel where couplings allow it"""
@@ -0,0 +1,110 @@
+package org.simbrain.workspace.batch
+
+import org.simbrain.util.UserParameter
+import org.simbrain.util.propertyeditor.GuiEditable
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.WorkspaceComponent
+import kotlin.reflect.KClass
+import kotlin.reflect.KMutableProperty1
+import kotlin.reflect.KProperty1
+import kotlin.reflect.full.memberProperties
+import kotlin.reflect.jvm.isAccessible
+import kotlin.reflect.jvm.javaField
+
+/**
+ * Sets a user parameter, i.e. a property annotated with [UserParameter] or delegated to [GuiEditable], in the
+ * component of a workspace named in [address]. The address has the form `component/target.property`, where
+ * - `component` is the name of a workspace component, e.g. `net.xml`,
+ * - `target` is either a property of the component, e.g. `network`, or the id or the simple class name of one or more
+ * of its attribute containers, e.g. `Neuron_3` or `Synapse` (all synapses),
+ * - `property` is a path of properties ending in a user parameter, e.g. `timeStep` or `learningRule.learningRate`.
+ *
+ * The [value] is converted to the type of the parameter, which can be a number, boolean, string or enum.
+ */
+class ParameterOverride(val address: String, val value: String) {
+
+    val componentName = address.substringBefore('/', "")
+
+    private val path = address.substringAfter('/').split('.')
+
+    init {
+        require(componentName.isNotEmpty() && path.size >= 2 && path.none { it.isEmpty() }) {
+            "Parameter address $address does not have the form component/target.property"
+        }
+    }
+
+    /**
+     * Set the parameter in [workspace] and return the number of objects that were changed.
+     */
+    fun apply(workspace: Workspace): Int {
+        val component = workspace.componentList.firstOrNull { it.name == componentName }
+            ?: throw IllegalArgumentException("No component named $componentName")
+        val objects = targets(component, path[0]).map { target ->
+            path.subList(1, path.size - 1).fold(target) { obj, name ->
+                readableProperty(obj, name).getter.call(obj)
+                    ?: throw IllegalArgumentException("$name is null in $address")
+            }
+        }
+        objects.forEach { obj ->
+            val property = userParameter(obj, path.last())
+            property.setter.call(obj, convert(value, property.returnType.classifier as KClass<*>))
+        }
+        return objects.size
+    }
+
+    private fun targets(component: WorkspaceComponent, name: String): List<Any> {
+        component::class.memberProperties.firstOrNull { it.name == name }?.let { property ->
+            property.isAccessible = true
+            return listOfNotNull(property.getter.call(component))
+        }
+        return component.attributeContainers
+            .filter { it.id == name || it.javaClass.simpleName == name }
+            .ifEmpty { throw IllegalArgumentException("Nothing named $name in component ${component.name}") }
+    }
+
+    private fun readableProperty(obj: Any, name: String): KProperty1<Any, *> {
+        @Suppress("UNCHECKED_CAST")
+        return (obj::class.memberProperties.firstOrNull { it.name == name } as? KProperty1<Any, *>)
+            ?.apply { isAccessible = true }
+            ?: throw IllegalArgumentException("${obj::class.simpleName} has no property $name")
+    }
+
+    private fun userParameter(obj: Any, name: String): KMutableProperty1<Any, Any?> {
+        val property = readableProperty(obj, name)
+        val isUserParameter = property.annotations.any { it is UserParameter } ||
+                property.getter.annotations.any { it is UserParameter } ||
+                property.javaField?.isAnnotationPresent(UserParameter::class.java) == true ||
+                property.getDelegate(obj) is GuiEditable<*, *>
+        require(isUserParameter && property is KMutableProperty1<*, *>) {
+            "${obj::class.simpleName}.$name is not a user parameter"
+        }
+        @Suppress("UNCHECKED_CAST")
+        return property as KMutableProperty1<Any, Any?>
+    }
+
+    private fun convert(value: String, type: KClass<*>): Any = when (type) {
+        Double::class -> value.toDouble()
+        Float::class -> value.toFloat()
+        Int::class -> value.toInt()
+        Long::class -> value.toLong()
+        Short::class -> value.toShort()
+        Boolean::class -> value.toBooleanStrict()
+        String::class -> value
+        else -> type.java.enumConstants?.firstOrNull { (it as Enum<*>).name.equals(value, ignoreCase = true) }
+            ?: throw IllegalArgumentException("Cannot set a parameter of type ${type.simpleName} from \"$value\"")
+    }
+
+    override fun toString() = "$address=$value"
+
+    companion object {
+
+        /**
+         * Parse an override written as `address=value`.
+         */
+        @JvmStatic
+        fun parse(string: String): ParameterOverride {
+            require('=' in string) { "Parameter override $string does not have the form address=value" }
+            return ParameterOverride(string.substringBefore('=').trim(), string.substringAfter('=').trim())
+        }
+    }
+}
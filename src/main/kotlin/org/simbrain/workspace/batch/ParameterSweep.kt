@@ -0,0 +1,294 @@
+package org.simbrain.workspace.batch
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
+import org.simbrain.workspace.updater.WorkspaceUpdater
+import java.io.ByteArrayInputStream
+import java.io.File
+import kotlin.system.exitProcess
+
+/**
+ * Runs many instances of the same workspace concurrently, each with some of its parameters overridden, e.g. to sweep
+ * a learning rate or the time step of a network over a hundred values in a single JVM.
+ *
+ * The workspace archive is read once. Each point of the sweep is a list of [ParameterOverride]s: for each point an
+ * independent workspace is opened from the archive in headless mode, the overrides are applied and the workspace is
+ * run by a [BatchRunner], which records the chosen producers to its own file in [outputDirectory]. A summary of all
+ * runs, with their parameters, throughput and errors, is written to `sweep.csv` in the same directory. A run that
+ * fails does not stop the others.
+ *
+ * At most [workers] runs are in progress at a time. In addition a run is only started when the free heap is at least
+ * [memoryPerRun] bytes, unless no other run is in progress. By default the memory a run needs is estimated from the
+ * first workspace opened, which is run alone: other runs are only started once the estimate is known. If that run
+ * fails before it is measured, the sweep goes on with [workers] runs at a time and no estimate. See [MemoryGate].
+ */
+class ParameterSweep(
+    val workspaceFile: File,
+    val points: List<List<ParameterOverride>>,
+    val outputDirectory: File,
+    val iterations: Int,
+    val recordInterval: Int = 1,
+    val producerIds: List<String> = listOf(),
+    val format: ProducerRecorder.RecordingFormat = ProducerRecorder.RecordingFormat.CSV,
+    val updateMode: WorkspaceUpdater.UpdateMode = WorkspaceUpdater.UpdateMode.Serial,
+    val workers: Int = Runtime.getRuntime().availableProcessors(),
+    memoryPerRun: Long? = null
+) {
+
+    /**
+     * Result of one point of the sweep. [statistics] is null if the run failed with [error].
+     */
+    data class RunResult(
+        val index: Int,
+        val overrides: List<ParameterOverride>,
+        val output: File?,
+        val statistics: BatchRunner.Statistics?,
+        val error: Throwable? = null
+    )
+
+    private val gate = MemoryGate(memoryPerRun, ::freeMemory)
+
+    init {
+        require(workers > 0) { "Number of workers must be positive" }
+        require(points.isNotEmpty()) { "A sweep needs at least one point" }
+    }
+
+    /**
+     * Run all points of the sweep and return their results in the order of [points].
+     */
+    suspend fun run(): List<RunResult> = coroutineScope {
+        outputDirectory.mkdirs()
+        val archive = workspaceFile.readBytes()
+        val semaphore = Semaphore(workers)
+        val results = points.mapIndexed { index, overrides ->
+            async(Dispatchers.Default) {
+                semaphore.withPermit {
+                    val estimating = gate.enter()
+                    try {
+                        runPoint(index, overrides, archive, estimating)
+                    } finally {
+                        gate.exit()
+                    }
+                }
+            }
+        }.awaitAll()
+        writeSummary(results)
+        results
+    }
+
+    private suspend fun runPoint(
+        index: Int,
+        overrides: List<ParameterOverride>,
+        archive: ByteArray,
+        estimating: Boolean
+    ): RunResult {
+        val output = if (producerIds.isEmpty()) null else File(outputDirectory, "run-$index.${format.extension}")
+        return try {
+            // The gate admits no other run until there is an estimate, so this one is measured in isolation
+            if (estimating) System.gc()
+            val usedBefore = usedMemory()
+            val loadStart = System.nanoTime()
+            val workspace = BatchRunner.openWorkspace(ByteArrayInputStream(archive))
+            val loadNanos = System.nanoTime() - loadStart
+            if (estimating) {
+                System.gc()
+                gate.estimate(maxOf(usedMemory() - usedBefore, archive.size * 4L))
+            }
+            overrides.forEach { it.apply(workspace) }
+            val runner = BatchRunner(workspaceFile, iterations, recordInterval, producerIds, output, format, updateMode)
+            RunResult(index, overrides, output, runner.run(workspace, loadNanos))
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            RunResult(index, overrides, output, null, e)
+        }
+    }
+
+    private fun usedMemory() = Runtime.getRuntime().let { it.totalMemory() - it.freeMemory() }
+
+    private fun freeMemory() = Runtime.getRuntime().maxMemory() - usedMemory()
+
+    private fun writeSummary(results: List<RunResult>) {
+        val addresses = points.flatten().map { it.address }.distinct()
+        File(outputDirectory, SUMMARY_FILE).bufferedWriter().use { writer ->
+            writer.write((listOf("run") + addresses + listOf("output", "iterations per second", "error")).joinToString(",") { quote(it) })
+            writer.newLine()
+            results.forEach { result ->
+                val values = addresses.map { address -> result.overrides.lastOrNull { it.address == address }?.value ?: "" }
+                val row = listOf(result.index.toString()) + values + listOf(
+                    result.output?.name ?: "",
+                    result.statistics?.let { "%.1f".format(it.iterationsPerSecond) } ?: "",
+                    result.error?.let { "${it.javaClass.simpleName}: ${it.message}" } ?: ""
+                )
+                writer.write(row.joinToString(",") { quote(it) })
+                writer.newLine()
+            }
+        }
+    }
+
+    private fun quote(value: String) = if (value.any { it == ',' || it == '"' || it == '\n' }) {
+        "\"${value.replace("\"", "\"\"")}\""
+    } else {
+        value
+    }
+
+    companion object {
+
+        const val SUMMARY_FILE = "sweep.csv"
+
+        /**
+         * All combinations of the values of several parameters, given as a map from addresses to values. The first
+         * parameter varies slowest.
+         */
+        @JvmStatic
+        fun grid(values: Map<String, List<String>>): List<List<ParameterOverride>> =
+            values.entries.fold(listOf(listOf<ParameterOverride>())) { points, (address, addressValues) ->
+                points.flatMap { point -> addressValues.map { point + ParameterOverride(address, it) } }
+            }
+
+        /**
+         * Called by build.gradle#runSweep to sweep parameters of a saved workspace from the command line.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) = runBlocking<Unit> {
+            System.setProperty("java.awt.headless", "true")
+
+            if (args.isEmpty()) {
+                System.err.println(USAGE)
+                exitProcess(1)
+            }
+
+            val sweeps = LinkedHashMap<String, List<String>>()
+            val options = HashMap<String, String>()
+            var index = 1
+            while (index < args.size) {
+                val option = args[index++]
+                when (option) {
+                    "--parallel" -> options[option] = "true"
+                    "--sweep", "--out", "--iterations", "--every", "--producers", "--format", "--workers", "--memory-per-run" -> {
+                        require(index < args.size) { "Missing value for $option\n$USAGE" }
+                        val value = args[index++]
+                        if (option == "--sweep") {
+                            val override = ParameterOverride.parse(value)
+                            sweeps[override.address] = override.value.split(',').map { it.trim() }
+                        } else {
+                            options[option] = value
+                        }
+                    }
+                    else -> throw IllegalArgumentException("Unknown option $option\n$USAGE")
+                }
+            }
+            require(sweeps.isNotEmpty()) { "No parameters to sweep\n$USAGE" }
+            val outputDirectory = options["--out"] ?: throw IllegalArgumentException("No output directory\n$USAGE")
+
+            val sweep = ParameterSweep(
+                workspaceFile = File(args[0]),
+                points = ParameterSweep.grid(sweeps),
+                outputDirectory = File(outputDirectory),
+                iterations = options["--iterations"]?.toInt() ?: 1000,
+                recordInterval = options["--every"]?.toInt() ?: 1,
+                producerIds = options["--producers"]?.split(',')?.map { it.trim() }?.filter { it.isNotEmpty() } ?: listOf(),
+                format = when (options["--format"]?.lowercase()) {
+                    null, "csv" -> ProducerRecorder.RecordingFormat.CSV
+                    "binary" -> ProducerRecorder.RecordingFormat.Binary
+                    else -> throw IllegalArgumentException("Unknown format ${options["--format"]}\n$USAGE")
+                },
+                updateMode = if ("--parallel" in options) WorkspaceUpdater.UpdateMode.Parallel else WorkspaceUpdater.UpdateMode.Serial,
+                workers = options["--workers"]?.toInt() ?: Runtime.getRuntime().availableProcessors(),
+                memoryPerRun = options["--memory-per-run"]?.toLong()?.let { it * 1024 * 1024 }
+            )
+            val start = System.nanoTime()
+            val results = sweep.run()
+            val failed = results.count { it.error != null }
+            println("Ran ${results.size} points in ${"%.1f".format((System.nanoTime() - start) / 1e9)} s, $failed failed")
+            results.filter { it.error != null }.forEach { println("Run ${it.index} (${it.overrides.joinToString()}): ${it.error}") }
+            exitProcess(if (failed == 0) 0 else 1)
+        }
+    }
+}
+
+/**
+ * Admits the runs of a [ParameterSweep] while there is enough free heap for them, as reported by [freeMemory].
+ *
+ * A run is admitted when no other run is in progress, or when [memoryPerRun] is known and at most the free heap.
+ * Until a run has reported an [estimate], runs are thus admitted one at a time. If a run finishes without an estimate,
+ * e.g. because it failed before it could be measured, the gate stops waiting for one and admits every run, leaving the
+ * number of concurrent runs to the workers of the sweep.
+ */
+internal class MemoryGate(memoryPerRun: Long?, private val freeMemory: () -> Long) {
+
+    /**
+     * Bytes of heap a run needs, null until estimated.
+     */
+    @Volatile
+    var memoryPerRun = memoryPerRun
+        private set
+
+    @Volatile
+    var runsInProgress = 0
+        private set
+
+    /**
+     * Whether a run finished before [memoryPerRun] was known, after which runs are no longer limited by memory.
+     */
+    @Volatile
+    var estimateMissed = false
+        private set
+
+    private val mutex = Mutex()
+
+    /**
+     * Wait until another run can be admitted, then count it as in progress. Return whether the run is alone and should
+     * report an [estimate] of the memory it needs.
+     */
+    suspend fun enter(): Boolean {
+        while (true) {
+            mutex.withLock {
+                val required = memoryPerRun
+                if (runsInProgress == 0 || estimateMissed || (required != null && freeMemory() >= required)) {
+                    runsInProgress++
+                    return required == null && !estimateMissed
+                }
+            }
+            delay(MEMORY_POLL_MILLIS)
+        }
+    }
+
+    /**
+     * Count a run as done.
+     */
+    suspend fun exit() {
+        mutex.withLock {
+            runsInProgress--
+            if (memoryPerRun == null) estimateMissed = true
+        }
+    }
+
+    /**
+     * Set the memory a run needs, unless it is already known.
+     */
+    suspend fun estimate(bytes: Long) {
+        mutex.withLock {
+            if (memoryPerRun == null) memoryPerRun = bytes
+        }
+    }
+
+    companion object {
+        private const val MEMORY_POLL_MILLIS = 50L
+    }
+}
+
+private const val USAGE = """Usage: <workspace.zip> --sweep ADDRESS=V1,V2,... [--sweep ...] --out DIRECTORY [options]
+    --sweep ADDRESS=VALUES  values of a parameter, addressed as component/target.property (see ParameterOverride);
+                            several --sweep options run all combinations
+    --out DIRECTORY         directory for the recordings of each run and the sweep.csv summary
+    --iterations N          number of iterations of each run (default 1000)
+    --every K               record every K iterations (default 1)
+    --producers ID,ID,...   producers to record, each of the form [component/]id[:method]
+    --format csv|binary     format of the recordings (default csv)
+    --workers N             maximum number of concurrent runs (default: number of processors)
+    --memory-per-run MB     free heap required to start a run (default: estimated from the first run)
+    --parallel              update components in parallel where couplings allow it"""
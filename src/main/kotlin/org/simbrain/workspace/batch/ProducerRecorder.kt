@@ -0,0 +1,234 @@
+package org.simbrain.workspace.batch
+
+import org.simbrain.util.BinaryArrays
+import org.simbrain.workspace.Producer
+import java.io.*
+import java.util.*
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+
+/**
+ * Records the values of a fixed set of producers as columns of doubles, one row per call to [record].
+ *
+ * Double producers give one column and array producers one column per element (the size of an array is fixed by the
+ * first record). Numbers and booleans are converted to doubles. The first column holds the workspace time of the row.
+ *
+ * Rows are written as they are recorded in [RecordingFormat.CSV]. [RecordingFormat.Binary] writes a zip file with a
+ * `columns.txt` entry holding the column names, followed by blocks of rows. Rows are buffered by column until a block
+ * holds about [blockValues] values, and the block is then written as one array entry per column (see [BinaryArrays]),
+ * so memory use does not grow with the length of the recording. Use [readColumns] to read such a file back.
+ */
+class ProducerRecorder(
+    private val producers: List<Producer>,
+    private val names: List<String>,
+    private val output: OutputStream,
+    private val format: RecordingFormat = RecordingFormat.CSV,
+    internal val blockValues: Int = BLOCK_VALUES
+) : Closeable {
+
+    enum class RecordingFormat(val extension: String) {
+        CSV("csv"), Binary("zip")
+    }
+
+    /**
+     * Buffers reused by array producers.
+     */
+    private val buffers = arrayOfNulls<DoubleArray>(producers.size)
+
+    /**
+     * Column names, known after the first record.
+     */
+    private var columnNames: List<String>? = null
+
+    private var row = DoubleArray(0)
+
+    /**
+     * Columns of the block of rows not yet written in [RecordingFormat.Binary].
+     */
+    private var block = Array(0) { DoubleArray(0) }
+
+    private var rowsInBlock = 0
+
+    private var numBlocks = 0
+
+    private val csvWriter by lazy { BufferedWriter(OutputStreamWriter(output, Charsets.UTF_8), 1 shl 16) }
+
+    private val zip by lazy { ZipOutputStream(BufferedOutputStream(output, 1 shl 16)) }
+
+    /**
+     * Number of rows recorded.
+     */
+    var numRows = 0
+        private set
+
+    init {
+        require(producers.size == names.size) { "Each producer needs a name" }
+    }
+
+    /**
+     * Record the current values of the producers at workspace time [time].
+     */
+    fun record(time: Int) {
+        if (columnNames == null) {
+            start()
+        }
+        row[0] = time.toDouble()
+        var column = 1
+        producers.forEachIndexed { i, producer ->
+            val buffer = buffers[i]
+            if (buffer == null) {
+                row[column++] = toDouble(producer, producer.value)
+            } else {
+                val values = if (producer.isFillProducer) producer.fillValue(buffer) else producer.value as DoubleArray
+                check(values.size == buffer.size) {
+                    "Size of ${names[i]} changed from ${buffer.size} to ${values.size} during recording"
+                }
+                values.copyInto(row, column)
+                column += values.size
+            }
+        }
+        when (format) {
+            RecordingFormat.CSV -> {
+                csvWriter.write(row.joinToString(",") { formatValue(it) })
+                csvWriter.newLine()
+            }
+            RecordingFormat.Binary -> {
+                for (c in row.indices) {
+                    block[c][rowsInBlock] = row[c]
+                }
+                rowsInBlock++
+                if (rowsInBlock == block[0].size) {
+                    writeBlock()
+                }
+            }
+        }
+        numRows++
+    }
+
+    /**
+     * Fix the columns from the current producer values and write the header.
+     */
+    private fun start() {
+        val columnNames = mutableListOf(TIME_COLUMN)
+        producers.forEachIndexed { i, producer ->
+            val value = producer.value
+            if (value is DoubleArray) {
+                buffers[i] = DoubleArray(value.size)
+                value.indices.forEach { columnNames.add("${names[i]}[$it]") }
+            } else {
+                toDouble(producer, value)
+                columnNames.add(names[i])
+            }
+        }
+        this.columnNames = columnNames
+        row = DoubleArray(columnNames.size)
+        when (format) {
+            RecordingFormat.CSV -> {
+                csvWriter.write(columnNames.joinToString(",") { "\"${it.replace("\"", "\"\"")}\"" })
+                csvWriter.newLine()
+            }
+            RecordingFormat.Binary -> {
+                val blockRows = maxOf(1, blockValues / columnNames.size)
+                block = Array(columnNames.size) { DoubleArray(blockRows) }
+                writeColumnNames()
+            }
+        }
+    }
+
+    private fun writeColumnNames() {
+        zip.putNextEntry(ZipEntry(COLUMNS_ENTRY))
+        zip.write((columnNames ?: listOf()).joinToString("\n").toByteArray(Charsets.UTF_8))
+        zip.closeEntry()
+    }
+
+    /**
+     * Write the rows of [block] recorded so far, each column as an array entry named after the column and the block.
+     */
+    private fun writeBlock() {
+        block.forEachIndexed { c, column ->
+            zip.putNextEntry(ZipEntry("${BinaryArrays.ENTRY_FOLDER}$c$BLOCK_SEPARATOR$numBlocks.bin"))
+            BinaryArrays.write(if (rowsInBlock == column.size) column else column.copyOf(rowsInBlock), zip)
+            zip.closeEntry()
+        }
+        numBlocks++
+        rowsInBlock = 0
+    }
+
+    private fun toDouble(producer: Producer, value: Any?): Double = when {
+        producer.isDoubleProducer -> producer.doubleValue
+        value is Number -> value.toDouble()
+        value is Boolean -> if (value) 1.0 else 0.0
+        else -> throw IllegalArgumentException(
+            "${producer.simpleDescription} produces ${value?.javaClass?.simpleName}, which cannot be recorded as doubles"
+        )
+    }
+
+    private fun formatValue(value: Double) = if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+        value.toLong().toString()
+    } else {
+        value.toString()
+    }
+
+    /**
+     * Write what remains to be written and close the output.
+     */
+    override fun close() {
+        when (format) {
+            RecordingFormat.CSV -> csvWriter.close()
+            RecordingFormat.Binary -> zip.use {
+                if (columnNames == null) {
+                    writeColumnNames()
+                } else if (rowsInBlock > 0) {
+                    writeBlock()
+                }
+            }
+        }
+    }
+
+    companion object {
+
+        const val TIME_COLUMN = "time"
+
+        private const val COLUMNS_ENTRY = "columns.txt"
+
+        /**
+         * Default number of values buffered before a block of rows is written in [RecordingFormat.Binary].
+         */
+        const val BLOCK_VALUES = 1 shl 20
+
+        private const val BLOCK_SEPARATOR = '-'
+
+        /**
+         * Read a file written in [RecordingFormat.Binary], as a map from column names to columns in column order.
+         */
+        @JvmStatic
+        fun readColumns(input: InputStream): Map<String, DoubleArray> {
+            val zip = ZipInputStream(BufferedInputStream(input, 1 shl 16))
+            var names = listOf<String>()
+            val blocks = HashMap<Int, TreeMap<Int, DoubleArray>>()
+            var entry = zip.nextEntry
+            while (entry != null) {
+                val arrayId = BinaryArrays.arrayId(entry.name)
+                if (arrayId != null) {
+                    val column = arrayId.substringBefore(BLOCK_SEPARATOR).toInt()
+                    val block = arrayId.substringAfter(BLOCK_SEPARATOR).toInt()
+                    blocks.getOrPut(column) { TreeMap() }[block] = BinaryArrays.read(zip)
+                } else if (entry.name == COLUMNS_ENTRY) {
+                    names = zip.readAllBytes().toString(Charsets.UTF_8).lines().filter { it.isNotEmpty() }
+                }
+                entry = zip.nextEntry
+            }
+            return names.withIndex().associateTo(LinkedHashMap()) { (i, name) ->
+                val columnBlocks = blocks[i]?.values ?: throw IOException("Column $name is missing")
+                val column = DoubleArray(columnBlocks.sumOf { it.size })
+                var offset = 0
+                columnBlocks.forEach {
+                    it.copyInto(column, offset)
+                    offset += it.size
+                }
+                name to column
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.simbrain.workspace.couplings
+
+import java.lang.invoke.LambdaMetafactory
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Method
+import java.util.function.BiConsumer
+import java.util.function.BiFunction
+import java.util.function.ObjDoubleConsumer
+import java.util.function.ToDoubleFunction
+import java.util.function.Function as JFunction
+
+/**
+ * Direct accessors for [org.simbrain.workspace.Producible] getters and [org.simbrain.workspace.Consumable] setters.
+ *
+ * [CouplingCache] creates these once per method and passes them to each [org.simbrain.workspace.Producer] and
+ * [org.simbrain.workspace.Consumer] it builds, so that updating a coupling is an ordinary interface call that the JIT
+ * can inline rather than a call through [Method.invoke]. Methods that take or return a `double` also get a primitive
+ * accessor, so that scalar couplings do not box values, and [org.simbrain.workspace.Producible.fillMethod] methods
+ * get one so that array couplings can reuse a buffer.
+ *
+ * Accessors are spun with [LambdaMetafactory]. If that is not possible for a method (e.g. a method declared in a
+ * class that is not public) these functions return null and the attribute falls back to reflection.
+ */
+@Suppress("UNCHECKED_CAST")
+internal object AttributeAccessors {
+
+    private val lookup = MethodHandles.lookup()
+
+    fun getter(method: Method): JFunction<Any, Any?>? = spin(method) { handle ->
+        LambdaMetafactory.metafactory(
+            lookup,
+            "apply",
+            MethodType.methodType(JFunction::class.java),
+            MethodType.methodType(Any::class.java, Any::class.java),
+            handle,
+            MethodType.methodType(method.returnType.boxed, method.declaringClass)
+        ).target.invokeWithArguments() as JFunction<Any, Any?>
+    }
+
+    fun doubleGetter(method: Method): ToDoubleFunction<Any>? {
+        if (method.returnType != Double::class.javaPrimitiveType) return null
+        return spin(method) { handle ->
+            LambdaMetafactory.metafactory(
+                lookup,
+                "applyAsDouble",
+                MethodType.methodType(ToDoubleFunction::class.java),
+                MethodType.methodType(Double::class.javaPrimitiveType, Any::class.java),
+                handle,
+                MethodType.methodType(Double::class.javaPrimitiveType, method.declaringClass)
+            ).target.invokeWithArguments() as ToDoubleFunction<Any>
+        }
+    }
+
+    fun setter(method: Method): BiConsumer<Any, Any?>? = spin(method) { handle ->
+        LambdaMetafactory.metafactory(
+            lookup,
+            "accept",
+            MethodType.methodType(BiConsumer::class.java),
+            MethodType.methodType(Void.TYPE, Any::class.java, Any::class.java),
+            handle,
+            MethodType.methodType(Void.TYPE, method.declaringClass, method.parameterTypes[0].boxed)
+        ).target.invokeWithArguments() as BiConsumer<Any, Any?>
+    }
+
+    fun doubleSetter(method: Method): ObjDoubleConsumer<Any>? {
+        if (method.parameterTypes[0] != Double::class.javaPrimitiveType) return null
+        return spin(method) { handle ->
+            LambdaMetafactory.metafactory(
+                lookup,
+                "accept",
+                MethodType.methodType(ObjDoubleConsumer::class.java),
+                MethodType.methodType(Void.TYPE, Any::class.java, Double::class.javaPrimitiveType),
+                handle,
+                MethodType.methodType(Void.TYPE, method.declaringClass, Double::class.javaPrimitiveType)
+            ).target.invokeWithArguments() as ObjDoubleConsumer<Any>
+        }
+    }
+
+    fun filler(method: Method): BiFunction<Any, DoubleArray, DoubleArray>? = spin(method) { handle ->
+        LambdaMetafactory.metafactory(
+            lookup,
+            "apply",
+            MethodType.methodType(BiFunction::class.java),
+            MethodType.methodType(Any::class.java, Any::class.java, Any::class.java),
+            handle,
+            MethodType.methodType(DoubleArray::class.java, method.declaringClass, DoubleArray::class.java)
+        ).target.invokeWithArguments() as BiFunction<Any, DoubleArray, DoubleArray>
+    }
+
+    /**
+     * Create an accessor from a handle to [method], or return null if the method is not accessible from here.
+     */
+    private inline fun <T> spin(method: Method, create: (MethodHandle) -> T): T? = try {
+        create(lookup.unreflect(method))
+    } catch (e: Exception) {
+        null
+    }
+
+    private val Class<*>.boxed: Class<*> get() = MethodType.methodType(this).wrap().returnType()
+}
@@ -21,6 +21,22 @@ import java.lang.reflect.Type
  */
 class Coupling private constructor(val producer: Producer, val consumer: Consumer) {
 
+    /**
+     * True when both sides have primitive accessors, so that values can be passed without boxing.
+     */
+    private val isDoubleCoupling = producer.isDoubleProducer && consumer.isDoubleConsumer
+
+    /**
+     * True when the producer can fill a buffer and the consumer copies what it is given, so that the same array can
+     * be passed on every update. See [Producible.fillMethod].
+     */
+    private val isBufferedCoupling = producer.isFillProducer && consumer.copiesArray()
+
+    /**
+     * Array passed from producer to consumer by buffered couplings.
+     */
+    private var buffer = DoubleArray(0)
+
     /**
      * This is the main action!  Set the value of the consumer based on the
      * value of the producer.
@@ -30,7 +46,14 @@ class Coupling private constructor(val producer: Producer, val consumer: Consume
      * (cf http://www.javapractices.com/topic/TopicAction.do?Id=15)).
      */
     fun update() {
-        consumer.setValue(producer.value)
+        if (isDoubleCoupling) {
+            consumer.setDoubleValue(producer.doubleValue)
+        } else if (isBufferedCoupling) {
+            buffer = producer.fillValue(buffer)
+            consumer.setValue(buffer)
+        } else {
+            consumer.setValue(producer.value)
+        }
     }
 
     val type: Type
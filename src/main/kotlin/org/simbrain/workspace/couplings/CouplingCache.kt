@@ -5,7 +5,7 @@ import java.lang.reflect.Method
 
 /**
  * Cache method objects for each [AttributeContainer]. Reflection is still used to create Method objects but they are
- * cached here for quick access.
+ * cached here for quick access, along with direct accessors (see [AttributeAccessors]) used to call them.
  *
  * A utility class for [CouplingManager]. Provides optimized ways to access specific sets of producers and consumers.
  * These methods should not be called directly and this class should not be instantiated outside of CouplingManager.
@@ -81,16 +81,26 @@ class CouplingCache(val couplingManager: CouplingManager) {
 
         val customDescription = javaClass.findMethod(annotation.customDescriptionMethod)
         val arrayDescriptionMethod = javaClass.findMethod(annotation.arrayDescriptionMethod)
+        val fillMethod = javaClass.findMethod(annotation.fillMethod)?.also {
+            require(it.returnType == DoubleArray::class.java && it.parameterTypes.contentEquals(arrayOf(DoubleArray::class.java))) {
+                "Fill method ${it.name} of ${method.name} must take and return a double array."
+            }
+        }
 
         val customPriorityMethod = javaClass.findMethod(annotation.customPriorityMethod)
         val priority = customPriorityMethod?.invoke(this) as? Int ?: annotation.priority
 
+        val getter = AttributeAccessors.getter(method)
+        val doubleGetter = AttributeAccessors.doubleGetter(method)
+        val filler = fillMethod?.let { AttributeAccessors.filler(it) }
 
         fun (attributeContainer: AttributeContainer) = Producer.builder(attributeContainer, method)
                 .description(annotation.description)
                 .priority(priority)
                 .customDescription(customDescription)
                 .arrayDescriptionMethod(arrayDescriptionMethod)
+                .accessors(getter, doubleGetter)
+                .fillMethod(fillMethod, filler)
                 .build()
     }(this)
 
@@ -113,10 +123,15 @@ class CouplingCache(val couplingManager: CouplingManager) {
         val customPriorityMethod = javaClass.findMethod(annotation.customPriorityMethod)
         val priority = customPriorityMethod?.invoke(this) as? Int ?: annotation.priority
 
+        val setter = AttributeAccessors.setter(method)
+        val doubleSetter = AttributeAccessors.doubleSetter(method)
+
         fun (attributeContainer: AttributeContainer) = Consumer.builder(attributeContainer, method)
                 .priority(priority)
                 .description(annotation.description)
                 .customDescription(customDescription)
+                .accessors(setter, doubleSetter)
+                .copiesArray(annotation.copiesArray)
                 .build()
     }(this)
 
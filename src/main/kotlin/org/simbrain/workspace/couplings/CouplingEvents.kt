@@ -10,5 +10,6 @@ class CouplingEvents: Events() {
     val couplingAdded = OneArgEvent<Coupling>()
     val couplingRemoved = OneArgEvent<Coupling>()
     val couplingsRemoved = OneArgEvent<Iterable<Coupling>>()
+    val couplingGroupAdded = OneArgEvent<CouplingGroup>()
 
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package org.simbrain.workspace.couplings
+
+import org.simbrain.workspace.Consumer
+import org.simbrain.workspace.Producer
+
+/**
+ * A set of scalar couplings that are updated together, e.g. one for each of a thousand odor sensors coupled to a
+ * thousand neurons. Rather than updating each coupling on its own, the producer values are gathered into one packed
+ * array and then scattered into the consumers in a single pass. Since all values are read before any are written,
+ * couplings in a group never see each other's updates within a workspace update.
+ *
+ * Groups are created with [CouplingManager.createCouplingGroup]. Their couplings are still ordinary couplings of the
+ * [CouplingManager], but the group is updated, serialized, and shown in the coupling list as one unit. When a coupling
+ * in the group is removed (for example because its producer or consumer was deleted) it is dropped from the group.
+ */
+class CouplingGroup internal constructor(couplings: List<Coupling>, var label: String) {
+
+    /**
+     * The couplings in this group, in gather / scatter order.
+     */
+    var couplings: List<Coupling> = couplings
+        private set
+
+    private var producers: Array<Producer> = couplings.map { it.producer }.toTypedArray()
+
+    private var consumers: Array<Consumer> = couplings.map { it.consumer }.toTypedArray()
+
+    /**
+     * Producer values read during the last update.
+     */
+    var values = DoubleArray(couplings.size)
+        private set
+
+    val size get() = couplings.size
+
+    /**
+     * Read all producer values, then write them to the consumers.
+     */
+    fun update() {
+        for (i in producers.indices) {
+            values[i] = producers[i].doubleValue
+        }
+        for (i in consumers.indices) {
+            consumers[i].setDoubleValue(values[i])
+        }
+    }
+
+    /**
+     * Drop a coupling from this group.
+     */
+    internal fun remove(coupling: Coupling) {
+        couplings = couplings - coupling
+        producers = couplings.map { it.producer }.toTypedArray()
+        consumers = couplings.map { it.consumer }.toTypedArray()
+        values = DoubleArray(couplings.size)
+    }
+
+    override fun toString() = "$label (${couplings.size} couplings)"
+
+    companion object {
+
+        /**
+         * Whether a coupling can be part of a group, i.e. whether it couples a double producer to a double consumer.
+         */
+        fun canGroup(coupling: Coupling) = coupling.type == Double::class.javaPrimitiveType
+    }
+}
@@ -44,6 +44,49 @@ class CouplingManager(val workspace: Workspace) {
      */
     val couplings: List<Coupling> by cachedCouplingList::value
 
+    /**
+     * Backing field for [couplingGroups].
+     */
+    private val _couplingGroups = LinkedHashSet<CouplingGroup>()
+
+    /**
+     * The group each grouped coupling belongs to.
+     */
+    private val couplingGroupOf = HashMap<Coupling, CouplingGroup>()
+
+    private val cachedCouplingGroupList = CachedObject {
+        Collections.unmodifiableList(_couplingGroups.toList())
+    }
+
+    /**
+     * Returns all coupling groups. See [CouplingGroup].
+     */
+    val couplingGroups: List<CouplingGroup> by cachedCouplingGroupList::value
+
+    private val cachedUngroupedCouplingList = CachedObject {
+        Collections.unmodifiableList(_couplings.filter { it !in couplingGroupOf })
+    }
+
+    /**
+     * Returns the couplings that are not part of a [CouplingGroup].
+     */
+    val ungroupedCouplings: List<Coupling> by cachedUngroupedCouplingList::value
+
+    /**
+     * Ungrouped couplings and coupling groups in update order. See [forEachInUpdateOrder].
+     */
+    private val cachedUpdateOrder = CachedObject {
+        val seenGroups = HashSet<CouplingGroup>()
+        _couplings.mapNotNull { coupling ->
+            val group = couplingGroupOf[coupling]
+            when {
+                group == null -> coupling
+                seenGroups.add(group) -> group
+                else -> null
+            }
+        }
+    }
+
     /**
      * Couplings associated with an [AttributeContainer]. For faster lookup.
      */
@@ -198,6 +241,8 @@ class CouplingManager(val workspace: Workspace) {
         synchronized(_couplings) {
             _couplings.add(it)
             cachedCouplingList.invalidate()
+            cachedUngroupedCouplingList.invalidate()
+            cachedUpdateOrder.invalidate()
             attributeContainerCouplings.getOrPut(it.producer.baseObject) { LinkedHashSet() }.add(it)
             attributeContainerCouplings.getOrPut(it.consumer.baseObject) { LinkedHashSet() }.add(it)
             if (fireEvents) {
@@ -270,6 +315,87 @@ class CouplingManager(val workspace: Workspace) {
     infix fun Collection<AttributeContainer>.couple(consumers: Collection<AttributeContainer>): List<Coupling> =
         createOneToOneCouplings(this, consumers)
 
+    /**
+     * Couple each producer to the corresponding consumer, as in [createOneToOneCouplings], and update the resulting
+     * couplings together as a [CouplingGroup]. All producers and consumers must be of type double.
+     *
+     * @param producers scalar producers, e.g. the outputs of many sensors
+     * @param consumers scalar consumers, e.g. the inputs of many neurons
+     * @param label label shown for the group in the coupling list
+     * @return the new group
+     */
+    @Throws(MismatchedAttributesException::class)
+    @JvmOverloads
+    fun createCouplingGroup(
+        producers: Collection<Producer>,
+        consumers: Collection<Consumer>,
+        label: String = "Coupling group",
+        fireEvents: Boolean = true
+    ): CouplingGroup {
+        (producers + consumers).find { it.type != Double::class.javaPrimitiveType }?.let {
+            throw MismatchedAttributesException("Coupling groups couple doubles, but $it has type ${it.type}")
+        }
+        val couplings = (producers zip consumers).map { (producer, consumer) ->
+            createCoupling(producer, consumer, fireEvents = false)
+        }
+        return createCouplingGroup(couplings, label, fireEvents)
+    }
+
+    /**
+     * Update existing double couplings together as a [CouplingGroup]. Couplings already in a group are moved to the new
+     * one.
+     */
+    @JvmOverloads
+    fun createCouplingGroup(
+        couplings: List<Coupling>,
+        label: String = "Coupling group",
+        fireEvents: Boolean = true
+    ): CouplingGroup {
+        couplings.find { !CouplingGroup.canGroup(it) }?.let {
+            throw MismatchedAttributesException("Coupling groups couple doubles, but $it has type ${it.type}")
+        }
+        return synchronized(_couplings) {
+            couplings.forEach { removeFromGroup(it) }
+            val group = CouplingGroup(couplings.distinct(), label)
+            _couplingGroups.add(group)
+            group.couplings.forEach { couplingGroupOf[it] = group }
+            cachedCouplingGroupList.invalidate()
+            cachedUngroupedCouplingList.invalidate()
+            cachedUpdateOrder.invalidate()
+            group
+        }.also {
+            if (fireEvents) {
+                events.couplingGroupAdded.fire(it)
+            }
+        }
+    }
+
+    /**
+     * Remove a coupling group and all of its couplings.
+     */
+    fun removeCouplingGroup(group: CouplingGroup) {
+        removeCouplings(group.couplings)
+    }
+
+    /**
+     * Remove a coupling from its group, if any, and remove the group when it is empty.
+     */
+    private fun removeFromGroup(coupling: Coupling) {
+        val group = couplingGroupOf.remove(coupling) ?: return
+        group.remove(coupling)
+        if (group.size == 0) {
+            _couplingGroups.remove(group)
+        }
+        cachedCouplingGroupList.invalidate()
+        cachedUngroupedCouplingList.invalidate()
+        cachedUpdateOrder.invalidate()
+    }
+
+    /**
+     * Returns the group a coupling belongs to, or null if it is not grouped.
+     */
+    fun getCouplingGroup(coupling: Coupling): CouplingGroup? = couplingGroupOf[coupling]
+
     fun removeCouplings(couplings: List<Coupling>) {
         couplings.forEach { coupling ->
             removeCouplingWithoutFiringEvent(coupling)
@@ -287,11 +413,23 @@ class CouplingManager(val workspace: Workspace) {
     }
 
     /**
-     * Update all couplings by setting the consumers to take the values of their producers.
+     * Call [onCoupling] with each ungrouped coupling and [onGroup] with each coupling group, in the order in which they
+     * are updated: the order in which the couplings were created, with each group in place of the first of its
+     * couplings.
+     */
+    fun forEachInUpdateOrder(onCoupling: (Coupling) -> Unit, onGroup: (CouplingGroup) -> Unit) {
+        cachedUpdateOrder.value.forEach {
+            if (it is CouplingGroup) onGroup(it) else onCoupling(it as Coupling)
+        }
+    }
+
+    /**
+     * Update all couplings by setting the consumers to take the values of their producers. See
+     * [forEachInUpdateOrder].
      */
     fun updateCouplings() {
         synchronized(_couplings) {
-            couplings.forEach { it.update() }
+            forEachInUpdateOrder({ it.update() }, { it.update() })
         }
     }
 
@@ -309,6 +447,9 @@ class CouplingManager(val workspace: Workspace) {
         synchronized(_couplings) {
             _couplings.remove(coupling)
             cachedCouplingList.invalidate()
+            cachedUngroupedCouplingList.invalidate()
+            cachedUpdateOrder.invalidate()
+            removeFromGroup(coupling)
             attributeContainerCouplings[coupling.producer.baseObject]?.let {
                 it.remove(coupling)
                 if (it.isEmpty()) {
@@ -329,6 +470,9 @@ class CouplingManager(val workspace: Workspace) {
             it.forEach { coupling ->
                 _couplings.remove(coupling)
                 cachedCouplingList.invalidate()
+                cachedUngroupedCouplingList.invalidate()
+                cachedUpdateOrder.invalidate()
+                removeFromGroup(coupling)
                 if (coupling.consumer.baseObject !== attributeContainer) {
                     attributeContainerCouplings[coupling.consumer.baseObject]?.remove(coupling)
                 }
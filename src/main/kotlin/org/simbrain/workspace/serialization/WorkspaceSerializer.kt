@@ -1,5 +1,6 @@
 package org.simbrain.workspace.serialization
 
+import org.simbrain.util.BinaryArrays
 import org.simbrain.util.SFileChooser
 import org.simbrain.util.getSimbrainXStream
 import org.simbrain.workspace.Workspace
@@ -21,10 +22,13 @@ class WorkspaceSerializer(val workspace: Workspace) {
      * Serializes the workspace to a zip compressed stream.
      *
      * @param output The output stream to write to.
+     * @param headless Whether to skip desktop components.
+     * @param binaryArrays Whether to write large arrays and matrices as binary entries rather than as text in the xml
+     * (see [BinaryArrays]).
      * @throws IOException If there is an IO error.
      */
     @JvmOverloads
-    fun serialize(output: OutputStream, headless: Boolean = false) {
+    fun serialize(output: OutputStream, headless: Boolean = false, binaryArrays: Boolean = true) {
         // Create the zip output stream. ZipStream is a sequence of
         // ZipEntries, with extra utilities for iterating over them.
         // Each zipentry corresponds to a single file in the zip archive, a
@@ -41,7 +45,13 @@ class WorkspaceSerializer(val workspace: Workspace) {
         // Currently sorts components by a serialization priority
         workspace.preSerializationInit()
 
-        serializeComponents(serializer, archive, zipStream, headless)
+        if (binaryArrays) {
+            BinaryArrays.writeArrays(zipStream) { arrayWriter ->
+                serializeComponents(serializer, archive, zipStream, headless, arrayWriter)
+            }
+        } else {
+            serializeComponents(serializer, archive, zipStream, headless, null)
+        }
         serializeCouplings(archive)
 
         // serializeUpdateActions(archive);
@@ -64,11 +74,14 @@ class WorkspaceSerializer(val workspace: Workspace) {
         serializer: WorkspaceComponentSerializer,
         archive: ArchivedWorkspace,
         zipStream: ZipOutputStream,
-        headless: Boolean
+        headless: Boolean,
+        arrayWriter: BinaryArrays.ArrayWriter?
     ) {
         val components = sortComponentsByPriority()
         for (component in workspace.componentList) {
             serializeComponent(serializer, archive, component, zipStream, headless)
+            // Arrays referenced by the component are written right after it
+            arrayWriter?.flush()
         }
     }
 
@@ -115,15 +128,28 @@ class WorkspaceSerializer(val workspace: Workspace) {
     }
 
     /**
-     * Serialize couplings.
+     * Serialize couplings. Each group records its position among the ungrouped couplings, so that the update order is
+     * restored.
      *
      * @param archive the archive objet to serialize to
      */
     private fun serializeCouplings(archive: ArchivedWorkspace) {
         val couplingComponents = mapCouplingComponents()
-        for (coupling in workspace.couplings) {
-            serializeCoupling(couplingComponents, coupling, archive)
-        }
+        var ungroupedCount = 0
+        workspace.couplingManager.forEachInUpdateOrder(
+            { coupling ->
+                archive.addCoupling(archiveCoupling(couplingComponents, coupling))
+                ungroupedCount++
+            },
+            { group ->
+                val archivedGroup = ArchivedCouplingGroup(group.label)
+                archivedGroup.position = ungroupedCount
+                for (coupling in group.couplings) {
+                    archivedGroup.addCoupling(archiveCoupling(couplingComponents, coupling))
+                }
+                archive.addCouplingGroup(archivedGroup)
+            }
+        )
     }
 
     /**
@@ -140,20 +166,18 @@ class WorkspaceSerializer(val workspace: Workspace) {
     }
 
     /**
-     * Add a serialized coupling to the archive.
+     * Create the archived form of a coupling.
      *
      * @param couplingComponents a map from couplings to components
      * @param coupling           the coupling to save
-     * @param archive            the archive object to save to
      */
-    private fun serializeCoupling(
+    private fun archiveCoupling(
         couplingComponents: HashMap<Any, WorkspaceComponent>,
-        coupling: Coupling,
-        archive: ArchivedWorkspace
-    ) {
+        coupling: Coupling
+    ): ArchivedCoupling {
         val producer = ArchivedAttribute(couplingComponents[coupling.producer.baseObject], coupling.producer)
         val consumer = ArchivedAttribute(couplingComponents[coupling.consumer.baseObject], coupling.consumer)
-        archive.addCoupling(ArchivedCoupling(producer, consumer))
+        return ArchivedCoupling(producer, consumer)
     }
 
     /**
@@ -171,50 +195,48 @@ class WorkspaceSerializer(val workspace: Workspace) {
      * Creates a workspace from a zip compressed input stream.
      *
      * @param stream The stream to read from. This is expected to be zip compressed.
+     * @param headless Whether to skip desktop components, so that no Swing component is created. Components that fail
+     * to load are then reported by an exception rather than a dialog.
      * @throws IOException if an IO error occurs.
      */
+    @JvmOverloads
     @Throws(IOException::class)
-    fun deserialize(stream: InputStream) {
-        val byteArrays = processInputStream(stream)
+    fun deserialize(stream: InputStream, headless: Boolean = false) {
+        val arrays = HashMap<String, DoubleArray>()
+        val byteArrays = processInputStream(stream, arrays)
         val archive =
             ArchivedWorkspace.xstream().fromXML(ByteArrayInputStream(byteArrays["contents.xml"])) as ArchivedWorkspace
 
         val deserializer = WorkspaceComponentDeserializer()
-        deserializeComponents(archive, deserializer, byteArrays)
+        BinaryArrays.readArrays(arrays) {
+            deserializeComponents(archive, deserializer, byteArrays, headless)
+        }
 
         deserializeCouplings(archive)
         // deserializeUpdateActions(archive, deserializer);
         deserializeWorkspaceParameters(archive)
     }
 
+    /**
+     * Read all entries of a workspace archive in one pass. Array entries (see [BinaryArrays]) are decoded into [arrays]
+     * as they are read, and the other entries are returned by name.
+     */
     @Throws(IOException::class)
-    private fun processInputStream(stream: InputStream): Map<String, ByteArray?> {
-        // Populate the byte stream BUFFER_SIZE at a time and create a zip input
-        // stream (currently 1 kb at a time).
-        val bytes = ByteArrayOutputStream()
-        val buffer = ByteArray(BUFFER_SIZE)
-        var read: Int
-        while ((stream.read(buffer).also { read = it }) >= 0) {
-            bytes.write(buffer, 0, read)
-        }
-        var zip = ZipInputStream(ByteArrayInputStream(bytes.toByteArray()))
+    private fun processInputStream(stream: InputStream, arrays: MutableMap<String, DoubleArray>): Map<String, ByteArray?> {
+        val zip = ZipInputStream(BufferedInputStream(stream, BUFFER_SIZE))
 
         // Populate a map from zip entries (strings containing path+file info in
         // zip archive) to the associated data
         val byteArrays: MutableMap<String, ByteArray> = HashMap()
         var entry = zip.nextEntry
-        // Initialize byte arrays
-        var next: ZipEntry?
         while (entry != null) {
-            next = zip.nextEntry
-            byteArrays[entry.name] = ByteArray(entry.size.toInt())
-            entry = next
-        }
-        zip = ZipInputStream(ByteArrayInputStream(bytes.toByteArray()))
-        // Populate byte arrays
-        while ((zip.nextEntry.also { entry = it }) != null) {
-            val data = byteArrays[entry!!.name]!!
-            read(zip, data)
+            val arrayId = BinaryArrays.arrayId(entry.name)
+            if (arrayId != null) {
+                arrays[arrayId] = BinaryArrays.read(zip)
+            } else {
+                byteArrays[entry.name] = zip.readAllBytes()
+            }
+            entry = zip.nextEntry
         }
 
         // Find the contents.xml file and set the zip entries relative to that
@@ -242,7 +264,8 @@ class WorkspaceSerializer(val workspace: Workspace) {
     private fun deserializeComponents(
         archive: ArchivedWorkspace,
         deserializer: WorkspaceComponentDeserializer,
-        byteArrays: Map<String, ByteArray?>
+        byteArrays: Map<String, ByteArray?>,
+        headless: Boolean
     ) {
         if (archive.archivedComponents != null) {
             for (archivedComponent in archive.archivedComponents) {
@@ -253,7 +276,7 @@ class WorkspaceSerializer(val workspace: Workspace) {
                     )
                     wc.postOpenInit(workspace)
                     workspace.addWorkspaceComponent(wc)
-                    if (archivedComponent.desktopComponent != null) {
+                    if (!headless && archivedComponent.desktopComponent != null) {
                         val bounds =
                             getSimbrainXStream().fromXML(ByteArrayInputStream(byteArrays[archivedComponent.desktopComponent.uri])) as Rectangle
                         val desktopComponent = getDesktopComponent(wc)
@@ -262,20 +285,42 @@ class WorkspaceSerializer(val workspace: Workspace) {
                 } catch (ex: Exception) {
                     ex.printStackTrace()
                     val message = String.format("Failed to deserialize component %s.", archivedComponent.name)
+                    if (headless) {
+                        throw IOException(message, ex)
+                    }
                     JOptionPane.showMessageDialog(null, message)
                 }
             }
         }
     }
 
+    /**
+     * Recreate the couplings in the order they were serialized, each group before the ungrouped coupling at its
+     * position, so that the update order is restored.
+     */
     private fun deserializeCouplings(archive: ArchivedWorkspace) {
-        if (archive.archivedCouplings != null) {
-            for (archivedCoupling in archive.archivedCouplings) {
-                val producer = archivedCoupling.createProducer(workspace)
-                val consumer = archivedCoupling.createConsumer(workspace)
-                workspace.couplingManager.createCoupling(producer, consumer, false)
+        val groups = archive.archivedCouplingGroups
+        var nextGroup = 0
+        fun createGroupsUpTo(position: Int) {
+            while (nextGroup < groups.size && groups[nextGroup].position <= position) {
+                val archivedGroup = groups[nextGroup++]
+                val couplings = archivedGroup.couplings.map {
+                    workspace.couplingManager.createCoupling(
+                        it.createProducer(workspace),
+                        it.createConsumer(workspace),
+                        false
+                    )
+                }
+                workspace.couplingManager.createCouplingGroup(couplings, archivedGroup.label, false)
             }
         }
+        archive.archivedCouplings?.forEachIndexed { index, archivedCoupling ->
+            createGroupsUpTo(index)
+            val producer = archivedCoupling.createProducer(workspace)
+            val consumer = archivedCoupling.createConsumer(workspace)
+            workspace.couplingManager.createCoupling(producer, consumer, false)
+        }
+        createGroupsUpTo(Int.MAX_VALUE)
     }
 
     private fun deserializeUpdateActions(archive: ArchivedWorkspace, deserializer: WorkspaceComponentDeserializer) {
@@ -363,4 +408,4 @@ class WorkspaceSerializer(val workspace: Workspace) {
 
 }
 
-const val BUFFER_SIZE = 1024
\ No newline at end of file
+const val BUFFER_SIZE = 1 shl 16
\ No newline at end of file
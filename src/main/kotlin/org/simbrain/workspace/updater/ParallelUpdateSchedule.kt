@@ -0,0 +1,224 @@
+package org.simbrain.workspace.updater
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import org.simbrain.workspace.AttributeContainer
+import org.simbrain.workspace.WorkspaceComponent
+import org.simbrain.workspace.couplings.Coupling
+import kotlin.math.max
+
+/**
+ * A schedule that runs the update actions of a workspace concurrently where that does not change their result. Used
+ * when [WorkspaceUpdater.updateMode] is [WorkspaceUpdater.UpdateMode.Parallel].
+ *
+ * Each action is broken into steps that read and write workspace components. A component update reads and writes its
+ * component, and a coupling reads the component of its producer and writes the component of its consumer, so couplings
+ * are the edges that order component updates. [UpdateAllAction] is expanded into one step per coupling group, coupling
+ * and component. Any other action might touch anything, so it is a barrier that runs on its own. Since couplings no
+ * longer all finish before components start updating, the couplings updated event of [UpdateAllAction] is fired at the
+ * end of the update.
+ *
+ * Steps are placed in levels following the serial order: a step goes in a later level than any earlier step that writes
+ * a component it reads, or that reads or writes a component it writes. Steps in the same level that write the same
+ * single component are merged into one task that runs them in serial order. The tasks in a level run concurrently and
+ * levels run one after another, so as long as components and couplings only touch their own components the result is
+ * the same as a serial update.
+ *
+ * A schedule is built for a fixed list of actions, couplings and components. Use [isStale] to check whether it must be
+ * rebuilt.
+ */
+internal class ParallelUpdateSchedule(private val updater: WorkspaceUpdater, private val actions: List<UpdateAction>) {
+
+    private val couplingManager = updater.workspace.couplingManager
+
+    private val couplings = couplingManager.couplings
+
+    private val couplingGroups = couplingManager.couplingGroups
+
+    private val components = updater.components
+
+    private val updateOn = components.map { it.updateOn }
+
+    /**
+     * Part of an action, with the components it reads and writes. Null read and write sets mark a barrier.
+     */
+    private class Step(
+        val reads: Set<WorkspaceComponent>?,
+        val writes: Set<WorkspaceComponent>?,
+        val run: suspend () -> Unit
+    )
+
+    private class Task(val level: Int) {
+        val steps = ArrayList<suspend () -> Unit>()
+
+        suspend fun run() {
+            for (step in steps) {
+                step()
+            }
+        }
+    }
+
+    private val levels = ArrayList<MutableList<Task>>()
+
+    /**
+     * Whether to fire [org.simbrain.workspace.events.WorkspaceUpdaterEvents.couplingsUpdates] after each update.
+     */
+    private val firesCouplingsUpdated = actions.any { it is UpdateAllAction }
+
+    /**
+     * Number of levels, i.e. the number of times per update that concurrent tasks are joined.
+     */
+    val numLevels get() = levels.size
+
+    /**
+     * Number of tasks in the widest level.
+     */
+    val maxWidth get() = levels.maxOfOrNull { it.size } ?: 0
+
+    init {
+        val componentOf = HashMap<AttributeContainer, WorkspaceComponent>()
+        components.forEach { component ->
+            component.attributeContainers.forEach { componentOf[it] = component }
+        }
+        val builder = LevelBuilder()
+        actions.forEach { action ->
+            steps(action, componentOf).forEach { builder.place(it) }
+        }
+    }
+
+    /**
+     * Whether the actions, couplings or components of the workspace have changed since this schedule was built.
+     */
+    fun isStale(actions: List<UpdateAction>): Boolean {
+        val components = updater.components
+        return actions != this.actions ||
+                couplingManager.couplings !== couplings ||
+                couplingManager.couplingGroups !== couplingGroups ||
+                components != this.components ||
+                components.indices.any { components[it].updateOn != updateOn[it] }
+    }
+
+    /**
+     * Run one workspace update, with concurrent tasks dispatched on [dispatcher].
+     */
+    suspend fun run(dispatcher: CoroutineDispatcher) {
+        for (level in levels) {
+            if (level.size == 1) {
+                level[0].run()
+            } else {
+                coroutineScope {
+                    level.forEach { task -> launch(dispatcher) { task.run() } }
+                }
+            }
+        }
+        if (firesCouplingsUpdated) {
+            updater.events.couplingsUpdates.fire()
+        }
+    }
+
+    private fun steps(action: UpdateAction, componentOf: Map<AttributeContainer, WorkspaceComponent>): List<Step> {
+        val run: suspend () -> Unit = { with(PerformanceMonitor) { action() } }
+        return when (action) {
+            is UpdateComponent -> listOf(Step(setOf(action.component), setOf(action.component), run))
+            is UpdateCoupling -> listOf(couplingStep(listOf(action.coupling), componentOf, run))
+            is UpdateCouplingGroup -> listOf(couplingStep(action.group.couplings, componentOf, run))
+            is UpdateAllAction -> {
+                // Same order as UpdateAllAction.run: couplings and coupling groups in update order, then components
+                val couplingSteps = ArrayList<Step>()
+                couplingManager.forEachInUpdateOrder(
+                    { c -> couplingSteps.add(couplingStep(listOf(c), componentOf) { c.update() }) },
+                    { group -> couplingSteps.add(couplingStep(group.couplings, componentOf) { group.update() }) }
+                )
+                val componentSteps = components.filter { it.updateOn }.map { component ->
+                    Step(setOf(component), setOf(component)) {
+                        PerformanceMonitor.record("Updating Component ${component.name}") {
+                            component.update()
+                        }
+                    }
+                }
+                couplingSteps + componentSteps
+            }
+            else -> listOf(Step(null, null, run))
+        }
+    }
+
+    /**
+     * A step that updates couplings, or a barrier if a producer or consumer does not belong to a known component.
+     */
+    private fun couplingStep(
+        couplings: List<Coupling>,
+        componentOf: Map<AttributeContainer, WorkspaceComponent>,
+        run: suspend () -> Unit
+    ): Step {
+        val reads = couplings.map { componentOf[it.producer.baseObject] ?: return Step(null, null, run) }.toSet()
+        val writes = couplings.map { componentOf[it.consumer.baseObject] ?: return Step(null, null, run) }.toSet()
+        return Step(reads, writes, run)
+    }
+
+    /**
+     * Assigns steps to tasks and levels in serial order.
+     */
+    private inner class LevelBuilder {
+
+        /**
+         * Level of the last step that wrote each component.
+         */
+        private val lastWrite = HashMap<WorkspaceComponent, Int>()
+
+        /**
+         * Latest level at which each component is read by a step in a task that does not own it.
+         */
+        private val lastRead = HashMap<WorkspaceComponent, Int>()
+
+        /**
+         * The task that writes only this component in the level of its last write, if any.
+         */
+        private val owningTask = HashMap<WorkspaceComponent, Task>()
+
+        /**
+         * Lowest level a step can be placed in, i.e. the level after the last barrier.
+         */
+        private var floor = 0
+
+        fun place(step: Step) {
+            if (step.reads == null || step.writes == null) {
+                newTask(levels.size).steps.add(step.run)
+                floor = levels.size
+                owningTask.clear()
+                return
+            }
+            val owner = step.writes.singleOrNull()
+            val joinable = owner?.let { owningTask[it]?.takeIf { task -> task.level == lastWrite[it] } }
+            var level = floor
+            for (component in step.reads) {
+                if (component != owner) level = max(level, (lastWrite[component] ?: -1) + 1)
+            }
+            for (component in step.writes) {
+                level = max(level, (lastRead[component] ?: -1) + 1)
+                level = max(level, (lastWrite[component] ?: -1) + if (joinable != null) 0 else 1)
+            }
+            val task = if (joinable != null && joinable.level == level) joinable else newTask(level)
+            task.steps.add(step.run)
+            step.writes.forEach {
+                lastWrite[it] = level
+                owningTask.remove(it)
+            }
+            if (owner != null) {
+                owningTask[owner] = task
+            }
+            step.reads.forEach {
+                if (it != owner) lastRead[it] = max(lastRead[it] ?: -1, level)
+            }
+        }
+
+        private fun newTask(level: Int): Task {
+            while (levels.size <= level) {
+                levels.add(ArrayList())
+            }
+            return Task(level).also { levels[level].add(it) }
+        }
+    }
+
+    override fun toString() = "Parallel update schedule ($numLevels levels, up to $maxWidth concurrent tasks)"
+}
@@ -0,0 +1,12 @@
+package org.simbrain.workspace.updater
+
+import org.simbrain.workspace.couplings.CouplingGroup
+
+/**
+ * Updates a [CouplingGroup], moving all of its producer values to its consumers in one pass.
+ */
+class UpdateCouplingGroup(@field:Transient val group: CouplingGroup) : UpdateAction("Update coupling group ($group)") {
+    override suspend fun run() {
+        group.update()
+    }
+}
@@ -46,6 +46,56 @@ class WorkspaceUpdater(val workspace: Workspace) {
      */
     val updateManager: UpdateActionManager = UpdateActionManager(this)
 
+    /**
+     * How update actions are run.
+     */
+    enum class UpdateMode(private val description: String) {
+        /**
+         * Run update actions one after another, in the order of the update manager.
+         */
+        Serial("Serial"),
+
+        /**
+         * Run update actions that do not depend on each other concurrently. See [ParallelUpdateSchedule].
+         */
+        Parallel("Parallel (components and couplings as a graph)");
+
+        override fun toString() = description
+    }
+
+    var updateMode = UpdateMode.Serial
+
+    /**
+     * Maximum number of tasks that run at the same time in [UpdateMode.Parallel].
+     */
+    var parallelism = Runtime.getRuntime().availableProcessors()
+        set(value) {
+            require(value > 0) { "Parallelism must be positive" }
+            field = value
+            _parallelDispatcher = null
+        }
+
+    private var _parallelDispatcher: CoroutineDispatcher? = null
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val parallelDispatcher: CoroutineDispatcher
+        get() = _parallelDispatcher ?: Dispatchers.Default.limitedParallelism(parallelism).also {
+            _parallelDispatcher = it
+        }
+
+    private var parallelSchedule: ParallelUpdateSchedule? = null
+
+    /**
+     * The parallel schedule for the current update actions, rebuilt when actions, couplings or components have changed.
+     */
+    internal fun parallelSchedule(actions: List<UpdateAction>): ParallelUpdateSchedule {
+        val current = parallelSchedule
+        if (current != null && !current.isStale(actions)) {
+            return current
+        }
+        return ParallelUpdateSchedule(this, actions).also { parallelSchedule = it }
+    }
+
     /**
      * Reset time to 0.
      */
@@ -165,11 +215,15 @@ class WorkspaceUpdater(val workspace: Workspace) {
     private suspend fun doUpdate() {
         time++
         Logger.trace("starting: $time")
+        val actions = updateManager.actionList + updateManager.nonRemovableActions
         withContext(workspace.coroutineContext) {
-            for (action in updateManager.actionList + updateManager.nonRemovableActions) {
-                with(PerformanceMonitor) {
-                    action()
+            when (updateMode) {
+                UpdateMode.Serial -> for (action in actions) {
+                    with(PerformanceMonitor) {
+                        action()
+                    }
                 }
+                UpdateMode.Parallel -> parallelSchedule(actions).run(parallelDispatcher)
             }
         }
         events.workspaceUpdated.fire()
@@ -29,7 +29,7 @@ class DataWorld(val rows: Int = 30, val cols: Int = 5): AttributeContainer, Edit
         }
     }
 
-    @Consumable
+    @Consumable(copiesArray = true)
     fun setCurrentNumericRow(row: DoubleArray) {
         dataModel.setRow(dataModel.currentRowIndex, row.toTypedArray())
         if (appendMode == DataEntryMode.APPEND && dataModel.currentRowIndex == dataModel.rowCount - 1) {
@@ -0,0 +1,133 @@
+package org.simbrain.world.odorworld
+
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import java.util.*
+import kotlin.math.floor
+
+/**
+ * Uniform grid over the entities of an [OdorWorld], used to find the entities near a point or a rectangle without
+ * going through all of them.
+ *
+ * Each entity is filed under the cell that contains its center. Queries return candidates, i.e. the entities of all
+ * cells that overlap the query rectangle, and callers check the exact distance or intersection themselves. The grid
+ * does not listen to the entities: [OdorWorld] calls [update] whenever an entity moves.
+ */
+class EntityGrid(val cellSize: Double = DEFAULT_CELL_SIZE) {
+
+    private val cells = HashMap<Long, ArrayList<OdorWorldEntity>>()
+
+    private val cellOf = IdentityHashMap<OdorWorldEntity, Long>()
+
+    /**
+     * Largest half width or half height of the entities added so far. Rectangle queries for entity bounds are expanded
+     * by this amount so that entities whose centers lie outside the rectangle, but which overlap it, are found.
+     */
+    var maxHalfExtent = 0.0
+        private set
+
+    val size: Int
+        @Synchronized get() = cellOf.size
+
+    init {
+        require(cellSize > 0) { "Cell size must be positive" }
+    }
+
+    @Synchronized
+    fun add(entity: OdorWorldEntity) {
+        if (entity in cellOf) return
+        val key = key(cellIndex(entity.x), cellIndex(entity.y))
+        cellOf[entity] = key
+        cells.getOrPut(key) { ArrayList() }.add(entity)
+        maxHalfExtent = maxOf(maxHalfExtent, entity.width / 2, entity.height / 2)
+    }
+
+    @Synchronized
+    fun remove(entity: OdorWorldEntity) {
+        val key = cellOf.remove(entity) ?: return
+        removeFromCell(key, entity)
+    }
+
+    /**
+     * Move an entity to the cell of its current location. Entities that are not in the grid are ignored.
+     */
+    @Synchronized
+    fun update(entity: OdorWorldEntity) {
+        val oldKey = cellOf[entity] ?: return
+        val newKey = key(cellIndex(entity.x), cellIndex(entity.y))
+        if (oldKey != newKey) {
+            removeFromCell(oldKey, entity)
+            cellOf[entity] = newKey
+            cells.getOrPut(newKey) { ArrayList() }.add(entity)
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        cells.clear()
+        cellOf.clear()
+        maxHalfExtent = 0.0
+    }
+
+    /**
+     * Add to [result] every entity whose center may lie in the rectangle from ([minX], [minY]) to ([maxX], [maxY]), and
+     * return [result]. The bounds can be infinite.
+     */
+    @Synchronized
+    fun collect(
+        minX: Double,
+        minY: Double,
+        maxX: Double,
+        maxY: Double,
+        result: MutableList<OdorWorldEntity> = ArrayList()
+    ): MutableList<OdorWorldEntity> {
+        val minCellX = cellIndex(minX)
+        val minCellY = cellIndex(minY)
+        val maxCellX = cellIndex(maxX)
+        val maxCellY = cellIndex(maxY)
+        // In doubles, since the product overflows a long for unbounded queries
+        val numCells = (maxCellX.toDouble() - minCellX + 1) * (maxCellY.toDouble() - minCellY + 1)
+        if (numCells > cells.size) {
+            // Large query: cheaper to go through the occupied cells than through the cells of the rectangle
+            cells.forEach { (key, entities) ->
+                if (cellX(key) in minCellX..maxCellX && cellY(key) in minCellY..maxCellY) {
+                    result.addAll(entities)
+                }
+            }
+        } else {
+            for (cx in minCellX..maxCellX) {
+                for (cy in minCellY..maxCellY) {
+                    cells[key(cx, cy)]?.let { result.addAll(it) }
+                }
+            }
+        }
+        return result
+    }
+
+    private fun removeFromCell(key: Long, entity: OdorWorldEntity) {
+        val cell = cells[key] ?: return
+        cell.remove(entity)
+        if (cell.isEmpty()) {
+            cells.remove(key)
+        }
+    }
+
+    /**
+     * Index of the cell containing a coordinate, clamped to the range of Int for infinite coordinates.
+     */
+    private fun cellIndex(coordinate: Double) = floor(coordinate / cellSize).toInt()
+
+    private fun key(cellX: Int, cellY: Int) = (cellX.toLong() shl 32) or (cellY.toLong() and 0xffffffffL)
+
+    private fun cellX(key: Long) = (key shr 32).toInt()
+
+    private fun cellY(key: Long) = key.toInt()
+
+    companion object {
+
+        /**
+         * Close to the default dispersion of decay functions, so that a typical radius query looks at no more than
+         * sixteen cells.
+         */
+        const val DEFAULT_CELL_SIZE = 64.0
+    }
+}
@@ -38,6 +38,8 @@ import java.awt.geom.Point2D
 import java.util.*
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.function.Consumer
+import kotlin.math.pow
+import kotlin.math.sqrt
 
 /**
  * A 2d environment. Contains a list of [OdorWorldEntity]s, which can either be agents or static objects.
@@ -61,6 +63,7 @@ class OdorWorld : EditableObject, Bounded {
         set(value) {
             field = value
             this.selectedLayer = value.layers[0]
+            _smellField?.invalidate()
             events.tileMapChanged.fire()
         }
 
@@ -92,6 +95,25 @@ class OdorWorld : EditableObject, Bounded {
     )
     var isObjectsBlockMovement: Boolean = true
 
+    /**
+     * If true, the smells of the entities that stay in place are precomputed on a grid, see [SmellField].
+     */
+    @UserParameter(
+        label = "Cache smell field",
+        description = "If true, the smells of objects that do not move are precomputed at the corners of the tiles " +
+                "and interpolated in between. Faster with many objects, but smell sensor values are approximate.",
+        order = 15
+    )
+    var isSmellFieldCached: Boolean = false
+
+    /**
+     * If true, the world is stepped by an [OdorWorldBatch] and entities do not fire movement events, so that views of
+     * the world are not updated. Collision events are still fired. Meant for headless runs, such as evaluating agents in an evolutionary
+     * simulation. Not saved with the world.
+     */
+    @Transient
+    var isBatchMode: Boolean = false
+
     @UserParameter(
         label = "Use camera centering", description = "For large worlds centers the camera on the current " +
                 "agent. Turn off in particular when not using tilemaps.", order = 20
@@ -133,10 +155,64 @@ class OdorWorld : EditableObject, Bounded {
 
     var selectedLayer: TileMapLayer = tileMap.layers[0]
 
+    /**
+     * Index of the entities by location, used for neighborhood queries. Built on first use.
+     */
+    @Transient
+    private var _entityGrid: EntityGrid? = null
+
+    private val entityGrid: EntityGrid
+        get() = _entityGrid ?: EntityGrid().also { grid ->
+            entityList.forEach { grid.add(it) }
+            _entityGrid = grid
+        }
+
+    /**
+     * Largest range and stimulus dimensions of the smell sources in the world. Recomputed once per update, so that
+     * changes to smell sources are picked up on the next update.
+     */
+    @Transient
+    private var smellExtent: SmellExtent? = null
+
+    /**
+     * See [smellRange] and [getSmellDimension]. The second largest dimension is the largest one when
+     * [largestSource] itself is smelling.
+     */
+    private class SmellExtent(
+        val range: Double,
+        val largestSource: OdorWorldEntity?,
+        val largestDimension: Int,
+        val secondLargestDimension: Int
+    )
+
+    @Transient
+    private var _smellField: SmellField? = null
+
+    /**
+     * Precomputed smell of the entities that stay in place. Only used by smell sensors if [isSmellFieldCached].
+     */
+    val smellField: SmellField
+        get() = _smellField ?: SmellField(this).also { _smellField = it }
+
+    @Transient
+    private var _batch: OdorWorldBatch? = null
+
+    /**
+     * Steps the world when [isBatchMode] is set, and mirrors the state of the entities in arrays.
+     */
+    val batch: OdorWorldBatch
+        get() = _batch ?: OdorWorldBatch(this).also { _batch = it }
+
     /**
      * Update world.
      */
     suspend fun update() {
+        smellExtent = null
+        _smellField?.checkSources()
+        if (isBatchMode) {
+            batch.step()
+            return
+        }
         entityList.forEach(Consumer { obj: OdorWorldEntity -> obj.update() })
         events.updated.fire().await()
     }
@@ -165,6 +241,9 @@ class OdorWorld : EditableObject, Bounded {
 
         // Add entity to the map
         entityList.add(entity)
+        _entityGrid?.add(entity)
+        _smellField?.invalidate()
+        smellExtent = null
 
         events.entityAdded.fire(entity)
         entity.events.deleted.on { handleEntityDelete(it) }
@@ -340,6 +419,9 @@ class OdorWorld : EditableObject, Bounded {
     private fun handleEntityDelete(entity: OdorWorldEntity) {
         if (entityList.contains(entity)) {
             entityList.remove(entity)
+            _entityGrid?.remove(entity)
+            _smellField?.entityRemoved(entity)
+            smellExtent = null
             for (sensor in entity.sensors) {
                 entity.events.sensorRemoved.fire(sensor)
             }
@@ -372,6 +454,111 @@ class OdorWorld : EditableObject, Bounded {
         return this
     }
 
+    /**
+     * Called by entities when their location changes.
+     */
+    fun entityMoved(entity: OdorWorldEntity) {
+        _entityGrid?.update(entity)
+        _smellField?.entityMoved(entity)
+    }
+
+    /**
+     * Called by entities when their smell source is replaced.
+     */
+    fun entitySmellSourceChanged(entity: OdorWorldEntity) {
+        _smellField?.entityRemoved(entity)
+        smellExtent = null
+    }
+
+    /**
+     * Returns the entities whose centers are within [radius] of [center], in no particular order.
+     */
+    fun getEntitiesWithin(center: Point2D, radius: Double): List<OdorWorldEntity> {
+        return collectEntitiesWithin(center.x, center.y, radius, ArrayList())
+    }
+
+    /**
+     * Add to [result] the entities whose centers are within [radius] of ([centerX], [centerY]), and return [result].
+     * See [getEntitiesWithin].
+     */
+    fun collectEntitiesWithin(
+        centerX: Double,
+        centerY: Double,
+        radius: Double,
+        result: MutableList<OdorWorldEntity>
+    ): MutableList<OdorWorldEntity> {
+        val start = result.size
+        entityGrid.collect(centerX - radius, centerY - radius, centerX + radius, centerY + radius, result)
+        result.subList(start, result.size).removeIf { sqrt((it.x - centerX).pow(2) + (it.y - centerY).pow(2)) > radius }
+        return result
+    }
+
+    /**
+     * Returns the entities whose bounds may intersect [bounds], in no particular order. Entities that are close to
+     * [bounds] but do not intersect them may be returned as well.
+     */
+    fun getEntitiesNear(bounds: Bounded): List<OdorWorldEntity> {
+        val topLeft = bounds.topLeftLocation
+        return collectEntitiesNear(
+            topLeft.x,
+            topLeft.y,
+            topLeft.x + bounds.width,
+            topLeft.y + bounds.height,
+            ArrayList()
+        )
+    }
+
+    /**
+     * Add to [result] the entities whose bounds may intersect the rectangle from ([minX], [minY]) to ([maxX], [maxY]),
+     * and return [result]. See [getEntitiesNear].
+     */
+    fun collectEntitiesNear(
+        minX: Double,
+        minY: Double,
+        maxX: Double,
+        maxY: Double,
+        result: MutableList<OdorWorldEntity>
+    ): MutableList<OdorWorldEntity> {
+        val grid = entityGrid
+        val margin = grid.maxHalfExtent
+        return grid.collect(minX - margin, minY - margin, maxX + margin, maxY + margin, result)
+    }
+
+    /**
+     * Largest distance at which a smell source in the world can be smelled. See [SmellSource.range].
+     */
+    val smellRange: Double
+        get() = computeSmellExtent().range
+
+    /**
+     * Largest stimulus dimension of the smell sources of the entities other than [smeller], i.e. the size of the smell
+     * vectors of [smeller].
+     */
+    fun getSmellDimension(smeller: OdorWorldEntity): Int {
+        val extent = computeSmellExtent()
+        return if (smeller === extent.largestSource) extent.secondLargestDimension else extent.largestDimension
+    }
+
+    private fun computeSmellExtent(): SmellExtent {
+        smellExtent?.let { return it }
+        var range = 0.0
+        var largestSource: OdorWorldEntity? = null
+        var largestDimension = 0
+        var secondLargestDimension = 0
+        for (entity in entityList) {
+            range = maxOf(range, entity.smellSource.range)
+            val dimension = entity.smellSource.stimulusDimension
+            if (largestSource == null || dimension > largestDimension) {
+                secondLargestDimension = largestDimension
+                largestDimension = dimension
+                largestSource = entity
+            } else if (dimension > secondLargestDimension) {
+                secondLargestDimension = dimension
+            }
+        }
+        return SmellExtent(range, largestSource, largestDimension, secondLargestDimension).also { smellExtent = it }
+    }
+
     @get:UserParameter(label = "Width", displayOnly = true)
     override val width: Double
         get() = tileMap.mapWidth.toDouble()
@@ -380,6 +567,26 @@ class OdorWorld : EditableObject, Bounded {
     override val height: Double
         get() = tileMap.mapHeight.toDouble()
 
+    /**
+     * Objects an entity moving within [region] could collide with: the colliding tiles and the entities near [region]
+     * (the latter only if objects block movement), and the world itself if it does not wrap around.
+     */
+    fun getCollidableObjects(region: Bounded): List<Bounded> {
+        val bounds = ArrayList<Bounded>()
+
+        bounds.addAll(tileMap.getCollisionBounds(region))
+
+        if (isObjectsBlockMovement) {
+            bounds.addAll(getEntitiesNear(region))
+        }
+
+        if (!wrapAround) {
+            bounds.add(this)
+        }
+
+        return bounds
+    }
+
     val collidableObjects: List<Bounded>
         get() {
             val bounds = ArrayList<Bounded>()
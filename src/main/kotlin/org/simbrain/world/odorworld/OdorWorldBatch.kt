@@ -0,0 +1,274 @@
+package org.simbrain.world.odorworld
+
+import org.simbrain.world.odorworld.entities.Bounded
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.ObjectSensor
+import org.simbrain.world.odorworld.sensors.Sensor
+import org.simbrain.world.odorworld.sensors.SensorWithRelativeLocation
+import org.simbrain.world.odorworld.sensors.SmellSensor
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.min
+import kotlin.math.sin
+
+/**
+ * Steps an [OdorWorld] without going through [OdorWorldEntity.update], for headless runs. Used by [OdorWorld.update]
+ * when [OdorWorld.isBatchMode] is set.
+ *
+ * The entities remain the state of the world. Before an entity moves, its position, heading and speed are copied to
+ * primitive arrays, and movement and collisions are computed from them without allocating bounds. The new position is
+ * written back through [OdorWorldEntity.x] and [OdorWorldEntity.y], which clamp it and update the world's indices.
+ * The `moved` events of the entities and the `updated` event of the world are not fired, but `collided` is, since
+ * models such as simulations react to it. Object sensors are located from the arrays and reuse a single neighbor list. Other
+ * sensors and the effectors are updated on the entities as usual.
+ *
+ * The arrays are thus a mirror of the entities: after each step they hold the state of every entity as of its own
+ * update, and [sensorValues] the scalar output of their sensors.
+ *
+ * Entities are still updated one after the other, in the order of [OdorWorld.entityList], since the sensors of an
+ * entity see the entities updated before it at their new location. The results, including collision events, are thus
+ * the same as those of the object path.
+ */
+class OdorWorldBatch(private val world: OdorWorld) {
+
+    /**
+     * Entities of the world, in the order of the arrays, as of the last step.
+     */
+    var entities: List<OdorWorldEntity> = listOf()
+        private set
+
+    var xMirror = DoubleArray(0)
+        private set
+
+    var yMirror = DoubleArray(0)
+        private set
+
+    /**
+     * Heading in degrees, see [OdorWorldEntity.heading].
+     */
+    var headingMirror = DoubleArray(0)
+        private set
+
+    var speedMirror = DoubleArray(0)
+        private set
+
+    var dthetaMirror = DoubleArray(0)
+        private set
+
+    /**
+     * Mirror of the scalar output of every sensor, entity after entity and in the order of [OdorWorldEntity.sensors] within an
+     * entity: the current value of sensors with a relative location, the scalar value of smell sensors, and 0 for
+     * other sensors. The sensors of entity `i` start at `sensorOffsets[i]`.
+     */
+    var sensorValues = DoubleArray(0)
+        private set
+
+    /**
+     * Index in [sensorValues] of the first sensor of each entity, with the total number of sensors at the end.
+     */
+    var sensorOffsets = IntArray(1)
+        private set
+
+    private val neighbors = ArrayList<OdorWorldEntity>()
+
+    private val collidables = ArrayList<Bounded>()
+
+    /**
+     * The object with the shortest overlap found by the last call to [shortestOverlap], if any.
+     */
+    private var collider: Bounded? = null
+
+    /**
+     * Update every entity: apply its movement, then its sensors and effectors if enabled.
+     */
+    fun step() {
+        prepare()
+        for (i in entities.indices) {
+            val entity = entities[i]
+            load(i)
+            move(i)
+            if (entity.isSensorsEnabled) {
+                sense(i)
+            }
+            if (entity.isEffectorsEnabled) {
+                entity.effectors.forEach { it.update(entity) }
+                load(i)
+            }
+        }
+    }
+
+    fun getSensorValue(entityIndex: Int, sensorIndex: Int) = sensorValues[sensorOffsets[entityIndex] + sensorIndex]
+
+    /**
+     * Take the current entities of the world and lay out the arrays for them.
+     */
+    private fun prepare() {
+        entities = world.entityList.toList()
+        val size = entities.size
+        if (xMirror.size != size) {
+            xMirror = DoubleArray(size)
+            yMirror = DoubleArray(size)
+            headingMirror = DoubleArray(size)
+            speedMirror = DoubleArray(size)
+            dthetaMirror = DoubleArray(size)
+            sensorOffsets = IntArray(size + 1)
+        }
+        for (i in 0 until size) {
+            sensorOffsets[i + 1] = sensorOffsets[i] + entities[i].sensors.size
+        }
+        if (sensorValues.size != sensorOffsets[size]) {
+            sensorValues = DoubleArray(sensorOffsets[size])
+        }
+    }
+
+    /**
+     * Copy the state of entity [i] to the arrays.
+     */
+    private fun load(i: Int) {
+        val entity = entities[i]
+        xMirror[i] = entity.x
+        yMirror[i] = entity.y
+        headingMirror[i] = entity.heading
+        speedMirror[i] = entity.speed
+        dthetaMirror[i] = entity.dtheta
+    }
+
+    /**
+     * Same as [OdorWorldEntity.applyMovement], without the `moved` event.
+     */
+    private fun move(i: Int) {
+        val entity = entities[i]
+        if (dthetaMirror[i] != 0.0) {
+            entity.heading = headingMirror[i] + dthetaMirror[i]
+            headingMirror[i] = entity.heading
+        }
+
+        val speed = speedMirror[i]
+        if (speed == 0.0) return
+
+        val x = xMirror[i]
+        val y = yMirror[i]
+        val width = entity.width
+        val height = entity.height
+        val dx = cos(Math.toRadians(headingMirror[i])) * speed
+        val dy = -sin(Math.toRadians(headingMirror[i])) * speed
+
+        val directionX = if (dx > 0) 1 else -1
+        val directionY = if (dy > 0) 1 else -1
+
+        // Only objects near the path of the movement can collide with the entity
+        val sweptWidth = width + abs(dx)
+        val sweptHeight = height + abs(dy)
+        val sweptMinX = (x + dx / 2) - sweptWidth / 2
+        val sweptMinY = (y + dy / 2) - sweptHeight / 2
+        collidables.clear()
+        world.tileMap.tileIndex.collectCollisionBounds(
+            sweptMinX,
+            sweptMinY,
+            sweptMinX + sweptWidth,
+            sweptMinY + sweptHeight,
+            collidables
+        )
+        if (world.isObjectsBlockMovement) {
+            neighbors.clear()
+            world.collectEntitiesNear(sweptMinX, sweptMinY, sweptMinX + sweptWidth, sweptMinY + sweptHeight, neighbors)
+            neighbors.filterTo(collidables) { it !== entity }
+        }
+
+        val distanceXShortenBy = shortestOverlap(x + dx, y, width, height, alongX = true)
+        collider?.let { entity.events.collided.fire(it) }
+        val distanceYShortenBy =
+            shortestOverlap(x + (dx - distanceXShortenBy * directionX), y + dy, width, height, alongX = false)
+        collider?.let { entity.events.collided.fire(it) }
+
+        val newX = x + (dx - distanceXShortenBy * directionX)
+        val newY = y + (dy - distanceYShortenBy * directionY)
+
+        if (world.wrapAround) {
+            val maxXLocation = world.width
+            val maxYLocation = world.height
+            entity.x = (newX + maxXLocation) % maxXLocation
+            entity.y = (newY + maxYLocation) % maxYLocation
+        } else {
+            entity.x = newX
+            entity.y = newY
+        }
+        xMirror[i] = entity.x
+        yMirror[i] = entity.y
+    }
+
+    /**
+     * Smallest overlap, along x or y, of a box centered at ([centerX], [centerY]) with the [collidables] and, if the
+     * world does not wrap around, with the edges of the world. 0 if it overlaps nothing. See [intersect]. The object
+     * with the smallest overlap is left in [collider], the first one in case of a tie, as in
+     * [OdorWorldEntity.applyMovement].
+     */
+    private fun shortestOverlap(
+        centerX: Double,
+        centerY: Double,
+        width: Double,
+        height: Double,
+        alongX: Boolean
+    ): Double {
+        val minX = centerX - width / 2
+        val minY = centerY - height / 2
+        var shortest = Double.POSITIVE_INFINITY
+        collider = null
+        for (other in collidables) {
+            val otherMinX = other.x - other.width / 2
+            val otherMinY = other.y - other.height / 2
+            val xCollision = min((minX + width) - otherMinX, (otherMinX + other.width) - minX)
+            val yCollision = min((minY + height) - otherMinY, (otherMinY + other.height) - minY)
+            if (xCollision > 0 && yCollision > 0) {
+                val overlap = if (alongX) xCollision else yCollision
+                if (overlap < shortest) {
+                    shortest = overlap
+                    collider = other
+                }
+            }
+        }
+        if (!world.wrapAround) {
+            // The world bound is inverted: moving out of it is a collision
+            val worldMinX = world.x - world.width / 2
+            val worldMinY = world.y - world.height / 2
+            val xCollision = -min(minX - worldMinX, (worldMinX + world.width) - (minX + width))
+            val yCollision = -min(minY - worldMinY, (worldMinY + world.height) - (minY + height))
+            if (xCollision > 0 || yCollision > 0) {
+                val overlap = if (alongX) xCollision else yCollision
+                if (overlap < shortest) {
+                    shortest = overlap
+                    collider = world
+                }
+            }
+        }
+        return if (collider == null) 0.0 else shortest
+    }
+
+    private fun sense(i: Int) {
+        val entity = entities[i]
+        var slot = sensorOffsets[i]
+        val end = sensorOffsets[i + 1]
+        for (sensor in entity.sensors) {
+            if (sensor is ObjectSensor) {
+                val angle = Math.toRadians(headingMirror[i] + sensor.theta)
+                sensor.update(
+                    entity,
+                    xMirror[i] + sensor.radius * cos(angle),
+                    yMirror[i] - sensor.radius * sin(angle),
+                    neighbors
+                )
+            } else {
+                sensor.update(entity)
+            }
+            if (slot < end) {
+                sensorValues[slot++] = scalarValue(sensor)
+            }
+        }
+    }
+
+    private fun scalarValue(sensor: Sensor) = when (sensor) {
+        is SmellSensor -> sensor.currentScalarValue
+        is SensorWithRelativeLocation -> sensor.currentValue
+        else -> 0.0
+    }
+}
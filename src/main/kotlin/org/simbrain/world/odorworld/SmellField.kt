@@ -0,0 +1,188 @@
+package org.simbrain.world.odorworld
+
+import org.simbrain.util.SmellSource
+import org.simbrain.util.decayfunctions.DecayFunction
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import java.awt.geom.Point2D
+import java.util.*
+import kotlin.math.ceil
+import kotlin.math.floor
+import kotlin.math.hypot
+
+/**
+ * Summed smell of the entities of an [OdorWorld] that stay in place, precomputed at the corners of the tiles and
+ * interpolated bilinearly in between. See [OdorWorld.isSmellFieldCached].
+ *
+ * An entity contributes to the field if it has no sensors or effectors, its smell source is not noisy, and it did not
+ * move since the field was last built. Smell sensors add up the contributions of the other entities exactly.
+ *
+ * The field is rebuilt when it is next used after an entity in it moves, is added or removed, or has its smell source
+ * changed.
+ */
+class SmellField(private val world: OdorWorld) {
+
+    /**
+     * State of the smell source of an entity when the field was built, used to notice changes.
+     */
+    private class SourceState(val source: SmellSource) {
+        val stimulusVector = source.stimulusVector?.copyOf()
+        val decayFunction: DecayFunction = source.decayFunction
+        val dispersion = decayFunction.dispersion
+        val peakDistance = decayFunction.peakDistance
+        val addNoise = source.addNoise
+
+        fun matches(source: SmellSource) = source === this.source &&
+                source.decayFunction === decayFunction &&
+                decayFunction.dispersion == dispersion &&
+                decayFunction.peakDistance == peakDistance &&
+                source.addNoise == addNoise &&
+                source.stimulusVector.contentEquals(stimulusVector)
+    }
+
+    /**
+     * Entities whose smell is in the field.
+     */
+    private val members = IdentityHashMap<OdorWorldEntity, SourceState>()
+
+    /**
+     * Entities that moved since the field was built, which are left out of the next build so that an entity that keeps
+     * moving does not cause a rebuild at every update.
+     */
+    private val moved = Collections.newSetFromMap(IdentityHashMap<OdorWorldEntity, Boolean>())
+
+    private var values: DoubleArray? = null
+
+    private var spacingX = 1.0
+
+    private var spacingY = 1.0
+
+    private var numNodesX = 0
+
+    private var numNodesY = 0
+
+    /**
+     * Size of the smell vectors in the field, the largest stimulus dimension of its entities.
+     */
+    var dimension = 0
+        private set
+
+    @Synchronized
+    fun invalidate() {
+        values = null
+    }
+
+    @Synchronized
+    fun entityMoved(entity: OdorWorldEntity) {
+        if (values == null) return
+        moved.add(entity)
+        if (entity in members) {
+            invalidate()
+        }
+    }
+
+    @Synchronized
+    fun entityRemoved(entity: OdorWorldEntity) {
+        moved.remove(entity)
+        if (entity in members) {
+            invalidate()
+        }
+    }
+
+    /**
+     * Invalidate the field if the smell source of one of its entities changed, or if one of them now has sensors or
+     * effectors. Called once per world update.
+     */
+    @Synchronized
+    fun checkSources() {
+        if (values == null) return
+        for ((entity, state) in members) {
+            if (!state.matches(entity.smellSource) || !isStatic(entity)) {
+                invalidate()
+                return
+            }
+        }
+    }
+
+    /**
+     * Make sure the field is built and does not include [smeller], which must smell all the other entities.
+     */
+    @Synchronized
+    fun prepare(smeller: OdorWorldEntity) {
+        if (smeller in members) {
+            invalidate()
+        }
+        if (values == null) {
+            build()
+        }
+    }
+
+    /**
+     * True if the smell of [entity] is in the field.
+     */
+    @Synchronized
+    operator fun contains(entity: OdorWorldEntity) = values != null && entity in members
+
+    /**
+     * Add the smell of the field at [location] to [target], which must have at least [dimension] elements. Returns false
+     * and leaves [target] unchanged if the location is outside the world or the field is not built.
+     */
+    @Synchronized
+    fun addSmell(location: Point2D, target: DoubleArray): Boolean {
+        val values = values ?: return false
+        val gridX = location.x / spacingX
+        val gridY = location.y / spacingY
+        if (gridX < 0 || gridY < 0 || gridX > numNodesX - 1 || gridY > numNodesY - 1) return false
+        val i = floor(gridX).toInt().coerceAtMost(numNodesX - 2)
+        val j = floor(gridY).toInt().coerceAtMost(numNodesY - 2)
+        val fx = gridX - i
+        val fy = gridY - j
+        val w00 = (1 - fx) * (1 - fy)
+        val w10 = fx * (1 - fy)
+        val w01 = (1 - fx) * fy
+        val w11 = fx * fy
+        val n00 = (j * numNodesX + i) * dimension
+        val n10 = n00 + dimension
+        val n01 = n00 + numNodesX * dimension
+        val n11 = n01 + dimension
+        for (k in 0 until dimension) {
+            target[k] += w00 * values[n00 + k] + w10 * values[n10 + k] + w01 * values[n01 + k] + w11 * values[n11 + k]
+        }
+        return true
+    }
+
+    private fun build() {
+        members.clear()
+        world.entityList
+            .filter { it !in moved && isStatic(it) }
+            .forEach { members[it] = SourceState(it.smellSource) }
+        moved.clear()
+
+        spacingX = world.tileMap.tileWidth.toDouble()
+        spacingY = world.tileMap.tileHeight.toDouble()
+        numNodesX = maxOf(2, ceil(world.width / spacingX).toInt() + 1)
+        numNodesY = maxOf(2, ceil(world.height / spacingY).toInt() + 1)
+        dimension = members.keys.maxOfOrNull { it.smellSource.stimulusDimension } ?: 0
+
+        val values = DoubleArray(numNodesX * numNodesY * dimension)
+        for (entity in members.keys) {
+            val source = entity.smellSource
+            val range = source.range
+            val minI = floor((entity.x - range) / spacingX).toInt().coerceIn(0, numNodesX - 1)
+            val maxI = ceil((entity.x + range) / spacingX).toInt().coerceIn(0, numNodesX - 1)
+            val minJ = floor((entity.y - range) / spacingY).toInt().coerceIn(0, numNodesY - 1)
+            val maxJ = ceil((entity.y + range) / spacingY).toInt().coerceIn(0, numNodesY - 1)
+            for (j in minJ..maxJ) {
+                for (i in minI..maxI) {
+                    val distance = hypot(i * spacingX - entity.x, j * spacingY - entity.y)
+                    if (distance <= range) {
+                        source.addStimulus(distance, values, (j * numNodesX + i) * dimension)
+                    }
+                }
+            }
+        }
+        this.values = values
+    }
+
+    private fun isStatic(entity: OdorWorldEntity) = entity.sensors.isEmpty() && entity.effectors.isEmpty() &&
+            !entity.smellSource.addNoise
+}
@@ -18,6 +18,7 @@ import org.simbrain.world.odorworld.sensors.Sensor
 import org.simbrain.world.odorworld.sensors.WithDispersion
 import java.awt.geom.Point2D
 import java.util.concurrent.CopyOnWriteArrayList
+import kotlin.math.abs
 import kotlin.math.cos
 import kotlin.math.sin
 
@@ -46,8 +47,11 @@ class OdorWorldEntity @JvmOverloads constructor(
             } else {
                 value.coerceIn(0.0, world.width)
             }
-            events.moved.fire()
+            if (!world.isBatchMode) {
+                events.moved.fire()
+            }
             locationPointDirty = true
+            world.entityMoved(this)
         }
 
     @UserParameter(label = "Y", description = "Y Position", order = 3)
@@ -59,8 +63,11 @@ class OdorWorldEntity @JvmOverloads constructor(
             } else {
                 value.coerceIn(0.0, world.height)
             }
-            events.moved.fire()
+            if (!world.isBatchMode) {
+                events.moved.fire()
+            }
             locationPointDirty = true
+            world.entityMoved(this)
         }
 
     @Transient
@@ -82,7 +89,9 @@ class OdorWorldEntity @JvmOverloads constructor(
     override var heading = 0.0
         set(value) {
             field = ((value % 360.0) + 360.0) % 360.0
-            events.moved.fire()
+            if (!world.isBatchMode) {
+                events.moved.fire()
+            }
         }
 
     override val width: Double = entityType.imageWidth
@@ -118,6 +127,10 @@ class OdorWorldEntity @JvmOverloads constructor(
      * components.
      */
     var smellSource = SmellSource(10)
+        set(value) {
+            field = value
+            world.entitySmellSourceChanged(this)
+        }
 
     val sensors = CopyOnWriteArrayList<Sensor>()
 
@@ -161,13 +174,15 @@ class OdorWorldEntity @JvmOverloads constructor(
         val dx = cos(heading.toRadian()) * speed
         val dy = -sin(heading.toRadian()) * speed
 
-        val bounds = world.collidableObjects.filter { it !== this }
-
         val directionX = if (dx > 0) 1 else -1
         val directionY = if (dy > 0) 1 else -1
 
         val moveInX = Bound(x + dx, y, width, height)
 
+        // Only objects near the path of the movement can collide with the entity
+        val sweptRegion = Bound(x + dx / 2, y + dy / 2, width + abs(dx), height + abs(dy))
+        val bounds = world.getCollidableObjects(sweptRegion).filter { it !== this }
+
         val distanceXShortenBy = bounds
             .associateWith { moveInX.intersect(it) }
             .filter { it.value.intersect }
@@ -287,9 +302,8 @@ class OdorWorldEntity @JvmOverloads constructor(
     }
 
     fun getEntitiesInRadius(radius: Double): List<OdorWorldEntity> {
-        return world.entityList
+        return world.getEntitiesWithin(location, radius)
             .filter { it !== this }
-            .filter { it.location.distance(location) <= radius }
     }
 
     fun speakToEntity(phrase: String) {
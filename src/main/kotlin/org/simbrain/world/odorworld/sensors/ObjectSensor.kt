@@ -6,6 +6,8 @@ import org.simbrain.util.decayfunctions.LinearDecayFunction
 import org.simbrain.util.math.SimbrainMath
 import org.simbrain.world.odorworld.entities.EntityType
 import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import kotlin.math.pow
+import kotlin.math.sqrt
 
 /**
  * Sensor that reacts when an object of a given type is near it.
@@ -33,12 +35,22 @@ class ObjectSensor @JvmOverloads constructor(
     override var showDispersion = false
 
     override fun update(parent: OdorWorldEntity) {
-        currentValue = 0.0
         val sensorLocation = computeAbsoluteLocation(parent)
-        for (otherEntity in parent.world.entityList - parent) {
-            if (otherEntity.entityType == objectType) {
+        update(parent, sensorLocation.x, sensorLocation.y, ArrayList())
+    }
+
+    /**
+     * Update the sensor given its absolute location ([sensorX], [sensorY]), using [neighbors] as scratch space for the
+     * nearby entities. Lets [org.simbrain.world.odorworld.OdorWorldBatch] reuse the list across sensors.
+     */
+    fun update(parent: OdorWorldEntity, sensorX: Double, sensorY: Double, neighbors: MutableList<OdorWorldEntity>) {
+        currentValue = 0.0
+        neighbors.clear()
+        parent.world.collectEntitiesWithin(sensorX, sensorY, decayFunction.cutoffDistance, neighbors)
+        for (otherEntity in neighbors) {
+            if (otherEntity !== parent && otherEntity.entityType == objectType) {
                 val scaleFactor = decayFunction.getScalingFactor(
-                    SimbrainMath.distance(sensorLocation, otherEntity.location)
+                    sqrt((sensorX - otherEntity.x).pow(2) + (sensorY - otherEntity.y).pow(2))
                 )
                 currentValue += baseValue * scaleFactor
             }
@@ -49,7 +61,7 @@ class ObjectSensor @JvmOverloads constructor(
         currentValue = 0.0
         val retList = ArrayList<OdorWorldEntity>()
         val sensorLocation = computeAbsoluteLocation(parent)
-        for (otherEntity in parent.world.entityList) {
+        for (otherEntity in parent.world.getEntitiesWithin(sensorLocation, decayFunction.cutoffDistance)) {
             if (otherEntity.entityType == objectType) {
                 val scaleFactor = decayFunction.getScalingFactor(
                     SimbrainMath.distance(sensorLocation, otherEntity.location)
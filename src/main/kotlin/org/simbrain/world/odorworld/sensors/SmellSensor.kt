@@ -21,6 +21,7 @@ package org.simbrain.world.odorworld.sensors
 import org.simbrain.util.math.SimbrainMath
 import org.simbrain.workspace.Producible
 import org.simbrain.workspace.couplings.HIGH_PRIORITY
+import org.simbrain.world.odorworld.OdorWorld
 import org.simbrain.world.odorworld.entities.OdorWorldEntity
 
 /**
@@ -40,14 +41,29 @@ class SmellSensor @JvmOverloads constructor(
     var smellVector = DoubleArray(0)
 
     /**
-     * Update the smell vector by iterating over entities and adding up their distance-scaled smell vectors.
+     * Update the smell vector by adding up the distance-scaled smell vectors of the entities within smelling range. If
+     * the world caches a smell field, the entities in the field are smelled through it, see [OdorWorld.smellField].
      */
     override fun update(parent: OdorWorldEntity) {
-        smellVector = parent.world.entityList
-            .filter { it != parent } // Don't smell yourself
-            .map { Pair(it.smellSource, SimbrainMath.distance(it.location, computeAbsoluteLocation(parent))) }
-            .map { (smellSource, distance) -> smellSource.getStimulus(distance) }
-            .fold(DoubleArray(smellVector.size) {0.0},  SimbrainMath::addVector)
+        val world = parent.world
+        val sensorLocation = computeAbsoluteLocation(parent)
+        val smellField = if (world.isSmellFieldCached) world.smellField.also { it.prepare(parent) } else null
+        var newSmellVector = DoubleArray(
+            maxOf(smellVector.size, world.getSmellDimension(parent), smellField?.dimension ?: 0)
+        )
+        val usesSmellField = smellField?.addSmell(sensorLocation, newSmellVector) == true
+        for (entity in world.getEntitiesWithin(sensorLocation, world.smellRange)) {
+            if (entity === parent) continue // Don't smell yourself
+            if (usesSmellField && entity in smellField!!) continue // Already smelled in the field
+            val smellSource = entity.smellSource
+            val distance = SimbrainMath.distance(entity.location, sensorLocation)
+            if (distance > smellSource.range) continue
+            if (smellSource.stimulusDimension > newSmellVector.size) {
+                newSmellVector = newSmellVector.copyOf(smellSource.stimulusDimension)
+            }
+            smellSource.addStimulus(distance, newSmellVector)
+        }
+        smellVector = newSmellVector
     }
 
     /**
@@ -4,8 +4,9 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.decayfunctions.DecayFunction
 import org.simbrain.util.decayfunctions.LinearDecayFunction
 import org.simbrain.util.piccolo.*
-import org.simbrain.util.plus
 import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import kotlin.math.floor
+import kotlin.math.sqrt
 
 /**
  * Sensor that reacts when an object of a given type is near it.
@@ -37,20 +38,64 @@ class TileSensor @JvmOverloads constructor(
     /**
      * Cached relative grid coordinates this sensor should check
      */
+    @Transient
     private var relativeGridCoordinates: List<GridCoordinate>? = null
 
+    /**
+     * Dispersion for which [relativeGridCoordinates] were computed.
+     */
+    @Transient
+    private var relativeGridCoordinatesDispersion = Double.NaN
+
+    /**
+     * Smallest and largest relative grid coordinates, the bounding box of [relativeGridCoordinates].
+     */
+    @Transient
+    private var relativeGridBox: IntArray? = null
+
     override var showDispersion = false
 
     override fun update(parent: OdorWorldEntity) {
         currentValue = 0.0
         val sensorLocation = computeAbsoluteLocation(parent)
-        currentValue = with(parent.world.tileMap) {
-            getRelativeGridLocationsInRadius(decayFunction.dispersion)
-                .map { it + sensorLocation.asPixelCoordinate().toGridCoordinate() }
-                .map { it.asGridCoordinate() to getTileStackAt(it.x.toInt(), it.y.toInt()) }
-                .filter { (_, tiles) -> tiles.any { it.type == tileType } }
-                .map { (pos) -> pos.toPixelCoordinate().distance(sensorLocation) }
-                .sumOf { decayFunction.getScalingFactor(it) * baseValue }
+        val tileMap = parent.world.tileMap
+        val offsets = getRelativeGridCoordinates(tileMap)
+        val typeIndex = tileMap.tileIndex.getTypeIndex(tileType)
+        val sensorX = floor(sensorLocation.x / tileMap.tileWidth).toInt()
+        val sensorY = floor(sensorLocation.y / tileMap.tileHeight).toInt()
+        val (minX, minY, maxX, maxY) = relativeGridBox!!
+        // Most of the time there is no tile of the type anywhere near the sensor
+        if (offsets.isEmpty() || typeIndex.count(sensorX + minX, sensorY + minY, sensorX + maxX, sensorY + maxY) == 0) {
+            return
+        }
+        var value = 0.0
+        for (offset in offsets) {
+            val x = sensorX + offset.x.toInt()
+            val y = sensorY + offset.y.toInt()
+            if (typeIndex[x, y]) {
+                val dx = (x + 0.5) * tileMap.tileWidth - sensorLocation.x
+                val dy = (y + 0.5) * tileMap.tileHeight - sensorLocation.y
+                val distance = sqrt(dx * dx + dy * dy)
+                value += decayFunction.getScalingFactor(distance) * baseValue
+            }
+        }
+        currentValue = value
+    }
+
+    private fun getRelativeGridCoordinates(tileMap: TileMap): List<GridCoordinate> {
+        val cached = relativeGridCoordinates
+        if (cached != null && relativeGridBox != null && relativeGridCoordinatesDispersion == decayFunction.dispersion) {
+            return cached
+        }
+        return tileMap.getRelativeGridLocationsInRadius(decayFunction.dispersion).toList().also { offsets ->
+            relativeGridCoordinates = offsets
+            relativeGridCoordinatesDispersion = decayFunction.dispersion
+            relativeGridBox = intArrayOf(
+                offsets.minOfOrNull { it.x.toInt() } ?: 0,
+                offsets.minOfOrNull { it.y.toInt() } ?: 0,
+                offsets.maxOfOrNull { it.x.toInt() } ?: 0,
+                offsets.maxOfOrNull { it.y.toInt() } ?: 0
+            )
         }
     }
 
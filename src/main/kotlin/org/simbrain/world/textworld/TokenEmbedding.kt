@@ -121,6 +121,15 @@ class TokenEmbeddingBuilder(): EditableObject {
     @UserParameter(label = "Use PPMI", order = 40 )
     var usePPMI = true
 
+    @UserParameter(
+        label = "Reduced dimension",
+        description = "If greater than 0, co-occurrences are counted sparsely and reduced to this many dimensions " +
+                "with a truncated SVD. Use for long documents such as books.",
+        minimumValue = 0.0,
+        order = 50
+    )
+    var reducedDimension = 0
+
     @UserParameter(label = "Remove stopwords", order = 60 )
     var removeStopWords = false
 
@@ -142,7 +151,13 @@ class TokenEmbeddingBuilder(): EditableObject {
             TokenEmbedding(tokens, Matrix.eye(tokens.size))
         }
         EmbeddingType.COC -> {
-            generateCooccurrenceMatrix(docString, windowSize, bidirectional, usePPMI, removeStopWords)
+            if (reducedDimension > 0) {
+                CooccurrenceMatrixBuilder(windowSize, bidirectional, removeStopWords)
+                    .apply { addText(docString) }
+                    .build(usePPMI, reducedDimension)
+            } else {
+                generateCooccurrenceMatrix(docString, windowSize, bidirectional, usePPMI, removeStopWords)
+            }
         }
         else -> {
             throw IllegalStateException("Custom embeddings must be manually loaded")
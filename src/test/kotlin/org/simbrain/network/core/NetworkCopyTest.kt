@@ -0,0 +1,64 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.neurongroups.NeuronGroup
+import smile.math.matrix.Matrix
+
+class NetworkCopyTest {
+
+    private val network = Network()
+
+    private val n1 = Neuron().apply { activation = .5; label = "n1" }
+
+    private val n2 = Neuron()
+
+    private val synapse = Synapse(n1, n2, .75)
+
+    private val source = NeuronArray(5)
+
+    private val target = NeuronArray(3)
+
+    private val weightMatrix = WeightMatrix(source, target)
+
+    private val neuronGroup = NeuronGroup(4)
+
+    init {
+        source.activations = Matrix.column(doubleArrayOf(.1, .2, .3, .4, .5))
+        network.addNetworkModels(n1, n2, synapse, source, target, weightMatrix, neuronGroup)
+        weightMatrix.randomize()
+    }
+
+    private fun xstreamCopy() = getNetworkXStream().let { it.fromXML(it.toXML(network)) as Network }
+
+    @Test
+    fun `copy matches the xstream copy`() {
+        val xml = getNetworkXStream().toXML(xstreamCopy())
+        assertEquals(xml, getNetworkXStream().toXML(network.copy()))
+    }
+
+    @Test
+    fun `copy preserves ids and wiring`() {
+        val copy = network.copy()
+        assertEquals(network.allModels.map { it.id }.toSet(), copy.allModels.map { it.id }.toSet())
+        val copiedSynapse = copy.getModels<Synapse>().first()
+        assertNotSame(synapse, copiedSynapse)
+        assertSame(copiedSynapse.source, copy.freeNeurons.first { it.id == n1.id })
+        assertSame(copiedSynapse.target, copy.freeNeurons.first { it.id == n2.id })
+        assertTrue(copiedSynapse in copiedSynapse.target.fanIn)
+        assertEquals(.5, copiedSynapse.source.activation)
+        val copiedMatrix = copy.getModels<WeightMatrix>().first()
+        assertSame(copiedMatrix.source, copy.getModels<NeuronArray>().first { it.id == source.id })
+        assertSame(copiedMatrix.target, copy.getModels<NeuronArray>().first { it.id == target.id })
+        assertArrayEquals(weightMatrix.weights, copiedMatrix.weights, 0.0)
+    }
+
+    @Test
+    fun `copies are independent of the original`() {
+        val copy = network.copy()
+        copy.freeNeurons.first { it.id == n1.id }.activation = -1.0
+        assertEquals(.5, n1.activation)
+        assertNotSame(network.updateManager, copy.updateManager)
+        assertEquals(network.updateManager.actionList.size, copy.updateManager.actionList.size)
+    }
+}
@@ -0,0 +1,116 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.connections.Direction
+import org.simbrain.network.connections.FixedDegree
+import org.simbrain.network.connections.Sparse
+import org.simbrain.network.learningrules.HebbianRule
+import org.simbrain.network.spikeresponders.JumpAndDecay
+import org.simbrain.network.updaterules.SpikingThresholdRule
+import smile.math.matrix.Matrix
+
+class SparseWeightMatrixTest {
+
+    val net = Network()
+    val n1 = NeuronArray(3)
+    val n2 = NeuronArray(2)
+
+    /**
+     * Weights [[1, 0, -1], [0, .5, 0]]
+     */
+    val swm = SparseWeightMatrix(
+        n1, n2,
+        rowPointers = intArrayOf(0, 2, 3),
+        columnIndices = intArrayOf(0, 2, 1),
+        values = doubleArrayOf(1.0, -1.0, .5)
+    )
+
+    init {
+        net.addNetworkModels(n1, n2, swm)
+    }
+
+    @Test
+    fun `summed psrs are weight matrix times input vector`() {
+        n1.activations = Matrix.column(doubleArrayOf(.5, .2, .3))
+        net.update()
+        assertArrayEquals(doubleArrayOf(.2, .1), n2.activationArray, 1e-12)
+    }
+
+    @Test
+    fun `matches dense weight matrix`() {
+        val n3 = NeuronArray(2)
+        val wm = WeightMatrix(n1, n3)
+        wm.setMatrixValues(swm.toDenseMatrix())
+        net.addNetworkModels(n3, wm)
+        n1.activations = Matrix.column(doubleArrayOf(-.3, .7, .2))
+        net.update()
+        assertArrayEquals(n3.activationArray, n2.activationArray, 1e-12)
+        assertEquals(0.0, swm[1, 0])
+        assertEquals(.5, swm[1, 1])
+    }
+
+    @Test
+    fun `hebbian rule only changes existing connections`() {
+        swm.learningRule = HebbianRule().apply { learningRate = 1.0 }
+        n1.isClamped = true
+        n2.isClamped = true
+        n1.activations = Matrix.column(doubleArrayOf(1.0, 1.0, 1.0))
+        n2.activations = Matrix.column(doubleArrayOf(1.0, 2.0))
+        net.update()
+        assertArrayEquals(doubleArrayOf(2.0, 0.0, 2.5), swm.values, 1e-12)
+        assertEquals(3, swm.numConnections)
+    }
+
+    @Test
+    fun `jump and decay on sparse connections`() {
+        val input = NeuronArray(3).apply { isClamped = true }
+        val inputWeights = WeightMatrix(input, n1)
+        net.addNetworkModels(input, inputWeights)
+        n1.updateRule = SpikingThresholdRule()
+        swm.spikeResponder = JumpAndDecay()
+        input.activations = Matrix.column(doubleArrayOf(1.0, 1.0, 1.0))
+        net.update() // Sources spike
+        net.update() // Spikes reach the sparse connections
+        // All sources spiked, so each psr jumps to its weight
+        assertArrayEquals(doubleArrayOf(1.0, -1.0, .5), swm.psrValues, 1e-12)
+        assertArrayEquals(doubleArrayOf(0.0, .5), swm.getSummedPSRs(), 1e-12)
+    }
+
+    @Test
+    fun `sparse strategy creates sparse weight matrix with requested density`() {
+        val source = NeuronArray(200)
+        val target = NeuronArray(100)
+        val connector = Sparse(connectionDensity = .1, seed = 1).connectLayers(source, target)
+        assertEquals(.1, connector.density, .01)
+        assertTrue(connector.values.all { it == 1.0 || it == -1.0 })
+    }
+
+    @Test
+    fun `sparse strategy excludes self connections on recurrent layer`() {
+        val layer = NeuronArray(50)
+        val connector = Sparse(connectionDensity = 1.0, seed = 1).connectLayers(layer, layer)
+        assertEquals(50 * 49, connector.numConnections)
+        connector.forEachConnection { i, j, _ -> assertNotEquals(i, j) }
+    }
+
+    @Test
+    fun `fixed indegree gives each target the same number of sources`() {
+        val source = NeuronArray(30)
+        val target = NeuronArray(20)
+        val connector = FixedDegree(degree = 4, direction = Direction.IN, seed = 1).connectLayers(source, target)
+        for (i in 0 until target.size) {
+            assertEquals(4, connector.rowPointers[i + 1] - connector.rowPointers[i])
+        }
+    }
+
+    @Test
+    fun `fixed outdegree gives each source the same number of targets`() {
+        val source = NeuronArray(30)
+        val target = NeuronArray(20)
+        val connector = FixedDegree(degree = 3, direction = Direction.OUT, seed = 1).connectLayers(source, target)
+        val outDegrees = IntArray(source.size)
+        connector.columnIndices.forEach { outDegrees[it]++ }
+        assertTrue(outDegrees.all { it == 3 })
+    }
+}
@@ -0,0 +1,68 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+class WeightMatrixDelayTest {
+
+    val net = Network()
+    val source = NeuronArray(2).apply { isClamped = true }
+    val target = NeuronArray(2)
+    val wm = WeightMatrix(source, target)
+
+    init {
+        net.addNetworkModels(source, target, wm)
+    }
+
+    private fun sourceActivations(step: Int) = doubleArrayOf(.05 * step, .01 * step)
+
+    @Test
+    fun `uniform delay passes activations from earlier iterations`() {
+        wm.delay = 2
+        for (step in 0 until 6) {
+            source.setActivations(sourceActivations(step))
+            net.update()
+            val expected = if (step < 2) doubleArrayOf(0.0, 0.0) else sourceActivations(step - 2)
+            assertArrayEquals(expected, target.activationArray, 1e-12, "Step $step")
+        }
+    }
+
+    @Test
+    fun `each connection can have its own delay`() {
+        wm.setWeights(arrayOf(doubleArrayOf(1.0, 1.0), doubleArrayOf(1.0, 1.0)))
+        wm.setDelays(arrayOf(intArrayOf(0, 1), intArrayOf(2, 0)))
+        for (step in 0 until 6) {
+            source.setActivations(sourceActivations(step))
+            net.update()
+            val current = sourceActivations(step)
+            val expected = doubleArrayOf(
+                current[0] + (if (step >= 1) sourceActivations(step - 1)[1] else 0.0),
+                (if (step >= 2) sourceActivations(step - 2)[0] else 0.0) + current[1]
+            )
+            assertArrayEquals(expected, target.activationArray, 1e-12, "Step $step")
+        }
+    }
+
+    @Test
+    fun `weight matrices from the same layer share one history`() {
+        val other = NeuronArray(2)
+        val wm2 = WeightMatrix(source, other).apply { delay = 3 }
+        net.addNetworkModels(other, wm2)
+        wm.delay = 1
+        net.update()
+        assertSame(source.activationHistory(1), source.activationHistory(3))
+        assertEquals(4, source.activationHistory(0).capacity)
+    }
+
+    @Test
+    fun `delays are serialized`() {
+        wm.delay = 2
+        wm.setDelays(arrayOf(intArrayOf(0, 1), intArrayOf(2, 3)))
+        val xml = getNetworkXStream().toXML(net)
+        val copy = (getNetworkXStream().fromXML(xml) as Network).getModels<WeightMatrix>().first()
+        assertEquals(2, copy.delay)
+        assertEquals(3, copy.maxDelay)
+        assertEquals(1, copy.delayOf(0, 1))
+        assertEquals(2, copy.delayOf(1, 0))
+    }
+}
@@ -0,0 +1,51 @@
+package org.simbrain.network.events
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.NetworkModel
+import org.simbrain.network.core.Neuron
+import java.util.concurrent.atomic.AtomicInteger
+
+class ModelsUpdatedTest {
+
+    val net = Network()
+    val changing = Neuron()
+    val constant = Neuron().apply { clamped = true }
+
+    init {
+        net.addNetworkModels(changing, constant)
+    }
+
+    @Test
+    fun `one event per update carries the changed neurons`() {
+        val batches = mutableListOf<List<NetworkModel>>()
+        val received = CompletableDeferred<Unit>()
+        net.events.modelsUpdated.on {
+            batches.add(it)
+            received.complete(Unit)
+        }
+        changing.addInputValue(1.0)
+        net.update()
+        runBlocking {
+            withTimeout(1000) { received.await() }
+            delay(50)
+        }
+        assertEquals(listOf(listOf<NetworkModel>(changing)), batches)
+    }
+
+    @Test
+    fun `activation changed is only fired outside of updates`() {
+        val count = AtomicInteger()
+        changing.events.activationChanged.on(wait = true) { _, _ -> count.incrementAndGet() }
+        changing.addInputValue(1.0)
+        net.update()
+        changing.activation = 5.0
+        runBlocking { delay(100) }
+        assertEquals(1, count.get())
+    }
+}
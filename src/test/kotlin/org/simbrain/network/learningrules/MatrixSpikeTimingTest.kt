@@ -0,0 +1,150 @@
+package org.simbrain.network.learningrules
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.*
+import org.simbrain.network.updaterules.SpikingThresholdRule
+import kotlin.math.exp
+import kotlin.random.Random
+
+class MatrixSpikeTimingTest {
+
+    val net = Network()
+    val source = NeuronArray(3).apply { updateRule = SpikingThresholdRule() }
+    val target = NeuronArray(2).apply { updateRule = SpikingThresholdRule() }
+    val wm = WeightMatrix(source, target).apply { setWeights(DoubleArray(6)) }
+
+    init {
+        net.addNetworkModels(source, target, wm)
+    }
+
+    @Test
+    fun `stdp potentiates the row of a target that spikes after a source`() {
+        wm.learningRule = STDPRule()
+        val rule = wm.learningRule as STDPRule
+        source.addInputs(doubleArrayOf(1.0, 0.0, 0.0))
+        net.update()
+        target.addInputs(doubleArrayOf(1.0, 0.0))
+        net.update()
+        val expected = net.timeStep * rule.learningRate * rule.w_plus * exp(-net.timeStep / rule.tau_plus)
+        assertEquals(expected, wm.weightMatrix[0, 0], 1e-12)
+        assertEquals(0.0, wm.weightMatrix[0, 1])
+        assertEquals(0.0, wm.weightMatrix[1, 0])
+    }
+
+    @Test
+    fun `stdp depresses the column of a source that spikes after a target`() {
+        wm.learningRule = STDPRule()
+        target.addInputs(doubleArrayOf(0.0, 1.0))
+        net.update()
+        source.addInputs(doubleArrayOf(0.0, 0.0, 1.0))
+        net.update()
+        assertEquals(true, wm.weightMatrix[1, 2] < 0)
+        assertEquals(0.0, wm.weightMatrix[0, 2])
+        assertEquals(0.0, wm.weightMatrix[1, 1])
+    }
+
+    /**
+     * Run the learning rule of [wm] and equivalent synapses, each with its own rule from [createRule], on the same
+     * random spikes, and check that the weights stay the same. By default half of the weights start out inhibitory.
+     */
+    private fun assertMatrixMatchesSynapses(
+        initialWeight: (Int) -> Double = { if (it % 2 == 0) .01 else -.01 },
+        createRule: () -> SynapseUpdateRule<*, *>
+    ) {
+        val initialWeights = DoubleArray(target.size * source.size, initialWeight)
+        wm.setWeights(initialWeights)
+        wm.learningRule = createRule()
+
+        val sourceNeurons = List(source.size) { Neuron(SpikingThresholdRule()) }
+        val targetNeurons = List(target.size) { Neuron(SpikingThresholdRule()) }
+        val synapses = targetNeurons.mapIndexed { i, post ->
+            sourceNeurons.mapIndexed { j, pre ->
+                Synapse(pre, post, initialWeights[i * source.size + j]).apply {
+                    learningRule = createRule()
+                    learningRule.init(this)
+                }
+            }
+        }
+        net.addNetworkModels(sourceNeurons + targetNeurons + synapses.flatten())
+
+        // Weights stay small enough that only external inputs determine which neurons spike
+        val random = Random(1)
+        repeat(30) { step ->
+            val sourceInputs = DoubleArray(source.size) { if (random.nextDouble() < .3) 1.0 else 0.0 }
+            val targetInputs = DoubleArray(target.size) { if (random.nextDouble() < .3) 1.0 else 0.0 }
+            source.addInputs(sourceInputs)
+            target.addInputs(targetInputs)
+            sourceNeurons.forEachIndexed { j, neuron -> neuron.addInputValue(sourceInputs[j]) }
+            targetNeurons.forEachIndexed { i, neuron -> neuron.addInputValue(targetInputs[i]) }
+            net.update()
+            for (i in 0 until target.size) {
+                for (j in 0 until source.size) {
+                    assertEquals(synapses[i][j].strength, wm.weightMatrix[i, j], 1e-12, "Weight ($i, $j) at step $step")
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `pfister gerstner matrix rule matches synapse rule`() {
+        val amplitude = .001
+        assertMatrixMatchesSynapses {
+            PfisterGerstner2006Rule().apply {
+                a2P = amplitude
+                a2N = amplitude
+                a3P = amplitude
+                a3N = amplitude
+            }
+        }
+    }
+
+    @Test
+    fun `stdp matrix rule matches synapse rule`() {
+        assertMatrixMatchesSynapses { STDPRule().apply { w_plus = .1; w_minus = .1 } }
+    }
+
+    @Test
+    fun `continuous stdp matrix rule matches synapse rule`() {
+        assertMatrixMatchesSynapses { STDPRule().apply { w_plus = .1; w_minus = .1; isContinuous = true } }
+    }
+
+    /**
+     * Log-STDP only adds noise to excitatory weights, so compare inhibitory ones that stay inhibitory.
+     */
+    @Test
+    fun `log stdp matrix rule matches synapse rule`() {
+        assertMatrixMatchesSynapses({ -.1 }) { LogSTDPRule().apply { learningRate = .001 } }
+    }
+
+    @Test
+    fun `log stdp matrix rule keeps the amplitudes of each weight`() {
+        val rule = LogSTDPRule()
+        wm.setWeights(DoubleArray(6) { .5 })
+        wm.learningRule = rule
+        source.addInputs(doubleArrayOf(1.0, 0.0, 0.0))
+        net.update()
+        target.addInputs(doubleArrayOf(1.0, 0.0))
+        net.update()
+        val data = wm.learningRuleData as STDPMatrixData
+        // As with a synapse, weight (0, 0) was depressed once and then potentiated, and weight (1, 0) depressed twice
+        val ltpDecay = exp(-.5 / (rule.smallWtThreshold * rule.ltpMod))
+        assertEquals(rule.w_plus * ltpDecay, data.wPlus[0], 1e-12)
+        assertEquals(rule.w_minus * .5, data.wMinus[0], 1e-12)
+        assertEquals(rule.w_minus * .25, data.wMinus[3], 1e-12)
+        assertEquals(2.0, rule.w_plus)
+        assertEquals(1.0, rule.w_minus)
+    }
+
+    @Test
+    fun `continuous stdp keeps changing weights between spikes`() {
+        wm.learningRule = STDPRule().apply { isContinuous = true }
+        source.addInputs(doubleArrayOf(1.0, 0.0, 0.0))
+        net.update()
+        target.addInputs(doubleArrayOf(1.0, 0.0))
+        net.update()
+        val afterSpike = wm.weightMatrix[0, 0]
+        net.update()
+        assertEquals(2 * afterSpike, wm.weightMatrix[0, 0], 1e-12)
+    }
+}
@@ -25,4 +25,27 @@ class LayerTest {
         net.update()
         assertArrayEquals(doubleArrayOf(1.0,-1.0), wm.getSummedPSRs(), 0.0)
     }
-}
\ No newline at end of file
+
+    @Test
+    internal fun `psr matrix is computed from activations at the time of the update`() {
+        na1.activations = Matrix.column(doubleArrayOf(1.0, 0.5))
+        wm.setWeights(arrayOf(doubleArrayOf(.1, .2), doubleArrayOf(.3, .4)))
+        net.update()
+        // na1 has been updated to 0 by now, but the psr matrix reflects the activations that were propagated
+        assertArrayEquals(doubleArrayOf(.1, .3), wm.psrMatrix.col(0), 1e-12)
+        assertArrayEquals(doubleArrayOf(.1, .2), wm.psrMatrix.col(1), 1e-12)
+        assertArrayEquals(doubleArrayOf(.2, .5), na2.activationArray, 1e-12)
+    }
+
+    @Test
+    internal fun `excitatory and inhibitory inputs follow the signs of the current weights`() {
+        na1.activations = Matrix.column(doubleArrayOf(1.0, 2.0))
+        wm.setWeights(arrayOf(doubleArrayOf(.5, -.25), doubleArrayOf(-1.0, .0)))
+        net.update()
+        assertArrayEquals(doubleArrayOf(.5, 0.0), na2.excitatoryInputs, 1e-12)
+        assertArrayEquals(doubleArrayOf(-.5, -1.0), na2.inhibitoryInputs, 1e-12)
+        wm.weightMatrix.mul(-1.0)
+        assertArrayEquals(doubleArrayOf(.5, 1.0), na2.excitatoryInputs, 1e-12)
+        assertArrayEquals(doubleArrayOf(-.5, 0.0), na2.inhibitoryInputs, 1e-12)
+    }
+}
@@ -0,0 +1,209 @@
+package org.simbrain.network.update_actions
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.CompiledNetwork
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.learningrules.HebbianRule
+import org.simbrain.network.updaterules.BinaryRule
+import org.simbrain.network.updaterules.SigmoidalRule
+
+class CompiledUpdateTest {
+
+    /**
+     * Recurrent network of linear, binary and sigmoidal neurons with fixed weights.
+     */
+    private fun createNetwork() = Network().apply {
+        val neurons = List(40) { i ->
+            Neuron().apply {
+                when (i % 4) {
+                    1 -> updateRule = BinaryRule()
+                    2 -> updateRule = SigmoidalRule()
+                }
+                activation = (i % 5) / 5.0 - 0.5
+                bias = (i % 3) / 10.0
+            }
+        }
+        addNetworkModels(neurons)
+        neurons.forEachIndexed { i, source ->
+            (1..3).forEach { offset ->
+                val target = neurons[(i + offset * 3) % neurons.size]
+                addNetworkModel(Synapse(source, target, ((i + offset) % 5) / 5.0 - 0.4))
+            }
+        }
+    }
+
+    private val Network.activations get() = freeNeurons.map { it.activation }.toDoubleArray()
+
+    private val Network.psrs get() = freeSynapses.map { it.psr }.toDoubleArray()
+
+    private fun createCompiledNetwork() = createNetwork().apply {
+        updateManager.clear()
+        addUpdateAction(CompiledUpdate(this))
+    }
+
+    /**
+     * Indices of the neurons reported by the next update of the network.
+     */
+    private fun Network.updateAndCollectChanged(): Set<Int> {
+        val changed = CompletableDeferred<Set<Int>>()
+        val handler = events.modelsUpdated.on { models ->
+            changed.complete(models.map { freeNeurons.indexOf(it) }.toSet())
+        }
+        update()
+        return runBlocking {
+            withTimeout(1000) { changed.await() }.also {
+                delay(50)
+                handler()
+            }
+        }
+    }
+
+    @Test
+    fun `compiled update matches buffered update`() {
+        val buffered = createNetwork()
+        val compiled = createNetwork().apply {
+            updateManager.clear()
+            addUpdateAction(CompiledUpdate(this))
+        }
+        repeat(10) {
+            buffered.update()
+            compiled.update()
+            assertArrayEquals(buffered.activations, compiled.activations)
+        }
+    }
+
+    @Test
+    fun `only synapses onto simple neurons are compiled`() {
+        val net = createNetwork()
+        val compiled = CompiledNetwork(net)
+        val expected = net.freeSynapses.count { CompiledNetwork.isCompilable(it.target.updateRule) }
+        assertEquals(expected, compiled.numCompiledSynapses)
+    }
+
+    @Test
+    fun `adding a neuron recompiles the network`() {
+        val buffered = createNetwork()
+        val compiled = createNetwork().apply {
+            updateManager.clear()
+            addUpdateAction(CompiledUpdate(this))
+        }
+        compiled.update()
+        buffered.update()
+        listOf(buffered, compiled).forEach { net ->
+            val newNeuron = Neuron().apply { activation = 1.0 }
+            net.addNetworkModel(newNeuron)
+            net.addNetworkModel(Synapse(newNeuron, net.freeNeurons.first(), 0.5))
+        }
+        repeat(3) {
+            buffered.update()
+            compiled.update()
+        }
+        assertArrayEquals(buffered.activations, compiled.activations)
+    }
+
+    @Test
+    fun `compiled update reports the same changed neurons as buffered update`() {
+        val buffered = createNetwork()
+        val compiled = createCompiledNetwork()
+        repeat(3) {
+            assertEquals(buffered.updateAndCollectChanged(), compiled.updateAndCollectChanged())
+        }
+    }
+
+    @Test
+    fun `activations set between updates are used by the compiled update`() {
+        val buffered = createNetwork()
+        val compiled = createCompiledNetwork()
+        repeat(5) { step ->
+            listOf(buffered, compiled).forEach { net ->
+                net.freeNeurons[step * 4].activation = 1.0
+            }
+            buffered.update()
+            compiled.update()
+            assertArrayEquals(buffered.activations, compiled.activations)
+        }
+    }
+
+    @Test
+    fun `synapse responses match buffered update`() {
+        val buffered = createNetwork()
+        val compiled = createCompiledNetwork()
+        listOf(buffered, compiled).forEach { net ->
+            net.freeSynapses.filterIndexed { k, _ -> k % 7 == 0 }.forEach {
+                it.learningRule = HebbianRule().apply { learningRate = 0.01 }
+            }
+        }
+        assertArrayEquals(buffered.psrs, compiled.psrs)
+        repeat(10) {
+            buffered.update()
+            compiled.update()
+            assertArrayEquals(buffered.psrs, compiled.psrs)
+            assertArrayEquals(buffered.activations, compiled.activations)
+        }
+    }
+
+    @Test
+    fun `released snapshot writes activations and responses back`() {
+        val net = createNetwork()
+        val snapshot = CompiledNetwork(net)
+        with(net) {
+            snapshot.accumulateInputs()
+            snapshot.update()
+        }
+        val activations = net.activations
+        val psrs = net.psrs
+        snapshot.release()
+        net.freeNeurons.forEach { assertNull(it.compiledNetwork) }
+        net.freeSynapses.forEach { assertNull(it.compiledNetwork) }
+        assertArrayEquals(activations, net.activations)
+        assertArrayEquals(psrs, net.psrs)
+    }
+
+    @Test
+    fun `removing the compiled update releases the snapshot`() {
+        val buffered = createNetwork()
+        val compiled = createCompiledNetwork()
+        val action = compiled.updateManager.actionList.single()
+        repeat(3) {
+            buffered.update()
+            compiled.update()
+        }
+        compiled.addUpdateAction(BufferedUpdate(compiled))
+        compiled.removeUpdateAction(action)
+        compiled.freeNeurons.forEach { assertNull(it.compiledNetwork) }
+        compiled.freeSynapses.forEach { assertNull(it.compiledNetwork) }
+        repeat(5) {
+            buffered.update()
+            compiled.update()
+            assertArrayEquals(buffered.activations, compiled.activations)
+            assertArrayEquals(buffered.psrs, compiled.psrs)
+        }
+    }
+
+    @Test
+    fun `copies do not share the compiled snapshot`() {
+        val buffered = createNetwork()
+        val compiled = createCompiledNetwork()
+        repeat(3) {
+            buffered.update()
+            compiled.update()
+        }
+        val copy = compiled.copy()
+        copy.freeNeurons.forEach { assertNull(it.compiledNetwork) }
+        copy.freeSynapses.forEach { assertNull(it.compiledNetwork) }
+        repeat(5) {
+            buffered.update()
+            copy.update()
+            assertArrayEquals(buffered.activations, copy.activations)
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.simbrain.network.update_actions
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.EventDrivenNetwork
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.spikeresponders.JumpAndDecay
+import org.simbrain.network.spikeresponders.StepResponder
+import org.simbrain.network.updaterules.IntegrateAndFireRule
+import org.simbrain.network.updaterules.SpikingThresholdRule
+import org.simbrain.workspace.updater.updateAction
+
+class EventDrivenUpdateTest {
+
+    /**
+     * Recurrent network of integrate and fire neurons, mostly connected by jump and decay synapses with a range of
+     * time constants and baselines.
+     */
+    private fun createNetwork() = Network().apply {
+        val neurons = List(40) { i ->
+            Neuron(IntegrateAndFireRule()).apply {
+                activation = -70.0 + (i % 10) * 2
+            }
+        }
+        addNetworkModels(neurons)
+        neurons.forEachIndexed { i, source ->
+            (1..4).forEach { offset ->
+                val target = neurons[(i + offset * 7) % neurons.size]
+                val synapse = Synapse(source, target, ((i + offset) % 5) - 1.5)
+                synapse.spikeResponder = if (offset == 4) {
+                    StepResponder()
+                } else {
+                    JumpAndDecay().apply {
+                        timeConstant = 2.0 + offset
+                        baseLine = if (offset == 3) .1 else 0.0
+                        useConvolution = i % 2 == 0
+                    }
+                }
+                addNetworkModel(synapse)
+            }
+        }
+    }
+
+    private val Network.activations get() = freeNeurons.map { it.activation }.toDoubleArray()
+
+    @Test
+    fun `event driven update matches buffered update`() {
+        val buffered = createNetwork()
+        val eventDriven = createNetwork().apply {
+            updateManager.clear()
+            addUpdateAction(EventDrivenUpdate(this))
+        }
+        var spikes = 0
+        repeat(300) { step ->
+            buffered.update()
+            eventDriven.update()
+            assertArrayEquals(buffered.activations, eventDriven.activations, 1e-9, "Activations differ at step $step")
+            assertArrayEquals(
+                buffered.freeNeurons.map { it.isSpike }.toBooleanArray(),
+                eventDriven.freeNeurons.map { it.isSpike }.toBooleanArray()
+            )
+            spikes += buffered.freeNeurons.count { it.isSpike }
+        }
+        assert(spikes > 0)
+    }
+
+    @Test
+    fun `only jump and decay synapses are event driven`() {
+        val net = createNetwork()
+        val eventDriven = EventDrivenNetwork(net)
+        assertEquals(net.freeSynapses.count { it.spikeResponder is JumpAndDecay }, eventDriven.numEventDrivenSynapses)
+    }
+
+    @Test
+    fun `responses are written back when released`() {
+        val buffered = createNetwork()
+        val eventDriven = createNetwork()
+        val snapshot = EventDrivenNetwork(eventDriven)
+        repeat(50) {
+            buffered.update()
+            with(eventDriven) {
+                snapshot.accumulateInputs()
+                snapshot.update()
+            }
+        }
+        snapshot.release()
+        buffered.freeSynapses.zip(eventDriven.freeSynapses)
+            .filter { (_, synapse) -> synapse.spikeResponder is JumpAndDecay }
+            .forEach { (expected, actual) -> assertEquals(expected.psr, actual.psr, 1e-9) }
+    }
+
+    @Test
+    fun `delayed spikes arrive delay iterations later`() {
+        val net = Network()
+        val source = Neuron(SpikingThresholdRule())
+        val targets = List(2) { Neuron(SpikingThresholdRule().apply { threshold = 100.0 }) }
+        val synapses = targets.mapIndexed { i, target ->
+            Synapse(source, target, 1.0).apply {
+                spikeResponder = JumpAndDecay()
+                delay = 3 * i
+            }
+        }
+        net.addNetworkModels(listOf(source) + targets + synapses)
+        val snapshot = EventDrivenNetwork(net)
+        val responses = List(2) { mutableListOf<Double>() }
+        repeat(20) { step ->
+            if (step == 0) source.addInputValue(1.0)
+            with(net) {
+                snapshot.accumulateInputs()
+                snapshot.update()
+            }
+            synapses.forEachIndexed { i, synapse -> responses[i].add(synapse.psr) }
+        }
+        assertEquals(1.0, responses[0][1])
+        assertEquals(1.0, responses[1][4])
+        assertArrayEquals(responses[0].dropLast(3).toDoubleArray(), responses[1].drop(3).toDoubleArray(), 1e-12)
+    }
+
+    @Test
+    fun `responses are read through the snapshot while it is in use`() {
+        val buffered = createNetwork()
+        val eventDriven = createNetwork().apply {
+            updateManager.clear()
+            addUpdateAction(EventDrivenUpdate(this))
+        }
+        repeat(50) { step ->
+            buffered.update()
+            eventDriven.update()
+            buffered.freeSynapses.zip(eventDriven.freeSynapses)
+                .filter { (_, synapse) -> synapse.spikeResponder is JumpAndDecay }
+                .forEach { (expected, actual) -> assertEquals(expected.psr, actual.psr, 1e-9, "PSR differs at $step") }
+        }
+    }
+
+    @Test
+    fun `spikes in flight survive rebuilding the snapshot`() {
+        val net = Network()
+        val source = Neuron(SpikingThresholdRule())
+        val target = Neuron(SpikingThresholdRule().apply { threshold = 100.0 })
+        val synapse = Synapse(source, target, 1.0).apply {
+            spikeResponder = JumpAndDecay()
+            delay = 3
+        }
+        net.addNetworkModels(listOf(source, target, synapse))
+        net.updateManager.clear()
+        net.addUpdateAction(EventDrivenUpdate(net))
+        source.addInputValue(1.0)
+        net.update()
+        assertEquals(0.0, synapse.psr)
+        // Adding a model rebuilds the snapshot while the spike is still queued
+        net.addNetworkModel(Neuron(SpikingThresholdRule()))
+        val responses = List(5) {
+            net.update()
+            synapse.psr
+        }
+        assertEquals(listOf(0.0, 0.0, 0.0, 1.0), responses.take(4))
+    }
+
+    @Test
+    fun `removing the event driven update releases the snapshot`() {
+        val buffered = createNetwork()
+        val eventDriven = createNetwork().apply {
+            updateManager.clear()
+            addUpdateAction(EventDrivenUpdate(this))
+        }
+        val action = eventDriven.updateManager.actionList.single()
+        repeat(50) {
+            buffered.update()
+            eventDriven.update()
+        }
+        eventDriven.addUpdateAction(BufferedUpdate(eventDriven))
+        eventDriven.removeUpdateAction(action)
+        eventDriven.freeSynapses.forEach { assertNull(it.eventDrivenNetwork) }
+        repeat(50) { step ->
+            buffered.update()
+            eventDriven.update()
+            assertArrayEquals(buffered.activations, eventDriven.activations, 1e-9, "Activations differ at step $step")
+            buffered.freeSynapses.zip(eventDriven.freeSynapses).forEach { (expected, actual) ->
+                assertEquals(expected.psr, actual.psr, 1e-9, "PSR differs at $step")
+            }
+        }
+    }
+
+    @Test
+    fun `spikes in flight survive a change to the update actions`() {
+        val net = Network()
+        val source = Neuron(SpikingThresholdRule())
+        val target = Neuron(SpikingThresholdRule().apply { threshold = 100.0 })
+        val synapse = Synapse(source, target, 1.0).apply {
+            spikeResponder = JumpAndDecay()
+            delay = 3
+        }
+        net.addNetworkModels(listOf(source, target, synapse))
+        net.updateManager.clear()
+        net.addUpdateAction(EventDrivenUpdate(net))
+        source.addInputValue(1.0)
+        net.update()
+        net.addUpdateAction(updateAction("Nothing") { })
+        assertNull(synapse.eventDrivenNetwork)
+        val responses = List(5) {
+            net.update()
+            synapse.psr
+        }
+        assertEquals(listOf(0.0, 0.0, 0.0, 1.0), responses.take(4))
+    }
+
+    @Test
+    fun `two spikes arriving at the same iteration jump once`() {
+        val net = Network()
+        val source = Neuron(SpikingThresholdRule())
+        val target = Neuron(SpikingThresholdRule().apply { threshold = 100.0 })
+        val synapse = Synapse(source, target, 1.0).apply {
+            spikeResponder = JumpAndDecay().apply { useConvolution = true }
+            delay = 2
+        }
+        net.addNetworkModels(listOf(source, target, synapse))
+        net.updateManager.clear()
+        net.addUpdateAction(EventDrivenUpdate(net))
+        source.addInputValue(1.0)
+        net.update()
+        // The queued spike arrives in three iterations, as does one fired after the next iteration without delay
+        synapse.delay = 0
+        net.addNetworkModel(Neuron(SpikingThresholdRule()))
+        net.update()
+        source.addInputValue(1.0)
+        net.update()
+        assertEquals(0.0, synapse.psr)
+        net.update()
+        assertEquals(1.0, synapse.psr, 1e-12)
+    }
+}
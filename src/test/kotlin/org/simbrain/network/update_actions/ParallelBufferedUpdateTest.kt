@@ -0,0 +1,171 @@
+package org.simbrain.network.update_actions
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.core.WeightMatrix
+import org.simbrain.network.spikeresponders.StepResponder
+import org.simbrain.network.updaterules.SpikingThresholdRule
+
+class ParallelBufferedUpdateTest {
+
+    /**
+     * A small recurrent network of linear neurons with fixed weights.
+     */
+    private fun createNetwork() = Network().apply {
+        val neurons = List(50) { i -> Neuron().apply { activation = (i % 7) / 7.0 - 0.5 } }
+        addNetworkModels(neurons)
+        neurons.forEachIndexed { i, source ->
+            (1..3).forEach { offset ->
+                val target = neurons[(i + offset * 7) % neurons.size]
+                addNetworkModel(Synapse(source, target, ((i + offset) % 5) / 5.0 - 0.4))
+            }
+        }
+    }
+
+    /**
+     * A recurrent network of spiking neurons whose synapses only respond to a spike with some probability, so that
+     * updates draw from [Network.random].
+     */
+    private fun createNoisyNetwork(seed: Long) = Network().apply {
+        randomSeed = seed
+        val neurons = List(50) { Neuron(SpikingThresholdRule()) }
+        addNetworkModels(neurons)
+        neurons.forEachIndexed { i, source ->
+            (1..3).forEach { offset ->
+                val target = neurons[(i + offset * 7) % neurons.size]
+                addNetworkModel(Synapse(source, target, 0.4).apply {
+                    spikeResponder = StepResponder().apply { spikeProbability = 0.5 }
+                })
+            }
+        }
+    }
+
+    private val Network.activations get() = freeNeurons.map { it.activation }.toDoubleArray()
+
+    private val Network.psrs get() = freeSynapses.map { it.psr }.toDoubleArray()
+
+    /**
+     * Update the noisy network [steps] times with a parallel update of [numChunks] chunks, or the default number if
+     * null, driving a third of the neurons at each step, and return the responses of its synapses after each step.
+     */
+    private fun runNoisyNetwork(seed: Long, numChunks: Int?, steps: Int = 10): List<DoubleArray> {
+        val net = createNoisyNetwork(seed).apply {
+            updateManager.clear()
+            addUpdateAction(numChunks?.let { ParallelBufferedUpdate(this, it) } ?: ParallelBufferedUpdate(this))
+        }
+        return List(steps) { step ->
+            net.freeNeurons.forEachIndexed { i, neuron ->
+                if (i % 3 == step % 3) neuron.addInputValue(1.0)
+            }
+            net.update()
+            net.psrs
+        }
+    }
+
+    @Test
+    fun `parallel update matches serial buffered update`() {
+        val serial = createNetwork()
+        val parallel = createNetwork().apply {
+            updateManager.clear()
+            addUpdateAction(ParallelBufferedUpdate(this, 4))
+        }
+        repeat(10) {
+            serial.update()
+            parallel.update()
+            assertArrayEquals(serial.activations, parallel.activations)
+        }
+    }
+
+    @Test
+    fun `parallel update of deterministic rules is independent of number of chunks`() {
+        // The fixture draws no random numbers; see the noisy tests for rules that do
+        val net1 = createNetwork()
+        val net2 = createNetwork()
+        val update1 = ParallelBufferedUpdate(net1, 2)
+        val update2 = ParallelBufferedUpdate(net2, 7)
+        runBlocking {
+            repeat(10) {
+                update1.run()
+                update2.run()
+            }
+        }
+        assertArrayEquals(net1.activations, net2.activations)
+    }
+
+    @Test
+    fun `noisy parallel update is reproducible for a given seed and number of chunks`() {
+        val first = runNoisyNetwork(seed = 7, numChunks = 4)
+        val second = runNoisyNetwork(seed = 7, numChunks = 4)
+        first.zip(second).forEachIndexed { step, (expected, actual) ->
+            assertArrayEquals(expected, actual, "Responses differ at step $step")
+        }
+    }
+
+    @Test
+    fun `noisy parallel update depends on the seed`() {
+        val first = runNoisyNetwork(seed = 7, numChunks = 4)
+        val second = runNoisyNetwork(seed = 8, numChunks = 4)
+        assertFalse(first.zip(second).all { (a, b) -> a.contentEquals(b) })
+    }
+
+    @Test
+    fun `default number of chunks does not depend on the machine`() {
+        assertEquals(ParallelBufferedUpdate.DEFAULT_NUM_CHUNKS, ParallelBufferedUpdate(Network()).numChunks)
+        val expected = runNoisyNetwork(seed = 7, numChunks = ParallelBufferedUpdate.DEFAULT_NUM_CHUNKS)
+        val actual = runNoisyNetwork(seed = 7, numChunks = null)
+        expected.zip(actual).forEachIndexed { step, (e, a) ->
+            assertArrayEquals(e, a, "Responses differ at step $step")
+        }
+    }
+
+    /**
+     * A clamped source array with two delayed weight matrices to separate target arrays, so that the targets can be
+     * updated in different chunks while sharing the source's activation history.
+     */
+    private fun createDelayedNetwork() = Network().apply {
+        val source = NeuronArray(20).apply { isClamped = true }
+        val targets = List(2) { NeuronArray(20) }
+        addNetworkModels(listOf(source) + targets)
+        targets.forEachIndexed { i, target ->
+            addNetworkModel(WeightMatrix(source, target).apply { delay = 2 + 3 * i })
+        }
+    }
+
+    @Test
+    fun `delayed connectors from one source match serial buffered update`() {
+        val serial = createDelayedNetwork()
+        val parallel = createDelayedNetwork().apply {
+            updateManager.clear()
+            addUpdateAction(ParallelBufferedUpdate(this, 4))
+        }
+        repeat(30) { step ->
+            listOf(serial, parallel).forEach { net ->
+                net.getModels<NeuronArray>().first().setActivations(DoubleArray(20) { (it + step) % 7 / 7.0 })
+                net.update()
+            }
+            serial.getModels<NeuronArray>().zip(parallel.getModels<NeuronArray>()).forEach { (expected, actual) ->
+                assertArrayEquals(expected.activationArray, actual.activationArray, "Activations differ at $step")
+            }
+        }
+        val source = parallel.getModels<NeuronArray>().first()
+        assertEquals(6, source.activationHistory(0).capacity)
+    }
+
+    @Test
+    fun `chunks are balanced by cost`() {
+        val net = createNetwork()
+        val hub = net.freeNeurons.first()
+        net.freeNeurons.drop(1).forEach { net.addNetworkModel(Synapse(it, hub)) }
+        val chunks = balancedChunks(net.freeNeurons.take(7), 4)
+        assertEquals(4, chunks.size)
+        // The hub has far more inputs than any other neuron and so should be alone in its chunk
+        assertEquals(listOf(hub), chunks.first { hub in it })
+    }
+}
@@ -0,0 +1,142 @@
+package org.simbrain.network.updaterules
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.*
+import org.simbrain.network.util.SpikingMatrixData
+import org.simbrain.util.math.SigmoidFunctionEnum
+import kotlin.random.Random
+
+/**
+ * Checks that the in-place array versions of update rules produce the same activations and spikes as applying the
+ * rule to individual neurons.
+ */
+class ArrayRuleKernelTest {
+
+    private val size = 20
+
+    /**
+     * Run a neuron array and an equal number of free neurons with the same rule side by side, giving both the same
+     * random inputs, and compare them after every update.
+     */
+    private fun assertArrayMatchesNeurons(
+        rule: NeuronUpdateRule<*, *>,
+        maxInput: Double,
+        steps: Int = 100,
+        tolerance: Double = 1e-9
+    ) {
+        val net = Network()
+        val neurons = List(size) { Neuron(rule.copy()) }
+        val array = NeuronArray(size)
+        array.updateRule = rule.copy()
+        net.addNetworkModels(neurons)
+        net.addNetworkModels(array)
+
+        val random = Random(42)
+        repeat(steps) { step ->
+            val inputs = DoubleArray(size) { random.nextDouble() * maxInput }
+            neurons.forEachIndexed { i, neuron -> neuron.addInputValue(inputs[i]) }
+            array.addInputs(inputs)
+            net.update()
+            assertArrayEquals(
+                neurons.map { it.activation }.toDoubleArray(),
+                array.activationArray,
+                tolerance,
+                "${rule.name} activations differ at step $step"
+            )
+            (array.dataHolder as? SpikingMatrixData)?.let { spikeData ->
+                assertArrayEquals(
+                    neurons.map { it.isSpike }.toBooleanArray(),
+                    spikeData.spikes,
+                    "${rule.name} spikes differ at step $step"
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `izhikevich array matches neurons`() {
+        assertArrayMatchesNeurons(IzhikevichRule(), 10.0)
+    }
+
+    @Test
+    fun `integrate and fire array matches neurons`() {
+        assertArrayMatchesNeurons(IntegrateAndFireRule(), 10.0)
+    }
+
+    @Test
+    fun `fitzhugh nagumo array matches neurons`() {
+        assertArrayMatchesNeurons(FitzhughNagumo(), 1.0)
+    }
+
+    @Test
+    fun `naka rushton array matches neurons`() {
+        assertArrayMatchesNeurons(NakaRushtonRule().apply { useAdaptation = true }, 50.0)
+    }
+
+    @Test
+    fun `linear, binary, decay and sigmoidal arrays match neurons`() {
+        assertArrayMatchesNeurons(LinearRule(), 1.0)
+        assertArrayMatchesNeurons(BinaryRule(), 1.0)
+        assertArrayMatchesNeurons(DecayRule(), 1.0)
+        assertArrayMatchesNeurons(SigmoidalRule(), 2.0)
+    }
+
+    @Test
+    fun `sigmoidal array passes its bounds in the same order as neurons`() {
+        SigmoidFunctionEnum.values().forEach { type ->
+            val rule = SigmoidalRule().apply {
+                this.type = type
+                lowerBound = -0.5
+                upperBound = 2.0
+                slope = 0.7
+            }
+            assertArrayMatchesNeurons(rule, 4.0, steps = 10, tolerance = 0.0)
+
+            // The sigmoids are symmetric in their bounds up to rounding, so the array version, which used to pass
+            // them in the opposite order, gives the same activations as before
+            for (x in listOf(-3.0, -0.25, 0.0, 0.5, 3.0)) {
+                assertEquals(type.valueOf(x, -0.5, 2.0, 0.7), type.valueOf(x, 2.0, -0.5, 0.7), 1e-12)
+            }
+        }
+    }
+
+    @Test
+    fun `adaptive exponential array matches neurons`() {
+        // AdEx reads excitatory and inhibitory inputs, so drive both versions through one-to-one connections
+        val net = Network()
+        val weights = DoubleArray(size) { if (it % 2 == 0) 5.0 else -5.0 }
+
+        val sourceNeurons = List(size) { Neuron().apply { clamped = true } }
+        val neurons = List(size) { Neuron(AdExIFRule()) }
+        val synapses = List(size) { Synapse(sourceNeurons[it], neurons[it], weights[it]) }
+        net.addNetworkModels(sourceNeurons + neurons + synapses)
+
+        val sourceArray = NeuronArray(size).apply { isClamped = true }
+        val array = NeuronArray(size).apply { updateRule = AdExIFRule() }
+        val weightMatrix = WeightMatrix(sourceArray, array).apply {
+            setWeights(Array(size) { i -> DoubleArray(size) { j -> if (i == j) weights[i] else 0.0 } })
+        }
+        net.addNetworkModels(sourceArray, array, weightMatrix)
+
+        val random = Random(42)
+        repeat(100) { step ->
+            val sourceActivations = DoubleArray(size) { random.nextDouble() }
+            sourceNeurons.forEachIndexed { i, neuron -> neuron.activation = sourceActivations[i] }
+            sourceArray.setActivations(sourceActivations)
+            net.update()
+            assertArrayEquals(
+                neurons.map { it.activation }.toDoubleArray(),
+                array.activationArray,
+                1e-9,
+                "AdEx activations differ at step $step"
+            )
+            assertArrayEquals(
+                neurons.map { it.isSpike }.toBooleanArray(),
+                (array.dataHolder as SpikingMatrixData).spikes,
+                "AdEx spikes differ at step $step"
+            )
+        }
+    }
+}
@@ -3,6 +3,9 @@ package org.simbrain.util
 import org.junit.jupiter.api.Assertions.*
 import org.junit.jupiter.api.Test
 import smile.math.matrix.Matrix
+import kotlin.math.abs
+import kotlin.math.pow
+import kotlin.math.sqrt
 
 class TextUtilsTest {
 
@@ -168,6 +171,64 @@ class TextUtilsTest {
     }
 
 
+    @Test
+    fun `streaming co-occurrence builder matches the dense matrix`() {
+        val dense = generateCooccurrenceMatrix(windowSizeText, 2, true)
+        val sparse = CooccurrenceMatrixBuilder(2, true).apply { addText(windowSizeText) }.build()
+        assertEquals(dense.tokens.toSet(), sparse.tokens.toSet())
+        for (token in dense.tokens) {
+            for (context in dense.tokens) {
+                assertEquals(
+                    dense.tokenVectorMatrix[dense.tokensMap[token]!!, dense.tokensMap[context]!!],
+                    sparse.tokenVectorMatrix[sparse.tokensMap[token]!!, sparse.tokensMap[context]!!],
+                    1e-12
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `streaming co-occurrence builder reads documents paragraph by paragraph`() {
+        val document = listOf(similarText, windowSizeText, mlkText).joinToString("\n\n")
+        val fromText = CooccurrenceMatrixBuilder(3).apply {
+            addText(similarText)
+            addText(windowSizeText)
+            addText(mlkText)
+        }
+        val fromDocument = CooccurrenceMatrixBuilder(3).apply { addDocument(document.reader()) }
+        assertEquals(fromText.tokens, fromDocument.tokens)
+        assertEquals(fromText.numPairs, fromDocument.numPairs)
+        assertEquals(fromText.build(usePPMI = false).tokenVectorMatrix.toArray().map { it.toList() },
+            fromDocument.build(usePPMI = false).tokenVectorMatrix.toArray().map { it.toList() })
+    }
+
+    @Test
+    fun `truncated SVD with full dimension preserves inner products between tokens`() {
+        val builder = CooccurrenceMatrixBuilder(2, true).apply { addText(similarText) }
+        val full = builder.build().tokenVectorMatrix
+        val reduced = builder.build(dimension = builder.tokens.size).tokenVectorMatrix
+        val fullProducts = full.aat()
+        val reducedProducts = reduced.aat()
+        for (i in builder.tokens.indices) {
+            for (j in builder.tokens.indices) {
+                assertEquals(fullProducts[i, j], reducedProducts[i, j], 1e-6 * (1 + abs(fullProducts[i, j])))
+            }
+        }
+    }
+
+    @Test
+    fun `truncated SVD keeps the largest singular directions`() {
+        val builder = CooccurrenceMatrixBuilder(2, true).apply { addText(mlkText) }
+        val reduced = builder.build(dimension = 10).tokenVectorMatrix
+        assertEquals(builder.tokens.size, reduced.nrow())
+        assertEquals(10, reduced.ncol())
+        val singularValues = (0 until 10).map { j -> sqrt((0 until reduced.nrow()).sumOf { reduced[it, j].pow(2) }) }
+        assertEquals(singularValues.sortedDescending(), singularValues)
+        // A projection of the full matrix, so it cannot be larger
+        val full = builder.build().tokenVectorMatrix
+        assertTrue(singularValues.sumOf { it.pow(2) } <= full.toArray().sumOf { row -> row.sumOf { it.pow(2) } } + 1e-6)
+    }
+
     @Test
     fun `build corpus list`() {
         val context = "The quick brown fox jumps over the lazy dog".split(" ")
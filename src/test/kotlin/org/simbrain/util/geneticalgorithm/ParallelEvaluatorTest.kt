@@ -0,0 +1,130 @@
+package org.simbrain.util.geneticalgorithm
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.workspace.Workspace
+import java.io.File
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+class ParallelEvaluatorTest {
+
+    @TempDir
+    lateinit var directory: File
+
+    class ValueGenotype(var value: Double, val random: Random)
+
+    /**
+     * A sim whose fitness is the value of its genotype, which mutation increases.
+     */
+    inner class ValueSim(override val genotype: ValueGenotype) : CheckpointableEvoSim {
+
+        override fun mutate() {
+            genotype.value += genotype.random.nextDouble()
+        }
+
+        override suspend fun build() {}
+
+        override fun visualize(workspace: Workspace) = this
+
+        override fun copy() = ValueSim(ValueGenotype(genotype.value, Random(genotype.random.nextLong())))
+
+        override suspend fun eval(): Double {
+            val running = inProgress.incrementAndGet()
+            maxInProgress.accumulateAndGet(running, ::maxOf)
+            evaluations.incrementAndGet()
+            delay(5)
+            inProgress.decrementAndGet()
+            return genotype.value
+        }
+    }
+
+    private val inProgress = AtomicInteger()
+
+    private val maxInProgress = AtomicInteger()
+
+    private val evaluations = AtomicInteger()
+
+    private fun evolve(
+        generations: Int,
+        reuseSurvivorFitness: Boolean = false,
+        checkpointFile: File? = null,
+        metrics: (GenerationMetrics) -> Unit = {}
+    ) = runBlocking {
+        parallelEvaluator(
+            populatingFunction = { ValueSim(ValueGenotype(0.0, Random(seed))) },
+            populationSize = 20,
+            eliminationRatio = 0.5,
+            stoppingFunction = { generation >= generations },
+            seed = 42,
+            workers = 3,
+            reuseSurvivorFitness = reuseSurvivorFitness,
+            checkpointFile = checkpointFile,
+            restore = { ValueSim(it as ValueGenotype) },
+            metrics = metrics
+        )
+    }
+
+    @Test
+    fun `no more than the given number of sims are evaluated at once`() {
+        evolve(3)
+        assertEquals(60, evaluations.get())
+        assertTrue(maxInProgress.get() <= 3)
+    }
+
+    @Test
+    fun `fitness of survivors is reused`() {
+        val metrics = mutableListOf<GenerationMetrics>()
+        evolve(3, reuseSurvivorFitness = true) { metrics.add(it) }
+        assertEquals(20 + 10 + 10, evaluations.get())
+        assertEquals(listOf(0, 10, 10), metrics.map { it.cached })
+    }
+
+    @Test
+    fun `runs resume from their checkpoint`() {
+        val checkpointFile = File(directory, "checkpoint.xml")
+        val generations = mutableListOf<Int>()
+        evolve(3, checkpointFile = checkpointFile) { generations.add(it.generation) }
+        assertTrue(checkpointFile.exists())
+        val resumed = evolve(5, checkpointFile = checkpointFile) { generations.add(it.generation) }
+        assertEquals(listOf(1, 2, 3, 4, 5), generations)
+
+        val uninterrupted = evolve(5)
+        assertEquals(
+            uninterrupted.map { (it as ValueSim).genotype.value },
+            resumed.map { (it as ValueSim).genotype.value }
+        )
+    }
+
+    @Test
+    fun `a single generator gives the same run as evaluator`() {
+        val populatingFunction: PopulatingFunctionParams.() -> EvoSim = { ValueSim(ValueGenotype(0.0, Random(seed))) }
+        val expected = runBlocking {
+            evaluator(
+                populatingFunction = populatingFunction,
+                populationSize = 20,
+                eliminationRatio = 0.5,
+                stoppingFunction = { generation >= 5 },
+                seed = 42
+            )
+        }
+        val actual = runBlocking {
+            parallelEvaluator(
+                populatingFunction = populatingFunction,
+                populationSize = 20,
+                eliminationRatio = 0.5,
+                stoppingFunction = { generation >= 5 },
+                seed = 42,
+                workers = 3,
+                random = Random(42)
+            )
+        }
+        assertEquals(
+            expected.map { (it as ValueSim).genotype.value },
+            actual.map { (it as ValueSim).genotype.value }
+        )
+    }
+}
@@ -1,14 +1,21 @@
 package org.simbrain.workspace
 
 
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.simbrain.network.NetworkComponent
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronArray
 import org.simbrain.util.complement
 import org.simbrain.workspace.couplings.Coupling
+import org.simbrain.workspace.couplings.CouplingManager
+import org.simbrain.workspace.serialization.WorkspaceSerializer
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 
 class CouplingTest {
 
@@ -241,4 +248,130 @@ class CouplingTest {
         assertEquals(.5, neuron2.activation, 0.0)
         assertEquals(.5, neuron3.activation, 0.0)
     }
+
+    @Test
+    fun `double and array couplings are updated through direct accessors`() {
+        val neuron1 = Neuron().apply { activation = .7 }
+        val neuron2 = Neuron()
+        val array1 = NeuronArray(3).apply { setActivations(doubleArrayOf(1.0, 2.0, 3.0)) }
+        val array2 = NeuronArray(3)
+        network.addNetworkModels(neuron1, neuron2, array1, array2)
+        with(couplingManager) {
+            val producer = neuron1.getProducer("getActivation")
+            val consumer = neuron2.getConsumer("setActivation")
+            assertTrue(producer.isDoubleProducer)
+            assertTrue(consumer.isDoubleConsumer)
+            createCoupling(producer, consumer).update()
+            createCoupling(array1.getProducer("getActivationArray"), array2.getConsumer("setActivations")).update()
+        }
+        assertEquals(.7, neuron2.activation)
+        assertArrayEquals(doubleArrayOf(1.0, 2.0, 3.0), array2.activationArray)
+    }
+
+    @Test
+    fun `array couplings reuse a buffer when the consumer copies its input`() {
+        val source = NeuronArray(3)
+        val target = NeuronArray(3)
+        network.addNetworkModels(source, target)
+        with(couplingManager) {
+            val producer = source.getProducer("getActivationArray")
+            val consumer = target.getConsumer("setActivations")
+            assertTrue(producer.isFillProducer)
+            assertTrue(consumer.copiesArray())
+            val buffer = DoubleArray(3)
+            assertSame(buffer, producer.fillValue(buffer))
+            assertEquals(3, producer.fillValue(DoubleArray(2)).size)
+            val coupling = createCoupling(producer, consumer)
+            for (step in 1..3) {
+                source.setActivations(doubleArrayOf(step * 1.0, step * 2.0, step * 3.0))
+                coupling.update()
+                assertArrayEquals(doubleArrayOf(step * 1.0, step * 2.0, step * 3.0), target.activationArray)
+            }
+        }
+    }
+
+    @Test
+    fun `coupling group moves all producer values to consumers`() {
+        val sources = List(3) { Neuron().apply { activation = it + 1.0 } }
+        val targets = List(3) { Neuron() }
+        network.addNetworkModels(sources + targets)
+        val group = with(couplingManager) {
+            createCouplingGroup(
+                sources.map { it.getProducer("getActivation") },
+                targets.map { it.getConsumer("addInputValue") }
+            )
+        }
+        assertEquals(listOf(group), couplingManager.couplingGroups)
+        assertEquals(3, couplingManager.couplings.size)
+        assertTrue(couplingManager.ungroupedCouplings.isEmpty())
+        couplingManager.updateCouplings()
+        assertArrayEquals(doubleArrayOf(1.0, 2.0, 3.0), targets.map { it.input }.toDoubleArray())
+
+        couplingManager.removeAttributeContainer(sources[1])
+        assertEquals(2, group.size)
+        couplingManager.removeCouplingGroup(group)
+        assertTrue(couplingManager.couplingGroups.isEmpty())
+        assertTrue(couplingManager.couplings.isEmpty())
+    }
+
+    @Test
+    fun `coupling groups are serialized as groups`() {
+        val sources = List(2) { Neuron() }
+        val targets = List(2) { Neuron() }
+        network.addNetworkModels(sources + targets)
+        with(couplingManager) {
+            sources[0].getProducer("getActivation") couple targets[0].getConsumer("setActivation")
+            createCouplingGroup(
+                sources.map { it.getProducer("getActivation") },
+                targets.map { it.getConsumer("addInputValue") },
+                label = "sensors"
+            )
+        }
+        val output = ByteArrayOutputStream()
+        WorkspaceSerializer(workspace).serialize(output, headless = true)
+        val loaded = Workspace()
+        WorkspaceSerializer(loaded).deserialize(ByteArrayInputStream(output.toByteArray()))
+        val groups = loaded.couplingManager.couplingGroups
+        assertEquals(1, groups.size)
+        assertEquals("sensors", groups[0].label)
+        assertEquals(2, groups[0].size)
+        assertEquals(1, loaded.couplingManager.ungroupedCouplings.size)
+    }
+
+    /**
+     * Labels of the coupling groups of [manager] in update order, with "-" for each ungrouped coupling.
+     */
+    private fun updateOrder(manager: CouplingManager) = ArrayList<String>().apply {
+        manager.forEachInUpdateOrder({ add("-") }, { add(it.label) })
+    }
+
+    @Test
+    fun `coupling groups are updated in place of their first coupling`() {
+        val chain = List(5) { Neuron() }
+        chain[0].activation = 1.0
+        network.addNetworkModels(chain)
+        with(couplingManager) {
+            chain[0].getProducer("getActivation") couple chain[1].getConsumer("setActivation")
+            createCouplingGroup(
+                listOf(chain[1].getProducer("getActivation")),
+                listOf(chain[2].getConsumer("setActivation")),
+                label = "first"
+            )
+            chain[2].getProducer("getActivation") couple chain[3].getConsumer("setActivation")
+            createCouplingGroup(
+                listOf(chain[3].getProducer("getActivation")),
+                listOf(chain[4].getConsumer("setActivation")),
+                label = "second"
+            )
+        }
+        assertEquals(listOf("-", "first", "-", "second"), updateOrder(couplingManager))
+        couplingManager.updateCouplings()
+        assertArrayEquals(DoubleArray(5) { 1.0 }, chain.map { it.activation }.toDoubleArray())
+
+        val output = ByteArrayOutputStream()
+        WorkspaceSerializer(workspace).serialize(output, headless = true)
+        val loaded = Workspace()
+        WorkspaceSerializer(loaded).deserialize(ByteArrayInputStream(output.toByteArray()))
+        assertEquals(listOf("-", "first", "-", "second"), updateOrder(loaded.couplingManager))
+    }
 }
@@ -0,0 +1,101 @@
+package org.simbrain.workspace.batch
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.Workspace
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.util.zip.ZipInputStream
+
+class BatchRunnerTest {
+
+    @TempDir
+    lateinit var directory: File
+
+    private val network = Network()
+
+    private val input = Neuron().apply { clamped = true; activation = 1.0 }
+
+    private val output = Neuron()
+
+    private val array = NeuronArray(3)
+
+    private val workspaceFile by lazy {
+        network.addNetworkModels(input, output, Synapse(input, output, .5), array)
+        val workspace = Workspace()
+        workspace.addWorkspaceComponent(NetworkComponent("net", network))
+        File(directory, "workspace.zip").also { workspace.save(it, headless = true) }
+    }
+
+    @Test
+    fun `producers are recorded to csv every k iterations`() {
+        val csv = File(directory, "run.csv")
+        val statistics = runBlocking {
+            BatchRunner(workspaceFile, 10, 5, listOf("${output.id}:getActivation"), csv).run()
+        }
+        assertEquals(10, statistics.iterations)
+        assertEquals(3, statistics.rows)
+        val lines = csv.readLines()
+        assertEquals(4, lines.size)
+        assertEquals("\"time\",\"net/${output.id}:getActivation\"", lines[0])
+        assertEquals(listOf(0, 5, 10), lines.drop(1).map { it.substringBefore(',').toInt() })
+        assertEquals(.5, lines.last().substringAfter(',').toDouble())
+    }
+
+    @Test
+    fun `array producers are recorded as binary columns`() {
+        val file = File(directory, "run.zip")
+        runBlocking {
+            BatchRunner(
+                workspaceFile, 4, 1, listOf("net/${array.id}:getActivationArray"), file,
+                ProducerRecorder.RecordingFormat.Binary
+            ).run()
+        }
+        val columns = FileInputStream(file).use { ProducerRecorder.readColumns(it) }
+        assertEquals(listOf(ProducerRecorder.TIME_COLUMN) + (0..2).map { "net/${array.id}:getActivationArray[$it]" }, columns.keys.toList())
+        assertArrayEquals(doubleArrayOf(0.0, 1.0, 2.0, 3.0, 4.0), columns[ProducerRecorder.TIME_COLUMN], 0.0)
+    }
+
+    @Test
+    fun `binary recordings are written in blocks of rows`() {
+        val workspace = Workspace()
+        workspace.addWorkspaceComponent(NetworkComponent("net", network))
+        val producer = with(workspace.couplingManager) { output.getProducer("getActivation") }
+        val bytes = ByteArrayOutputStream()
+        // Two columns and four values per block, so two rows per block
+        ProducerRecorder(
+            listOf(producer), listOf("output"), bytes, ProducerRecorder.RecordingFormat.Binary, blockValues = 4
+        ).use { recorder ->
+            repeat(5) {
+                output.activation = it * 10.0
+                recorder.record(it)
+            }
+        }
+        val entries = ZipInputStream(ByteArrayInputStream(bytes.toByteArray())).use { zip ->
+            generateSequence { zip.nextEntry }.map { it.name }.toList()
+        }
+        assertEquals(7, entries.size)
+        val columns = ProducerRecorder.readColumns(ByteArrayInputStream(bytes.toByteArray()))
+        assertArrayEquals(doubleArrayOf(0.0, 1.0, 2.0, 3.0, 4.0), columns[ProducerRecorder.TIME_COLUMN], 0.0)
+        assertArrayEquals(doubleArrayOf(0.0, 10.0, 20.0, 30.0, 40.0), columns["output"], 0.0)
+    }
+
+    @Test
+    fun `unknown producers are rejected`() {
+        assertThrows<IllegalArgumentException> {
+            runBlocking {
+                BatchRunner(workspaceFile, 1, 1, listOf("NoSuchNeuron"), File(directory, "run.csv")).run()
+            }
+        }
+    }
+}
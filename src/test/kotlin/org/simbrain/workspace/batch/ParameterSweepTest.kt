@@ -0,0 +1,117 @@
+package org.simbrain.workspace.batch
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.Workspace
+import java.io.File
+
+class ParameterSweepTest {
+
+    @TempDir
+    lateinit var directory: File
+
+    private val input = Neuron().apply { clamped = true; activation = 1.0 }
+
+    private val output = Neuron()
+
+    private val workspace = Workspace().apply {
+        val network = Network()
+        network.addNetworkModels(input, output, Synapse(input, output, .5))
+        addWorkspaceComponent(NetworkComponent("net", network))
+    }
+
+    private val workspaceFile by lazy {
+        File(directory, "workspace.zip").also { workspace.save(it, headless = true) }
+    }
+
+    @Test
+    fun `overrides set user parameters of targets found by class name or property`() {
+        assertEquals(1, ParameterOverride.parse("net/Synapse.strength=2").apply(workspace))
+        assertEquals(2.0, output.fanIn.first().strength)
+        assertEquals(1, ParameterOverride.parse("net/network.timeStep=0.5").apply(workspace))
+        assertEquals(.5, (workspace.componentList.first() as NetworkComponent).network.timeStep)
+        assertThrows(IllegalArgumentException::class.java) {
+            ParameterOverride.parse("net/Synapse.length=2").apply(workspace)
+        }
+    }
+
+    @Test
+    fun `each point runs on its own copy of the workspace`() {
+        val strengths = listOf("0.25", "0.5", "1", "2")
+        val sweep = ParameterSweep(
+            workspaceFile,
+            ParameterSweep.grid(mapOf("net/Synapse.strength" to strengths)),
+            File(directory, "sweep"),
+            iterations = 2,
+            producerIds = listOf("${output.id}:getActivation"),
+            workers = 2
+        )
+        val results = runBlocking { sweep.run() }
+        assertTrue(results.all { it.error == null })
+        results.forEachIndexed { i, result ->
+            val lastActivation = result.output!!.readLines().last().substringAfter(',').toDouble()
+            assertEquals(strengths[i].toDouble(), lastActivation, 1e-12)
+        }
+        val summary = File(directory, "sweep/${ParameterSweep.SUMMARY_FILE}").readLines()
+        assertEquals(strengths.size + 1, summary.size)
+        assertEquals(.5, output.fanIn.first().strength)
+    }
+
+    @Test
+    fun `failed points are reported without stopping the sweep`() {
+        val points = listOf(
+            listOf(ParameterOverride("net/NoSuchModel.strength", "1")),
+            listOf(ParameterOverride("net/Synapse.strength", "1"))
+        )
+        val results = runBlocking { ParameterSweep(workspaceFile, points, File(directory, "sweep"), 1).run() }
+        assertNotNull(results[0].error)
+        assertNull(results[1].error)
+    }
+
+    @Test
+    fun `a single run is admitted until the memory per run is known`() = runBlocking {
+        val gate = MemoryGate(null) { Long.MAX_VALUE }
+        val runs = List(4) { async { gate.enter() } }
+        delay(200)
+        assertEquals(1, gate.runsInProgress)
+        gate.estimate(1)
+        withTimeout(1000) { runs.awaitAll() }
+        assertEquals(4, gate.runsInProgress)
+    }
+
+    @Test
+    fun `runs are no longer held back when the first run finishes without an estimate`() = runBlocking {
+        val gate = MemoryGate(null) { 0L }
+        assertTrue(gate.enter())
+        val runs = List(3) { async { gate.enter() } }
+        delay(200)
+        assertEquals(1, gate.runsInProgress)
+        gate.exit()
+        val estimating = withTimeout(1000) { runs.awaitAll() }
+        assertEquals(3, gate.runsInProgress)
+        assertEquals(listOf(false, false, false), estimating)
+        assertNull(gate.memoryPerRun)
+    }
+
+    @Test
+    fun `runs wait for free memory once the memory per run is known`() = runBlocking {
+        var free = 50L
+        val gate = MemoryGate(60) { free }
+        val runs = List(2) { async { gate.enter() } }
+        delay(200)
+        assertEquals(1, gate.runsInProgress)
+        free = 60
+        withTimeout(1000) { runs.awaitAll() }
+        assertEquals(2, gate.runsInProgress)
+    }
+}
@@ -0,0 +1,71 @@
+package org.simbrain.workspace.serialization
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.network.core.WeightMatrix
+import org.simbrain.util.BinaryArrays
+import org.simbrain.workspace.Workspace
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.zip.ZipInputStream
+
+class WorkspaceSerializerTest {
+
+    private val workspace = Workspace()
+
+    private val network = Network()
+
+    private val weightMatrix: WeightMatrix
+
+    init {
+        val source = NeuronArray(40)
+        val target = NeuronArray(50)
+        weightMatrix = WeightMatrix(source, target)
+        weightMatrix.setWeights(DoubleArray(40 * 50) { it * .001 - 1 })
+        network.addNetworkModels(source, target, weightMatrix)
+        workspace.addWorkspaceComponent(NetworkComponent("net", network))
+    }
+
+    private fun save(binaryArrays: Boolean) = ByteArrayOutputStream().also {
+        WorkspaceSerializer(workspace).serialize(it, headless = true, binaryArrays = binaryArrays)
+    }.toByteArray()
+
+    private fun load(bytes: ByteArray) = Workspace().also {
+        WorkspaceSerializer(it).deserialize(ByteArrayInputStream(bytes))
+    }
+
+    private fun entryNames(bytes: ByteArray) = ZipInputStream(ByteArrayInputStream(bytes)).let { zip ->
+        generateSequence { zip.nextEntry?.name }.toList()
+    }
+
+    private fun loadedWeights(loaded: Workspace) = (loaded.componentList.first() as NetworkComponent).network
+        .getModels<WeightMatrix>().first().weights
+
+    @Test
+    fun `large matrices are saved as binary entries`() {
+        val bytes = save(binaryArrays = true)
+        assertTrue(entryNames(bytes).any { BinaryArrays.arrayId(it) != null })
+        assertArrayEquals(weightMatrix.weights, loadedWeights(load(bytes)), 0.0)
+    }
+
+    @Test
+    fun `archives with arrays in the xml still load`() {
+        val bytes = save(binaryArrays = false)
+        assertTrue(entryNames(bytes).none { BinaryArrays.arrayId(it) != null })
+        assertArrayEquals(weightMatrix.weights, loadedWeights(load(bytes)), 0.0)
+    }
+
+    @Test
+    fun `array entries round trip across chunk boundaries`() {
+        for (size in listOf(0, 1, 8191, 8192, 8193, 20000)) {
+            val array = DoubleArray(size) { Math.sin(it.toDouble()) }
+            val output = ByteArrayOutputStream()
+            BinaryArrays.write(array, output)
+            assertEquals(8 + 8 * size, output.size())
+            assertArrayEquals(array, BinaryArrays.read(ByteArrayInputStream(output.toByteArray())), 0.0)
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.simbrain.workspace.updater
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.Workspace
+
+class ParallelUpdateTest {
+
+    /**
+     * A workspace with a chain of networks a -> b -> c coupled neuron to neuron, and a network d that is not coupled
+     * to anything. Each network is two recurrently connected neurons.
+     */
+    private class ChainWorkspace {
+
+        val workspace = Workspace()
+
+        val networks = List(4) { Network() }
+
+        val neurons = networks.mapIndexed { i, network ->
+            val first = Neuron().apply { activation = 0.1 * (i + 1) }
+            val second = Neuron()
+            network.addNetworkModels(first, second, Synapse(first, second, 0.9), Synapse(second, first, -0.4))
+            listOf(first, second)
+        }
+
+        init {
+            networks.forEachIndexed { i, network -> workspace.addWorkspaceComponent(NetworkComponent("net$i", network)) }
+            couple(neurons[0][1], neurons[1][0])
+            couple(neurons[1][1], neurons[2][0])
+        }
+
+        private fun couple(source: Neuron, target: Neuron) = with(workspace.couplingManager) {
+            createCoupling(source.getProducer("getActivation"), target.getConsumer("addInputValue"))
+        }
+
+        val activations get() = neurons.flatten().map { it.activation }.toDoubleArray()
+    }
+
+    @Test
+    fun `parallel update gives the same results as serial update`() {
+        val serial = ChainWorkspace()
+        val parallel = ChainWorkspace().apply { workspace.updater.updateMode = WorkspaceUpdater.UpdateMode.Parallel }
+        repeat(20) { step ->
+            serial.workspace.simpleIterate()
+            parallel.workspace.simpleIterate()
+            assertArrayEquals(serial.activations, parallel.activations, 0.0, "Step $step")
+        }
+    }
+
+    @Test
+    fun `couplings order component updates and custom actions are barriers`() {
+        val chain = ChainWorkspace()
+        val updater = chain.workspace.updater
+        var counter = 0
+        chain.workspace.addUpdateAction("increment counter") { counter++ }
+        updater.updateMode = WorkspaceUpdater.UpdateMode.Parallel
+        chain.workspace.simpleIterate()
+        assertEquals(1, counter)
+        val schedule = updater.parallelSchedule(updater.updateManager.actionList + updater.updateManager.nonRemovableActions)
+        // d updates alongside the chain, which takes several levels, and the custom action gets a level of its own
+        assertTrue(schedule.maxWidth >= 2)
+        assertTrue(schedule.numLevels >= 4)
+    }
+
+    @Test
+    fun `schedule is rebuilt when couplings change`() {
+        val chain = ChainWorkspace()
+        val updater = chain.workspace.updater
+        val actions = updater.updateManager.actionList.toList()
+        val schedule = updater.parallelSchedule(actions)
+        assertEquals(schedule, updater.parallelSchedule(actions))
+        with(chain.workspace.couplingManager) {
+            createCoupling(chain.neurons[2][1].getProducer("getActivation"), chain.neurons[3][0].getConsumer("addInputValue"))
+        }
+        assertTrue(schedule.isStale(actions))
+    }
+}
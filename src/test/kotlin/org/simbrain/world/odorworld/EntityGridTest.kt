@@ -0,0 +1,138 @@
+package org.simbrain.world.odorworld
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.util.SmellSource
+import org.simbrain.util.decayfunctions.GaussianDecayFunction
+import org.simbrain.util.point
+import org.simbrain.world.odorworld.entities.Bound
+import org.simbrain.world.odorworld.entities.EntityType
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.ObjectSensor
+import org.simbrain.world.odorworld.sensors.SmellSensor
+import java.time.Duration
+import kotlin.random.Random
+
+class EntityGridTest {
+
+    val world = OdorWorld()
+
+    val random = Random(42)
+
+    private fun addRandomEntities(count: Int) = List(count) {
+        OdorWorldEntity(world, EntityType.SWISS).also {
+            world.addEntity(it)
+            it.location = point(random.nextDouble(world.width), random.nextDouble(world.height))
+        }
+    }
+
+    @Test
+    fun `entities within a radius are the same as with a full scan`() {
+        addRandomEntities(200)
+        repeat(20) {
+            val center = point(random.nextDouble(world.width), random.nextDouble(world.height))
+            val radius = random.nextDouble(150.0)
+            val expected = world.entityList.filter { it.location.distance(center) <= radius }.toSet()
+            assertEquals(expected, world.getEntitiesWithin(center, radius).toSet())
+        }
+    }
+
+    @Test
+    fun `entities are found at their new location after moving`() {
+        val entities = addRandomEntities(50)
+        entities.forEach { it.location = point(random.nextDouble(world.width), random.nextDouble(world.height)) }
+        val moved = entities.first()
+        moved.location = point(5, 5)
+        assertTrue(moved in world.getEntitiesWithin(point(0, 0), 10.0))
+        moved.location = point(world.width - 5, world.height - 5)
+        assertFalse(moved in world.getEntitiesWithin(point(0, 0), 10.0))
+        assertTrue(moved in world.getEntitiesWithin(point(world.width, world.height), 10.0))
+    }
+
+    @Test
+    fun `removed entities are not found`() {
+        val grid = EntityGrid()
+        val entity = OdorWorldEntity(world)
+        entity.location = point(20, 20)
+        grid.add(entity)
+        assertEquals(listOf(entity), grid.collect(0.0, 0.0, 40.0, 40.0))
+        grid.remove(entity)
+        assertTrue(grid.collect(0.0, 0.0, 40.0, 40.0).isEmpty())
+        assertEquals(0, grid.size)
+    }
+
+    @Test
+    fun `entities near a region include the entities overlapping it`() {
+        val entity = OdorWorldEntity(world)
+        world.addEntity(entity)
+        entity.location = point(100, 100)
+        // The region does not contain the center of the entity but overlaps its bounds
+        val region = Bound(100 + entity.width / 2 + 1, 100.0, 4.0, 4.0)
+        assertTrue(entity in world.getEntitiesNear(region))
+    }
+
+    @Test
+    fun `smell sensor sums the sources in range as a full scan does`() {
+        val sources = addRandomEntities(100)
+        sources.forEachIndexed { i, entity ->
+            entity.smellSource = SmellSource(DoubleArray(4) { random.nextDouble() }).apply {
+                if (i % 2 == 0) decayFunction = GaussianDecayFunction(40.0) else dispersion = 80.0
+            }
+        }
+        val agent = OdorWorldEntity(world, EntityType.MOUSE)
+        world.addEntity(agent)
+        agent.location = point(world.width / 2, world.height / 2)
+        val sensor = SmellSensor()
+        agent.addSensor(sensor)
+        sensor.update(agent)
+
+        val expected = sources
+            .map { it.smellSource.getStimulus(it.location.distance(sensor.computeAbsoluteLocation(agent))) }
+            .reduce { a, b -> DoubleArray(a.size) { a[it] + b[it] } }
+        assertArrayEquals(expected, sensor.smellVector, 1e-6)
+    }
+
+    @Test
+    fun `object sensor only responds to objects within its dispersion`() {
+        val agent = OdorWorldEntity(world, EntityType.MOUSE)
+        world.addEntity(agent)
+        agent.location = point(100, 100)
+        val near = OdorWorldEntity(world, EntityType.SWISS)
+        world.addEntity(near)
+        near.location = point(130, 100)
+        val far = OdorWorldEntity(world, EntityType.SWISS)
+        world.addEntity(far)
+        far.location = point(300, 100)
+        val sensor = ObjectSensor(EntityType.SWISS, 0.0, 0.0)
+        sensor.decayFunction.dispersion = 50.0
+        agent.addSensor(sensor)
+        sensor.update(agent)
+        assertEquals(1 - 30.0 / 50.0, sensor.currentValue, 1e-9)
+        assertEquals(listOf(near), sensor.getSensedObjects(agent, 0.0))
+    }
+
+    @Test
+    fun `unbounded queries return every entity`() {
+        val entities = addRandomEntities(30)
+        val found = assertTimeoutPreemptively(Duration.ofSeconds(5)) {
+            world.getEntitiesWithin(point(0, 0), Double.POSITIVE_INFINITY)
+        }
+        assertEquals(entities.toSet(), found.toSet())
+    }
+
+    @Test
+    fun `smell sensor smells noisy sources at any distance`() {
+        val source = OdorWorldEntity(world, EntityType.SWISS)
+        world.addEntity(source)
+        source.location = point(world.width, world.height)
+        source.smellSource = SmellSource(doubleArrayOf(1.0, 1.0)).apply { addNoise = true }
+        val agent = OdorWorldEntity(world, EntityType.MOUSE)
+        world.addEntity(agent)
+        agent.location = point(0, 0)
+        val sensor = SmellSensor()
+        agent.addSensor(sensor)
+        assertEquals(Double.POSITIVE_INFINITY, world.smellRange)
+        assertTimeoutPreemptively(Duration.ofSeconds(5)) { sensor.update(agent) }
+        assertTrue(sensor.smellVector.size >= 2)
+    }
+}
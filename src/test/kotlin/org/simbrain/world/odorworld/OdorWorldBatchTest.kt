@@ -0,0 +1,150 @@
+package org.simbrain.world.odorworld
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.util.SmellSource
+import org.simbrain.util.point
+import org.simbrain.world.odorworld.effectors.StraightMovement
+import org.simbrain.world.odorworld.effectors.Turning
+import org.simbrain.world.odorworld.entities.EntityType
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.ObjectSensor
+import org.simbrain.world.odorworld.sensors.SensorWithRelativeLocation
+import org.simbrain.world.odorworld.sensors.SmellSensor
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.random.Random
+
+class OdorWorldBatchTest {
+
+    /**
+     * A world with blocking tiles, objects, and agents that turn toward the objects they sense.
+     */
+    private fun createWorld(batchMode: Boolean, wrapAround: Boolean) = OdorWorld().apply {
+        val random = Random(42)
+        this.wrapAround = wrapAround
+        isBatchMode = batchMode
+        tileMap.layers.first().blocking = true
+        repeat(30) { tileMap.setTile(random.nextInt(tileMap.width), random.nextInt(tileMap.height), 2) }
+        repeat(20) {
+            addEntity(OdorWorldEntity(this, EntityType.SWISS).apply {
+                location = point(random.nextDouble(width), random.nextDouble(height))
+                smellSource = SmellSource(DoubleArray(3) { random.nextDouble() })
+            })
+        }
+        repeat(10) {
+            addEntity(OdorWorldEntity(this, EntityType.MOUSE).apply {
+                location = point(random.nextDouble(width), random.nextDouble(height))
+                heading = random.nextDouble(360.0)
+                smellSource = SmellSource(DoubleArray(3) { random.nextDouble() })
+                addDefaultEffectors()
+                addSensor(SmellSensor())
+                addLeftRightSensors(EntityType.SWISS, 70.0)
+                addLeftRightSensors(EntityType.MOUSE, 70.0)
+            })
+        }
+    }
+
+    /**
+     * Set the effectors of the agents from their object sensors, as a simple vehicle would.
+     */
+    private fun OdorWorld.drive() {
+        for (agent in entityList.filter { it.effectors.isNotEmpty() }) {
+            val (left, right) = agent.sensors.filterIsInstance<ObjectSensor>()
+            (agent.effectors[0] as StraightMovement).amount = 3.0
+            (agent.effectors[1] as Turning).amount = 10 * left.currentValue
+            (agent.effectors[2] as Turning).amount = 10 * right.currentValue
+        }
+    }
+
+    private fun assertSameState(expected: OdorWorld, actual: OdorWorld) {
+        expected.entityList.zip(actual.entityList).forEach { (e, a) ->
+            assertEquals(e.x, a.x, 0.0)
+            assertEquals(e.y, a.y, 0.0)
+            assertEquals(e.heading, a.heading, 0.0)
+            e.sensors.zip(a.sensors).forEach { (es, s) ->
+                when (es) {
+                    is SmellSensor -> assertArrayEquals(es.smellVector, (s as SmellSensor).smellVector, 0.0)
+                    is SensorWithRelativeLocation ->
+                        assertEquals(es.currentValue, (s as SensorWithRelativeLocation).currentValue, 0.0)
+                }
+            }
+        }
+    }
+
+    private fun assertMatchesObjectPath(wrapAround: Boolean) = runBlocking {
+        val objectWorld = createWorld(batchMode = false, wrapAround)
+        val batchWorld = createWorld(batchMode = true, wrapAround)
+        repeat(200) {
+            objectWorld.drive()
+            batchWorld.drive()
+            objectWorld.update()
+            batchWorld.update()
+            assertSameState(objectWorld, batchWorld)
+        }
+    }
+
+    @Test
+    fun `batch mode matches the object path in a wrapping world`() {
+        assertMatchesObjectPath(wrapAround = true)
+    }
+
+    @Test
+    fun `batch mode matches the object path in a bounded world`() {
+        assertMatchesObjectPath(wrapAround = false)
+    }
+
+    /**
+     * Collisions reported to the agents of [world] over 200 steps, as the index of the agent and a description of what
+     * it collided with.
+     */
+    private fun collectCollisions(world: OdorWorld): List<String> = runBlocking {
+        val collisions = ConcurrentLinkedQueue<String>()
+        world.entityList.forEachIndexed { i, entity ->
+            entity.events.collided.on { other ->
+                val description = when (other) {
+                    is OdorWorld -> "world"
+                    is OdorWorldEntity -> "entity ${world.entityList.indexOf(other)}"
+                    else -> "tile at ${other.x}, ${other.y}"
+                }
+                collisions.add("$i: $description")
+            }
+        }
+        repeat(200) {
+            world.drive()
+            world.update()
+        }
+        // Handlers run asynchronously
+        delay(500)
+        collisions.sorted()
+    }
+
+    @Test
+    fun `collision events are fired as in the object path`() {
+        val objectCollisions = collectCollisions(createWorld(batchMode = false, wrapAround = false))
+        val batchCollisions = collectCollisions(createWorld(batchMode = true, wrapAround = false))
+        assertTrue(objectCollisions.any { it.endsWith("world") })
+        assertEquals(objectCollisions, batchCollisions)
+    }
+
+    @Test
+    fun `arrays mirror the state of the entities after a step`() = runBlocking {
+        val world = createWorld(batchMode = true, wrapAround = true)
+        world.drive()
+        world.update()
+        val batch = world.batch
+        world.entityList.forEachIndexed { i, entity ->
+            assertEquals(entity.x, batch.xMirror[i])
+            assertEquals(entity.y, batch.yMirror[i])
+            assertEquals(entity.heading, batch.headingMirror[i])
+            entity.sensors.forEachIndexed { j, sensor ->
+                val expected = when (sensor) {
+                    is SmellSensor -> sensor.currentScalarValue
+                    else -> (sensor as SensorWithRelativeLocation).currentValue
+                }
+                assertEquals(expected, batch.getSensorValue(i, j))
+            }
+        }
+    }
+}
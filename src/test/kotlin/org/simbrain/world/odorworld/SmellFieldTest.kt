@@ -0,0 +1,85 @@
+package org.simbrain.world.odorworld
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.util.SmellSource
+import org.simbrain.util.point
+import org.simbrain.world.odorworld.entities.EntityType
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.SmellSensor
+import kotlin.random.Random
+
+class SmellFieldTest {
+
+    val world = OdorWorld().apply { isSmellFieldCached = true }
+
+    val random = Random(42)
+
+    val sources = List(30) {
+        OdorWorldEntity(world, EntityType.SWISS).also {
+            world.addEntity(it)
+            it.location = point(random.nextDouble(world.width), random.nextDouble(world.height))
+            it.smellSource = SmellSource(DoubleArray(3) { random.nextDouble() }).apply { dispersion = 100.0 }
+        }
+    }
+
+    val agent = OdorWorldEntity(world, EntityType.MOUSE).also { world.addEntity(it) }
+
+    val sensor = SmellSensor().also { agent.addSensor(it) }
+
+    private fun exactSmell() = sources
+        .map { it.smellSource.getStimulus(it.location.distance(sensor.computeAbsoluteLocation(agent))) }
+        .reduce { a, b -> DoubleArray(a.size) { a[it] + b[it] } }
+
+    @Test
+    fun `smell at the corner of a tile is exact`() {
+        agent.location = point(world.tileMap.tileWidth * 5, world.tileMap.tileHeight * 7)
+        sensor.update(agent)
+        assertTrue(sources.all { it in world.smellField })
+        assertArrayEquals(exactSmell(), sensor.smellVector, 1e-9)
+    }
+
+    @Test
+    fun `smell between corners is close to the exact smell`() {
+        repeat(10) {
+            agent.location = point(random.nextDouble(world.width), random.nextDouble(world.height))
+            sensor.update(agent)
+            val exact = exactSmell()
+            for (i in exact.indices) {
+                assertEquals(exact[i], sensor.smellVector[i], 0.2 * exact[i] + 0.2)
+            }
+        }
+    }
+
+    @Test
+    fun `moved entities are smelled exactly`() {
+        agent.location = point(world.tileMap.tileWidth * 5, world.tileMap.tileHeight * 7)
+        sensor.update(agent)
+        val moved = sources.first()
+        moved.location = point(agent.x + 10, agent.y + 10)
+        sensor.update(agent)
+        assertFalse(moved in world.smellField)
+        assertArrayEquals(exactSmell(), sensor.smellVector, 1e-9)
+    }
+
+    @Test
+    fun `changes to smell sources are picked up once per update`() {
+        agent.location = point(world.tileMap.tileWidth * 5, world.tileMap.tileHeight * 7)
+        sensor.update(agent)
+        sources.forEach { it.smellSource.dispersion = 200.0 }
+        world.smellField.checkSources()
+        sensor.update(agent)
+        assertArrayEquals(exactSmell(), sensor.smellVector, 1e-9)
+    }
+
+    @Test
+    fun `entities with sensors are not in the field`() {
+        sensor.update(agent)
+        assertFalse(agent in world.smellField)
+        val other = OdorWorldEntity(world, EntityType.MOUSE)
+        world.addEntity(other)
+        other.addSensor(SmellSensor())
+        sensor.update(agent)
+        assertFalse(other in world.smellField)
+    }
+}
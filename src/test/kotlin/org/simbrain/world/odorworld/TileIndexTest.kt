@@ -0,0 +1,97 @@
+package org.simbrain.world.odorworld
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.util.piccolo.*
+import org.simbrain.util.plus
+import org.simbrain.util.point
+import org.simbrain.world.odorworld.entities.Bound
+import org.simbrain.world.odorworld.entities.EntityType
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.TileSensor
+import kotlin.random.Random
+
+class TileIndexTest {
+
+    val world = OdorWorld().apply { tileMap = loadTileMap("empty.tmx") }
+
+    val tileMap get() = world.tileMap
+
+    val random = Random(42)
+
+    private fun addRandomTiles(count: Int, tileId: Int, layer: TileMapLayer = tileMap.layers.first()) {
+        repeat(count) { tileMap.setTile(random.nextInt(tileMap.width), random.nextInt(tileMap.height), tileId, layer) }
+    }
+
+    @Test
+    fun `collision bounds are only recomputed when tiles change`() {
+        tileMap.layers.first().blocking = true
+        addRandomTiles(10, 2)
+        val bounds = tileMap.collisionBounds
+        assertSame(bounds, tileMap.collisionBounds)
+        tileMap.setTile(0, 0, 3)
+        assertNotSame(bounds, tileMap.collisionBounds)
+    }
+
+    @Test
+    fun `index is rebuilt when tiles change`() {
+        val index = tileMap.tileIndex
+        assertSame(index, tileMap.tileIndex)
+        tileMap.setTile(1, 1, 2)
+        assertNotSame(index, tileMap.tileIndex)
+        assertTrue(tileMap.tileIndex.getTypeIndex(tileMap.getTile(2).type)[1, 1])
+    }
+
+    @Test
+    fun `type counts in rectangles wrap around the map`() {
+        val type = tileMap.getTile(2).type
+        tileMap.setTile(0, 0, 2)
+        tileMap.setTile(tileMap.width - 1, tileMap.height - 1, 2)
+        val typeIndex = tileMap.tileIndex.getTypeIndex(type)
+        assertEquals(2, typeIndex.count)
+        assertEquals(1, typeIndex.count(0, 0, 1, 1))
+        assertEquals(2, typeIndex.count(-1, -1, 0, 0))
+        assertEquals(0, typeIndex.count(2, 2, 5, 5))
+        assertTrue(typeIndex[-1, -1])
+    }
+
+    @Test
+    fun `collision bounds near a region include every blocking tile it overlaps`() {
+        tileMap.layers.first().blocking = true
+        addRandomTiles(40, 2)
+        repeat(20) {
+            val region = Bound(random.nextDouble(world.width), random.nextDouble(world.height), 40.0, 30.0)
+            val expected = tileMap.collisionBounds.filter { region.intersect(it).intersect }
+                .map { (it as TileInstance).gridCoordinate.int.let { (x, y) -> x to y } }
+            val near = tileMap.getCollisionBounds(region)
+                .map { (it as TileInstance).gridCoordinate.int.let { (x, y) -> x to y } }
+            assertTrue(near.containsAll(expected))
+        }
+    }
+
+    @Test
+    fun `tile sensor sums the same tiles as a scan of the tile stacks`() {
+        val lakeLayer = tileMap.addLayer(tileMap.createTileMapLayer("Lakes"))
+        addRandomTiles(60, 2, lakeLayer)
+        val type = tileMap.getTile(2).type
+        val agent = OdorWorldEntity(world, EntityType.MOUSE)
+        world.addEntity(agent)
+        val sensor = TileSensor(type, radius = 20.0, angle = 45.0)
+        agent.addSensor(sensor)
+        sensor.decayFunction.dispersion = 150.0
+        repeat(20) {
+            agent.location = point(random.nextDouble(world.width), random.nextDouble(world.height))
+            sensor.update(agent)
+            val sensorLocation = sensor.computeAbsoluteLocation(agent)
+            val expected = with(tileMap) {
+                getRelativeGridLocationsInRadius(sensor.decayFunction.dispersion)
+                    .map { it + sensorLocation.asPixelCoordinate().toGridCoordinate() }
+                    .map { it.asGridCoordinate() to getTileStackAt(it.x.toInt(), it.y.toInt()) }
+                    .filter { (_, tiles) -> tiles.any { it.type == type } }
+                    .map { (pos) -> pos.toPixelCoordinate().distance(sensorLocation) }
+                    .sumOf { sensor.decayFunction.getScalingFactor(it) * sensor.baseValue }
+            }
+            assertEquals(expected, sensor.currentValue, 1e-12)
+        }
+    }
+}